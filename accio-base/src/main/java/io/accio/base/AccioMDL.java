@@ -16,7 +16,6 @@ package io.accio.base;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.ImmutableMap;
 import com.hubspot.jinjava.Jinjava;
 import io.accio.base.dto.CacheInfo;
 import io.accio.base.dto.Column;
@@ -28,18 +27,16 @@ import io.accio.base.dto.Metric;
 import io.accio.base.dto.Model;
 import io.accio.base.dto.Relationship;
 import io.accio.base.dto.View;
-import io.accio.base.jinjava.JinjavaExpressionProcessor;
-import io.accio.base.jinjava.JinjavaUtils;
+import io.accio.base.jinjava.MacroRenderer;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static io.accio.base.macro.Parameter.TYPE.MACRO;
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
 public class AccioMDL
@@ -51,6 +48,7 @@ public class AccioMDL
     private final String catalog;
     private final String schema;
     private final Manifest manifest;
+    private final Optional<String> dateSpineTable;
 
     public static AccioMDL fromJson(String manifest)
             throws JsonProcessingException
@@ -63,21 +61,65 @@ public class AccioMDL
         return new AccioMDL(manifest);
     }
 
+    /**
+     * An mdl of a manifest whose macros are already rendered, see {@link #getCompiledManifest()}.
+     */
+    static AccioMDL fromCompiledManifest(Manifest compiledManifest)
+    {
+        return new AccioMDL(compiledManifest, false);
+    }
+
     private AccioMDL(Manifest manifest)
+    {
+        this(manifest, true);
+    }
+
+    private AccioMDL(Manifest manifest, boolean render)
     {
         requireNonNull(manifest, "manifest is null");
-        this.manifest = renderManifest(manifest);
+        this.manifest = render ? renderManifest(manifest) : manifest;
         this.catalog = manifest.getCatalog();
         this.schema = manifest.getSchema();
+        this.dateSpineTable = Optional.empty();
+    }
+
+    private AccioMDL(AccioMDL accioMDL, String dateSpineTable)
+    {
+        this.manifest = accioMDL.manifest;
+        this.catalog = accioMDL.catalog;
+        this.schema = accioMDL.schema;
+        this.dateSpineTable = Optional.of(requireNonNull(dateSpineTable, "dateSpineTable is null"));
+    }
+
+    /**
+     * The same mdl whose date spine is read from the given table of the data source instead of generated by each query.
+     */
+    public AccioMDL withDateSpineTable(String dateSpineTable)
+    {
+        return new AccioMDL(this, dateSpineTable);
+    }
+
+    /**
+     * The manifest with the macros in the expressions of its columns rendered.
+     */
+    Manifest getCompiledManifest()
+    {
+        return manifest;
     }
 
-    private Manifest renderManifest(Manifest original)
+    private static Manifest renderManifest(Manifest original)
     {
-        String macroTags = original.getMacros().stream()
-                .filter(macro -> macro.getParameters().stream().noneMatch(parameter -> parameter.getType() == MACRO))
-                .map(JinjavaUtils::getMacroTag).collect(joining("\n"));
+        List<String> expressions = Stream.concat(
+                        original.getModels().stream().flatMap(model -> model.getColumns().stream()),
+                        original.getMetrics().stream().flatMap(metric -> Stream.concat(metric.getDimension().stream(), metric.getMeasure().stream())))
+                .map(Column::getExpression)
+                .flatMap(Optional::stream)
+                .filter(MacroRenderer::needsRendering)
+                .collect(toImmutableList());
+        Map<String, String> rendered = MacroRenderer.render(JINJAVA, original.getMacros(), expressions);
+
         List<Model> renderedModels = original.getModels().stream().map(model -> {
-            List<Column> processed = model.getColumns().stream().map(column -> renderExpression(column, macroTags, original)).collect(toList());
+            List<Column> processed = model.getColumns().stream().map(column -> renderExpression(column, rendered)).collect(toList());
             return new Model(
                     model.getName(),
                     model.getRefSql(),
@@ -86,16 +128,19 @@ public class AccioMDL
                     model.getPrimaryKey(),
                     model.isCached(),
                     model.getRefreshTime(),
-                    model.getDescription());
+                    model.getDescription(),
+                    model.getSortKeys(),
+                    model.getIndexColumns());
         }).collect(toList());
 
         List<Metric> renderedMetrics = original.getMetrics().stream().map(metric ->
                 new Metric(metric.getName(),
                         metric.getBaseObject(),
-                        metric.getDimension().stream().map(column -> renderExpression(column, macroTags, original)).collect(toList()),
-                        metric.getMeasure().stream().map(column -> renderExpression(column, macroTags, original)).collect(toList()),
+                        metric.getDimension().stream().map(column -> renderExpression(column, rendered)).collect(toList()),
+                        metric.getMeasure().stream().map(column -> renderExpression(column, rendered)).collect(toList()),
                         metric.getTimeGrain(),
-                        metric.isCached(), metric.getRefreshTime(), metric.getDescription())
+                        metric.isCached(), metric.getRefreshTime(), metric.getDescription(),
+                        metric.getSortKeys(), metric.getIndexColumns())
         ).collect(toList());
 
         return Manifest.builder(original)
@@ -104,20 +149,18 @@ public class AccioMDL
                 .build();
     }
 
-    private Column renderExpression(Column original, String macroTags, Manifest unProcessedManifest)
+    private static Column renderExpression(Column original, Map<String, String> rendered)
     {
-        if (original.getExpression().isEmpty()) {
+        if (original.getExpression().isEmpty() || !rendered.containsKey(original.getExpression().get())) {
             return original;
         }
 
-        String withTag = macroTags + JinjavaExpressionProcessor.process(original.getExpression().get(), unProcessedManifest.getMacros());
-        String expression = JINJAVA.render(withTag, ImmutableMap.of());
         return new Column(original.getName(),
                 original.getType(),
                 original.getRelationship().orElse(null),
                 original.isCalculated(),
                 original.isNotNull(),
-                expression,
+                rendered.get(original.getExpression().get()),
                 original.getDescription());
     }
 
@@ -253,4 +296,9 @@ public class AccioMDL
     {
         return manifest.getDateSpine();
     }
+
+    public Optional<String> getDateSpineTable()
+    {
+        return dateSpineTable;
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import io.accio.base.dto.Manifest;
+import io.airlift.log.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+import static com.fasterxml.jackson.databind.MapperFeature.AUTO_DETECT_GETTERS;
+import static com.fasterxml.jackson.databind.MapperFeature.AUTO_DETECT_IS_GETTERS;
+import static com.fasterxml.jackson.databind.MapperFeature.USE_GETTERS_AS_SETTERS;
+import static com.google.common.hash.Hashing.sha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A binary snapshot of a compiled mdl, keyed by the hash of the json it's compiled from. Loading the json the
+ * snapshot was taken from reads the compiled manifest back instead of rendering the macros again.
+ */
+public final class AccioMDLSnapshot
+{
+    private static final Logger LOG = Logger.get(AccioMDLSnapshot.class);
+    // bump it when the compiled manifest changes for the same json
+    private static final int VERSION = 1;
+    // only the annotated properties of the dtos, i.e. those of the json, are written
+    private static final ObjectMapper SMILE_MAPPER = SmileMapper.builder()
+            .addModule(new Jdk8Module())
+            .disable(FAIL_ON_UNKNOWN_PROPERTIES)
+            .disable(AUTO_DETECT_GETTERS, AUTO_DETECT_IS_GETTERS, USE_GETTERS_AS_SETTERS)
+            .build();
+
+    private AccioMDLSnapshot() {}
+
+    /**
+     * Load the mdl of the json from the snapshot file if it's taken from the same json, otherwise compile the json
+     * and replace the snapshot with it. A snapshot that can't be read or written is only logged.
+     */
+    public static AccioMDL load(String json, Path snapshotFile)
+            throws JsonProcessingException
+    {
+        requireNonNull(json, "json is null");
+        requireNonNull(snapshotFile, "snapshotFile is null");
+        String sourceHash = sha256().hashString(json, UTF_8).toString();
+        Optional<AccioMDL> snapshot = read(snapshotFile, sourceHash);
+        if (snapshot.isPresent()) {
+            return snapshot.get();
+        }
+
+        AccioMDL mdl = AccioMDL.fromJson(json);
+        write(snapshotFile, new CompiledManifest(VERSION, sourceHash, mdl.getCompiledManifest()));
+        return mdl;
+    }
+
+    private static Optional<AccioMDL> read(Path snapshotFile, String sourceHash)
+    {
+        if (!Files.exists(snapshotFile)) {
+            return Optional.empty();
+        }
+        try {
+            CompiledManifest compiled = SMILE_MAPPER.readValue(Files.readAllBytes(snapshotFile), CompiledManifest.class);
+            if (compiled.getVersion() != VERSION || !compiled.getSourceHash().equals(sourceHash)) {
+                LOG.debug("Snapshot %s is taken from another mdl", snapshotFile);
+                return Optional.empty();
+            }
+            return Optional.of(AccioMDL.fromCompiledManifest(compiled.getManifest()));
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.warn(e, "Failed to read the mdl snapshot %s", snapshotFile);
+            return Optional.empty();
+        }
+    }
+
+    private static void write(Path snapshotFile, CompiledManifest compiled)
+    {
+        try {
+            Path directory = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tempFile, SMILE_MAPPER.writeValueAsBytes(compiled));
+                Files.move(tempFile, snapshotFile, ATOMIC_MOVE, REPLACE_EXISTING);
+            }
+            finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.warn(e, "Failed to write the mdl snapshot %s", snapshotFile);
+        }
+    }
+
+    private static class CompiledManifest
+    {
+        private final int version;
+        private final String sourceHash;
+        private final Manifest manifest;
+
+        @JsonCreator
+        public CompiledManifest(
+                @JsonProperty("version") int version,
+                @JsonProperty("sourceHash") String sourceHash,
+                @JsonProperty("manifest") Manifest manifest)
+        {
+            this.version = version;
+            this.sourceHash = requireNonNull(sourceHash, "sourceHash is null");
+            this.manifest = requireNonNull(manifest, "manifest is null");
+        }
+
+        @JsonProperty
+        public int getVersion()
+        {
+            return version;
+        }
+
+        @JsonProperty
+        public String getSourceHash()
+        {
+            return sourceHash;
+        }
+
+        @JsonProperty
+        public Manifest getManifest()
+        {
+            return manifest;
+        }
+    }
+}
@@ -14,13 +14,39 @@
 
 package io.accio.base;
 
+import io.accio.base.batch.RecordBatch;
 import io.accio.base.type.PGType;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 public interface ConnectorRecordIterator
         extends Iterator<Object[]>, AutoCloseable
 {
     List<PGType> getTypes();
+
+    /**
+     * Read up to maxRows of the next rows as a batch of columns. It's empty if there are no more rows. The row
+     * and the batch methods can be mixed, each row is returned once.
+     * <p>
+     * The default implementation reads the rows one by one; a data source which can read its result by column, or
+     * into primitives, should override it.
+     */
+    default RecordBatch nextBatch(int maxRows)
+    {
+        RecordBatch.Builder builder = RecordBatch.builder(getTypes(), maxRows);
+        while (!builder.isFull() && hasNext()) {
+            builder.appendRow(next());
+        }
+        return builder.build();
+    }
+
+    /**
+     * The id of the query in the data source, e.g. the BigQuery job id, if the data source exposes it.
+     */
+    default Optional<String> getQueryId()
+    {
+        return Optional.empty();
+    }
 }
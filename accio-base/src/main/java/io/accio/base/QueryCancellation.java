@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base;
+
+import io.airlift.log.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.accio.base.metadata.StandardErrorCode.USER_CANCELED;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cancels the work a query started in a data source. A connector registers how to abort its work, e.g. cancelling
+ * the BigQuery job or the JDBC statement, and the client cancels the query with a CancelRequest. An action
+ * registered after the query was canceled runs immediately.
+ */
+public final class QueryCancellation
+{
+    private static final Logger LOG = Logger.get(QueryCancellation.class);
+    private static final String CANCELED_MESSAGE = "canceling statement due to user request";
+
+    private final List<Runnable> actions = new ArrayList<>();
+    private volatile boolean canceled;
+
+    public void onCancel(Runnable action)
+    {
+        requireNonNull(action, "action is null");
+        synchronized (this) {
+            if (!canceled) {
+                actions.add(action);
+                return;
+            }
+        }
+        run(action);
+    }
+
+    public void cancel()
+    {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            canceled = true;
+            toRun = new ArrayList<>(actions);
+            actions.clear();
+        }
+        toRun.forEach(QueryCancellation::run);
+    }
+
+    public boolean isCanceled()
+    {
+        return canceled;
+    }
+
+    public void checkCanceled()
+    {
+        if (canceled) {
+            throw new AccioException(USER_CANCELED, CANCELED_MESSAGE);
+        }
+    }
+
+    /**
+     * A canceled query fails with whatever error the data source raises when its work is aborted, report that it
+     * was canceled instead.
+     */
+    public Throwable toFailure(Throwable failure)
+    {
+        if (canceled) {
+            return new AccioException(USER_CANCELED, CANCELED_MESSAGE, failure);
+        }
+        return failure;
+    }
+
+    private static void run(Runnable action)
+    {
+        try {
+            action.run();
+        }
+        catch (RuntimeException e) {
+            LOG.warn(e, "Failed to cancel the query");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.batch;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The values of a column in a {@link RecordBatch}. The values are kept in a primitive array where the type of the
+ * column allows it, along with an array telling which positions are null.
+ */
+public abstract class ColumnVector
+{
+    private final int positionCount;
+    private final boolean[] valueIsNull;
+
+    protected ColumnVector(int positionCount, boolean[] valueIsNull)
+    {
+        this.positionCount = positionCount;
+        this.valueIsNull = requireNonNull(valueIsNull, "valueIsNull is null");
+    }
+
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    public boolean isNull(int position)
+    {
+        return valueIsNull[position];
+    }
+
+    /**
+     * The value at the position, boxed if the vector is primitive.
+     */
+    public abstract Object getObject(int position);
+}
@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.batch;
+
+import static java.util.Objects.requireNonNull;
+
+public class IntVector
+        extends ColumnVector
+{
+    private final int[] values;
+
+    public IntVector(int positionCount, boolean[] valueIsNull, int[] values)
+    {
+        super(positionCount, valueIsNull);
+        this.values = requireNonNull(values, "values is null");
+    }
+
+    public int getInt(int position)
+    {
+        return values[position];
+    }
+
+    @Override
+    public Object getObject(int position)
+    {
+        return isNull(position) ? null : values[position];
+    }
+}
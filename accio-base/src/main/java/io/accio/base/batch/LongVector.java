@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.batch;
+
+import static java.util.Objects.requireNonNull;
+
+public class LongVector
+        extends ColumnVector
+{
+    private final long[] values;
+
+    public LongVector(int positionCount, boolean[] valueIsNull, long[] values)
+    {
+        super(positionCount, valueIsNull);
+        this.values = requireNonNull(values, "values is null");
+    }
+
+    public long getLong(int position)
+    {
+        return values[position];
+    }
+
+    @Override
+    public Object getObject(int position)
+    {
+        return isNull(position) ? null : values[position];
+    }
+}
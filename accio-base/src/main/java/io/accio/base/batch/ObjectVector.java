@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.batch;
+
+import java.util.function.UnaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The values of a column whose type has no primitive representation, e.g. varchar, numeric or timestamp.
+ */
+public class ObjectVector
+        extends ColumnVector
+{
+    private final Object[] values;
+
+    public ObjectVector(int positionCount, boolean[] valueIsNull, Object[] values)
+    {
+        super(positionCount, valueIsNull);
+        this.values = requireNonNull(values, "values is null");
+    }
+
+    @Override
+    public Object getObject(int position)
+    {
+        return values[position];
+    }
+
+    /**
+     * Convert the values which aren't null.
+     */
+    public ObjectVector map(UnaryOperator<Object> function)
+    {
+        Object[] mapped = new Object[getPositionCount()];
+        boolean[] valueIsNull = new boolean[getPositionCount()];
+        for (int position = 0; position < getPositionCount(); position++) {
+            valueIsNull[position] = isNull(position);
+            mapped[position] = isNull(position) ? null : function.apply(values[position]);
+        }
+        return new ObjectVector(getPositionCount(), valueIsNull, mapped);
+    }
+}
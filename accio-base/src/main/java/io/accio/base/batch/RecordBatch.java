@@ -0,0 +1,300 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.batch;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.type.BooleanType;
+import io.accio.base.type.DoubleType;
+import io.accio.base.type.PGType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Rows of a result stored by column. The bigint, integer, double and boolean columns are read and written as
+ * primitives, so neither the values nor the rows are allocated one by one.
+ */
+public final class RecordBatch
+{
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    public enum VectorType
+    {
+        LONG,
+        INT,
+        DOUBLE,
+        BOOLEAN,
+        OBJECT;
+
+        public static VectorType of(PGType<?> type)
+        {
+            if (BIGINT.equals(type)) {
+                return LONG;
+            }
+            if (INTEGER.equals(type)) {
+                return INT;
+            }
+            if (DoubleType.DOUBLE.equals(type)) {
+                return DOUBLE;
+            }
+            if (BooleanType.BOOLEAN.equals(type)) {
+                return BOOLEAN;
+            }
+            return OBJECT;
+        }
+    }
+
+    private final int rowCount;
+    private final List<ColumnVector> columns;
+
+    public RecordBatch(int rowCount, List<ColumnVector> columns)
+    {
+        this.rowCount = rowCount;
+        this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
+        this.columns.forEach(column -> checkArgument(column.getPositionCount() == rowCount, "column has %s positions but the batch has %s rows", column.getPositionCount(), rowCount));
+    }
+
+    /**
+     * @param maxRows the max number of rows of the batch. The builder starts with room for at most
+     * {@link #DEFAULT_BATCH_SIZE} rows and grows up to it.
+     */
+    @SuppressWarnings("rawtypes")
+    public static Builder builder(List<PGType> types, int maxRows)
+    {
+        checkArgument(maxRows > 0, "maxRows must be positive");
+        return new Builder(types, maxRows);
+    }
+
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    public int getColumnCount()
+    {
+        return columns.size();
+    }
+
+    public ColumnVector getColumn(int column)
+    {
+        return columns.get(column);
+    }
+
+    public Object[] getRow(int position)
+    {
+        Object[] row = new Object[columns.size()];
+        for (int column = 0; column < row.length; column++) {
+            row[column] = columns.get(column).getObject(position);
+        }
+        return row;
+    }
+
+    public RecordBatch withColumn(int column, ColumnVector vector)
+    {
+        List<ColumnVector> newColumns = new ArrayList<>(columns);
+        newColumns.set(column, vector);
+        return new RecordBatch(rowCount, newColumns);
+    }
+
+    /**
+     * Build a batch row by row: set every column of the row, then end the row. The builder can't be used after
+     * the batch is built.
+     */
+    public static class Builder
+    {
+        private final VectorType[] vectorTypes;
+        private final Object[] values;
+        private final boolean[][] valueIsNull;
+        private final int maxRows;
+        private int capacity;
+        private int rowCount;
+
+        @SuppressWarnings("rawtypes")
+        private Builder(List<PGType> types, int maxRows)
+        {
+            requireNonNull(types, "types is null");
+            this.maxRows = maxRows;
+            this.capacity = Math.min(maxRows, DEFAULT_BATCH_SIZE);
+            this.vectorTypes = new VectorType[types.size()];
+            this.values = new Object[types.size()];
+            this.valueIsNull = new boolean[types.size()][];
+            for (int column = 0; column < types.size(); column++) {
+                vectorTypes[column] = VectorType.of(types.get(column));
+                values[column] = newValues(vectorTypes[column], capacity);
+                valueIsNull[column] = new boolean[capacity];
+            }
+        }
+
+        public VectorType getVectorType(int column)
+        {
+            return vectorTypes[column];
+        }
+
+        public int getRowCount()
+        {
+            return rowCount;
+        }
+
+        public Builder setNull(int column)
+        {
+            valueIsNull[column][rowCount] = true;
+            return this;
+        }
+
+        public Builder setLong(int column, long value)
+        {
+            ((long[]) values[column])[rowCount] = value;
+            return this;
+        }
+
+        public Builder setInt(int column, int value)
+        {
+            ((int[]) values[column])[rowCount] = value;
+            return this;
+        }
+
+        public Builder setDouble(int column, double value)
+        {
+            ((double[]) values[column])[rowCount] = value;
+            return this;
+        }
+
+        public Builder setBoolean(int column, boolean value)
+        {
+            ((boolean[]) values[column])[rowCount] = value;
+            return this;
+        }
+
+        /**
+         * Set the value of any column, unboxing it if the column is primitive.
+         */
+        public Builder setObject(int column, Object value)
+        {
+            if (value == null) {
+                return setNull(column);
+            }
+            switch (vectorTypes[column]) {
+                case LONG:
+                    return setLong(column, ((Number) value).longValue());
+                case INT:
+                    return setInt(column, ((Number) value).intValue());
+                case DOUBLE:
+                    return setDouble(column, ((Number) value).doubleValue());
+                case BOOLEAN:
+                    return setBoolean(column, (Boolean) value);
+                default:
+                    ((Object[]) values[column])[rowCount] = value;
+                    return this;
+            }
+        }
+
+        public Builder appendRow(Object[] row)
+        {
+            checkArgument(row.length == vectorTypes.length, "row has %s columns but the batch has %s", row.length, vectorTypes.length);
+            for (int column = 0; column < row.length; column++) {
+                setObject(column, row[column]);
+            }
+            return endRow();
+        }
+
+        public boolean isFull()
+        {
+            return rowCount == maxRows;
+        }
+
+        public Builder endRow()
+        {
+            checkState(!isFull(), "batch is full");
+            rowCount++;
+            if (rowCount == capacity && rowCount < maxRows) {
+                grow();
+            }
+            return this;
+        }
+
+        public RecordBatch build()
+        {
+            ImmutableList.Builder<ColumnVector> columns = ImmutableList.builder();
+            for (int column = 0; column < vectorTypes.length; column++) {
+                columns.add(buildVector(column));
+            }
+            return new RecordBatch(rowCount, columns.build());
+        }
+
+        private ColumnVector buildVector(int column)
+        {
+            // the arrays are handed over as they are, the vectors only read the positions of the batch
+            switch (vectorTypes[column]) {
+                case LONG:
+                    return new LongVector(rowCount, valueIsNull[column], (long[]) values[column]);
+                case INT:
+                    return new IntVector(rowCount, valueIsNull[column], (int[]) values[column]);
+                case DOUBLE:
+                    return new DoubleVector(rowCount, valueIsNull[column], (double[]) values[column]);
+                case BOOLEAN:
+                    return new BooleanVector(rowCount, valueIsNull[column], (boolean[]) values[column]);
+                default:
+                    return new ObjectVector(rowCount, valueIsNull[column], (Object[]) values[column]);
+            }
+        }
+
+        private void grow()
+        {
+            capacity = (int) Math.min((long) capacity * 2, maxRows);
+            for (int column = 0; column < vectorTypes.length; column++) {
+                valueIsNull[column] = Arrays.copyOf(valueIsNull[column], capacity);
+                switch (vectorTypes[column]) {
+                    case LONG:
+                        values[column] = Arrays.copyOf((long[]) values[column], capacity);
+                        break;
+                    case INT:
+                        values[column] = Arrays.copyOf((int[]) values[column], capacity);
+                        break;
+                    case DOUBLE:
+                        values[column] = Arrays.copyOf((double[]) values[column], capacity);
+                        break;
+                    case BOOLEAN:
+                        values[column] = Arrays.copyOf((boolean[]) values[column], capacity);
+                        break;
+                    default:
+                        values[column] = Arrays.copyOf((Object[]) values[column], capacity);
+                }
+            }
+        }
+
+        private static Object newValues(VectorType vectorType, int capacity)
+        {
+            switch (vectorType) {
+                case LONG:
+                    return new long[capacity];
+                case INT:
+                    return new int[capacity];
+                case DOUBLE:
+                    return new double[capacity];
+                case BOOLEAN:
+                    return new boolean[capacity];
+                default:
+                    return new Object[capacity];
+            }
+        }
+    }
+}
@@ -17,13 +17,18 @@ package io.accio.base.client.duckdb;
 import com.google.common.collect.ImmutableList;
 import io.accio.base.AccioException;
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
 import io.accio.base.client.AutoCloseableIterator;
 import io.accio.base.client.Client;
+import io.accio.base.client.duckdb.DuckdbConnectionPool.PooledConnection;
 import io.accio.base.client.jdbc.JdbcRecordIterator;
 import io.accio.base.metadata.ColumnMetadata;
 import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import org.duckdb.DuckDBAppender;
 import org.duckdb.DuckDBConnection;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -31,37 +36,80 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
 
 import static io.accio.base.client.duckdb.DuckdbType.DUCKDB_TYPE;
+import static io.accio.base.metadata.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static io.accio.base.metadata.StandardErrorCode.GENERIC_USER_ERROR;
+import static io.accio.base.metadata.StandardErrorCode.QUERY_QUEUE_FULL;
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public final class DuckdbClient
         implements Client
 {
     private static final Logger LOG = Logger.get(DuckdbClient.class);
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+    private static final DateTimeFormatter TIMESTAMP_WITH_TIMEZONE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSSxxx");
     private final Connection duckDBConnection;
+    private final DuckdbConnectionPool queryPool;
+    private final DuckdbConnectionPool refreshPool;
+    private final DuckdbConnectionPool dropPool;
+    private final int maxConcurrentAppends;
+    private final Semaphore appendPermits;
+    private final Duration maxRefreshQueueTime;
 
     public DuckdbClient()
+    {
+        this(new DuckdbConfig());
+    }
+
+    public DuckdbClient(DuckdbConfig config)
     {
         try {
             // The instance will be cleared after the process end. We don't need to
             // close this connection
             Class.forName("org.duckdb.DuckDBDriver");
             this.duckDBConnection = DriverManager.getConnection("jdbc:duckdb:");
+            // these settings are global to the database, so they apply to the duplicated connections too
+            try (Statement statement = duckDBConnection.createStatement()) {
+                if (config.getThreads().isPresent()) {
+                    statement.execute(format("SET threads TO %s", config.getThreads().get()));
+                }
+                if (config.getMemoryLimit().isPresent()) {
+                    statement.execute(format("SET memory_limit = '%sB'", config.getMemoryLimit().get().toBytes()));
+                }
+                if (config.getTempDirectory().isPresent()) {
+                    statement.execute(format("SET temp_directory = '%s'", config.getTempDirectory().get().replace("'", "''")));
+                }
+            }
         }
         catch (SQLException | ClassNotFoundException e) {
             throw new RuntimeException(e);
         }
+        // cache refresh uses its own connections, so loading a large cache never blocks the cache queries
+        this.queryPool = new DuckdbConnectionPool("query", (DuckDBConnection) duckDBConnection, config.getMaxConcurrentQueries(), config.getMaxCachedStatements(), Optional.of(config.getMaxQueueTime()));
+        this.maxRefreshQueueTime = config.getMaxRefreshQueueTime();
+        this.refreshPool = new DuckdbConnectionPool("refresh", (DuckDBConnection) duckDBConnection, config.getMaxConcurrentRefreshes(), config.getMaxCachedStatements(), Optional.of(maxRefreshQueueTime));
+        // the appenders hold a refresh connection for a whole load, so they leave one to the other refresh statements
+        this.maxConcurrentAppends = Math.max(config.getMaxConcurrentRefreshes() - 1, 1);
+        this.appendPermits = new Semaphore(maxConcurrentAppends, true);
+        // dropping the cache of a changed or removed object doesn't wait for the loads of the others
+        this.dropPool = new DuckdbConnectionPool("drop", (DuckDBConnection) duckDBConnection, 1, 0, Optional.of(maxRefreshQueueTime));
     }
 
     @Override
     public AutoCloseableIterator<Object[]> query(String sql)
     {
         try {
-            return JdbcRecordIterator.of(this, sql);
+            return executeQuery(sql, ImmutableList.of());
         }
         catch (SQLException e) {
             throw new RuntimeException(e);
@@ -72,7 +120,10 @@ public final class DuckdbClient
     public AutoCloseableIterator<Object[]> query(String sql, List<Parameter> parameters)
     {
         try {
-            return JdbcRecordIterator.of(this, sql, parameters);
+            return executeQuery(sql, parameters);
+        }
+        catch (AccioException e) {
+            throw e;
         }
         catch (Exception e) {
             LOG.error(e, "Error executing DDL");
@@ -80,11 +131,36 @@ public final class DuckdbClient
         }
     }
 
+    /**
+     * Run the query with a pooled connection and its cached prepared statement. The connection is returned to
+     * the pool when the iterator is closed; until then it only counts against the max concurrent queries while
+     * the iterator is fetching rows.
+     */
+    public JdbcRecordIterator executeQuery(String sql, List<Parameter> parameters)
+            throws SQLException
+    {
+        return executeQuery(sql, parameters, new QueryCancellation());
+    }
+
+    public JdbcRecordIterator executeQuery(String sql, List<Parameter> parameters, QueryCancellation cancellation)
+            throws SQLException
+    {
+        PooledConnection connection = queryPool.borrow();
+        try {
+            return JdbcRecordIterator.of(connection.prepareStatement(sql), parameters, connection, cancellation);
+        }
+        catch (SQLException | RuntimeException e) {
+            connection.invalidate(sql);
+            connection.close();
+            throw e;
+        }
+    }
+
     @Override
     public List<ColumnMetadata> describe(String sql, List<Parameter> parameters)
     {
-        try (Connection connection = createConnection()) {
-            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        try (PooledConnection connection = queryPool.borrow();
+                PreparedStatement preparedStatement = connection.getConnection().prepareStatement(sql)) {
             for (int i = 0; i < parameters.size(); i++) {
                 preparedStatement.setObject(i + 1, parameters.get(i).getValue());
             }
@@ -111,9 +187,20 @@ public final class DuckdbClient
     @Override
     public void executeDDL(String sql)
     {
-        try (Connection connection = createConnection()) {
-            Statement statement = connection.createStatement();
-            statement.execute(sql);
+        executeDDL(refreshPool, sql);
+    }
+
+    private static void executeDDL(DuckdbConnectionPool pool, String sql)
+    {
+        try (PooledConnection connection = pool.borrow()) {
+            try (Statement statement = connection.getConnection().createStatement()) {
+                statement.execute(sql);
+            }
+            catch (SQLException | RuntimeException e) {
+                // a failed statement may leave the connection in an aborted transaction
+                connection.markBroken();
+                throw e;
+            }
         }
         catch (SQLException se) {
             throw new RuntimeException(se);
@@ -123,12 +210,17 @@ public final class DuckdbClient
     // for canner use
     public void executeDDL(String sql, List<Object> parameters)
     {
-        try (Connection connection = createConnection();
-                PreparedStatement statement = connection.prepareStatement(sql)) {
-            for (int i = 0; i < parameters.size(); i++) {
-                statement.setObject(i + 1, parameters.get(i));
+        try (PooledConnection connection = refreshPool.borrow()) {
+            try (PreparedStatement statement = connection.getConnection().prepareStatement(sql)) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    statement.setObject(i + 1, parameters.get(i));
+                }
+                statement.execute();
+            }
+            catch (SQLException | RuntimeException e) {
+                connection.markBroken();
+                throw e;
             }
-            statement.execute();
         }
         catch (SQLException se) {
             throw new RuntimeException(se);
@@ -138,8 +230,8 @@ public final class DuckdbClient
     @Override
     public List<String> listTables()
     {
-        try (Connection connection = createConnection();
-                ResultSet resultSet = connection.getMetaData().getTables(null, null, null, null)) {
+        try (PooledConnection connection = queryPool.borrow();
+                ResultSet resultSet = connection.getConnection().getMetaData().getTables(null, null, null, null)) {
             List<String> names = new ArrayList<>();
             while (resultSet.next()) {
                 String tableName = resultSet.getString(3);
@@ -152,10 +244,99 @@ public final class DuckdbClient
         }
     }
 
+    /**
+     * The max number of {@link #appendRows} running at the same time, less than the number of refresh connections.
+     */
+    public int getMaxConcurrentAppends()
+    {
+        return maxConcurrentAppends;
+    }
+
+    /**
+     * Append rows into an existing table through the duckdb appender, which skips parsing and planning per row.
+     * Values without a native appender method are appended as strings and cast by duckdb to the column type.
+     *
+     * @return the number of appended rows
+     */
+    public long appendRows(String tableName, Iterator<Object[]> rows)
+    {
+        acquireAppendPermit();
+        long count = 0;
+        try (PooledConnection connection = refreshPool.borrow();
+                DuckDBAppender appender = connection.getConnection().createAppender(DuckDBConnection.DEFAULT_SCHEMA, tableName)) {
+            while (rows.hasNext()) {
+                appender.beginRow();
+                for (Object value : rows.next()) {
+                    appendValue(appender, value);
+                }
+                appender.endRow();
+                count++;
+            }
+        }
+        catch (SQLException se) {
+            throw new RuntimeException(se);
+        }
+        finally {
+            appendPermits.release();
+        }
+        return count;
+    }
+
+    private void acquireAppendPermit()
+    {
+        try {
+            if (!appendPermits.tryAcquire(maxRefreshQueueTime.toMillis(), MILLISECONDS)) {
+                throw new AccioException(QUERY_QUEUE_FULL, format("No duckdb connection for append is available after %s", maxRefreshQueueTime));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccioException(GENERIC_INTERNAL_ERROR, "Interrupted while waiting for a duckdb connection", e);
+        }
+    }
+
+    private static void appendValue(DuckDBAppender appender, Object value)
+            throws SQLException
+    {
+        if (value == null) {
+            appender.append((String) null);
+        }
+        else if (value instanceof Boolean) {
+            appender.append((boolean) value);
+        }
+        else if (value instanceof Short) {
+            appender.append((short) value);
+        }
+        else if (value instanceof Integer) {
+            appender.append((int) value);
+        }
+        else if (value instanceof Long) {
+            appender.append((long) value);
+        }
+        else if (value instanceof Float) {
+            appender.append((float) value);
+        }
+        else if (value instanceof Double) {
+            appender.append((double) value);
+        }
+        else if (value instanceof BigDecimal) {
+            appender.append(((BigDecimal) value).toPlainString());
+        }
+        else if (value instanceof LocalDateTime) {
+            appender.append(TIMESTAMP_FORMATTER.format((LocalDateTime) value));
+        }
+        else if (value instanceof ZonedDateTime) {
+            appender.append(TIMESTAMP_WITH_TIMEZONE_FORMATTER.format((ZonedDateTime) value));
+        }
+        else {
+            appender.append(value.toString());
+        }
+    }
+
     public void dropTableQuietly(String tableName)
     {
         try {
-            executeDDL(format("BEGIN TRANSACTION;DROP TABLE IF EXISTS %s;COMMIT;", tableName));
+            executeDDL(dropPool, format("BEGIN TRANSACTION;DROP TABLE IF EXISTS %s;COMMIT;", tableName));
         }
         catch (Exception e) {
             LOG.error(e, "Failed to drop table %s", tableName);
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.client.duckdb;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import java.util.Optional;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+public class DuckdbConfig
+{
+    private Optional<Integer> threads = Optional.empty();
+    private Optional<DataSize> memoryLimit = Optional.empty();
+    private Optional<String> tempDirectory = Optional.empty();
+    private int maxConcurrentQueries = 10;
+    private int maxConcurrentRefreshes = 4;
+    private int maxCachedStatements = 32;
+    private Duration maxQueueTime = new Duration(1, MINUTES);
+    private Duration maxRefreshQueueTime = new Duration(10, MINUTES);
+
+    @Config("duckdb.threads")
+    @ConfigDescription("The number of threads duckdb uses to run one query; default is the number of cores")
+    public DuckdbConfig setThreads(int threads)
+    {
+        this.threads = Optional.of(threads);
+        return this;
+    }
+
+    public Optional<@Min(1) Integer> getThreads()
+    {
+        return threads;
+    }
+
+    @Config("duckdb.memory-limit")
+    @ConfigDescription("The max memory duckdb can use; default is 80% of the physical memory")
+    public DuckdbConfig setMemoryLimit(DataSize memoryLimit)
+    {
+        this.memoryLimit = Optional.of(memoryLimit);
+        return this;
+    }
+
+    public Optional<DataSize> getMemoryLimit()
+    {
+        return memoryLimit;
+    }
+
+    @Config("duckdb.temp-directory")
+    @ConfigDescription("The directory duckdb spills to when the memory limit is reached")
+    public DuckdbConfig setTempDirectory(String tempDirectory)
+    {
+        this.tempDirectory = Optional.of(tempDirectory);
+        return this;
+    }
+
+    public Optional<String> getTempDirectory()
+    {
+        return tempDirectory;
+    }
+
+    @Min(1)
+    public int getMaxConcurrentQueries()
+    {
+        return maxConcurrentQueries;
+    }
+
+    @Config("duckdb.max-concurrent-queries")
+    @ConfigDescription("The max number of cache queries running in duckdb at the same time; default is 10")
+    public DuckdbConfig setMaxConcurrentQueries(int maxConcurrentQueries)
+    {
+        this.maxConcurrentQueries = maxConcurrentQueries;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxConcurrentRefreshes()
+    {
+        return maxConcurrentRefreshes;
+    }
+
+    @Config("duckdb.max-concurrent-refreshes")
+    @ConfigDescription("The max number of cache loading statements running in duckdb at the same time; default is 4")
+    public DuckdbConfig setMaxConcurrentRefreshes(int maxConcurrentRefreshes)
+    {
+        this.maxConcurrentRefreshes = maxConcurrentRefreshes;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxCachedStatements()
+    {
+        return maxCachedStatements;
+    }
+
+    @Config("duckdb.max-cached-statements")
+    @ConfigDescription("The max number of prepared statements kept by each pooled connection; default is 32")
+    public DuckdbConfig setMaxCachedStatements(int maxCachedStatements)
+    {
+        this.maxCachedStatements = maxCachedStatements;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getMaxQueueTime()
+    {
+        return maxQueueTime;
+    }
+
+    @Config("duckdb.max-queue-time")
+    @ConfigDescription("How long a cache query waits for a free duckdb connection before it fails; default is 1m")
+    public DuckdbConfig setMaxQueueTime(Duration maxQueueTime)
+    {
+        this.maxQueueTime = maxQueueTime;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("0s")
+    public Duration getMaxRefreshQueueTime()
+    {
+        return maxRefreshQueueTime;
+    }
+
+    @Config("duckdb.max-refresh-queue-time")
+    @ConfigDescription("How long a cache loading statement or a drop of a cache waits for a free duckdb connection before it fails; default is 10m")
+    public DuckdbConfig setMaxRefreshQueueTime(Duration maxRefreshQueueTime)
+    {
+        this.maxRefreshQueueTime = maxRefreshQueueTime;
+        return this;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.client.duckdb;
+
+import io.accio.base.AccioException;
+import io.accio.base.client.jdbc.PausableReleaser;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import org.duckdb.DuckDBConnection;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static io.accio.base.metadata.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static io.accio.base.metadata.StandardErrorCode.QUERY_QUEUE_FULL;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A bounded pool of connections duplicated from one duckdb database. A connection is borrowed by one thread at a time,
+ * so the pool size is also the max number of statements running through the pool, and every connection keeps
+ * its own prepared statements. Duckdb re-binds a prepared statement if the tables it reads are replaced.
+ * <p>
+ * A borrowed connection holds a permit of the pool until it's closed. A query whose result isn't read to the end
+ * keeps its connection, but pauses it between the fetches of its rows, so open cursors, e.g. portals suspended by
+ * their max rows or clients fetching slowly, don't count against the pool size; duplicating a connection for
+ * another borrower is cheap. When every permit is held, a borrower, or a paused connection resuming, waits for at
+ * most the max queue time and then fails with {@code QUERY_QUEUE_FULL}; a cache query that fails so falls back
+ * to the data source.
+ */
+public class DuckdbConnectionPool
+{
+    private static final Logger LOG = Logger.get(DuckdbConnectionPool.class);
+
+    private final String name;
+    private final DuckDBConnection database;
+    private final int maxCachedStatements;
+    private final Optional<Duration> maxQueueTime;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Entry> idleConnections = new ConcurrentLinkedDeque<>();
+
+    public DuckdbConnectionPool(String name, DuckDBConnection database, int maxConnections, int maxCachedStatements, Optional<Duration> maxQueueTime)
+    {
+        this.name = requireNonNull(name, "name is null");
+        this.database = requireNonNull(database, "database is null");
+        this.maxCachedStatements = maxCachedStatements;
+        this.maxQueueTime = requireNonNull(maxQueueTime, "maxQueueTime is null");
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Borrow a connection, waiting for at most the max queue time if all of them are in use; without a max queue time,
+     * wait until one is returned. The connection must be closed to return it to the pool.
+     */
+    public PooledConnection borrow()
+            throws SQLException
+    {
+        acquirePermit();
+        try {
+            Entry entry = idleConnections.pollFirst();
+            if (entry == null) {
+                entry = new Entry((DuckDBConnection) database.duplicate());
+            }
+            return new PooledConnection(entry);
+        }
+        catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquirePermit()
+    {
+        try {
+            if (maxQueueTime.isEmpty()) {
+                permits.acquire();
+            }
+            else if (!permits.tryAcquire(maxQueueTime.get().toMillis(), MILLISECONDS)) {
+                throw new AccioException(QUERY_QUEUE_FULL, format("No duckdb connection for %s is available after %s", name, maxQueueTime.get()));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccioException(GENERIC_INTERNAL_ERROR, "Interrupted while waiting for a duckdb connection", e);
+        }
+    }
+
+    public int getAvailableConnections()
+    {
+        return permits.availablePermits();
+    }
+
+    /**
+     * A connection of the pool and the prepared statements cached for it, kept across borrows.
+     */
+    private class Entry
+    {
+        private final DuckDBConnection connection;
+        private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest)
+            {
+                if (size() > maxCachedStatements) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        private volatile boolean broken;
+
+        private Entry(DuckDBConnection connection)
+        {
+            this.connection = connection;
+        }
+
+        private void release()
+        {
+            if (broken) {
+                statements.values().forEach(DuckdbConnectionPool::closeQuietly);
+                statements.clear();
+                closeQuietly(connection);
+            }
+            else {
+                idleConnections.addFirst(this);
+            }
+        }
+    }
+
+    /**
+     * One borrow of a connection. Closing it returns the connection to the pool once; closing it again does nothing,
+     * so it never releases the connection while someone else has borrowed it. Pausing it gives back its permit but
+     * keeps the connection, nobody else uses the connection until it's closed.
+     */
+    public class PooledConnection
+            implements PausableReleaser
+    {
+        private final Entry entry;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private boolean paused;
+
+        private PooledConnection(Entry entry)
+        {
+            this.entry = entry;
+        }
+
+        public DuckDBConnection getConnection()
+        {
+            checkNotClosed();
+            return entry.connection;
+        }
+
+        /**
+         * Get the prepared statement of the sql from the cache of this connection, or prepare it. The statement is owned
+         * by the connection: close its result set when it's done, but not the statement itself.
+         */
+        public PreparedStatement prepareStatement(String sql)
+                throws SQLException
+        {
+            checkNotClosed();
+            PreparedStatement statement = entry.statements.get(sql);
+            if (statement == null) {
+                statement = entry.connection.prepareStatement(sql);
+                entry.statements.put(sql, statement);
+            }
+            else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Drop a statement that failed; the next call to {@link #prepareStatement(String)} prepares it again.
+         */
+        public void invalidate(String sql)
+        {
+            checkNotClosed();
+            PreparedStatement statement = entry.statements.remove(sql);
+            if (statement != null) {
+                closeQuietly(statement);
+            }
+        }
+
+        /**
+         * The connection is discarded instead of returned to the pool when it's closed.
+         */
+        public void markBroken()
+        {
+            entry.broken = true;
+        }
+
+        @Override
+        public void pause()
+        {
+            synchronized (this) {
+                if (closed.get() || paused) {
+                    return;
+                }
+                paused = true;
+            }
+            permits.release();
+        }
+
+        @Override
+        public void resume()
+        {
+            synchronized (this) {
+                checkNotClosed();
+                if (!paused) {
+                    return;
+                }
+            }
+            acquirePermit();
+            synchronized (this) {
+                if (closed.get()) {
+                    // closed while waiting, the close didn't release the permit of the paused connection
+                    permits.release();
+                    checkNotClosed();
+                }
+                paused = false;
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            boolean holdsPermit;
+            synchronized (this) {
+                if (!closed.compareAndSet(false, true)) {
+                    return;
+                }
+                holdsPermit = !paused;
+            }
+            entry.release();
+            if (holdsPermit) {
+                permits.release();
+            }
+        }
+
+        private void checkNotClosed()
+        {
+            if (closed.get()) {
+                throw new IllegalStateException(format("duckdb connection for %s is already returned to the pool", name));
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable)
+    {
+        try {
+            closeable.close();
+        }
+        catch (Exception e) {
+            LOG.warn(e, "Failed to close duckdb resource");
+        }
+    }
+}
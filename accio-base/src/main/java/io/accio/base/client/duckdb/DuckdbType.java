@@ -56,11 +56,34 @@ public final class DuckdbType
             .put(Types.TIMESTAMP_WITH_TIMEZONE, TIMESTAMP_WITH_TIMEZONE)
             .build();
 
+    private final Map<PGType<?>, String> pgTypeToDuckdbTypeMap = ImmutableMap.<PGType<?>, String>builder()
+            .put(BOOLEAN, "BOOLEAN")
+            .put(BYTEA, "BLOB")
+            .put(TINYINT, "TINYINT")
+            .put(SMALLINT, "SMALLINT")
+            .put(INTEGER, "INTEGER")
+            .put(BIGINT, "BIGINT")
+            .put(REAL, "FLOAT")
+            .put(DOUBLE, "DOUBLE")
+            // align with the precision and scale BigQuery exports NUMERIC to parquet
+            .put(NUMERIC, "DECIMAL(38, 9)")
+            .put(VARCHAR, "VARCHAR")
+            .put(DATE, "DATE")
+            .put(TIMESTAMP, "TIMESTAMP")
+            .put(TIMESTAMP_WITH_TIMEZONE, "TIMESTAMP WITH TIME ZONE")
+            .build();
+
     public PGType<?> toPGType(int type)
     {
         return Optional.ofNullable(duckdbTypeToPgTypeMap.get(type))
                 .orElseThrow(() -> new AccioException(NOT_SUPPORTED, "Unsupported Type: " + type));
     }
 
+    public String toDuckdbType(PGType<?> type)
+    {
+        return Optional.ofNullable(pgTypeToDuckdbTypeMap.get(type))
+                .orElseThrow(() -> new AccioException(NOT_SUPPORTED, "Unsupported Type: " + type.typName()));
+    }
+
     private DuckdbType() {}
 }
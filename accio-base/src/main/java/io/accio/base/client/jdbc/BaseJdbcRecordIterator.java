@@ -14,8 +14,11 @@
 package io.accio.base.client.jdbc;
 
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
+import io.accio.base.batch.RecordBatch;
 import io.accio.base.client.AutoCloseableIterator;
 import io.accio.base.client.Client;
+import io.accio.base.type.PGType;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -34,12 +37,14 @@ public abstract class BaseJdbcRecordIterator<T>
         implements AutoCloseableIterator<T>
 {
     private final Connection connection;
+    private final AutoCloseable releaser;
     protected final PreparedStatement statement;
     protected final ResultSet resultSet;
     private final ResultSetMetaData resultSetMetaData;
     protected final int columnCount;
 
     private boolean hasNext;
+    private boolean closed;
 
     public BaseJdbcRecordIterator(Client client, String sql)
             throws SQLException
@@ -49,11 +54,23 @@ public abstract class BaseJdbcRecordIterator<T>
 
     public BaseJdbcRecordIterator(Client client, String sql, List<Parameter> parameters)
             throws SQLException
+    {
+        this(client, sql, parameters, new QueryCancellation());
+    }
+
+    /**
+     * Execute the statement so that canceling the query cancels the statement, even while it is executing.
+     */
+    public BaseJdbcRecordIterator(Client client, String sql, List<Parameter> parameters, QueryCancellation cancellation)
+            throws SQLException
     {
         requireNonNull(client, "client is null");
+        requireNonNull(cancellation, "cancellation is null");
         connection = client.createConnection();
+        releaser = null;
         statement = connection.prepareStatement(sql);
         setParameter(parameters);
+        cancellation.onCancel(this::cancel);
         resultSet = statement.executeQuery();
 
         this.resultSetMetaData = resultSet.getMetaData();
@@ -62,6 +79,41 @@ public abstract class BaseJdbcRecordIterator<T>
         hasNext = resultSet.next();
     }
 
+    /**
+     * Iterate the result of a statement owned by someone else, e.g. a pooled connection. The statement is left open
+     * and {@code releaser} is closed after the result set is closed. Canceling the query cancels the statement until
+     * the iterator is closed; the statement may run another query after that. A {@link PausableReleaser} is paused
+     * whenever the iterator isn't fetching rows.
+     */
+    public BaseJdbcRecordIterator(PreparedStatement statement, List<Parameter> parameters, AutoCloseable releaser, QueryCancellation cancellation)
+            throws SQLException
+    {
+        requireNonNull(cancellation, "cancellation is null");
+        this.connection = null;
+        this.releaser = requireNonNull(releaser, "releaser is null");
+        this.statement = requireNonNull(statement, "statement is null");
+        setParameter(parameters);
+        cancellation.onCancel(this::cancel);
+        try {
+            // an interrupt before the statement starts is lost
+            cancellation.checkCanceled();
+            resultSet = statement.executeQuery();
+
+            this.resultSetMetaData = resultSet.getMetaData();
+            this.columnCount = resultSetMetaData.getColumnCount();
+
+            hasNext = resultSet.next();
+            pauseFetching();
+        }
+        catch (SQLException | RuntimeException e) {
+            // the caller releases the statement, don't cancel it afterwards
+            synchronized (this) {
+                closed = true;
+            }
+            throw e;
+        }
+    }
+
     protected void setParameter(List<Parameter> parameters)
             throws SQLException
     {
@@ -86,7 +138,13 @@ public abstract class BaseJdbcRecordIterator<T>
         try {
             currentResult = getCurrentRecord();
             // move to next row
-            hasNext = resultSet.next();
+            resumeFetching();
+            try {
+                hasNext = resultSet.next();
+            }
+            finally {
+                pauseFetching();
+            }
         }
         catch (SQLException e) {
             throw new RuntimeException(e);
@@ -98,6 +156,22 @@ public abstract class BaseJdbcRecordIterator<T>
     public void close()
             throws Exception
     {
+        if (releaser != null) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            try (AutoCloseable releaser = this.releaser;
+                    ResultSet resultSet = this.resultSet) {
+                // closing the result set stops the pending query; the statement is reused
+            }
+            catch (Exception e) {
+                // ignore exception from close
+            }
+            return;
+        }
         // use try with resources to close everything properly
         try (Connection connection = this.connection;
                 Statement statement = this.statement;
@@ -122,11 +196,105 @@ public abstract class BaseJdbcRecordIterator<T>
         }
     }
 
+    private synchronized void cancel()
+    {
+        if (closed) {
+            return;
+        }
+        try {
+            statement.cancel();
+        }
+        catch (SQLException ignored) {
+            // statement already closed or cancel is not supported
+        }
+    }
+
     public ResultSetMetaData getResultSetMetaData()
     {
         return resultSetMetaData;
     }
 
+    /**
+     * Read up to maxRows of the next rows into a batch. The primitive columns of the batch are read with the
+     * primitive getters of the result set, the others with {@link #getCurrentValue}.
+     */
+    @SuppressWarnings("rawtypes")
+    public RecordBatch nextBatch(List<PGType> types, int maxRows)
+    {
+        RecordBatch.Builder builder = RecordBatch.builder(types, maxRows);
+        try {
+            resumeFetching();
+            try {
+                while (hasNext && !builder.isFull()) {
+                    for (int column = 0; column < columnCount; column++) {
+                        readCurrentValue(builder, column);
+                    }
+                    builder.endRow();
+                    hasNext = resultSet.next();
+                }
+            }
+            finally {
+                pauseFetching();
+            }
+        }
+        catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return builder.build();
+    }
+
+    private void resumeFetching()
+            throws SQLException
+    {
+        if (releaser instanceof PausableReleaser) {
+            ((PausableReleaser) releaser).resume();
+        }
+    }
+
+    private void pauseFetching()
+    {
+        if (releaser instanceof PausableReleaser) {
+            ((PausableReleaser) releaser).pause();
+        }
+    }
+
+    private void readCurrentValue(RecordBatch.Builder builder, int column)
+            throws SQLException
+    {
+        int index = column + 1;
+        switch (builder.getVectorType(column)) {
+            case LONG:
+                builder.setLong(column, resultSet.getLong(index));
+                break;
+            case INT:
+                builder.setInt(column, resultSet.getInt(index));
+                break;
+            case DOUBLE:
+                builder.setDouble(column, resultSet.getDouble(index));
+                break;
+            case BOOLEAN:
+                builder.setBoolean(column, resultSet.getBoolean(index));
+                break;
+            default:
+                builder.setObject(column, getCurrentValue(index));
+                return;
+        }
+        if (resultSet.wasNull()) {
+            builder.setNull(column);
+        }
+    }
+
+    /**
+     * The value of the column of the current row, as the record of the row holds it.
+     *
+     * @param index the index of the column, starting from 1
+     */
+    protected Object getCurrentValue(int index)
+            throws SQLException
+    {
+        return resultSet.getObject(index);
+    }
+
     public abstract T getCurrentRecord()
             throws SQLException;
 }
@@ -15,12 +15,13 @@
 package io.accio.base.client.jdbc;
 
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
 import io.accio.base.client.Client;
 
 import java.sql.Blob;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.ArrayList;
 import java.util.List;
 
 import static java.util.Collections.emptyList;
@@ -41,30 +42,47 @@ public class JdbcRecordIterator
         return new JdbcRecordIterator(client, sql, parameters);
     }
 
+    public static JdbcRecordIterator of(PreparedStatement statement, List<Parameter> parameters, AutoCloseable releaser, QueryCancellation cancellation)
+            throws SQLException
+    {
+        return new JdbcRecordIterator(statement, parameters, releaser, cancellation);
+    }
+
     private JdbcRecordIterator(Client client, String sql, List<Parameter> parameters)
             throws SQLException
     {
         super(client, sql, parameters);
     }
 
+    private JdbcRecordIterator(PreparedStatement statement, List<Parameter> parameters, AutoCloseable releaser, QueryCancellation cancellation)
+            throws SQLException
+    {
+        super(statement, parameters, releaser, cancellation);
+    }
+
     @Override
     public Object[] getCurrentRecord()
             throws SQLException
     {
-        List<Object> builder = new ArrayList<>(columnCount);
+        Object[] record = new Object[columnCount];
         for (int i = 1; i <= columnCount; i++) {
-            if (resultSet.getMetaData().getColumnType(i) == Types.BLOB) {
-                Blob blob = resultSet.getBlob(i);
-                byte[] bytes = blob.getBytes(0, (int) blob.length());
-                builder.add(bytes);
-            }
-            else if (resultSet.getMetaData().getColumnType(i) == Types.SMALLINT) {
-                builder.add(resultSet.getShort(i));
-            }
-            else {
-                builder.add(resultSet.getObject(i));
-            }
+            record[i - 1] = getCurrentValue(i);
+        }
+        return record;
+    }
+
+    @Override
+    protected Object getCurrentValue(int index)
+            throws SQLException
+    {
+        int columnType = getResultSetMetaData().getColumnType(index);
+        if (columnType == Types.BLOB) {
+            Blob blob = resultSet.getBlob(index);
+            return blob.getBytes(0, (int) blob.length());
+        }
+        if (columnType == Types.SMALLINT) {
+            return resultSet.getShort(index);
         }
-        return builder.toArray();
+        return resultSet.getObject(index);
     }
 }
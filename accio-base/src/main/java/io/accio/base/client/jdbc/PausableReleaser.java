@@ -0,0 +1,36 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.client.jdbc;
+
+import java.sql.SQLException;
+
+/**
+ * A releaser of a result set that can give back what it holds while the rows aren't fetched, e.g. the permit of
+ * a pooled connection, so a result read slowly or suspended by the client doesn't keep other statements waiting.
+ */
+public interface PausableReleaser
+        extends AutoCloseable
+{
+    /**
+     * Give back what's held until {@link #resume()}. Pausing a paused or closed releaser does nothing.
+     */
+    void pause();
+
+    /**
+     * Take back what {@link #pause()} gave back before the next rows are fetched, waiting for it if needed.
+     */
+    void resume()
+            throws SQLException;
+}
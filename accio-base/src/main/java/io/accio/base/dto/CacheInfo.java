@@ -15,6 +15,12 @@ package io.accio.base.dto;
 
 import io.airlift.units.Duration;
 
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static io.accio.base.Utils.checkArgument;
+import static java.lang.String.format;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
 public interface CacheInfo
@@ -26,4 +32,35 @@ public interface CacheInfo
     boolean isCached();
 
     Duration getRefreshTime();
+
+    /**
+     * Columns the cached table is sorted by, so the zone maps of duckdb can skip row groups on range filters.
+     */
+    default List<String> getSortKeys()
+    {
+        return List.of();
+    }
+
+    /**
+     * Columns to create an index on in the cached table for point lookups.
+     */
+    default List<String> getIndexColumns()
+    {
+        return List.of();
+    }
+
+    /**
+     * Check the sort keys and index columns are columns of the cached table of the object, i.e. not relationship columns.
+     */
+    static void checkCacheColumns(String name, List<Column> columns, List<String> sortKeys, List<String> indexColumns)
+    {
+        Set<String> cachedColumns = columns.stream()
+                .filter(column -> column.getRelationship().isEmpty())
+                .map(Column::getName)
+                .collect(toImmutableSet());
+        sortKeys.forEach(sortKey ->
+                checkArgument(cachedColumns.contains(sortKey), format("sort key %s is not a column of %s", sortKey, name)));
+        indexColumns.forEach(indexColumn ->
+                checkArgument(cachedColumns.contains(indexColumn), format("index column %s is not a column of %s", indexColumn, name)));
+    }
 }
@@ -38,6 +38,8 @@ public class Metric
     private final boolean cached;
     private final Duration refreshTime;
     private final String description;
+    private final List<String> sortKeys;
+    private final List<String> indexColumns;
 
     public static Metric metric(String name, String baseObject, List<Column> dimension, List<Column> measure)
     {
@@ -56,7 +58,7 @@ public class Metric
 
     public static Metric metric(String name, String baseObject, List<Column> dimension, List<Column> measure, List<TimeGrain> timeGrain, boolean cached, String description)
     {
-        return new Metric(name, baseObject, dimension, measure, timeGrain, cached, null, description);
+        return new Metric(name, baseObject, dimension, measure, timeGrain, cached, null, description, null, null);
     }
 
     @JsonCreator
@@ -69,7 +71,9 @@ public class Metric
             // preAggregated is deprecated, use cached instead.
             @JsonProperty("cached") @Deprecated @JsonAlias("preAggregated") boolean cached,
             @JsonProperty("refreshTime") Duration refreshTime,
-            @JsonProperty("description") String description)
+            @JsonProperty("description") String description,
+            @JsonProperty("sortKeys") List<String> sortKeys,
+            @JsonProperty("indexColumns") List<String> indexColumns)
     {
         this.name = requireNonNull(name, "name is null");
         this.baseObject = requireNonNull(baseObject, "baseObject is null");
@@ -80,6 +84,9 @@ public class Metric
         this.timeGrain = requireNonNull(timeGrain, "timeGrain is null");
         this.refreshTime = refreshTime == null ? defaultRefreshTime : refreshTime;
         this.description = description;
+        this.sortKeys = sortKeys == null ? List.of() : sortKeys;
+        this.indexColumns = indexColumns == null ? List.of() : indexColumns;
+        CacheInfo.checkCacheColumns(name, getColumns(), this.sortKeys, this.indexColumns);
     }
 
     @Override
@@ -147,6 +154,20 @@ public class Metric
         return description;
     }
 
+    @Override
+    @JsonProperty
+    public List<String> getSortKeys()
+    {
+        return sortKeys;
+    }
+
+    @Override
+    @JsonProperty
+    public List<String> getIndexColumns()
+    {
+        return indexColumns;
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -164,7 +185,9 @@ public class Metric
                 && Objects.equals(measure, that.measure)
                 && Objects.equals(timeGrain, that.timeGrain)
                 && Objects.equals(refreshTime, that.refreshTime)
-                && Objects.equals(description, that.description);
+                && Objects.equals(description, that.description)
+                && Objects.equals(sortKeys, that.sortKeys)
+                && Objects.equals(indexColumns, that.indexColumns);
     }
 
     @Override
@@ -178,7 +201,9 @@ public class Metric
                 timeGrain,
                 cached,
                 refreshTime,
-                description);
+                description,
+                sortKeys,
+                indexColumns);
     }
 
     @Override
@@ -193,6 +218,8 @@ public class Metric
                 ", cached=" + cached +
                 ", refreshTime=" + refreshTime +
                 ", description='" + description + '\'' +
+                ", sortKeys=" + sortKeys +
+                ", indexColumns=" + indexColumns +
                 '}';
     }
 }
@@ -37,6 +37,8 @@ public class Model
     private final boolean cached;
     private final Duration refreshTime;
     private final String description;
+    private final List<String> sortKeys;
+    private final List<String> indexColumns;
 
     public static Model model(String name, String refSql, List<Column> columns)
     {
@@ -45,7 +47,7 @@ public class Model
 
     public static Model model(String name, String refSql, List<Column> columns, boolean cached)
     {
-        return new Model(name, refSql, null, columns, null, cached, null, null);
+        return new Model(name, refSql, null, columns, null, cached, null, null, null, null);
     }
 
     public static Model model(String name, String refSql, List<Column> columns, String primaryKey)
@@ -55,12 +57,12 @@ public class Model
 
     public static Model model(String name, String refSql, List<Column> columns, String primaryKey, String description)
     {
-        return new Model(name, refSql, null, columns, primaryKey, false, null, description);
+        return new Model(name, refSql, null, columns, primaryKey, false, null, description, null, null);
     }
 
     public static Model onBaseObject(String name, String baseObject, List<Column> columns, String primaryKey)
     {
-        return new Model(name, null, baseObject, columns, primaryKey, false, null, null);
+        return new Model(name, null, baseObject, columns, primaryKey, false, null, null, null, null);
     }
 
     @JsonCreator
@@ -73,7 +75,9 @@ public class Model
             // preAggregated is deprecated, use cached instead.
             @JsonProperty("cached") @Deprecated @JsonAlias("preAggregated") boolean cached,
             @JsonProperty("refreshTime") Duration refreshTime,
-            @JsonProperty("description") String description)
+            @JsonProperty("description") String description,
+            @JsonProperty("sortKeys") List<String> sortKeys,
+            @JsonProperty("indexColumns") List<String> indexColumns)
     {
         this.name = requireNonNull(name, "name is null");
         checkArgument(Stream.of(refSql, baseObject).filter(Objects::nonNull).count() == 1,
@@ -85,6 +89,9 @@ public class Model
         this.cached = cached;
         this.refreshTime = refreshTime == null ? defaultRefreshTime : refreshTime;
         this.description = description;
+        this.sortKeys = sortKeys == null ? List.of() : sortKeys;
+        this.indexColumns = indexColumns == null ? List.of() : indexColumns;
+        CacheInfo.checkCacheColumns(name, this.columns, this.sortKeys, this.indexColumns);
     }
 
     @JsonProperty
@@ -139,6 +146,20 @@ public class Model
         return description;
     }
 
+    @Override
+    @JsonProperty
+    public List<String> getSortKeys()
+    {
+        return sortKeys;
+    }
+
+    @Override
+    @JsonProperty
+    public List<String> getIndexColumns()
+    {
+        return indexColumns;
+    }
+
     @Override
     public boolean equals(Object obj)
     {
@@ -156,13 +177,15 @@ public class Model
                 && Objects.equals(columns, that.columns)
                 && Objects.equals(primaryKey, that.primaryKey)
                 && Objects.equals(refreshTime, that.refreshTime)
-                && Objects.equals(description, that.description);
+                && Objects.equals(description, that.description)
+                && Objects.equals(sortKeys, that.sortKeys)
+                && Objects.equals(indexColumns, that.indexColumns);
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(name, refSql, baseObject, columns, primaryKey, description);
+        return Objects.hash(name, refSql, baseObject, columns, primaryKey, description, sortKeys, indexColumns);
     }
 
     @Override
@@ -177,6 +200,8 @@ public class Model
                 ", cached=" + cached +
                 ", refreshTime='" + refreshTime + '\'' +
                 ", description='" + description + '\'' +
+                ", sortKeys=" + sortKeys +
+                ", indexColumns=" + indexColumns +
                 '}';
     }
 }
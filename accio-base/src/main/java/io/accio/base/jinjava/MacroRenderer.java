@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.jinjava;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.hubspot.jinjava.Jinjava;
+import com.hubspot.jinjava.interpret.Context;
+import com.hubspot.jinjava.interpret.FatalTemplateErrorsException;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.TemplateError;
+import io.accio.base.dto.Macro;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.hubspot.jinjava.interpret.TemplateError.ErrorType.FATAL;
+import static io.accio.base.macro.Parameter.TYPE.MACRO;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Render expressions with the macros of a manifest. The expressions are split among the threads of the common pool,
+ * and each thread parses the macro tags once into a context that the expressions it renders are evaluated in.
+ */
+public final class MacroRenderer
+{
+    private MacroRenderer() {}
+
+    /**
+     * @return the rendered expression of each distinct expression
+     */
+    public static Map<String, String> render(Jinjava jinjava, List<Macro> macros, Collection<String> expressions)
+    {
+        List<String> distinctExpressions = ImmutableSet.copyOf(expressions).asList();
+        if (distinctExpressions.isEmpty()) {
+            return ImmutableMap.of();
+        }
+        String macroTags = macros.stream()
+                .filter(macro -> macro.getParameters().stream().noneMatch(parameter -> parameter.getType() == MACRO))
+                .map(JinjavaUtils::getMacroTag)
+                .collect(joining("\n"));
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int chunkSize = (distinctExpressions.size() + parallelism - 1) / parallelism;
+        return Lists.partition(distinctExpressions, chunkSize).parallelStream()
+                .flatMap(chunk -> {
+                    // contexts aren't thread safe, so each chunk defines the macros in its own
+                    Context macroContext = jinjava.getGlobalContextCopy();
+                    interpret(jinjava, macroContext, macroTags);
+                    return chunk.stream()
+                            .map(expression -> Map.entry(expression, interpret(jinjava, new Context(macroContext), JinjavaExpressionProcessor.process(expression, macros))));
+                })
+                .collect(toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    /**
+     * Whether the expression may contain jinja syntax, otherwise rendering it gives the expression itself.
+     */
+    public static boolean needsRendering(String expression)
+    {
+        return expression.indexOf('{') >= 0 || expression.indexOf('}') >= 0;
+    }
+
+    private static String interpret(Jinjava jinjava, Context context, String template)
+    {
+        JinjavaInterpreter interpreter = new JinjavaInterpreter(jinjava, context, jinjava.getGlobalConfig());
+        JinjavaInterpreter.pushCurrent(interpreter);
+        try {
+            String output = interpreter.render(template);
+            List<TemplateError> fatalErrors = interpreter.getErrorsCopy().stream()
+                    .filter(error -> error.getSeverity() == FATAL)
+                    .collect(toImmutableList());
+            if (!fatalErrors.isEmpty()) {
+                throw new FatalTemplateErrorsException(template, fatalErrors);
+            }
+            return output;
+        }
+        finally {
+            JinjavaInterpreter.popCurrent();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.accio.base.dto.Manifest;
+import io.accio.base.dto.TimeUnit;
+import io.airlift.json.ObjectMapperProvider;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.accio.base.AccioTypes.DATE;
+import static io.accio.base.AccioTypes.INTEGER;
+import static io.accio.base.AccioTypes.VARCHAR;
+import static io.accio.base.dto.Column.caluclatedColumn;
+import static io.accio.base.dto.Column.column;
+import static io.accio.base.dto.CumulativeMetric.cumulativeMetric;
+import static io.accio.base.dto.EnumDefinition.enumDefinition;
+import static io.accio.base.dto.EnumValue.enumValue;
+import static io.accio.base.dto.JoinType.MANY_TO_ONE;
+import static io.accio.base.dto.Macro.macro;
+import static io.accio.base.dto.Measure.measure;
+import static io.accio.base.dto.Metric.metric;
+import static io.accio.base.dto.Model.model;
+import static io.accio.base.dto.Relationship.relationship;
+import static io.accio.base.dto.TimeGrain.timeGrain;
+import static io.accio.base.dto.View.view;
+import static io.accio.base.dto.Window.window;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(singleThreaded = true)
+public class TestAccioMDLSnapshot
+{
+    private static final ObjectMapper MAPPER = new ObjectMapperProvider().get();
+
+    private Path directory;
+    private Path snapshotFile;
+
+    @BeforeMethod
+    public void setup()
+            throws IOException
+    {
+        directory = Files.createTempDirectory("mdl-snapshot");
+        snapshotFile = directory.resolve("snapshot").resolve("mdl.snapshot");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup()
+            throws IOException
+    {
+        deleteRecursively(directory, ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testLoadFromSnapshot()
+            throws IOException
+    {
+        String json = MAPPER.writeValueAsString(manifest("addOne"));
+        AccioMDL compiled = AccioMDLSnapshot.load(json, snapshotFile);
+        assertThat(snapshotFile).exists();
+        assertThat(compiled.getCompiledManifest()).isEqualTo(AccioMDL.fromJson(json).getCompiledManifest());
+        assertThat(compiled.getModel("Orders").orElseThrow().getColumns().get(2).getExpression()).hasValue("orderkey + 1");
+
+        FileTime modified = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(snapshotFile, modified);
+        AccioMDL loaded = AccioMDLSnapshot.load(json, snapshotFile);
+        assertThat(Files.getLastModifiedTime(snapshotFile)).isEqualTo(modified);
+        assertThat(loaded.getCompiledManifest()).isEqualTo(compiled.getCompiledManifest());
+    }
+
+    @Test
+    public void testSnapshotOfAnotherMdl()
+            throws IOException
+    {
+        AccioMDLSnapshot.load(MAPPER.writeValueAsString(manifest("addOne")), snapshotFile);
+        AccioMDL mdl = AccioMDLSnapshot.load(MAPPER.writeValueAsString(manifest("addTwo")), snapshotFile);
+        assertThat(mdl.getModel("Orders").orElseThrow().getColumns().get(2).getExpression()).hasValue("orderkey + 2");
+
+        // the snapshot is replaced by the new mdl
+        Files.setLastModifiedTime(snapshotFile, FileTime.fromMillis(0));
+        AccioMDLSnapshot.load(MAPPER.writeValueAsString(manifest("addTwo")), snapshotFile);
+        assertThat(Files.getLastModifiedTime(snapshotFile)).isEqualTo(FileTime.fromMillis(0));
+    }
+
+    @Test
+    public void testBrokenSnapshot()
+            throws IOException
+    {
+        Files.createDirectories(snapshotFile.getParent());
+        Files.writeString(snapshotFile, "not a snapshot");
+        String json = MAPPER.writeValueAsString(manifest("addOne"));
+        AccioMDL mdl = AccioMDLSnapshot.load(json, snapshotFile);
+        assertThat(mdl.getCompiledManifest()).isEqualTo(AccioMDL.fromJson(json).getCompiledManifest());
+        assertThat(AccioMDLSnapshot.load(json, snapshotFile).getCompiledManifest()).isEqualTo(mdl.getCompiledManifest());
+    }
+
+    private static Manifest manifest(String macroName)
+    {
+        return Manifest.builder()
+                .setCatalog("test")
+                .setSchema("test")
+                .setModels(List.of(
+                        model("Orders",
+                                "select * from main.orders",
+                                List.of(
+                                        column("orderkey", INTEGER, null, true),
+                                        column("custkey", INTEGER, null, true),
+                                        column("orderkey_plus", INTEGER, null, true, "{{" + macroName + "('orderkey')}}"),
+                                        column("orderdate", DATE, null, true),
+                                        column("customer", "Customer", "OrdersCustomer", true),
+                                        caluclatedColumn("customer_name", VARCHAR, "customer.name")),
+                                "orderkey"),
+                        model("Customer",
+                                "select * from main.customer",
+                                List.of(
+                                        column("custkey", INTEGER, null, true),
+                                        column("name", VARCHAR, null, true)),
+                                "custkey")))
+                .setRelationships(List.of(relationship("OrdersCustomer", List.of("Orders", "Customer"), MANY_TO_ONE, "Orders.custkey = Customer.custkey")))
+                .setEnumDefinitions(List.of(enumDefinition("Status", List.of(enumValue("OPEN", "O"), enumValue("CLOSED", "C")))))
+                .setMetrics(List.of(metric("Revenue", "Orders",
+                        List.of(column("custkey", INTEGER, null, true)),
+                        List.of(column("revenue", INTEGER, null, true, "sum({{" + macroName + "('orderkey')}})")),
+                        List.of(timeGrain("orderdate", "orderdate", List.of(TimeUnit.DAY, TimeUnit.MONTH))))))
+                .setCumulativeMetrics(List.of(cumulativeMetric("DailyRevenue", "Orders",
+                        measure("total", INTEGER, "sum", "orderkey"),
+                        window("orderdate", "orderdate", TimeUnit.DAY, "1994-01-01", "1994-12-31"))))
+                .setViews(List.of(view("OrdersView", "select * from Orders")))
+                .setMacros(List.of(
+                        macro("addOne", "(text: Expression) => {{ text }} + 1"),
+                        macro("addTwo", "(text: Expression) => {{ text }} + 2")))
+                .build();
+    }
+}
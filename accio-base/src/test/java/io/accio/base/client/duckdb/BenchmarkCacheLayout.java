@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.client.duckdb;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.testng.annotations.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Filter latency on a cached metric table with and without the cache layout hints,
+ * i.e. sorted by the time grain column and indexed on the lookup column.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkCacheLayout
+{
+    private static final LocalDate START_DATE = LocalDate.of(2000, 1, 1);
+    private static final int ROWS_PER_DAY = 10_000;
+
+    @Param("50000000")
+    private int rowCount = 50_000_000;
+
+    @Param({"PLAIN", "SORTED", "SORTED_INDEXED"})
+    private Layout layout = Layout.PLAIN;
+
+    private DuckdbClient duckdbClient;
+    private Connection connection;
+    private PreparedStatement pointLookup;
+    private PreparedStatement rangeFilter;
+
+    public enum Layout
+    {
+        PLAIN,
+        SORTED,
+        SORTED_INDEXED,
+    }
+
+    @Setup
+    public void setup()
+            throws SQLException
+    {
+        duckdbClient = new DuckdbClient();
+        // scatter the rows like the unordered output of an export
+        String select = format("SELECT i AS custkey, DATE '%s' + CAST(i // %s AS INTEGER) AS orderdate, random() * 100 AS revenue FROM range(%s) t(i)",
+                START_DATE, ROWS_PER_DAY, rowCount);
+        String orderBy = layout == Layout.PLAIN ? "hash(custkey)" : "orderdate";
+        duckdbClient.executeDDL(format("CREATE TABLE revenue AS SELECT * FROM (%s) ORDER BY %s", select, orderBy));
+        if (layout == Layout.SORTED_INDEXED) {
+            duckdbClient.executeDDL("CREATE INDEX revenue_custkey_idx ON revenue (custkey)");
+        }
+        connection = duckdbClient.createConnection();
+        pointLookup = connection.prepareStatement("SELECT revenue FROM revenue WHERE custkey = ?");
+        rangeFilter = connection.prepareStatement("SELECT sum(revenue) FROM revenue WHERE orderdate BETWEEN CAST(? AS DATE) AND CAST(? AS DATE)");
+    }
+
+    @TearDown
+    public void tearDown()
+            throws SQLException
+    {
+        pointLookup.close();
+        rangeFilter.close();
+        connection.close();
+        duckdbClient.dropTableQuietly("revenue");
+    }
+
+    @Benchmark
+    public double pointLookup()
+            throws SQLException
+    {
+        pointLookup.setLong(1, ThreadLocalRandom.current().nextLong(rowCount));
+        return singleValue(pointLookup);
+    }
+
+    @Benchmark
+    public double weekRangeFilter()
+            throws SQLException
+    {
+        LocalDate start = START_DATE.plusDays(ThreadLocalRandom.current().nextInt(rowCount / ROWS_PER_DAY));
+        rangeFilter.setString(1, start.toString());
+        rangeFilter.setString(2, start.plusDays(6).toString());
+        return singleValue(rangeFilter);
+    }
+
+    private static double singleValue(PreparedStatement statement)
+            throws SQLException
+    {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getDouble(1) : 0;
+        }
+    }
+
+    @Test
+    public void verify()
+            throws SQLException
+    {
+        for (Layout layout : Layout.values()) {
+            BenchmarkCacheLayout benchmark = new BenchmarkCacheLayout();
+            benchmark.rowCount = 100_000;
+            benchmark.layout = layout;
+            benchmark.setup();
+            try {
+                assertThat(benchmark.pointLookup()).isBetween(0.0, 100.0);
+                assertThat(benchmark.weekRangeFilter()).isPositive();
+            }
+            finally {
+                benchmark.tearDown();
+            }
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*" + BenchmarkCacheLayout.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.client.duckdb;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.batch.LongVector;
+import io.accio.base.batch.RecordBatch;
+import io.accio.base.client.jdbc.JdbcRecordIterator;
+import io.accio.base.type.PGType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.testng.annotations.Test;
+
+import java.sql.ResultSetMetaData;
+import java.util.List;
+
+import static io.accio.base.batch.RecordBatch.DEFAULT_BATCH_SIZE;
+import static io.accio.base.client.duckdb.DuckdbType.DUCKDB_TYPE;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Read the result of a query on a cached table row by row and batch by batch. Run {@link #main} to report the
+ * allocation rate too.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class BenchmarkRecordBatch
+{
+    private static final String QUERY = "SELECT * FROM orders";
+
+    @Param("1000000")
+    private int rowCount = 1_000_000;
+
+    private DuckdbClient duckdbClient;
+    @SuppressWarnings("rawtypes")
+    private List<PGType> types;
+
+    @Setup
+    public void setup()
+            throws Exception
+    {
+        duckdbClient = new DuckdbClient();
+        duckdbClient.executeDDL(format("CREATE TABLE orders AS SELECT i AS orderkey, CAST(i %% 1000 AS INTEGER) AS custkey, random() * 100 AS totalprice, i %% 2 = 0 AS shipped, " +
+                "'clerk_' || (i %% 100) AS clerk FROM range(%s) t(i)", rowCount));
+        try (JdbcRecordIterator iterator = duckdbClient.executeQuery(QUERY, ImmutableList.of())) {
+            ResultSetMetaData metaData = iterator.getResultSetMetaData();
+            ImmutableList.Builder<PGType> builder = ImmutableList.builder();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                builder.add(DUCKDB_TYPE.toPGType(metaData.getColumnType(i)));
+            }
+            types = builder.build();
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        duckdbClient.dropTableQuietly("orders");
+    }
+
+    @Benchmark
+    public long readRows()
+            throws Exception
+    {
+        long orderkeySum = 0;
+        try (JdbcRecordIterator iterator = duckdbClient.executeQuery(QUERY, ImmutableList.of())) {
+            while (iterator.hasNext()) {
+                orderkeySum += (long) iterator.next()[0];
+            }
+        }
+        return orderkeySum;
+    }
+
+    @Benchmark
+    public long readBatches()
+            throws Exception
+    {
+        long orderkeySum = 0;
+        try (JdbcRecordIterator iterator = duckdbClient.executeQuery(QUERY, ImmutableList.of())) {
+            while (iterator.hasNext()) {
+                RecordBatch batch = iterator.nextBatch(types, DEFAULT_BATCH_SIZE);
+                LongVector orderkey = (LongVector) batch.getColumn(0);
+                for (int position = 0; position < batch.getRowCount(); position++) {
+                    orderkeySum += orderkey.getLong(position);
+                }
+            }
+        }
+        return orderkeySum;
+    }
+
+    @Test
+    public void verify()
+            throws Exception
+    {
+        BenchmarkRecordBatch benchmark = new BenchmarkRecordBatch();
+        benchmark.rowCount = 10_000;
+        benchmark.setup();
+        try {
+            assertThat(benchmark.readRows()).isEqualTo(10_000L * 9_999 / 2);
+            assertThat(benchmark.readBatches()).isEqualTo(10_000L * 9_999 / 2);
+        }
+        finally {
+            benchmark.tearDown();
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*" + BenchmarkRecordBatch.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.client.duckdb;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioException;
+import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
+import io.accio.base.batch.BooleanVector;
+import io.accio.base.batch.DoubleVector;
+import io.accio.base.batch.IntVector;
+import io.accio.base.batch.LongVector;
+import io.accio.base.batch.ObjectVector;
+import io.accio.base.batch.RecordBatch;
+import io.accio.base.client.AutoCloseableIterator;
+import io.accio.base.client.jdbc.JdbcRecordIterator;
+import io.accio.base.type.PGType;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.client.duckdb.DuckdbType.DUCKDB_TYPE;
+import static io.accio.base.metadata.StandardErrorCode.QUERY_QUEUE_FULL;
+import static io.accio.base.metadata.StandardErrorCode.USER_CANCELED;
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.BooleanType.BOOLEAN;
+import static io.accio.base.type.DoubleType.DOUBLE;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestDuckdbClient
+{
+    @Test
+    public void testSettings()
+            throws Exception
+    {
+        DuckdbClient client = new DuckdbClient(new DuckdbConfig()
+                .setThreads(2)
+                .setMemoryLimit(DataSize.of(512, MEGABYTE)));
+        List<Object[]> rows = query(client, "SELECT current_setting('threads'), current_setting('memory_limit')");
+        // duckdb shows the memory limit in decimal units
+        assertThat(rows.get(0)).containsExactly(2L, "536.8MB");
+    }
+
+    @Test
+    public void testReuseStatementAfterTableReplaced()
+            throws Exception
+    {
+        DuckdbClient client = new DuckdbClient(new DuckdbConfig().setMaxConcurrentQueries(1));
+        client.executeDDL("CREATE TABLE t AS SELECT 1 AS a");
+        String sql = "SELECT * FROM t WHERE a >= ?";
+        List<Parameter> parameters = ImmutableList.of(new Parameter(INTEGER, 0));
+        try (JdbcRecordIterator iterator = client.executeQuery(sql, parameters)) {
+            assertThat(iterator.next()).containsExactly(1);
+        }
+
+        client.executeDDL("BEGIN TRANSACTION;DROP TABLE t;CREATE TABLE t AS SELECT 2 AS a, 3 AS b;COMMIT;");
+        try (JdbcRecordIterator iterator = client.executeQuery(sql, parameters)) {
+            assertThat(iterator.getResultSetMetaData().getColumnCount()).isEqualTo(2);
+            assertThat(iterator.next()).containsExactly(2, 3);
+        }
+    }
+
+    @Test
+    public void testMaxConcurrentQueries()
+            throws Exception
+    {
+        DuckdbClient client = new DuckdbClient(new DuckdbConfig()
+                .setMaxConcurrentQueries(1)
+                .setMaxQueueTime(new Duration(10, MILLISECONDS)));
+        QueryCancellation cancellation = new QueryCancellation();
+        CompletableFuture<Void> running = CompletableFuture.runAsync(() -> {
+            try (JdbcRecordIterator ignored = client.executeQuery("SELECT count(*) FROM range(1000000) a, range(1000000) b", ImmutableList.of(), cancellation)) {
+                throw new AssertionError("the query is expected to be canceled");
+            }
+            catch (Exception ignored) {
+                // canceled
+            }
+        });
+        try {
+            // the running query holds the only connection
+            assertThat(queryUntilQueueFull(client))
+                    .hasMessageContaining("No duckdb connection for query is available");
+            // the refresh pool is separated from the query pool
+            client.executeDDL("CREATE TABLE t AS SELECT 1 AS a");
+        }
+        finally {
+            cancellation.cancel();
+            running.join();
+        }
+        assertThat(query(client, "SELECT count(*) FROM t").get(0)).containsExactly(1L);
+    }
+
+    @Test
+    public void testOpenCursorsDontHoldConnections()
+            throws Exception
+    {
+        DuckdbClient client = new DuckdbClient(new DuckdbConfig()
+                .setMaxConcurrentQueries(2)
+                .setMaxQueueTime(new Duration(10, MILLISECONDS)));
+        // more rows than a chunk of duckdb, so the rows are fetched more than once
+        String sql = "SELECT i FROM range(5000) t(i) ORDER BY i";
+        List<JdbcRecordIterator> cursors = new ArrayList<>();
+        try {
+            // more cursors than connections, like portals suspended by their max rows
+            for (int i = 0; i < 3; i++) {
+                JdbcRecordIterator cursor = client.executeQuery(sql, ImmutableList.of());
+                cursors.add(cursor);
+                assertThat(cursor.next()).containsExactly(0L);
+                assertThat(cursor.nextBatch(ImmutableList.of(BIGINT), 100).getRowCount()).isEqualTo(100);
+            }
+            assertThat(query(client, "SELECT 1").get(0)).containsExactly(1);
+
+            for (JdbcRecordIterator cursor : cursors) {
+                long rows = 101;
+                while (cursor.hasNext()) {
+                    assertThat(cursor.next()).containsExactly(rows++);
+                }
+                assertThat(rows).isEqualTo(5000);
+            }
+        }
+        finally {
+            for (JdbcRecordIterator cursor : cursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    @Test
+    public void testAppendsLeaveRefreshConnection()
+            throws Exception
+    {
+        DuckdbClient client = new DuckdbClient(new DuckdbConfig()
+                .setMaxConcurrentRefreshes(2)
+                .setMaxRefreshQueueTime(new Duration(10, MILLISECONDS)));
+        assertThat(client.getMaxConcurrentAppends()).isEqualTo(1);
+        client.executeDDL("CREATE TABLE t (a INTEGER)");
+
+        CountDownLatch appending = new CountDownLatch(1);
+        CompletableFuture<Void> finishAppend = new CompletableFuture<>();
+        CompletableFuture<Long> append = CompletableFuture.supplyAsync(() -> client.appendRows("t", new AbstractIterator<>()
+        {
+            private int rows;
+
+            @Override
+            protected Object[] computeNext()
+            {
+                if (rows++ == 1) {
+                    // a slow source, the appender holds its connection meanwhile
+                    appending.countDown();
+                    finishAppend.join();
+                    return endOfData();
+                }
+                return new Object[] {rows};
+            }
+        }));
+        try {
+            appending.await();
+            assertThatThrownBy(() -> client.appendRows("t", List.<Object[]>of(new Object[] {2}).iterator()))
+                    .isInstanceOfSatisfying(AccioException.class, e -> assertThat(e.getErrorCode()).isEqualTo(QUERY_QUEUE_FULL.toErrorCode()))
+                    .hasMessage("No duckdb connection for append is available after 10.00ms");
+            // the other refresh statements and the drops still run
+            client.executeDDL("CREATE TABLE u AS SELECT 1 AS a");
+            client.dropTableQuietly("u");
+        }
+        finally {
+            finishAppend.complete(null);
+        }
+        assertThat(append.join()).isEqualTo(1);
+        assertThat(query(client, "SELECT count(*) FROM t").get(0)).containsExactly(1L);
+        assertThat(query(client, "SELECT count(*) FROM duckdb_tables() WHERE table_name = 'u'").get(0)).containsExactly(0L);
+    }
+
+    @Test
+    public void testFailedStatementReleasesConnection()
+            throws Exception
+    {
+        DuckdbClient client = new DuckdbClient(new DuckdbConfig()
+                .setMaxConcurrentQueries(1)
+                .setMaxConcurrentRefreshes(1)
+                .setMaxQueueTime(new Duration(10, MILLISECONDS)));
+        assertThatThrownBy(() -> client.query("SELECT * FROM not_found"));
+        assertThatThrownBy(() -> client.executeDDL("BEGIN TRANSACTION;CREATE TABLE t AS SELECT * FROM not_found;COMMIT;"));
+        client.executeDDL("CREATE TABLE t AS SELECT 1 AS a");
+        assertThat(query(client, "SELECT a FROM t").get(0)).containsExactly(1);
+    }
+
+    @Test
+    public void testCancelQuery()
+            throws Exception
+    {
+        DuckdbClient client = new DuckdbClient(new DuckdbConfig().setMaxConcurrentQueries(1));
+        QueryCancellation cancellation = new QueryCancellation();
+        ScheduledExecutorService executor = newSingleThreadScheduledExecutor();
+        try {
+            executor.schedule(cancellation::cancel, 200, MILLISECONDS);
+            assertThatThrownBy(() -> client.executeQuery("SELECT count(*) FROM range(1000000) a, range(1000000) b", ImmutableList.of(), cancellation))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("Interrupted");
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        // a canceled query doesn't start
+        assertThatThrownBy(() -> client.executeQuery("SELECT 1", ImmutableList.of(), cancellation))
+                .isInstanceOfSatisfying(AccioException.class, e -> assertThat(e.getErrorCode()).isEqualTo(USER_CANCELED.toErrorCode()));
+
+        // the connection is returned and the next query isn't interrupted
+        QueryCancellation next = new QueryCancellation();
+        try (JdbcRecordIterator iterator = client.executeQuery("SELECT 1", ImmutableList.of(), next)) {
+            assertThat(iterator.next()).containsExactly(1);
+        }
+        next.cancel();
+        assertThat(query(client, "SELECT 2").get(0)).containsExactly(2);
+    }
+
+    @Test
+    public void testNextBatch()
+            throws Exception
+    {
+        DuckdbClient client = new DuckdbClient();
+        String sql = "SELECT i::BIGINT AS l, CASE WHEN i % 3 = 0 THEN NULL ELSE i::INTEGER END AS n, i / 2 AS d, i % 2 = 0 AS b, 'row_' || i AS s " +
+                "FROM range(2500) t(i) ORDER BY i";
+        List<Object[]> rows = query(client, sql);
+
+        ImmutableList.Builder<Object[]> batchRows = ImmutableList.builder();
+        try (JdbcRecordIterator iterator = client.executeQuery(sql, ImmutableList.of())) {
+            List<PGType> types = IntStream.rangeClosed(1, iterator.getResultSetMetaData().getColumnCount())
+                    .mapToObj(column -> {
+                        try {
+                            return (PGType) DUCKDB_TYPE.toPGType(iterator.getResultSetMetaData().getColumnType(column));
+                        }
+                        catch (SQLException e) {
+                            throw new RuntimeException(e);
+                        }
+                    })
+                    .collect(toImmutableList());
+            assertThat(types).containsExactly(BIGINT, INTEGER, DOUBLE, BOOLEAN, VARCHAR);
+
+            // rows and batches can be mixed
+            batchRows.add(iterator.next());
+            RecordBatch batch = iterator.nextBatch(types, 2000);
+            assertThat(batch.getRowCount()).isEqualTo(2000);
+            assertThat(batch.getColumn(0)).isInstanceOf(LongVector.class);
+            assertThat(batch.getColumn(1)).isInstanceOf(IntVector.class);
+            assertThat(batch.getColumn(2)).isInstanceOf(DoubleVector.class);
+            assertThat(batch.getColumn(3)).isInstanceOf(BooleanVector.class);
+            assertThat(batch.getColumn(4)).isInstanceOf(ObjectVector.class);
+            assertThat(batch.getColumn(1).isNull(2)).isTrue();
+            assertThat(batch.getColumn(1).isNull(3)).isFalse();
+            IntStream.range(0, batch.getRowCount()).forEach(position -> batchRows.add(batch.getRow(position)));
+
+            RecordBatch last = iterator.nextBatch(types, 2000);
+            assertThat(last.getRowCount()).isEqualTo(499);
+            IntStream.range(0, last.getRowCount()).forEach(position -> batchRows.add(last.getRow(position)));
+            assertThat(iterator.hasNext()).isFalse();
+            assertThat(iterator.nextBatch(types, 2000).getRowCount()).isZero();
+        }
+        assertThat(batchRows.build()).containsExactlyElementsOf(rows);
+    }
+
+    private static AccioException queryUntilQueueFull(DuckdbClient client)
+            throws Exception
+    {
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            try {
+                query(client, "SELECT 1");
+            }
+            catch (AccioException e) {
+                assertThat(e.getErrorCode()).isEqualTo(QUERY_QUEUE_FULL.toErrorCode());
+                return e;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("the query pool is never full");
+    }
+
+    private static List<Object[]> query(DuckdbClient client, String sql)
+            throws Exception
+    {
+        ImmutableList.Builder<Object[]> builder = ImmutableList.builder();
+        try (AutoCloseableIterator<Object[]> iterator = client.query(sql)) {
+            iterator.forEachRemaining(builder::add);
+        }
+        return builder.build();
+    }
+}
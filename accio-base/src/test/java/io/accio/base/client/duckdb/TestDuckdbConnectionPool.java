@@ -0,0 +1,160 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.client.duckdb;
+
+import io.accio.base.AccioException;
+import io.accio.base.client.duckdb.DuckdbConnectionPool.PooledConnection;
+import io.airlift.units.Duration;
+import org.duckdb.DuckDBConnection;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static io.accio.base.metadata.StandardErrorCode.QUERY_QUEUE_FULL;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@Test(singleThreaded = true)
+public class TestDuckdbConnectionPool
+{
+    private DuckDBConnection database;
+    private DuckdbConnectionPool pool;
+
+    @BeforeMethod
+    public void setup()
+            throws SQLException
+    {
+        database = (DuckDBConnection) DriverManager.getConnection("jdbc:duckdb:");
+        pool = new DuckdbConnectionPool("test", database, 2, 4, Optional.of(new Duration(10, MILLISECONDS)));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup()
+            throws SQLException
+    {
+        database.close();
+    }
+
+    @Test
+    public void testCloseTwice()
+            throws SQLException
+    {
+        PooledConnection first = pool.borrow();
+        first.close();
+        // the same connection is borrowed again
+        PooledConnection second = pool.borrow();
+        assertThat(pool.getAvailableConnections()).isEqualTo(1);
+
+        // closing the first borrow again doesn't return the connection of the second one
+        first.close();
+        assertThat(pool.getAvailableConnections()).isEqualTo(1);
+        assertThatThrownBy(first::getConnection)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("duckdb connection for test is already returned to the pool");
+        assertThat(second.getConnection().isClosed()).isFalse();
+
+        second.close();
+        second.close();
+        assertThat(pool.getAvailableConnections()).isEqualTo(2);
+    }
+
+    @Test
+    public void testExhausted()
+            throws SQLException
+    {
+        PooledConnection first = pool.borrow();
+        PooledConnection second = pool.borrow();
+        // a borrow waits for the max queue time while every connection is held
+        assertThatThrownBy(pool::borrow)
+                .isInstanceOfSatisfying(AccioException.class, e -> assertThat(e.getErrorCode()).isEqualTo(QUERY_QUEUE_FULL.toErrorCode()))
+                .hasMessage("No duckdb connection for test is available after 10.00ms");
+
+        first.close();
+        try (PooledConnection third = pool.borrow()) {
+            assertThat(pool.getAvailableConnections()).isEqualTo(0);
+        }
+        second.close();
+        assertThat(pool.getAvailableConnections()).isEqualTo(2);
+    }
+
+    @Test
+    public void testPause()
+            throws SQLException
+    {
+        PooledConnection paused = pool.borrow();
+        paused.pause();
+        paused.pause();
+        assertThat(pool.getAvailableConnections()).isEqualTo(2);
+
+        // the paused connection waits to resume while the others are held
+        PooledConnection first = pool.borrow();
+        PooledConnection second = pool.borrow();
+        assertThatThrownBy(paused::resume)
+                .isInstanceOfSatisfying(AccioException.class, e -> assertThat(e.getErrorCode()).isEqualTo(QUERY_QUEUE_FULL.toErrorCode()));
+        assertThat(paused.getConnection()).isNotIn(first.getConnection(), second.getConnection());
+        first.close();
+        paused.resume();
+        assertThat(pool.getAvailableConnections()).isEqualTo(0);
+        paused.pause();
+        assertThat(pool.getAvailableConnections()).isEqualTo(1);
+
+        // a connection closed while paused doesn't give back its permit again
+        paused.close();
+        assertThat(pool.getAvailableConnections()).isEqualTo(1);
+        assertThatThrownBy(paused::resume)
+                .isInstanceOf(IllegalStateException.class);
+        second.close();
+        assertThat(pool.getAvailableConnections()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCachedStatements()
+            throws SQLException
+    {
+        PreparedStatement statement;
+        try (PooledConnection connection = pool.borrow()) {
+            statement = connection.prepareStatement("SELECT 1");
+            assertThat(connection.prepareStatement("SELECT 1")).isSameAs(statement);
+        }
+        try (PooledConnection connection = pool.borrow()) {
+            assertThat(connection.prepareStatement("SELECT 1")).isSameAs(statement);
+            connection.invalidate("SELECT 1");
+            assertThat(statement.isClosed()).isTrue();
+            assertThat(connection.prepareStatement("SELECT 1")).isNotSameAs(statement);
+        }
+    }
+
+    @Test
+    public void testBrokenConnection()
+            throws SQLException
+    {
+        DuckDBConnection broken;
+        try (PooledConnection connection = pool.borrow()) {
+            broken = connection.getConnection();
+            connection.markBroken();
+        }
+        assertThat(broken.isClosed()).isTrue();
+        assertThat(pool.getAvailableConnections()).isEqualTo(2);
+        try (PooledConnection connection = pool.borrow()) {
+            assertThat(connection.getConnection()).isNotSameAs(broken);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.base.dto;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static io.accio.base.dto.Column.column;
+import static io.accio.base.dto.Column.relationshipColumn;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestCacheInfo
+{
+    private static final List<Column> ORDERS_COLUMNS = List.of(
+            column("orderkey", "integer", null, true),
+            column("orderdate", "date", null, true),
+            relationshipColumn("customer", "Customer", "OrdersCustomer"));
+
+    @Test
+    public void testModelCacheColumns()
+    {
+        Model model = new Model("Orders", "select * from orders", null, ORDERS_COLUMNS, null, true, null, null, List.of("orderdate"), List.of("orderkey"));
+        assertThat(model.getSortKeys()).containsExactly("orderdate");
+        assertThat(model.getIndexColumns()).containsExactly("orderkey");
+
+        assertThatThrownBy(() -> new Model("Orders", "select * from orders", null, ORDERS_COLUMNS, null, true, null, null, List.of("o_orderdate"), null))
+                .hasMessage("sort key o_orderdate is not a column of Orders");
+        assertThatThrownBy(() -> new Model("Orders", "select * from orders", null, ORDERS_COLUMNS, null, true, null, null, null, List.of("orderkey", "o_orderkey")))
+                .hasMessage("index column o_orderkey is not a column of Orders");
+        // relationship columns aren't in the cached table
+        assertThatThrownBy(() -> new Model("Orders", "select * from orders", null, ORDERS_COLUMNS, null, true, null, null, null, List.of("customer")))
+                .hasMessage("index column customer is not a column of Orders");
+    }
+
+    @Test
+    public void testMetricCacheColumns()
+    {
+        List<Column> dimension = List.of(column("custkey", "integer", null, true));
+        List<Column> measure = List.of(column("revenue", "integer", null, true, "sum(totalprice)"));
+        Metric metric = new Metric("Revenue", "Orders", dimension, measure, List.of(), true, null, null, List.of("custkey", "revenue"), List.of("custkey"));
+        assertThat(metric.getSortKeys()).containsExactly("custkey", "revenue");
+        assertThat(metric.getIndexColumns()).containsExactly("custkey");
+
+        assertThatThrownBy(() -> new Metric("Revenue", "Orders", dimension, measure, List.of(), true, null, null, List.of("totalprice"), null))
+                .hasMessage("sort key totalprice is not a column of Revenue");
+        assertThatThrownBy(() -> new Metric("Revenue", "Orders", dimension, measure, List.of(), true, null, null, null, List.of("orderkey")))
+                .hasMessage("index column orderkey is not a column of Revenue");
+    }
+}
@@ -106,11 +106,18 @@ public class TestManifestSerDe
                                         enumValue("SHIPPED", "shipped"),
                                         enumValue("COMPLETE", "complete")),
                                 "the status of an order")))
-                .setMetrics(List.of(metric("Revenue", "OrdersModel",
-                        List.of(column("orderkey", "string", null, true)),
-                        List.of(column("total", "integer", null, true)),
-                        List.of(timeGrain("orderdate", "orderdate", List.of(DAY, MONTH))),
-                        true, "the revenue of an order")))
+                .setMetrics(List.of(
+                        metric("Revenue", "OrdersModel",
+                                List.of(column("orderkey", "string", null, true)),
+                                List.of(column("total", "integer", null, true)),
+                                List.of(timeGrain("orderdate", "orderdate", List.of(DAY, MONTH))),
+                                true, "the revenue of an order"),
+                        new Metric("DailyRevenue", "OrdersModel",
+                                List.of(column("orderdate", "date", null, true), column("custkey", "integer", null, true)),
+                                List.of(column("total", "integer", null, true)),
+                                List.of(timeGrain("orderdate", "orderdate", List.of(DAY))),
+                                true, null, "the daily revenue of each customer",
+                                List.of("orderdate"), List.of("custkey"))))
                 .setViews(List.of(view("useMetric", "select * from Revenue", "the view for the revenue metric")))
                 .setCumulativeMetrics(List.of(
                         cumulativeMetric("DailyRevenue",
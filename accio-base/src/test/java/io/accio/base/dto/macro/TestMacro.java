@@ -15,6 +15,7 @@
 package io.accio.base.dto.macro;
 
 import io.accio.base.AccioMDL;
+import io.accio.base.dto.Column;
 import io.accio.base.dto.Macro;
 import io.accio.base.dto.Manifest;
 import io.accio.base.dto.Model;
@@ -23,7 +24,9 @@ import org.testng.annotations.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.accio.base.AccioTypes.INTEGER;
 import static io.accio.base.AccioTypes.VARCHAR;
 import static io.accio.base.dto.Column.column;
@@ -164,4 +167,24 @@ public class TestMacro
         assertThat(modelOptional.get().getColumns().get(2).getExpression().get()).isEqualTo("standardTime");
         assertThat(modelOptional.get().getColumns().get(2).getExpression().get()).isEqualTo("standardTime");
     }
+
+    @Test
+    public void testManyColumns()
+    {
+        List<Column> columns = IntStream.range(0, 500)
+                .mapToObj(i -> column("c" + i, INTEGER, null, true, i % 2 == 0 ? "{{addOne('c" + i + "')}}" : "c" + i + " + 2"))
+                .collect(toImmutableList());
+        Manifest manifest = Manifest.builder()
+                .setCatalog("test")
+                .setSchema("test")
+                .setModels(List.of(model("Customer", "select * from main.customer", columns, "pk")))
+                .setMacros(List.of(macro("addOne", "(text: Expression) => {{ text }} + 1")))
+                .build();
+
+        AccioMDL mdl = AccioMDL.fromManifest(manifest);
+        List<Column> rendered = mdl.getModel("Customer").orElseThrow().getColumns();
+        for (int i = 0; i < 500; i++) {
+            assertThat(rendered.get(i).getExpression()).hasValue("c" + i + (i % 2 == 0 ? " + 1" : " + 2"));
+        }
+    }
 }
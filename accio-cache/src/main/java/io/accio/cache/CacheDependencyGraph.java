@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.accio.base.AccioMDL;
+import io.accio.base.SessionContext;
+import io.accio.base.dto.CacheInfo;
+import io.accio.sqlrewrite.QueryDescriptor;
+import io.airlift.log.Logger;
+import org.jgrapht.graph.DirectedAcyclicGraph;
+import org.jgrapht.graph.GraphCycleProhibitedException;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static java.util.Objects.requireNonNull;
+import static java.util.function.Function.identity;
+
+/**
+ * The dependencies between the cached objects of an mdl. An edge from A to B means B is built on A directly,
+ * or through objects that aren't cached. Iterating the graph gives a topological order, i.e. the order to refresh.
+ */
+public class CacheDependencyGraph
+{
+    private static final Logger LOG = Logger.get(CacheDependencyGraph.class);
+
+    private final AccioMDL mdl;
+    private final Map<String, CacheInfo> cacheInfos;
+    private final DirectedAcyclicGraph<String, Object> graph = new DirectedAcyclicGraph<>(Object.class);
+
+    public static CacheDependencyGraph of(AccioMDL mdl)
+    {
+        return new CacheDependencyGraph(mdl);
+    }
+
+    private CacheDependencyGraph(AccioMDL mdl)
+    {
+        this.mdl = requireNonNull(mdl, "mdl is null");
+        this.cacheInfos = mdl.listCached().stream().collect(toImmutableMap(CacheInfo::getName, identity()));
+        SessionContext sessionContext = SessionContext.builder()
+                .setCatalog(mdl.getCatalog())
+                .setSchema(mdl.getSchema())
+                .build();
+        cacheInfos.keySet().forEach(graph::addVertex);
+        for (String name : cacheInfos.keySet()) {
+            Set<String> upstreams = new HashSet<>();
+            collectCachedUpstreams(name, sessionContext, new HashSet<>(), upstreams);
+            try {
+                upstreams.forEach(upstream -> graph.addEdge(upstream, name));
+            }
+            catch (GraphCycleProhibitedException ex) {
+                throw new IllegalArgumentException("found cycle in cached objects", ex);
+            }
+        }
+    }
+
+    private void collectCachedUpstreams(String name, SessionContext sessionContext, Set<String> visited, Set<String> upstreams)
+    {
+        Set<String> requiredObjects;
+        try {
+            requiredObjects = QueryDescriptor.of(name, mdl, sessionContext).getRequiredObjects();
+        }
+        catch (Exception e) {
+            // an invalid object fails when it is cached; it just has no dependency here
+            LOG.warn(e, "Failed to get the required objects of %s", name);
+            return;
+        }
+        for (String requiredObject : requiredObjects) {
+            if (!visited.add(requiredObject)) {
+                continue;
+            }
+            if (cacheInfos.containsKey(requiredObject)) {
+                upstreams.add(requiredObject);
+            }
+            else {
+                collectCachedUpstreams(requiredObject, sessionContext, visited, upstreams);
+            }
+        }
+    }
+
+    public AccioMDL getMdl()
+    {
+        return mdl;
+    }
+
+    public List<CacheInfo> getRefreshOrder()
+    {
+        return ImmutableList.copyOf(graph.iterator()).stream()
+                .map(cacheInfos::get)
+                .collect(toImmutableList());
+    }
+
+    public Set<String> getUpstreams(String name)
+    {
+        if (!graph.containsVertex(name)) {
+            return ImmutableSet.of();
+        }
+        return graph.incomingEdgesOf(name).stream()
+                .map(graph::getEdgeSource)
+                .collect(toImmutableSet());
+    }
+
+    /**
+     * All the cached objects built on the given one, directly or indirectly, in refresh order.
+     */
+    public List<CacheInfo> getDownstreams(String name)
+    {
+        if (!graph.containsVertex(name)) {
+            return ImmutableList.of();
+        }
+        Set<String> descendants = graph.getDescendants(name);
+        return getRefreshOrder().stream()
+                .filter(cacheInfo -> descendants.contains(cacheInfo.getName()))
+                .collect(toImmutableList());
+    }
+}
@@ -21,24 +21,41 @@ import io.accio.base.AccioMDL;
 import io.accio.base.CatalogSchemaTableName;
 import io.accio.base.ConnectorRecordIterator;
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
 import io.accio.base.SessionContext;
 import io.accio.base.client.duckdb.DuckdbClient;
 import io.accio.base.dto.CacheInfo;
 import io.accio.base.sql.SqlConverter;
+import io.accio.cache.SharedCacheStore.Lease;
 import io.accio.cache.dto.CachedTable;
 import io.accio.sqlrewrite.AccioPlanner;
+import io.accio.sqlrewrite.CacheRewrite;
+import io.accio.sqlrewrite.DateSpineInfo;
+import io.accio.sqlrewrite.ObjectFingerprints;
+import io.accio.sqlrewrite.QueryDescriptor;
 import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+import io.trino.sql.SqlFormatter;
 import io.trino.sql.parser.ParsingOptions;
 import io.trino.sql.parser.SqlParser;
+import io.trino.sql.tree.DefaultTraversalVisitor;
+import io.trino.sql.tree.QualifiedName;
 import io.trino.sql.tree.Statement;
+import io.trino.sql.tree.Table;
+import io.trino.sql.tree.WithQuery;
 
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import java.nio.file.Path;
 import java.sql.SQLException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -46,24 +63,34 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.hash.Hashing.sha256;
 import static io.accio.base.CatalogSchemaTableName.catalogSchemaTableName;
 import static io.accio.base.metadata.StandardErrorCode.GENERIC_USER_ERROR;
 import static io.accio.cache.TaskInfo.TaskStatus.DONE;
 import static io.accio.cache.TaskInfo.TaskStatus.RUNNING;
+import static io.accio.sqlrewrite.Utils.createDateSpineQuery;
+import static io.accio.sqlrewrite.Utils.toCatalogSchemaTableName;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static io.airlift.concurrent.Threads.threadsNamed;
 import static io.trino.execution.sql.SqlFormatterUtil.getFormattedSql;
+import static io.trino.sql.SqlFormatter.Dialect.DUCKDB;
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
 import static java.util.UUID.randomUUID;
 import static java.util.concurrent.CompletableFuture.runAsync;
 import static java.util.concurrent.CompletableFuture.supplyAsync;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
 public class CacheManager
@@ -78,11 +105,16 @@ public class CacheManager
     private final CacheStorageConfig cacheStorageConfig;
     private final ConcurrentLinkedQueue<PathInfo> tempFileLocations = new ConcurrentLinkedQueue<>();
     private final CachedTableMapping cachedTableMapping;
+    private final CacheStats cacheStats;
+    private final SharedCacheStore sharedCacheStore;
     private final ConcurrentMap<CatalogSchemaTableName, ScheduledFuture<?>> cacheScheduledFutures = new ConcurrentHashMap<>();
     private final ScheduledThreadPoolExecutor refreshExecutor = new ScheduledThreadPoolExecutor(5, daemonThreadsNamed("cache-refresh-%s"));
 
     private final ExecutorService executorService = newCachedThreadPool(threadsNamed("cache-manager-%s"));
     private final ConcurrentHashMap<CatalogSchemaTableName, Task> tasks = new ConcurrentHashMap<>();
+    private final AtomicReference<CacheDependencyGraph> dependencyGraph = new AtomicReference<>();
+    // the source version of each cache when it was created
+    private final ConcurrentMap<CatalogSchemaTableName, String> sourceVersions = new ConcurrentHashMap<>();
 
     @Inject
     public CacheManager(
@@ -91,7 +123,9 @@ public class CacheManager
             ExtraRewriter extraRewriter,
             DuckdbClient duckdbClient,
             CacheStorageConfig cacheStorageConfig,
-            CachedTableMapping cachedTableMapping)
+            CachedTableMapping cachedTableMapping,
+            CacheStats cacheStats,
+            SharedCacheStore sharedCacheStore)
     {
         this.sqlParser = new SqlParser();
         this.sqlConverter = requireNonNull(sqlConverter, "sqlConverter is null");
@@ -100,6 +134,8 @@ public class CacheManager
         this.duckdbClient = requireNonNull(duckdbClient, "duckdbClient is null");
         this.cacheStorageConfig = requireNonNull(cacheStorageConfig, "cacheStorageConfig is null");
         this.cachedTableMapping = requireNonNull(cachedTableMapping, "cachedTableMapping is null");
+        this.cacheStats = requireNonNull(cacheStats, "cacheStats is null");
+        this.sharedCacheStore = requireNonNull(sharedCacheStore, "sharedCacheStore is null");
         refreshExecutor.setRemoveOnCancelPolicy(true);
     }
 
@@ -117,23 +153,119 @@ public class CacheManager
     private CompletableFuture<Void> handleCache(AccioMDL mdl, CacheInfo cacheInfo)
     {
         return refreshCache(mdl, cacheInfo)
-                .thenRun(() -> {
-                    if (cacheInfo.getRefreshTime().toMillis() > 0) {
-                        cacheScheduledFutures.put(
-                                new CatalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), cacheInfo.getName()),
-                                refreshExecutor.scheduleWithFixedDelay(
-                                        () -> createTask(mdl, cacheInfo).join(),
-                                        cacheInfo.getRefreshTime().toMillis(),
-                                        cacheInfo.getRefreshTime().toMillis(),
-                                        MILLISECONDS));
-                    }
-                });
+                .thenRun(() -> scheduleRefresh(mdl, cacheInfo));
+    }
+
+    private void scheduleRefresh(AccioMDL mdl, CacheInfo cacheInfo)
+    {
+        if (cacheInfo.getRefreshTime().toMillis() > 0) {
+            ScheduledFuture<?> previous = cacheScheduledFutures.put(
+                    new CatalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), cacheInfo.getName()),
+                    refreshExecutor.scheduleWithFixedDelay(
+                            () -> {
+                                if (isSourceUnchanged(mdl, cacheInfo)) {
+                                    return;
+                                }
+                                createTask(mdl, cacheInfo).join();
+                                refreshDownstreams(mdl, cacheInfo);
+                            },
+                            cacheInfo.getRefreshTime().toMillis(),
+                            cacheInfo.getRefreshTime().toMillis(),
+                            MILLISECONDS));
+            if (previous != null) {
+                previous.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Check the source version of the cache before a scheduled refresh. An unchanged source is counted
+     * as a skipped refresh in the task info of the cache.
+     */
+    private boolean isSourceUnchanged(AccioMDL mdl, CacheInfo cacheInfo)
+    {
+        CatalogSchemaTableName name = catalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), cacheInfo.getName());
+        Optional<String> cachedVersion = Optional.ofNullable(sourceVersions.get(name));
+        if (cachedVersion.isEmpty()) {
+            return false;
+        }
+        try {
+            SessionContext sessionContext = SessionContext.builder()
+                    .setCatalog(mdl.getCatalog())
+                    .setSchema(mdl.getSchema())
+                    .build();
+            Optional<String> sourceVersion = getSourceVersion(rewrite(mdl, cacheInfo, sessionContext), sessionContext);
+            if (sourceVersion.equals(cachedVersion)) {
+                LOG.debug("Skip refreshing %s; source is unchanged since %s", cacheInfo.getName(), cachedVersion.get());
+                Optional.ofNullable(tasks.get(name)).ifPresent(task -> task.getTaskInfo().countSkippedRefresh());
+                cacheStats.getSkippedRefreshes().update(1);
+                return true;
+            }
+        }
+        catch (Exception e) {
+            LOG.warn(e, "Failed to check the source version of %s", cacheInfo.getName());
+        }
+        return false;
+    }
+
+    private Optional<String> getSourceVersion(Statement statement, SessionContext sessionContext)
+    {
+        SourceTableCollector collector = new SourceTableCollector();
+        collector.process(statement, null);
+        Set<CatalogSchemaTableName> sourceTables = collector.getTables().stream()
+                .filter(table -> table.getParts().size() > 1 || !collector.getWithQueryNames().contains(table.getSuffix()))
+                .map(table -> toCatalogSchemaTableName(sessionContext, table))
+                .collect(toImmutableSet());
+        if (sourceTables.isEmpty()) {
+            return Optional.empty();
+        }
+        return cacheService.getSourceVersion(sourceTables);
+    }
+
+    /**
+     * Refresh the cached objects built on the given one, so they don't serve data older than their upstream.
+     * Each of them waits for its own upstream in {@link #doCache}, so creating the tasks in refresh order is enough.
+     */
+    private void refreshDownstreams(AccioMDL mdl, CacheInfo cacheInfo)
+    {
+        for (CacheInfo downstream : getDependencyGraph(mdl).getDownstreams(cacheInfo.getName())) {
+            CatalogSchemaTableName name = catalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), downstream.getName());
+            if (Optional.ofNullable(tasks.get(name)).map(task -> task.getTaskInfo().inProgress()).orElse(false)) {
+                continue;
+            }
+            try {
+                createTask(mdl, downstream).join();
+            }
+            catch (Exception e) {
+                LOG.warn(e, "Failed to refresh %s after %s is refreshed", downstream.getName(), cacheInfo.getName());
+            }
+        }
+    }
+
+    private CacheDependencyGraph getDependencyGraph(AccioMDL mdl)
+    {
+        return dependencyGraph.updateAndGet(graph -> graph != null && graph.getMdl() == mdl ? graph : CacheDependencyGraph.of(mdl));
     }
 
     public ConnectorRecordIterator query(String sql, List<Parameter> parameters)
             throws SQLException
     {
-        return DuckdbRecordIterator.of(duckdbClient, sql, parameters.stream().collect(toImmutableList()));
+        return query(sql, parameters, new QueryCancellation());
+    }
+
+    public ConnectorRecordIterator query(String sql, List<Parameter> parameters, QueryCancellation cancellation)
+            throws SQLException
+    {
+        long start = System.nanoTime();
+        try {
+            ConnectorRecordIterator iterator = DuckdbRecordIterator.of(duckdbClient, sql, parameters.stream().collect(toImmutableList()), cancellation);
+            cacheStats.getQuery().add(Duration.nanosSince(start));
+            return iterator;
+        }
+        catch (SQLException | RuntimeException e) {
+            cacheStats.getQueryFailures().update(1);
+            throw e;
+        }
     }
 
     private CompletableFuture<Void> doCache(AccioMDL mdl, CacheInfo cacheInfo)
@@ -141,21 +273,34 @@ public class CacheManager
         CatalogSchemaTableName catalogSchemaTableName = new CatalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), cacheInfo.getName());
         String duckdbTableName = format("%s_%s", cacheInfo.getName(), randomUUID().toString().replace("-", ""));
         long createTime = currentTimeMillis();
+        long start = System.nanoTime();
         return runAsync(() -> {
             SessionContext sessionContext = SessionContext.builder()
                     .setCatalog(mdl.getCatalog())
                     .setSchema(mdl.getSchema())
                     .build();
-            String accioRewritten = AccioPlanner.rewrite(
-                    format("select * from %s", cacheInfo.getName()),
-                    sessionContext,
-                    mdl);
-            Statement parsedStatement = sqlParser.createStatement(accioRewritten, PARSE_AS_DECIMAL);
-            Statement rewrittenStatement = extraRewriter.rewrite(parsedStatement);
-
-            createCache(mdl, cacheInfo, sessionContext, rewrittenStatement, duckdbTableName);
+            Set<String> upstreams = getDependencyGraph(mdl).getUpstreams(cacheInfo.getName());
+            upstreams.forEach(upstream -> untilTaskDone(catalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), upstream)));
+            Statement rewrittenStatement = rewrite(mdl, cacheInfo, sessionContext);
+            // take the version before reading the source, so a change made during the refresh isn't missed next time
+            Optional<String> sourceVersion = getSourceVersionQuietly(rewrittenStatement, sessionContext, cacheInfo);
+
+            Runnable materialize = () -> materialize(mdl, cacheInfo, sessionContext, upstreams, rewrittenStatement, duckdbTableName);
+            if (sharedCacheStore.isEnabled()) {
+                sourceVersion = loadSharedCache(mdl, cacheInfo, duckdbTableName, sourceVersion, materialize);
+            }
+            else {
+                materialize.run();
+            }
+            createIndexes(cacheInfo, duckdbTableName);
             cachedTableMapping.putCachedTableMapping(catalogSchemaTableName, new CacheInfoPair(cacheInfo, duckdbTableName, createTime));
+            sourceVersion.ifPresentOrElse(
+                    version -> sourceVersions.put(catalogSchemaTableName, version),
+                    () -> sourceVersions.remove(catalogSchemaTableName));
+            cacheStats.getRefresh().add(Duration.nanosSince(start));
         }).exceptionally(e -> {
+            cacheStats.getRefreshFailures().update(1);
+            sourceVersions.remove(catalogSchemaTableName);
             duckdbClient.dropTableQuietly(duckdbTableName);
             String errMsg = format("Failed to do cache for cacheInfo %s; caused by %s", cacheInfo.getName(), e.getMessage());
             LOG.error(e, errMsg);
@@ -164,6 +309,163 @@ public class CacheManager
         });
     }
 
+    private void materialize(
+            AccioMDL mdl,
+            CacheInfo cacheInfo,
+            SessionContext sessionContext,
+            Set<String> upstreams,
+            Statement rewrittenStatement,
+            String duckdbTableName)
+    {
+        Optional<String> localStatement = rewriteToCachedUpstreams(mdl, cacheInfo, sessionContext, upstreams);
+        if (localStatement.isPresent()) {
+            try {
+                duckdbClient.executeDDL(format("CREATE TABLE %s AS SELECT * FROM (%s) t%s", quote(duckdbTableName), localStatement.get(), orderBy(cacheInfo.getSortKeys())));
+                return;
+            }
+            catch (RuntimeException e) {
+                // the expressions are written for the data source, which may have functions duckdb doesn't
+                LOG.warn(e, "Failed to compute %s from its cached upstreams in duckdb; read it from the data source instead", cacheInfo.getName());
+                duckdbClient.dropTableQuietly(duckdbTableName);
+            }
+        }
+        createCache(mdl, cacheInfo, sessionContext, rewrittenStatement, duckdbTableName);
+    }
+
+    /**
+     * Load the cache from the snapshot in the shared directory if it's fresh. Otherwise, materialize it and publish
+     * it if this node gets the lease of the object, or wait for the node holding the lease to publish it. The cache
+     * is materialized without publishing it if that node doesn't publish it before the lease is released or expires.
+     *
+     * @return the source version of the data loaded into the cache
+     */
+    private Optional<String> loadSharedCache(AccioMDL mdl, CacheInfo cacheInfo, String duckdbTableName, Optional<String> sourceVersion, Runnable materialize)
+    {
+        CatalogSchemaTableName name = catalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), cacheInfo.getName());
+        Optional<String> fingerprint = getSharedFingerprint(mdl, cacheInfo);
+        if (fingerprint.isEmpty()) {
+            materialize.run();
+            return sourceVersion;
+        }
+        Predicate<CacheSnapshot> isFresh = snapshot -> snapshot.getFingerprint().equals(fingerprint.get()) && isFresh(snapshot, cacheInfo, sourceVersion);
+
+        Optional<CacheSnapshot> published = sharedCacheStore.getSnapshot(name);
+        if (published.filter(isFresh).isPresent() && loadSnapshot(name, published.get(), duckdbTableName)) {
+            return published.get().getSourceVersion();
+        }
+
+        Optional<Lease> lease = sharedCacheStore.tryLease(name);
+        if (lease.isPresent()) {
+            try (Lease ignored = lease.get()) {
+                // another node may have published it between reading the manifest and taking the lease
+                Optional<CacheSnapshot> latest = sharedCacheStore.getSnapshot(name).filter(isFresh);
+                if (latest.isPresent() && loadSnapshot(name, latest.get(), duckdbTableName)) {
+                    return latest.get().getSourceVersion();
+                }
+                materialize.run();
+                sharedCacheStore.publish(lease.get(), fingerprint.get(), sourceVersion, file -> exportToParquet(duckdbTableName, file))
+                        .ifPresent(snapshot -> {
+                            LOG.info("Published version %s of %s", snapshot.getVersion(), name);
+                            cacheStats.getPublishedSnapshots().update(1);
+                        });
+                return sourceVersion;
+            }
+        }
+
+        long publishedVersion = published.map(CacheSnapshot::getVersion).orElse(0L);
+        Optional<CacheSnapshot> snapshot = sharedCacheStore.waitForSnapshot(name, isFresh.or(candidate ->
+                candidate.getVersion() > publishedVersion && candidate.getFingerprint().equals(fingerprint.get())));
+        if (snapshot.isPresent() && loadSnapshot(name, snapshot.get(), duckdbTableName)) {
+            return snapshot.get().getSourceVersion();
+        }
+        LOG.warn("No snapshot of %s is published by the node holding its lease; materialize it without publishing", name);
+        materialize.run();
+        return sourceVersion;
+    }
+
+    /**
+     * The nodes only share the snapshots of an object if it has the same fingerprint and sort keys in their mdls.
+     * The indexes are created by each node.
+     */
+    private static Optional<String> getSharedFingerprint(AccioMDL mdl, CacheInfo cacheInfo)
+    {
+        return ObjectFingerprints.of(mdl, cacheInfo.getName())
+                .map(fingerprint -> sha256().hashString(fingerprint + cacheInfo.getSortKeys(), UTF_8).toString());
+    }
+
+    /**
+     * A snapshot is fresh if it's taken from the same source version, or if it's published within the refresh time
+     * of the cache, i.e. by the node that refreshed the object first in the current round.
+     */
+    private static boolean isFresh(CacheSnapshot snapshot, CacheInfo cacheInfo, Optional<String> sourceVersion)
+    {
+        if (sourceVersion.isPresent() && sourceVersion.equals(snapshot.getSourceVersion())) {
+            return true;
+        }
+        long refreshTime = cacheInfo.getRefreshTime().toMillis();
+        return refreshTime > 0 && currentTimeMillis() - snapshot.getCreateTime() < refreshTime;
+    }
+
+    private boolean loadSnapshot(CatalogSchemaTableName name, CacheSnapshot snapshot, String duckdbTableName)
+    {
+        try {
+            // the rows are read in the order they're written, so the sorted cache stays sorted
+            duckdbClient.executeDDL(format("CREATE TABLE %s AS SELECT * FROM read_parquet(%s)",
+                    quote(duckdbTableName),
+                    quoteLiteral(sharedCacheStore.getFile(name, snapshot).toString())));
+            LOG.debug("Loaded version %s of %s published by %s", snapshot.getVersion(), name, snapshot.getOwner());
+            cacheStats.getLoadedSnapshots().update(1);
+            return true;
+        }
+        catch (RuntimeException e) {
+            LOG.warn(e, "Failed to load version %s of %s", snapshot.getVersion(), name);
+            duckdbClient.dropTableQuietly(duckdbTableName);
+            return false;
+        }
+    }
+
+    private void exportToParquet(String duckdbTableName, Path file)
+    {
+        duckdbClient.executeDDL(format("COPY %s TO %s (FORMAT PARQUET)", quote(duckdbTableName), quoteLiteral(file.toString())));
+    }
+
+    private Statement rewrite(AccioMDL mdl, CacheInfo cacheInfo, SessionContext sessionContext)
+    {
+        String accioRewritten = AccioPlanner.rewrite(
+                format("select * from %s", cacheInfo.getName()),
+                sessionContext,
+                mdl);
+        Statement parsedStatement = sqlParser.createStatement(accioRewritten, PARSE_AS_DECIMAL);
+        return extraRewriter.rewrite(parsedStatement);
+    }
+
+    private Optional<String> getSourceVersionQuietly(Statement statement, SessionContext sessionContext, CacheInfo cacheInfo)
+    {
+        try {
+            return getSourceVersion(statement, sessionContext);
+        }
+        catch (Exception e) {
+            LOG.warn(e, "Failed to get the source version of %s", cacheInfo.getName());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * If every object the cache info is built on is cached, compute it from those duckdb tables
+     * instead of querying the data source again.
+     */
+    private Optional<String> rewriteToCachedUpstreams(AccioMDL mdl, CacheInfo cacheInfo, SessionContext sessionContext, Set<String> upstreams)
+    {
+        if (upstreams.isEmpty()) {
+            return Optional.empty();
+        }
+        QueryDescriptor descriptor = QueryDescriptor.of(cacheInfo.getName(), mdl, sessionContext);
+        if (!upstreams.containsAll(descriptor.getRequiredObjects())) {
+            return Optional.empty();
+        }
+        return CacheRewrite.rewrite(sessionContext, SqlFormatter.formatSql(descriptor.getQuery()), cachedTableMapping::convertToCachedTable, mdl);
+    }
+
     private void createCache(
             AccioMDL mdl,
             CacheInfo cacheInfo,
@@ -171,15 +473,23 @@ public class CacheManager
             Statement rewrittenStatement,
             String duckdbTableName)
     {
+        String statement = sqlConverter.convert(getFormattedSql(rewrittenStatement, sqlParser), sessionContext);
+        if (cacheService.loadCacheToDuckdb(cacheInfo, statement, duckdbTableName)) {
+            // the rows are loaded in the order they arrive, sort them in place afterwards
+            if (!cacheInfo.getSortKeys().isEmpty()) {
+                sortTable(duckdbTableName, cacheInfo.getSortKeys());
+            }
+            return;
+        }
         cacheService.createCache(
                         mdl.getCatalog(),
                         mdl.getSchema(),
                         cacheInfo.getName(),
-                        sqlConverter.convert(getFormattedSql(rewrittenStatement, sqlParser), sessionContext))
+                        statement)
                 .ifPresent(pathInfo -> {
                     try {
                         tempFileLocations.add(pathInfo);
-                        refreshCacheInDuckDB(pathInfo.getPath() + "/" + pathInfo.getFilePattern(), duckdbTableName);
+                        refreshCacheInDuckDB(pathInfo.getPath() + "/" + pathInfo.getFilePattern(), duckdbTableName, cacheInfo.getSortKeys());
                     }
                     finally {
                         removeTempFile(pathInfo);
@@ -187,9 +497,51 @@ public class CacheManager
                 });
     }
 
-    private void refreshCacheInDuckDB(String path, String tableName)
+    private void refreshCacheInDuckDB(String path, String tableName, List<String> sortKeys)
     {
-        duckdbClient.executeDDL(cacheStorageConfig.generateDuckdbParquetStatement(path, tableName));
+        duckdbClient.executeDDL(cacheStorageConfig.generateDuckdbParquetStatement(path, tableName, sortKeys));
+    }
+
+    private void sortTable(String tableName, List<String> sortKeys)
+    {
+        String sortedTableName = tableName + "_sorted";
+        duckdbClient.executeDDL(format("BEGIN TRANSACTION;\n" +
+                        "CREATE TABLE %1$s AS SELECT * FROM %2$s%3$s;\n" +
+                        "DROP TABLE %2$s;\n" +
+                        "ALTER TABLE %1$s RENAME TO %2$s;\n" +
+                        "COMMIT;\n",
+                quote(sortedTableName),
+                quote(tableName),
+                orderBy(sortKeys)));
+    }
+
+    /**
+     * Index the lookup columns of the cache. The cache table is never updated after it's created,
+     * so the index only costs memory and the time to build it once per refresh.
+     */
+    private void createIndexes(CacheInfo cacheInfo, String tableName)
+    {
+        for (String column : cacheInfo.getIndexColumns()) {
+            duckdbClient.executeDDL(format("CREATE INDEX %s ON %s (%s)", quote(tableName + "_" + column + "_idx"), quote(tableName), quote(column)));
+        }
+    }
+
+    private static String orderBy(List<String> sortKeys)
+    {
+        if (sortKeys.isEmpty()) {
+            return "";
+        }
+        return sortKeys.stream().map(CacheManager::quote).collect(joining(", ", " ORDER BY ", ""));
+    }
+
+    private static String quote(String identifier)
+    {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String quoteLiteral(String value)
+    {
+        return "'" + value.replace("'", "''") + "'";
     }
 
     public void removeCacheIfExist(String catalogName, String schemaName)
@@ -217,6 +569,11 @@ public class CacheManager
                 .filter(catalogSchemaTableName -> catalogSchemaTableName.getCatalogName().equals(catalogName)
                         && catalogSchemaTableName.getSchemaTableName().getSchemaName().equals(schemaName))
                 .forEach(tasks::remove);
+
+        sourceVersions.keySet().removeIf(catalogSchemaTableName -> catalogSchemaTableName.getCatalogName().equals(catalogName)
+                && catalogSchemaTableName.getSchemaTableName().getSchemaName().equals(schemaName));
+
+        removeDateSpineCache(catalogName, schemaName);
     }
 
     public void removeCacheIfExist(CatalogSchemaTableName catalogSchemaTableName)
@@ -232,6 +589,7 @@ public class CacheManager
         });
 
         tasks.remove(catalogSchemaTableName);
+        sourceVersions.remove(catalogSchemaTableName);
     }
 
     public boolean cacheScheduledFutureExists(CatalogSchemaTableName catalogSchemaTableName)
@@ -265,6 +623,32 @@ public class CacheManager
         }
     }
 
+    /**
+     * Create the date spine of the mdl in duckdb unless it's already there, so that the queries joining it with
+     * cached objects run in duckdb too.
+     */
+    public void cacheDateSpine(AccioMDL mdl)
+    {
+        String duckdbTableName = DateSpineInfo.getTableName(mdl.getDateSpine());
+        duckdbClient.executeDDL(format("CREATE TABLE IF NOT EXISTS %s AS %s",
+                quote(duckdbTableName),
+                SqlFormatter.formatSql(createDateSpineQuery(mdl.getDateSpine()), DUCKDB)));
+        cachedTableMapping.putDateSpineTable(catalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), DateSpineInfo.NAME), duckdbTableName);
+    }
+
+    /**
+     * Stop running the queries on the date spine of the catalog and schema in duckdb, and drop its table unless
+     * another schema has the same date spine.
+     */
+    public void removeDateSpineCache(String catalogName, String schemaName)
+    {
+        // the empty mdl has no catalog and schema, and no date spine in duckdb
+        if (catalogName.isEmpty() || schemaName.isEmpty()) {
+            return;
+        }
+        cachedTableMapping.removeDateSpineTable(catalogSchemaTableName(catalogName, schemaName, DateSpineInfo.NAME));
+    }
+
     public List<TaskInfo> createTaskUntilDone(AccioMDL mdl)
     {
         return createTask(mdl)
@@ -279,10 +663,100 @@ public class CacheManager
                 .join();
     }
 
+    /**
+     * Bring the caches of the old mdl up to date with the new one and wait until it's done. A cache is kept when
+     * its object has the same fingerprint and cache settings in both mdls, and only its refresh is rescheduled
+     * against the new mdl. The caches of changed or new objects are rebuilt and those of removed objects dropped.
+     * Everything is rebuilt if the catalog or the schema changes.
+     *
+     * @return the task info of the rebuilt caches
+     */
+    public List<TaskInfo> reloadCacheUntilDone(AccioMDL oldMdl, AccioMDL newMdl)
+    {
+        if (!oldMdl.getCatalog().equals(newMdl.getCatalog()) || !oldMdl.getSchema().equals(newMdl.getSchema())) {
+            removeCacheIfExist(oldMdl.getCatalog(), oldMdl.getSchema());
+            return createTaskUntilDone(newMdl);
+        }
+
+        Map<String, CacheInfo> oldCacheInfos = oldMdl.listCached().stream().collect(toImmutableMap(CacheInfo::getName, identity()));
+        Set<String> newCacheNames = newMdl.listCached().stream().map(CacheInfo::getName).collect(toImmutableSet());
+        oldCacheInfos.keySet().stream()
+                .filter(name -> !newCacheNames.contains(name))
+                .forEach(name -> removeCacheIfExist(catalogSchemaTableName(oldMdl.getCatalog(), oldMdl.getSchema(), name)));
+
+        List<CatalogSchemaTableName> rebuilt = new ArrayList<>();
+        for (CacheInfo cacheInfo : getDependencyGraph(newMdl).getRefreshOrder()) {
+            CatalogSchemaTableName name = catalogSchemaTableName(newMdl.getCatalog(), newMdl.getSchema(), cacheInfo.getName());
+            Optional<Task> task = Optional.ofNullable(tasks.get(name));
+            if (isUnchanged(oldMdl, newMdl, oldCacheInfos.get(cacheInfo.getName()), cacheInfo)) {
+                // a running task builds the same table, but schedules its refresh against the old mdl when it's done
+                task.ifPresent(Task::waitUntilDone);
+                if (Optional.ofNullable(cachedTableMapping.get(name)).flatMap(CacheInfoPair::getTableName).isPresent()) {
+                    LOG.debug("Keep the cache of %s; it's unchanged in the new mdl", cacheInfo.getName());
+                    scheduleRefresh(newMdl, cacheInfo);
+                    continue;
+                }
+            }
+            task.ifPresent(Task::waitUntilDone);
+            createTask(newMdl, cacheInfo).join();
+            rebuilt.add(name);
+        }
+        return rebuilt.stream()
+                .map(name -> {
+                    tasks.get(name).waitUntilDone();
+                    return getTaskInfo(name).join();
+                })
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(toList());
+    }
+
+    /**
+     * Stop reading the caches of the objects the new mdl changes or removes, so that the queries of the new mdl
+     * don't read a cache built from the old one while {@link #reloadCacheUntilDone} rebuilds it. It's called
+     * before the new mdl is published.
+     */
+    public void invalidateChangedCaches(AccioMDL oldMdl, AccioMDL newMdl)
+    {
+        if (!oldMdl.getCatalog().equals(newMdl.getCatalog()) || !oldMdl.getSchema().equals(newMdl.getSchema())) {
+            // the new mdl reads none of the caches of the old schema
+            return;
+        }
+        Map<String, CacheInfo> newCacheInfos = newMdl.listCached().stream().collect(toImmutableMap(CacheInfo::getName, identity()));
+        for (CacheInfo oldCacheInfo : oldMdl.listCached()) {
+            if (isUnchanged(oldMdl, newMdl, oldCacheInfo, newCacheInfos.get(oldCacheInfo.getName()))) {
+                continue;
+            }
+            CatalogSchemaTableName name = catalogSchemaTableName(oldMdl.getCatalog(), oldMdl.getSchema(), oldCacheInfo.getName());
+            // a running task maps the table it builds from the old mdl and schedules its refresh when it's done
+            Optional.ofNullable(tasks.get(name)).ifPresent(Task::waitUntilDone);
+            Optional.ofNullable(cacheScheduledFutures.remove(name)).ifPresent(future -> future.cancel(true));
+            Optional.ofNullable(cachedTableMapping.get(name)).ifPresent(cacheInfoPair -> {
+                cachedTableMapping.remove(name);
+                cacheInfoPair.getTableName().ifPresent(duckdbClient::dropTableQuietly);
+            });
+        }
+    }
+
+    private static boolean isUnchanged(AccioMDL oldMdl, AccioMDL newMdl, CacheInfo oldCacheInfo, CacheInfo newCacheInfo)
+    {
+        return oldCacheInfo != null && newCacheInfo != null
+                && hasSameCacheSettings(oldCacheInfo, newCacheInfo)
+                && ObjectFingerprints.of(oldMdl, oldCacheInfo.getName()).flatMap(fingerprint ->
+                        ObjectFingerprints.of(newMdl, newCacheInfo.getName()).map(fingerprint::equals)).orElse(false);
+    }
+
+    private static boolean hasSameCacheSettings(CacheInfo left, CacheInfo right)
+    {
+        return left.getRefreshTime().equals(right.getRefreshTime())
+                && left.getSortKeys().equals(right.getSortKeys())
+                && left.getIndexColumns().equals(right.getIndexColumns());
+    }
+
     public CompletableFuture<List<TaskInfo>> createTask(AccioMDL mdl)
     {
         return supplyAsync(() ->
-                mdl.listCached().stream().map(cacheInfo -> createTask(mdl, cacheInfo).join()).collect(toList()));
+                getDependencyGraph(mdl).getRefreshOrder().stream().map(cacheInfo -> createTask(mdl, cacheInfo).join()).collect(toList()));
     }
 
     public CompletableFuture<TaskInfo> createTask(AccioMDL mdl, CacheInfo cacheInfo)
@@ -290,6 +764,7 @@ public class CacheManager
         return supplyAsync(() -> {
             CatalogSchemaTableName catalogSchemaTableName = new CatalogSchemaTableName(mdl.getCatalog(), mdl.getSchema(), cacheInfo.getName());
             TaskInfo taskInfo = new TaskInfo(mdl.getCatalog(), mdl.getSchema(), cacheInfo.getName(), RUNNING, Instant.now());
+            Optional.ofNullable(tasks.get(catalogSchemaTableName)).ifPresent(previous -> taskInfo.countRefresh(previous.getTaskInfo()));
             // To fix flaky test, we pass value to tasks instead of a reference;
             Task task = new Task(TaskInfo.copyFrom(taskInfo), handleCache(mdl, cacheInfo));
             tasks.put(catalogSchemaTableName, task);
@@ -362,4 +837,35 @@ public class CacheManager
             completableFuture.join();
         }
     }
+
+    private static class SourceTableCollector
+            extends DefaultTraversalVisitor<Void>
+    {
+        private final Set<QualifiedName> tables = new HashSet<>();
+        private final Set<String> withQueryNames = new HashSet<>();
+
+        @Override
+        protected Void visitTable(Table node, Void context)
+        {
+            tables.add(node.getName());
+            return null;
+        }
+
+        @Override
+        protected Void visitWithQuery(WithQuery node, Void context)
+        {
+            withQueryNames.add(node.getName().getValue());
+            return super.visitWithQuery(node, context);
+        }
+
+        public Set<QualifiedName> getTables()
+        {
+            return tables;
+        }
+
+        public Set<String> getWithQueryNames()
+        {
+            return withQueryNames;
+        }
+    }
 }
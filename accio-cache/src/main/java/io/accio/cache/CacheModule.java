@@ -15,11 +15,15 @@
 package io.accio.cache;
 
 import com.google.inject.Binder;
+import com.google.inject.Provides;
 import com.google.inject.Scopes;
+import com.google.inject.Singleton;
 import io.accio.base.client.duckdb.DuckdbClient;
+import io.accio.base.client.duckdb.DuckdbConfig;
 import io.airlift.configuration.AbstractConfigurationAwareModule;
 
 import static io.airlift.configuration.ConfigBinder.configBinder;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class CacheModule
         extends AbstractConfigurationAwareModule
@@ -29,8 +33,19 @@ public class CacheModule
     {
         configBinder(binder).bindConfig(DuckdbS3StyleStorageConfig.class);
         binder.bind(CacheStorageConfig.class).to(DuckdbS3StyleStorageConfig.class).in(Scopes.SINGLETON);
+        configBinder(binder).bindConfig(DuckdbConfig.class);
+        configBinder(binder).bindConfig(SharedCacheConfig.class);
+        binder.bind(SharedCacheStore.class).in(Scopes.SINGLETON);
+        binder.bind(CacheStats.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(CacheStats.class).withGeneratedName();
         binder.bind(CacheManager.class).in(Scopes.SINGLETON);
-        binder.bind(DuckdbClient.class).in(Scopes.SINGLETON);
         binder.bind(CachedTableMapping.class).to(DefaultCachedTableMapping.class).in(Scopes.SINGLETON);
     }
+
+    @Provides
+    @Singleton
+    public static DuckdbClient provideDuckdbClient(DuckdbConfig config)
+    {
+        return new DuckdbClient(config);
+    }
 }
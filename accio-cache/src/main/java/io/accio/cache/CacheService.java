@@ -13,11 +13,36 @@
  */
 package io.accio.cache;
 
+import io.accio.base.CatalogSchemaTableName;
+import io.accio.base.dto.CacheInfo;
+
 import java.util.Optional;
+import java.util.Set;
 
 public interface CacheService
 {
     Optional<PathInfo> createCache(String catalog, String schema, String name, String statement);
 
+    /**
+     * Load the result of the statement into the given duckdb table without staging any file.
+     *
+     * @return false if the data source can't stream into duckdb and {@link #createCache} should be used instead.
+     */
+    default boolean loadCacheToDuckdb(CacheInfo cacheInfo, String statement, String duckdbTableName)
+    {
+        return false;
+    }
+
+    /**
+     * A cheap signal of the data in the given source tables, e.g. their last modified time. The scheduled refresh
+     * of a cache is skipped if the signal is the same as the one taken when the cache was created.
+     *
+     * @return empty if the signal is unknown for any of the tables, then the cache is always refreshed.
+     */
+    default Optional<String> getSourceVersion(Set<CatalogSchemaTableName> sourceTables)
+    {
+        return Optional.empty();
+    }
+
     void deleteTarget(PathInfo pathInfo);
 }
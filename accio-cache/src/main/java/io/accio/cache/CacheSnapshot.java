@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The manifest of a cached object published to the shared directory.
+ */
+public class CacheSnapshot
+{
+    private final long version;
+    private final String fingerprint;
+    private final Optional<String> sourceVersion;
+    private final String file;
+    private final String owner;
+    private final long createTime;
+
+    @JsonCreator
+    public CacheSnapshot(
+            @JsonProperty("version") long version,
+            @JsonProperty("fingerprint") String fingerprint,
+            @JsonProperty("sourceVersion") Optional<String> sourceVersion,
+            @JsonProperty("file") String file,
+            @JsonProperty("owner") String owner,
+            @JsonProperty("createTime") long createTime)
+    {
+        this.version = version;
+        this.fingerprint = requireNonNull(fingerprint, "fingerprint is null");
+        this.sourceVersion = requireNonNull(sourceVersion, "sourceVersion is null");
+        this.file = requireNonNull(file, "file is null");
+        this.owner = requireNonNull(owner, "owner is null");
+        this.createTime = createTime;
+    }
+
+    /**
+     * The version of the snapshot, increased by one each time the object is published.
+     */
+    @JsonProperty
+    public long getVersion()
+    {
+        return version;
+    }
+
+    /**
+     * The fingerprint of the object and its cache settings in the mdl the snapshot is created from.
+     */
+    @JsonProperty
+    public String getFingerprint()
+    {
+        return fingerprint;
+    }
+
+    @JsonProperty
+    public Optional<String> getSourceVersion()
+    {
+        return sourceVersion;
+    }
+
+    /**
+     * The parquet file of the snapshot, relative to the directory of the object.
+     */
+    @JsonProperty
+    public String getFile()
+    {
+        return file;
+    }
+
+    @JsonProperty
+    public String getOwner()
+    {
+        return owner;
+    }
+
+    @JsonProperty
+    public long getCreateTime()
+    {
+        return createTime;
+    }
+}
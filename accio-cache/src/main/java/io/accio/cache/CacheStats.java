@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.TimeStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The statistics of {@link CacheManager}: the queries served from duckdb and the refreshes of the cached objects.
+ */
+public class CacheStats
+{
+    private final TimeStat query = new TimeStat(MILLISECONDS);
+    private final CounterStat queryFailures = new CounterStat();
+    private final TimeStat refresh = new TimeStat(MILLISECONDS);
+    private final CounterStat refreshFailures = new CounterStat();
+    private final CounterStat skippedRefreshes = new CounterStat();
+    private final CounterStat publishedSnapshots = new CounterStat();
+    private final CounterStat loadedSnapshots = new CounterStat();
+
+    /**
+     * The time to execute a query in duckdb until its first row can be read.
+     */
+    @Managed
+    @Nested
+    public TimeStat getQuery()
+    {
+        return query;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getQueryFailures()
+    {
+        return queryFailures;
+    }
+
+    /**
+     * The time to load a cached object into duckdb, including waiting for its upstream objects.
+     */
+    @Managed
+    @Nested
+    public TimeStat getRefresh()
+    {
+        return refresh;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRefreshFailures()
+    {
+        return refreshFailures;
+    }
+
+    /**
+     * The scheduled refreshes skipped because the source was unchanged.
+     */
+    @Managed
+    @Nested
+    public CounterStat getSkippedRefreshes()
+    {
+        return skippedRefreshes;
+    }
+
+    /**
+     * The snapshots of the cached objects this node published to the shared directory.
+     */
+    @Managed
+    @Nested
+    public CounterStat getPublishedSnapshots()
+    {
+        return publishedSnapshots;
+    }
+
+    /**
+     * The snapshots of the cached objects this node loaded from the shared directory instead of the data source.
+     */
+    @Managed
+    @Nested
+    public CounterStat getLoadedSnapshots()
+    {
+        return loadedSnapshots;
+    }
+
+    public Map<String, Object> snapshot()
+    {
+        return ImmutableMap.<String, Object>builder()
+                .put("query", query.snapshot())
+                .put("queryFailures", queryFailures.snapshot())
+                .put("refresh", refresh.snapshot())
+                .put("refreshFailures", refreshFailures.snapshot())
+                .put("skippedRefreshes", skippedRefreshes.snapshot())
+                .put("publishedSnapshots", publishedSnapshots.snapshot())
+                .put("loadedSnapshots", loadedSnapshots.snapshot())
+                .build();
+    }
+}
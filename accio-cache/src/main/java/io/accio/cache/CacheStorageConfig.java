@@ -13,7 +13,9 @@
  */
 package io.accio.cache;
 
+import java.util.List;
+
 public interface CacheStorageConfig
 {
-    String generateDuckdbParquetStatement(String path, String tableName);
+    String generateDuckdbParquetStatement(String path, String tableName, List<String> sortKeys);
 }
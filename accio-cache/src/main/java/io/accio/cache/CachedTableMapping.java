@@ -32,6 +32,16 @@ public interface CachedTableMapping
 
     Optional<String> convertToCachedTable(CatalogSchemaTableName catalogSchemaTableName);
 
+    /**
+     * Map the date spine of a catalog and schema to the duckdb table it's cached in.
+     */
+    void putDateSpineTable(CatalogSchemaTableName dateSpine, String tableName);
+
+    /**
+     * Stop mapping the date spine of a catalog and schema, and drop its table unless another schema shares it.
+     */
+    void removeDateSpineTable(CatalogSchemaTableName dateSpine);
+
     Set<Map.Entry<CatalogSchemaTableName, CacheInfoPair>> entrySet();
 
     List<CacheInfoPair> getCacheInfoPairs(String catalogName, String schemaName);
@@ -33,6 +33,7 @@ public class DefaultCachedTableMapping
 {
     private final DuckdbClient duckdbClient;
     private final ConcurrentMap<CatalogSchemaTableName, CacheInfoPair> cachedTableMapping = new ConcurrentHashMap<>();
+    private final ConcurrentMap<CatalogSchemaTableName, String> dateSpineTables = new ConcurrentHashMap<>();
 
     @Inject
     public DefaultCachedTableMapping(DuckdbClient duckdbClient)
@@ -77,7 +78,35 @@ public class DefaultCachedTableMapping
     @Override
     public Optional<String> convertToCachedTable(CatalogSchemaTableName catalogSchemaTableName)
     {
-        return cachedTableMapping.get(catalogSchemaTableName).getTableName();
+        CacheInfoPair cacheInfoPair = cachedTableMapping.get(catalogSchemaTableName);
+        if (cacheInfoPair == null) {
+            return Optional.ofNullable(dateSpineTables.get(catalogSchemaTableName));
+        }
+        return cacheInfoPair.getTableName();
+    }
+
+    @Override
+    public void putDateSpineTable(CatalogSchemaTableName dateSpine, String tableName)
+    {
+        synchronized (dateSpineTables) {
+            dropUnlessShared(dateSpineTables.put(dateSpine, tableName));
+        }
+    }
+
+    @Override
+    public void removeDateSpineTable(CatalogSchemaTableName dateSpine)
+    {
+        synchronized (dateSpineTables) {
+            dropUnlessShared(dateSpineTables.remove(dateSpine));
+        }
+    }
+
+    // the table of a date spine is shared by the schemas with the same date spine
+    private void dropUnlessShared(String dateSpineTable)
+    {
+        if (dateSpineTable != null && !dateSpineTables.containsValue(dateSpineTable)) {
+            duckdbClient.dropTableQuietly(dateSpineTable);
+        }
     }
 
     @Override
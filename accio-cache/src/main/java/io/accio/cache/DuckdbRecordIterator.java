@@ -16,8 +16,10 @@ package io.accio.cache;
 import com.google.common.collect.ImmutableList;
 import io.accio.base.ConnectorRecordIterator;
 import io.accio.base.Parameter;
-import io.accio.base.client.AutoCloseableIterator;
-import io.accio.base.client.Client;
+import io.accio.base.QueryCancellation;
+import io.accio.base.batch.ObjectVector;
+import io.accio.base.batch.RecordBatch;
+import io.accio.base.client.duckdb.DuckdbClient;
 import io.accio.base.client.jdbc.JdbcRecordIterator;
 import io.accio.base.type.PGType;
 import io.accio.base.type.TimestampType;
@@ -35,24 +37,30 @@ public class DuckdbRecordIterator
         implements ConnectorRecordIterator
 {
     private final List<PGType> types;
-    private final AutoCloseableIterator<Object[]> recordIterator;
+    private final JdbcRecordIterator recordIterator;
 
-    public static DuckdbRecordIterator of(Client client, String sql, List<Parameter> parameters)
+    public static DuckdbRecordIterator of(DuckdbClient client, String sql, List<Parameter> parameters)
             throws SQLException
     {
-        return new DuckdbRecordIterator(client, sql, parameters);
+        return of(client, sql, parameters, new QueryCancellation());
     }
 
-    private DuckdbRecordIterator(Client client, String sql, List<Parameter> parameters)
+    public static DuckdbRecordIterator of(DuckdbClient client, String sql, List<Parameter> parameters, QueryCancellation cancellation)
+            throws SQLException
+    {
+        return new DuckdbRecordIterator(client, sql, parameters, cancellation);
+    }
+
+    private DuckdbRecordIterator(DuckdbClient client, String sql, List<Parameter> parameters, QueryCancellation cancellation)
             throws SQLException
     {
         requireNonNull(client, "client is null");
         requireNonNull(sql, "sql is null");
         requireNonNull(parameters, "parameters is null");
-        JdbcRecordIterator jdbcRecordIterator = JdbcRecordIterator.of(client, sql, parameters);
-        this.recordIterator = jdbcRecordIterator;
+        // the query runs with a pooled connection and reuses its prepared statement
+        this.recordIterator = client.executeQuery(sql, parameters, cancellation);
 
-        ResultSetMetaData resultSetMetaData = jdbcRecordIterator.getResultSetMetaData();
+        ResultSetMetaData resultSetMetaData = recordIterator.getResultSetMetaData();
         ImmutableList.Builder<PGType> typeBuilder = ImmutableList.builder();
         for (int i = 1; i <= resultSetMetaData.getColumnCount(); i++) {
             int columnType = resultSetMetaData.getColumnType(i);
@@ -90,6 +98,19 @@ public class DuckdbRecordIterator
                 .toArray();
     }
 
+    @Override
+    public RecordBatch nextBatch(int maxRows)
+    {
+        RecordBatch batch = recordIterator.nextBatch(types, maxRows);
+        for (int column = 0; column < types.size(); column++) {
+            PGType<?> pgType = types.get(column);
+            if (pgType instanceof TimestampType) {
+                batch = batch.withColumn(column, ((ObjectVector) batch.getColumn(column)).map(value -> convertValue(pgType, value)));
+            }
+        }
+        return batch;
+    }
+
     private Object convertValue(PGType<?> pgType, Object value)
     {
         try {
@@ -18,9 +18,11 @@ import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.configuration.ConfigSecuritySensitive;
 
+import java.util.List;
 import java.util.Optional;
 
 import static java.lang.String.format;
+import static java.util.stream.Collectors.joining;
 
 public class DuckdbS3StyleStorageConfig
         implements CacheStorageConfig
@@ -100,7 +102,7 @@ public class DuckdbS3StyleStorageConfig
     }
 
     @Override
-    public String generateDuckdbParquetStatement(String path, String tableName)
+    public String generateDuckdbParquetStatement(String path, String tableName, List<String> sortKeys)
     {
         // ref: https://github.com/duckdb/duckdb/issues/1403
         StringBuilder sb = new StringBuilder("INSTALL httpfs;\n" +
@@ -110,7 +112,11 @@ public class DuckdbS3StyleStorageConfig
         secretKey.ifPresent(secretKey -> sb.append(format("SET s3_secret_access_key='%s';\n", secretKey)));
         sb.append(format("SET s3_url_style='%s';\n", urlStyle));
         sb.append("BEGIN TRANSACTION;\n");
-        sb.append(format("CREATE TABLE \"%s\" AS SELECT * FROM read_parquet('s3://%s');", tableName, path));
+        sb.append(format("CREATE TABLE \"%s\" AS SELECT * FROM read_parquet('s3://%s')", tableName, path));
+        if (!sortKeys.isEmpty()) {
+            sb.append(sortKeys.stream().map(key -> "\"" + key.replace("\"", "\"\"") + "\"").collect(joining(", ", " ORDER BY ", "")));
+        }
+        sb.append(";");
         sb.append("COMMIT;\n");
         return sb.toString();
     }
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDuration;
+
+import javax.validation.constraints.NotNull;
+
+import java.util.Optional;
+
+import static java.util.UUID.randomUUID;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class SharedCacheConfig
+{
+    private Optional<String> directory = Optional.empty();
+    private String nodeId = randomUUID().toString();
+    private Duration leaseDuration = new Duration(10, MINUTES);
+    private Duration pollInterval = new Duration(1, SECONDS);
+
+    @Config("cache.shared.directory")
+    @ConfigDescription("The directory the nodes publish the cached objects to, e.g. a mounted bucket; the caches aren't shared if it's not set")
+    public SharedCacheConfig setDirectory(String directory)
+    {
+        this.directory = Optional.of(directory);
+        return this;
+    }
+
+    public Optional<String> getDirectory()
+    {
+        return directory;
+    }
+
+    @Config("cache.shared.node-id")
+    @ConfigDescription("The id of this node in the leases of the shared caches; default is a random id")
+    public SharedCacheConfig setNodeId(String nodeId)
+    {
+        this.nodeId = nodeId;
+        return this;
+    }
+
+    @NotNull
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    @Config("cache.shared.lease-duration")
+    @ConfigDescription("How long a node can take to publish a cached object before another node takes it over; default is 10m")
+    public SharedCacheConfig setLeaseDuration(Duration leaseDuration)
+    {
+        this.leaseDuration = leaseDuration;
+        return this;
+    }
+
+    @MinDuration("1s")
+    public Duration getLeaseDuration()
+    {
+        return leaseDuration;
+    }
+
+    @Config("cache.shared.poll-interval")
+    @ConfigDescription("How often a node checks whether the cached object it waits for is published; default is 1s")
+    public SharedCacheConfig setPollInterval(Duration pollInterval)
+    {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    @MinDuration("1ms")
+    public Duration getPollInterval()
+    {
+        return pollInterval;
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import io.accio.base.CatalogSchemaTableName;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+
+import javax.inject.Inject;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+import static java.util.UUID.randomUUID;
+
+/**
+ * The cached objects shared by the nodes through a directory, e.g. a bucket mounted on every node. The node holding
+ * the lease of an object materializes it and publishes a parquet snapshot of it, the other nodes load the published
+ * snapshot instead of querying the data source again. The directory of an object looks like
+ * <pre>
+ * catalog/schema/name/lease                the node materializing the object and until when
+ * catalog/schema/name/manifest.json        the latest published {@link CacheSnapshot}
+ * catalog/schema/name/v1-token/data.parquet the data of each version
+ * </pre>
+ * The lease is created exclusively and an expired one is taken over by renaming it, so the directory must support
+ * both atomically. The lease isn't renewed: a node taking longer than the lease duration doesn't publish its
+ * version, as the lease may have been taken over by another node.
+ */
+public class SharedCacheStore
+{
+    private static final Logger LOG = Logger.get(SharedCacheStore.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new Jdk8Module())
+            .disable(FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final String LEASE_FILE = "lease";
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String DATA_FILE = "data.parquet";
+
+    private final Optional<Path> directory;
+    private final String nodeId;
+    private final Duration leaseDuration;
+    private final Duration pollInterval;
+
+    @Inject
+    public SharedCacheStore(SharedCacheConfig config)
+    {
+        requireNonNull(config, "config is null");
+        this.directory = config.getDirectory().map(Paths::get);
+        this.nodeId = requireNonNull(config.getNodeId(), "nodeId is null");
+        this.leaseDuration = requireNonNull(config.getLeaseDuration(), "leaseDuration is null");
+        this.pollInterval = requireNonNull(config.getPollInterval(), "pollInterval is null");
+    }
+
+    public boolean isEnabled()
+    {
+        return directory.isPresent();
+    }
+
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    /**
+     * @return the latest published snapshot of the object, or empty if there is none or it can't be read
+     */
+    public Optional<CacheSnapshot> getSnapshot(CatalogSchemaTableName name)
+    {
+        Path manifestFile = getDirectory(name).resolve(MANIFEST_FILE);
+        if (!Files.exists(manifestFile)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(MAPPER.readValue(Files.readAllBytes(manifestFile), CacheSnapshot.class));
+        }
+        catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.warn(e, "Failed to read the manifest %s", manifestFile);
+            return Optional.empty();
+        }
+    }
+
+    public Path getFile(CatalogSchemaTableName name, CacheSnapshot snapshot)
+    {
+        return getDirectory(name).resolve(snapshot.getFile());
+    }
+
+    /**
+     * Take the lease of the object, unless another node holds it and the lease isn't expired.
+     */
+    public Optional<Lease> tryLease(CatalogSchemaTableName name)
+    {
+        Path leaseFile = getDirectory(name).resolve(LEASE_FILE);
+        try {
+            Files.createDirectories(leaseFile.getParent());
+            if (isExpired(leaseFile) && !breakLease(leaseFile)) {
+                return Optional.empty();
+            }
+            LeaseInfo leaseInfo = new LeaseInfo(nodeId, randomUUID().toString().replace("-", ""), currentTimeMillis() + leaseDuration.toMillis());
+            Files.write(leaseFile, MAPPER.writeValueAsBytes(leaseInfo), CREATE_NEW, WRITE);
+            return Optional.of(new Lease(name, leaseFile, leaseInfo));
+        }
+        catch (FileAlreadyExistsException e) {
+            return Optional.empty();
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.warn(e, "Failed to take the lease %s", leaseFile);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Publish a new version of the object under the lease. The writer writes the parquet file of the snapshot to the
+     * given path. Only the new and the previous versions are kept, other nodes may still be loading the previous one.
+     *
+     * @return the published snapshot, or empty if the lease is lost or the snapshot can't be written
+     */
+    public Optional<CacheSnapshot> publish(Lease lease, String fingerprint, Optional<String> sourceVersion, Consumer<Path> writer)
+    {
+        CatalogSchemaTableName name = lease.getName();
+        Path objectDirectory = getDirectory(name);
+        long version = getSnapshot(name).map(CacheSnapshot::getVersion).orElse(0L) + 1;
+        // the token keeps the version apart from one written by a node whose lease has expired
+        Path versionDirectory = objectDirectory.resolve(format("v%s-%s", version, lease.getToken()));
+        try {
+            Files.createDirectories(versionDirectory);
+            writer.accept(versionDirectory.resolve(DATA_FILE));
+            if (!lease.isHeld()) {
+                LOG.warn("The lease of %s is taken over by another node, skip publishing version %s", name, version);
+                deleteRecursively(versionDirectory, ALLOW_INSECURE);
+                return Optional.empty();
+            }
+            CacheSnapshot snapshot = new CacheSnapshot(
+                    version,
+                    fingerprint,
+                    sourceVersion,
+                    objectDirectory.relativize(versionDirectory.resolve(DATA_FILE)).toString(),
+                    nodeId,
+                    currentTimeMillis());
+            writeAtomically(objectDirectory.resolve(MANIFEST_FILE), MAPPER.writeValueAsBytes(snapshot));
+            deleteVersionsBefore(objectDirectory, version - 1);
+            return Optional.of(snapshot);
+        }
+        catch (IOException | RuntimeException e) {
+            LOG.warn(e, "Failed to publish version %s of %s", version, name);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Wait until a snapshot accepted by the predicate is published, or the lease of the object is released or
+     * expires without one.
+     */
+    public Optional<CacheSnapshot> waitForSnapshot(CatalogSchemaTableName name, Predicate<CacheSnapshot> predicate)
+    {
+        Path leaseFile = getDirectory(name).resolve(LEASE_FILE);
+        while (true) {
+            // check the lease first, a snapshot is published before its lease is released
+            boolean leased = getExpireTime(leaseFile).map(expireTime -> expireTime >= currentTimeMillis()).orElse(false);
+            Optional<CacheSnapshot> snapshot = getSnapshot(name).filter(predicate);
+            if (snapshot.isPresent() || !leased) {
+                return snapshot;
+            }
+            try {
+                Thread.sleep(pollInterval.toMillis());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Optional.empty();
+            }
+        }
+    }
+
+    private Path getDirectory(CatalogSchemaTableName name)
+    {
+        checkState(directory.isPresent(), "shared cache directory is not set");
+        return directory.get()
+                .resolve(name.getCatalogName())
+                .resolve(name.getSchemaTableName().getSchemaName())
+                .resolve(name.getSchemaTableName().getTableName());
+    }
+
+    private boolean isExpired(Path leaseFile)
+    {
+        return getExpireTime(leaseFile).map(expireTime -> expireTime < currentTimeMillis()).orElse(false);
+    }
+
+    /**
+     * Move the expired lease aside so that a new one can be created. If another node took the lease over between
+     * the check and the move, the lease moved aside isn't expired and it's moved back.
+     *
+     * @return true if there is no lease anymore
+     */
+    private boolean breakLease(Path leaseFile)
+            throws IOException
+    {
+        Path expiredFile = leaseFile.resolveSibling(format("%s.%s.expired", LEASE_FILE, randomUUID()));
+        try {
+            Files.move(leaseFile, expiredFile, ATOMIC_MOVE);
+        }
+        catch (NoSuchFileException e) {
+            return true;
+        }
+        try {
+            if (!isExpired(expiredFile)) {
+                Files.move(expiredFile, leaseFile);
+                return false;
+            }
+            LOG.info("Take over the expired lease %s of %s", leaseFile, readLease(expiredFile).map(LeaseInfo::getOwner).orElse("unknown node"));
+            return true;
+        }
+        finally {
+            Files.deleteIfExists(expiredFile);
+        }
+    }
+
+    private Optional<Long> getExpireTime(Path leaseFile)
+    {
+        if (!Files.exists(leaseFile)) {
+            return Optional.empty();
+        }
+        Optional<LeaseInfo> leaseInfo = readLease(leaseFile);
+        if (leaseInfo.isPresent()) {
+            return Optional.of(leaseInfo.get().getExpireTime());
+        }
+        // the lease may be half written, count the lease duration from the time it's created
+        try {
+            return Optional.of(Files.getLastModifiedTime(leaseFile).toMillis() + leaseDuration.toMillis());
+        }
+        catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<LeaseInfo> readLease(Path leaseFile)
+    {
+        try {
+            return Optional.of(MAPPER.readValue(Files.readAllBytes(leaseFile), LeaseInfo.class));
+        }
+        catch (IOException | RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static void writeAtomically(Path file, byte[] content)
+            throws IOException
+    {
+        Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tempFile, content);
+            Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void deleteVersionsBefore(Path objectDirectory, long version)
+            throws IOException
+    {
+        List<Path> versionDirectories;
+        try (Stream<Path> paths = Files.list(objectDirectory)) {
+            versionDirectories = paths.filter(Files::isDirectory).collect(toImmutableList());
+        }
+        for (Path versionDirectory : versionDirectories) {
+            Optional<Long> directoryVersion = parseVersion(versionDirectory.getFileName().toString());
+            if (directoryVersion.isPresent() && directoryVersion.get() < version) {
+                deleteRecursively(versionDirectory, ALLOW_INSECURE);
+            }
+        }
+    }
+
+    private static Optional<Long> parseVersion(String directoryName)
+    {
+        int separator = directoryName.indexOf('-');
+        if (!directoryName.startsWith("v") || separator < 0) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(directoryName.substring(1, separator)));
+        }
+        catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The lease of an object taken by this node. Closing it releases the lease if it's still held.
+     */
+    public static class Lease
+            implements Closeable
+    {
+        private final CatalogSchemaTableName name;
+        private final Path leaseFile;
+        private final LeaseInfo leaseInfo;
+
+        private Lease(CatalogSchemaTableName name, Path leaseFile, LeaseInfo leaseInfo)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.leaseFile = requireNonNull(leaseFile, "leaseFile is null");
+            this.leaseInfo = requireNonNull(leaseInfo, "leaseInfo is null");
+        }
+
+        public CatalogSchemaTableName getName()
+        {
+            return name;
+        }
+
+        private String getToken()
+        {
+            return leaseInfo.getToken();
+        }
+
+        public boolean isHeld()
+        {
+            return leaseInfo.getExpireTime() >= currentTimeMillis()
+                    && readLease(leaseFile).map(current -> current.getToken().equals(leaseInfo.getToken())).orElse(false);
+        }
+
+        @Override
+        public void close()
+        {
+            try {
+                if (readLease(leaseFile).map(current -> current.getToken().equals(leaseInfo.getToken())).orElse(false)) {
+                    Files.deleteIfExists(leaseFile);
+                }
+            }
+            catch (IOException e) {
+                LOG.warn(e, "Failed to release the lease %s", leaseFile);
+            }
+        }
+    }
+
+    private static class LeaseInfo
+    {
+        private final String owner;
+        private final String token;
+        private final long expireTime;
+
+        @JsonCreator
+        public LeaseInfo(
+                @JsonProperty("owner") String owner,
+                @JsonProperty("token") String token,
+                @JsonProperty("expireTime") long expireTime)
+        {
+            this.owner = requireNonNull(owner, "owner is null");
+            this.token = requireNonNull(token, "token is null");
+            this.expireTime = expireTime;
+        }
+
+        @JsonProperty
+        public String getOwner()
+        {
+            return owner;
+        }
+
+        @JsonProperty
+        public String getToken()
+        {
+            return token;
+        }
+
+        @JsonProperty
+        public long getExpireTime()
+        {
+            return expireTime;
+        }
+    }
+}
@@ -36,7 +36,10 @@ public class TaskInfo
                 taskInfo.getTaskStatus(),
                 taskInfo.getCachedTable(),
                 taskInfo.getStartTime(),
-                taskInfo.getEndTime());
+                taskInfo.getEndTime(),
+                taskInfo.getRefreshCount(),
+                taskInfo.getSkippedRefreshCount(),
+                taskInfo.getLastSkippedTime());
     }
 
     public enum TaskStatus
@@ -68,10 +71,14 @@ public class TaskInfo
     private TaskStatus taskStatus;
     private final Instant startTime;
     private Instant endTime;
+    // refreshes done and skipped because the source data didn't change, counted across the tasks of the same table
+    private long refreshCount;
+    private long skippedRefreshCount;
+    private Instant lastSkippedTime;
 
     public TaskInfo(String catalogName, String schemaName, String tableName, TaskStatus taskStatus, Instant startTime)
     {
-        this(catalogName, schemaName, tableName, taskStatus, null, startTime, null);
+        this(catalogName, schemaName, tableName, taskStatus, null, startTime, null, 1, 0, null);
     }
 
     @JsonCreator
@@ -82,8 +89,10 @@ public class TaskInfo
             @JsonProperty("taskStatus") TaskStatus taskStatus,
             @JsonProperty("cachedTable") CachedTable cachedTable,
             @JsonProperty("startTime") Instant startTime,
-            @JsonProperty("endTime") Instant endTime)
-
+            @JsonProperty("endTime") Instant endTime,
+            @JsonProperty("refreshCount") long refreshCount,
+            @JsonProperty("skippedRefreshCount") long skippedRefreshCount,
+            @JsonProperty("lastSkippedTime") Instant lastSkippedTime)
     {
         this.catalogSchemaTableName = new CatalogSchemaTableName(requireNonNull(catalogName, "catalogName is null"),
                 new SchemaTableName(requireNonNull(schemaName, "schemaName is null"),
@@ -92,6 +101,9 @@ public class TaskInfo
         this.cachedTable = cachedTable;
         this.startTime = requireNonNull(startTime, "startTime is null");
         this.endTime = endTime;
+        this.refreshCount = refreshCount;
+        this.skippedRefreshCount = skippedRefreshCount;
+        this.lastSkippedTime = lastSkippedTime;
     }
 
     public boolean inProgress()
@@ -152,6 +164,41 @@ public class TaskInfo
         return endTime;
     }
 
+    @JsonProperty
+    public synchronized long getRefreshCount()
+    {
+        return refreshCount;
+    }
+
+    @JsonProperty
+    public synchronized long getSkippedRefreshCount()
+    {
+        return skippedRefreshCount;
+    }
+
+    @JsonProperty
+    public synchronized Instant getLastSkippedTime()
+    {
+        return lastSkippedTime;
+    }
+
+    /**
+     * Carry the refresh counts over from the previous task of the same table, and count this one as a refresh.
+     */
+    public synchronized TaskInfo countRefresh(TaskInfo previous)
+    {
+        this.refreshCount = previous.getRefreshCount() + 1;
+        this.skippedRefreshCount = previous.getSkippedRefreshCount();
+        this.lastSkippedTime = previous.getLastSkippedTime();
+        return this;
+    }
+
+    public synchronized void countSkippedRefresh()
+    {
+        skippedRefreshCount++;
+        lastSkippedTime = Instant.now();
+    }
+
     public TaskInfo setCachedTable(CachedTable cachedTable)
     {
         this.cachedTable = cachedTable;
@@ -0,0 +1,438 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioMDL;
+import io.accio.base.CatalogSchemaTableName;
+import io.accio.base.client.AutoCloseableIterator;
+import io.accio.base.client.duckdb.DuckdbClient;
+import io.accio.base.dto.CacheInfo;
+import io.accio.base.dto.DateSpine;
+import io.accio.base.dto.Manifest;
+import io.accio.base.dto.Metric;
+import io.accio.base.dto.Model;
+import io.accio.base.dto.TimeUnit;
+import io.accio.sqlrewrite.DateSpineInfo;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.AccioTypes.INTEGER;
+import static io.accio.base.AccioTypes.VARCHAR;
+import static io.accio.base.dto.Column.column;
+import static io.accio.base.dto.Metric.metric;
+import static io.accio.base.dto.Model.model;
+import static io.accio.cache.TaskInfo.TaskStatus.DONE;
+import static io.accio.cache.TestingCacheManager.createCacheManager;
+import static java.lang.String.format;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(singleThreaded = true)
+public class TestCacheManager
+{
+    private static final String ORDERS_ROWS = "SELECT * FROM (VALUES (1, 10, 100), (2, 10, 200), (3, 20, 300)) t(orderkey, custkey, totalprice)";
+    private static final String CUSTOMER_ROWS = "SELECT * FROM (VALUES (10, 'a'), (20, 'b')) t(custkey, name)";
+
+    private DuckdbClient duckdbClient;
+    private CachedTableMapping cachedTableMapping;
+    private TestingCacheService cacheService;
+    private CacheManager cacheManager;
+
+    @BeforeMethod
+    public void setup()
+    {
+        duckdbClient = new DuckdbClient();
+        cachedTableMapping = new DefaultCachedTableMapping(duckdbClient);
+        cacheService = new TestingCacheService(Map.of("Orders", ORDERS_ROWS));
+        cacheManager = createCacheManager(duckdbClient, cachedTableMapping, cacheService);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup()
+    {
+        cacheManager.stop();
+    }
+
+    @Test
+    public void testMetricOnCachedModel()
+    {
+        Model orders = model("Orders", "select * from main.orders", List.of(
+                column("orderkey", INTEGER, null, true),
+                column("custkey", INTEGER, null, true),
+                column("totalprice", INTEGER, null, true)), true);
+        Metric revenue = metric("Revenue", "Orders",
+                List.of(column("custkey", INTEGER, null, true)),
+                List.of(column("revenue", INTEGER, null, true, "sum(totalprice)")),
+                List.of(),
+                true);
+        AccioMDL mdl = mdl(List.of(orders), List.of(revenue));
+
+        cacheManager.createTaskUntilDone(mdl);
+        // only the model is read from the data source, the metric is computed in duckdb from the cached model
+        assertThat(cacheService.getLoaded()).containsExactly("Orders");
+        assertThat(query(format("SELECT custkey, CAST(revenue AS BIGINT) FROM \"%s\" ORDER BY custkey", getTableName("Revenue"))))
+                .containsExactly(List.of(10, 300L), List.of(20, 300L));
+    }
+
+    @Test
+    public void testMetricOnlyTheSourceCanCompute()
+    {
+        cacheService = new TestingCacheService(Map.of(
+                "Orders", ORDERS_ROWS,
+                "Revenue", "SELECT * FROM (VALUES (10, 300), (20, 300)) t(custkey, revenue)"));
+        cacheManager = createCacheManager(duckdbClient, cachedTableMapping, cacheService);
+        Model orders = model("Orders", "select * from main.orders", List.of(
+                column("orderkey", INTEGER, null, true),
+                column("custkey", INTEGER, null, true),
+                column("totalprice", INTEGER, null, true)), true);
+        // duckdb has no safe_divide, so the metric is read from the data source
+        Metric revenue = metric("Revenue", "Orders",
+                List.of(column("custkey", INTEGER, null, true)),
+                List.of(column("revenue", INTEGER, null, true, "sum(safe_divide(totalprice, 1))")),
+                List.of(),
+                true);
+
+        cacheManager.createTaskUntilDone(mdl(List.of(orders), List.of(revenue)));
+        assertThat(cacheService.getLoaded()).containsExactly("Orders", "Revenue");
+        assertThat(cachedTableMapping.getCacheInfoPair("test", "test", "Revenue").getErrorMessage()).isEmpty();
+        assertThat(query(format("SELECT custkey, revenue FROM \"%s\" ORDER BY custkey", getTableName("Revenue"))))
+                .containsExactly(List.of(10, 300), List.of(20, 300));
+    }
+
+    @Test
+    public void testSortKeysAndIndexes()
+    {
+        cacheService = new TestingCacheService(Map.of("Orders", "SELECT * FROM (VALUES (2, 20, 100), (3, 10, 300), (1, 10, 200)) t(orderkey, custkey, totalprice)"));
+        cacheManager = createCacheManager(duckdbClient, cachedTableMapping, cacheService);
+        Model orders = new Model("Orders", "select * from main.orders", null, List.of(
+                column("orderkey", INTEGER, null, true),
+                column("custkey", INTEGER, null, true),
+                column("totalprice", INTEGER, null, true)),
+                null, true, null, null, List.of("custkey", "orderkey"), List.of("orderkey"));
+        Metric revenue = new Metric("Revenue", "Orders",
+                List.of(column("custkey", INTEGER, null, true)),
+                List.of(column("revenue", INTEGER, null, true, "sum(totalprice)")),
+                List.of(), true, null, null, List.of("revenue"), List.of("custkey"));
+        cacheManager.createTaskUntilDone(mdl(List.of(orders), List.of(revenue)));
+
+        // the rows are stored in the order of the sort keys, both for a loaded and a computed cache
+        String ordersTable = getTableName("Orders");
+        assertThat(query(format("SELECT orderkey FROM \"%s\"", ordersTable)))
+                .containsExactly(List.of(1), List.of(3), List.of(2));
+        String revenueTable = getTableName("Revenue");
+        assertThat(query(format("SELECT custkey FROM \"%s\"", revenueTable)))
+                .containsExactly(List.of(20), List.of(10));
+
+        assertThat(query("SELECT table_name, index_name FROM duckdb_indexes()"))
+                .containsExactlyInAnyOrder(
+                        List.of(ordersTable, ordersTable + "_orderkey_idx"),
+                        List.of(revenueTable, revenueTable + "_custkey_idx"));
+    }
+
+    @Test
+    public void testSkipRefreshIfSourceUnchanged()
+    {
+        cacheService.setSourceVersion(Optional.of("v1"));
+        cacheManager.createTaskUntilDone(mdl(List.of(ordersRefreshedEvery(new Duration(100, MILLISECONDS))), List.of()));
+
+        TaskInfo taskInfo = waitForTaskInfo("Orders", task -> task.getSkippedRefreshCount() >= 2);
+        assertThat(taskInfo.getRefreshCount()).isEqualTo(1);
+        assertThat(taskInfo.getLastSkippedTime()).isNotNull();
+        assertThat(cacheService.getLoaded()).containsExactly("Orders");
+        assertThat(cacheService.getSourceTables()).containsExactly(new CatalogSchemaTableName("test", "main", "orders"));
+    }
+
+    @Test
+    public void testRefreshIfSourceChanged()
+    {
+        cacheService.setSourceVersion(Optional.of("v1"));
+        cacheManager.createTaskUntilDone(mdl(List.of(ordersRefreshedEvery(new Duration(100, MILLISECONDS))), List.of()));
+        waitForTaskInfo("Orders", task -> task.getSkippedRefreshCount() >= 1);
+
+        cacheService.setSourceVersion(Optional.of("v2"));
+        TaskInfo taskInfo = waitForTaskInfo("Orders", task -> task.getRefreshCount() >= 2);
+        // the skipped refreshes before the change are carried over to the task of the refresh
+        assertThat(taskInfo.getSkippedRefreshCount()).isGreaterThanOrEqualTo(1);
+        assertThat(taskInfo.getLastSkippedTime()).isNotNull();
+
+        // the refreshed cache has the new version, so it's skipped again afterwards
+        long skippedRefreshCount = taskInfo.getSkippedRefreshCount();
+        assertThat(waitForTaskInfo("Orders", task -> task.getSkippedRefreshCount() > skippedRefreshCount).getRefreshCount()).isEqualTo(2);
+        assertThat(cacheService.getLoaded()).containsExactly("Orders", "Orders");
+        assertThat(query(format("SELECT count(*) FROM \"%s\"", getTableName("Orders")))).containsExactly(List.of(3L));
+    }
+
+    @Test
+    public void testAlwaysRefreshIfSourceVersionUnknown()
+    {
+        cacheService.setSourceVersion(Optional.empty());
+        cacheManager.createTaskUntilDone(mdl(List.of(ordersRefreshedEvery(new Duration(100, MILLISECONDS))), List.of()));
+
+        TaskInfo taskInfo = waitForTaskInfo("Orders", task -> task.getRefreshCount() >= 3);
+        assertThat(taskInfo.getSkippedRefreshCount()).isEqualTo(0);
+        // the task of a refresh is created before its load runs
+        assertThat(cacheService.getLoaded()).hasSizeGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    public void testDateSpineCache()
+    {
+        DateSpine daily = new DateSpine(TimeUnit.DAY, "2020-01-01", "2020-01-31");
+        DateSpine monthly = new DateSpine(TimeUnit.MONTH, "2020-01-01", "2020-12-31");
+        String dailyTable = DateSpineInfo.getTableName(daily);
+        String monthlyTable = DateSpineInfo.getTableName(monthly);
+        CatalogSchemaTableName dateSpine = new CatalogSchemaTableName("test", "test", DateSpineInfo.NAME);
+        CatalogSchemaTableName otherDateSpine = new CatalogSchemaTableName("test", "other", DateSpineInfo.NAME);
+
+        cacheManager.cacheDateSpine(mdlWithDateSpine("test", daily));
+        assertThat(cachedTableMapping.convertToCachedTable(dateSpine)).contains(dailyTable);
+        assertThat(query(format("SELECT count(*) FROM \"%s\"", dailyTable))).containsExactly(List.of(31L));
+
+        // another schema with the same date spine shares its table
+        cacheManager.cacheDateSpine(mdlWithDateSpine("other", daily));
+        cacheManager.cacheDateSpine(mdlWithDateSpine("test", monthly));
+        assertThat(cachedTableMapping.convertToCachedTable(dateSpine)).contains(monthlyTable);
+        assertThat(cachedTableMapping.convertToCachedTable(otherDateSpine)).contains(dailyTable);
+        assertThat(tableNames()).contains(dailyTable, monthlyTable);
+
+        // the table isn't read by any schema once the date spine of the other schema is changed
+        cacheManager.cacheDateSpine(mdlWithDateSpine("other", monthly));
+        assertThat(tableNames()).contains(monthlyTable).doesNotContain(dailyTable);
+
+        cacheManager.removeCacheIfExist("test", "test");
+        assertThat(cachedTableMapping.convertToCachedTable(dateSpine)).isEmpty();
+        assertThat(tableNames()).contains(monthlyTable);
+        cacheManager.removeDateSpineCache("test", "other");
+        assertThat(cachedTableMapping.convertToCachedTable(otherDateSpine)).isEmpty();
+        assertThat(tableNames()).doesNotContain(monthlyTable);
+    }
+
+    @Test
+    public void testReloadChangedModelOnly()
+    {
+        cacheService = new TestingCacheService(Map.of("Orders", ORDERS_ROWS, "Customer", CUSTOMER_ROWS));
+        cacheManager = createCacheManager(duckdbClient, cachedTableMapping, cacheService);
+        AccioMDL oldMdl = mdl(List.of(ordersRefreshedEvery(new Duration(1, HOURS)), customer("select * from main.customer")), List.of());
+        cacheManager.createTaskUntilDone(oldMdl);
+        String ordersTable = getTableName("Orders");
+        String customerTable = getTableName("Customer");
+
+        AccioMDL newMdl = mdl(List.of(ordersRefreshedEvery(new Duration(1, HOURS)), customer("select * from main.customer where custkey > 0")), List.of());
+        cacheManager.invalidateChangedCaches(oldMdl, newMdl);
+        // the changed model is read from the data source until its cache is rebuilt
+        assertThat(cachedTableMapping.convertToCachedTable(new CatalogSchemaTableName("test", "test", "Customer"))).isEmpty();
+        assertThat(getTableName("Orders")).isEqualTo(ordersTable);
+        assertThat(tableNames()).contains(ordersTable).doesNotContain(customerTable);
+
+        assertThat(cacheManager.reloadCacheUntilDone(oldMdl, newMdl)).extracting(TaskInfo::getTableName).containsExactly("Customer");
+        assertThat(getTableName("Orders")).isEqualTo(ordersTable);
+        assertThat(getTableName("Customer")).isNotEqualTo(customerTable);
+        assertThat(cacheService.getLoaded()).containsExactlyInAnyOrder("Orders", "Customer", "Customer");
+        assertThat(cacheManager.cacheScheduledFutureExists(new CatalogSchemaTableName("test", "test", "Orders"))).isTrue();
+    }
+
+    @Test
+    public void testReloadWhileUnchangedModelIsCached()
+            throws InterruptedException
+    {
+        CompletableFuture<Void> loading = new CompletableFuture<>();
+        cacheService.setLoading(loading);
+        AccioMDL oldMdl = mdl(List.of(ordersRefreshedEvery(new Duration(1, HOURS))), List.of());
+        cacheManager.createTask(oldMdl).join();
+
+        AccioMDL newMdl = mdl(List.of(ordersRefreshedEvery(new Duration(1, HOURS))), List.of());
+        CompletableFuture<List<TaskInfo>> reload = supplyAsync(() -> cacheManager.reloadCacheUntilDone(oldMdl, newMdl));
+        // the refresh is scheduled against the new mdl once the running task is done
+        Thread.sleep(200);
+        assertThat(reload).isNotDone();
+        loading.complete(null);
+        assertThat(reload.join()).isEmpty();
+
+        TaskInfo taskInfo = cacheManager.getTaskInfo(new CatalogSchemaTableName("test", "test", "Orders")).join().orElseThrow();
+        assertThat(taskInfo.getTaskStatus()).isEqualTo(DONE);
+        assertThat(cacheManager.cacheScheduledFutureExists(new CatalogSchemaTableName("test", "test", "Orders"))).isTrue();
+        assertThat(cacheService.getLoaded()).containsExactly("Orders");
+    }
+
+    private static Model ordersRefreshedEvery(Duration refreshTime)
+    {
+        return new Model("Orders", "select * from main.orders", null, List.of(
+                column("orderkey", INTEGER, null, true),
+                column("custkey", INTEGER, null, true),
+                column("totalprice", INTEGER, null, true)),
+                null, true, refreshTime, null, null, null);
+    }
+
+    private static Model customer(String refSql)
+    {
+        return model("Customer", refSql, List.of(
+                column("custkey", INTEGER, null, true),
+                column("name", VARCHAR, null, true)), true);
+    }
+
+    /**
+     * Wait for the task info of the given object to match. The task is absent for a moment while it's refreshed.
+     */
+    private TaskInfo waitForTaskInfo(String name, Predicate<TaskInfo> condition)
+    {
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while (true) {
+            Optional<TaskInfo> taskInfo = cacheManager.getTaskInfo(new CatalogSchemaTableName("test", "test", name)).join();
+            if (taskInfo.filter(condition).isPresent()) {
+                return taskInfo.get();
+            }
+            assertThat(System.nanoTime()).as("timed out waiting for the task info of %s", name).isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private String getTableName(String name)
+    {
+        return cachedTableMapping.getCacheInfoPair("test", "test", name).getRequiredTableName();
+    }
+
+    private List<List<Object>> query(String sql)
+    {
+        ImmutableList.Builder<List<Object>> rows = ImmutableList.builder();
+        try (AutoCloseableIterator<Object[]> iterator = duckdbClient.query(sql)) {
+            iterator.forEachRemaining(row -> rows.add(List.of(row)));
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return rows.build();
+    }
+
+    private List<Object> tableNames()
+    {
+        return query("SELECT table_name FROM duckdb_tables()").stream()
+                .map(row -> row.get(0))
+                .collect(toImmutableList());
+    }
+
+    private static AccioMDL mdlWithDateSpine(String schema, DateSpine dateSpine)
+    {
+        return AccioMDL.fromManifest(Manifest.builder()
+                .setCatalog("test")
+                .setSchema(schema)
+                .setDateSpine(dateSpine)
+                .build());
+    }
+
+    private static AccioMDL mdl(List<Model> models, List<Metric> metrics)
+    {
+        return AccioMDL.fromManifest(Manifest.builder()
+                .setCatalog("test")
+                .setSchema("test")
+                .setModels(models)
+                .setMetrics(metrics)
+                .build());
+    }
+
+    /**
+     * Loads the rows of the given queries into duckdb as the cache of each object and records what it loaded.
+     */
+    private class TestingCacheService
+            implements CacheService
+    {
+        private final Map<String, String> rows;
+        private final List<String> loaded = new ArrayList<>();
+        private final List<CatalogSchemaTableName> sourceTables = new ArrayList<>();
+        private Optional<String> sourceVersion = Optional.empty();
+        private CompletableFuture<Void> loading = completedFuture(null);
+
+        private TestingCacheService(Map<String, String> rows)
+        {
+            this.rows = rows;
+        }
+
+        @Override
+        public Optional<PathInfo> createCache(String catalog, String schema, String name, String statement)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean loadCacheToDuckdb(CacheInfo cacheInfo, String statement, String duckdbTableName)
+        {
+            getLoading().join();
+            synchronized (this) {
+                loaded.add(cacheInfo.getName());
+                duckdbClient.executeDDL(format("CREATE TABLE \"%s\" AS %s", duckdbTableName, rows.get(cacheInfo.getName())));
+            }
+            return true;
+        }
+
+        private synchronized CompletableFuture<Void> getLoading()
+        {
+            return loading;
+        }
+
+        /**
+         * Hold the loads of the caches until the given future is completed.
+         */
+        public synchronized void setLoading(CompletableFuture<Void> loading)
+        {
+            this.loading = loading;
+        }
+
+        public synchronized List<String> getLoaded()
+        {
+            return ImmutableList.copyOf(loaded);
+        }
+
+        public synchronized void setSourceVersion(Optional<String> sourceVersion)
+        {
+            this.sourceVersion = sourceVersion;
+        }
+
+        @Override
+        public synchronized Optional<String> getSourceVersion(Set<CatalogSchemaTableName> sourceTables)
+        {
+            this.sourceTables.addAll(sourceTables);
+            return sourceVersion;
+        }
+
+        public synchronized Set<CatalogSchemaTableName> getSourceTables()
+        {
+            return Set.copyOf(sourceTables);
+        }
+
+        @Override
+        public void deleteTarget(PathInfo pathInfo) {}
+    }
+}
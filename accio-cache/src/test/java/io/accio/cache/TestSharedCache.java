@@ -0,0 +1,233 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioMDL;
+import io.accio.base.CatalogSchemaTableName;
+import io.accio.base.client.AutoCloseableIterator;
+import io.accio.base.client.duckdb.DuckdbClient;
+import io.accio.base.dto.CacheInfo;
+import io.accio.base.dto.Manifest;
+import io.accio.cache.SharedCacheStore.Lease;
+import io.airlift.units.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.accio.base.AccioTypes.INTEGER;
+import static io.accio.base.AccioTypes.VARCHAR;
+import static io.accio.base.CatalogSchemaTableName.catalogSchemaTableName;
+import static io.accio.base.dto.Column.column;
+import static io.accio.base.dto.Model.model;
+import static io.accio.cache.TestingCacheManager.createCacheManager;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(singleThreaded = true)
+public class TestSharedCache
+{
+    private static final CatalogSchemaTableName ORDERS = catalogSchemaTableName("test", "test", "Orders");
+
+    private Path directory;
+    private AtomicInteger loads;
+
+    @BeforeMethod
+    public void setup()
+            throws IOException
+    {
+        directory = Files.createTempDirectory("shared-cache");
+        loads = new AtomicInteger();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup()
+            throws IOException
+    {
+        deleteRecursively(directory, ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testLoadPublishedSnapshot()
+    {
+        Node first = new Node();
+        Node second = new Node();
+        AccioMDL mdl = mdl("select * from main.orders");
+
+        first.cacheManager.createTaskUntilDone(mdl);
+        second.cacheManager.createTaskUntilDone(mdl);
+        assertThat(loads).hasValue(1);
+        assertThat(first.cacheStats.getPublishedSnapshots().getTotalCount()).isEqualTo(1);
+        assertThat(second.cacheStats.getLoadedSnapshots().getTotalCount()).isEqualTo(1);
+        assertThat(second.queryOrders()).containsExactly(List.of(1, "a"), List.of(2, "b"), List.of(3, "c"));
+
+        // the object is changed in the mdl of the second node, it doesn't load the snapshot of the first one
+        second.cacheManager.createTaskUntilDone(mdl("select * from main.orders where orderkey > 0"));
+        assertThat(loads).hasValue(2);
+        assertThat(second.cacheStats.getPublishedSnapshots().getTotalCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRefreshConcurrently()
+    {
+        List<Node> nodes = ImmutableList.of(new Node(), new Node(), new Node());
+        AccioMDL mdl = mdl("select * from main.orders");
+
+        CompletableFuture.allOf(nodes.stream()
+                        .map(node -> CompletableFuture.runAsync(() -> node.cacheManager.createTaskUntilDone(mdl)))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+        // only the node holding the lease queries the data source, the others wait for its snapshot
+        assertThat(loads).hasValue(1);
+        for (Node node : nodes) {
+            assertThat(node.queryOrders()).hasSize(3);
+        }
+    }
+
+    @Test
+    public void testExpiredLease()
+            throws Exception
+    {
+        SharedCacheStore first = new SharedCacheStore(config().setLeaseDuration(new Duration(1, SECONDS)));
+        SharedCacheStore second = new SharedCacheStore(config());
+
+        Lease lease = first.tryLease(ORDERS).orElseThrow();
+        assertThat(second.tryLease(ORDERS)).isEmpty();
+        assertThat(second.waitForSnapshot(ORDERS, snapshot -> true)).isEmpty();
+
+        Thread.sleep(1100);
+        try (Lease takenOver = second.tryLease(ORDERS).orElseThrow()) {
+            assertThat(takenOver.isHeld()).isTrue();
+            assertThat(lease.isHeld()).isFalse();
+            // the node that lost its lease doesn't publish, nor release the lease of the other node
+            assertThat(first.publish(lease, "fingerprint", Optional.empty(), TestSharedCache::writeFile)).isEmpty();
+            lease.close();
+            assertThat(takenOver.isHeld()).isTrue();
+
+            CacheSnapshot snapshot = second.publish(takenOver, "fingerprint", Optional.of("v1"), TestSharedCache::writeFile).orElseThrow();
+            assertThat(snapshot.getVersion()).isEqualTo(1);
+            assertThat(snapshot.getOwner()).isEqualTo(second.getNodeId());
+            assertThat(first.getSnapshot(ORDERS)).hasValueSatisfying(published -> assertThat(published.getSourceVersion()).hasValue("v1"));
+            assertThat(first.getFile(ORDERS, snapshot)).exists();
+        }
+        assertThat(first.tryLease(ORDERS)).isPresent();
+    }
+
+    private SharedCacheConfig config()
+    {
+        return new SharedCacheConfig()
+                .setDirectory(directory.toString())
+                .setPollInterval(new Duration(10, MILLISECONDS));
+    }
+
+    private static AccioMDL mdl(String refSql)
+    {
+        return AccioMDL.fromManifest(Manifest.builder()
+                .setCatalog("test")
+                .setSchema("test")
+                .setModels(List.of(
+                        model("Orders",
+                                refSql,
+                                List.of(
+                                        column("orderkey", INTEGER, null, true),
+                                        column("name", VARCHAR, null, true)),
+                                true)))
+                .build());
+    }
+
+    private static void writeFile(Path file)
+    {
+        try {
+            Files.writeString(file, "data");
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private class Node
+    {
+        private final DuckdbClient duckdbClient = new DuckdbClient();
+        private final CachedTableMapping cachedTableMapping = new DefaultCachedTableMapping(duckdbClient);
+        private final CacheStats cacheStats = new CacheStats();
+        private final CacheManager cacheManager = createCacheManager(
+                duckdbClient,
+                cachedTableMapping,
+                new TestingCacheService(duckdbClient),
+                cacheStats,
+                new SharedCacheStore(config()));
+
+        private List<List<Object>> queryOrders()
+        {
+            String tableName = cachedTableMapping.getCacheInfoPair("test", "test", "Orders").getRequiredTableName();
+            ImmutableList.Builder<List<Object>> rows = ImmutableList.builder();
+            try (AutoCloseableIterator<Object[]> iterator = duckdbClient.query(format("SELECT * FROM \"%s\"", tableName))) {
+                iterator.forEachRemaining(row -> rows.add(List.of(row)));
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return rows.build();
+        }
+    }
+
+    private class TestingCacheService
+            implements CacheService
+    {
+        private final DuckdbClient duckdbClient;
+
+        private TestingCacheService(DuckdbClient duckdbClient)
+        {
+            this.duckdbClient = duckdbClient;
+        }
+
+        @Override
+        public Optional<PathInfo> createCache(String catalog, String schema, String name, String statement)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean loadCacheToDuckdb(CacheInfo cacheInfo, String statement, String duckdbTableName)
+        {
+            loads.incrementAndGet();
+            try {
+                // take some time, so the nodes refreshing concurrently wait for the lease holder
+                Thread.sleep(200);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            duckdbClient.executeDDL(format("CREATE TABLE \"%s\" AS SELECT * FROM (VALUES (1, 'a'), (2, 'b'), (3, 'c')) t(orderkey, name)", duckdbTableName));
+            return true;
+        }
+
+        @Override
+        public void deleteTarget(PathInfo pathInfo) {}
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+
+import static io.accio.cache.TaskInfo.TaskStatus.DONE;
+import static io.accio.cache.TaskInfo.TaskStatus.RUNNING;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestTaskInfo
+{
+    @Test
+    public void testRefreshCounts()
+    {
+        TaskInfo first = new TaskInfo("test", "test", "Orders", DONE, Instant.now());
+        assertThat(first.getRefreshCount()).isEqualTo(1);
+        assertThat(first.getSkippedRefreshCount()).isEqualTo(0);
+        assertThat(first.getLastSkippedTime()).isNull();
+
+        first.countSkippedRefresh();
+        first.countSkippedRefresh();
+        assertThat(first.getSkippedRefreshCount()).isEqualTo(2);
+        Instant lastSkippedTime = first.getLastSkippedTime();
+        assertThat(lastSkippedTime).isNotNull();
+
+        // the counts are carried over to the task of the next refresh
+        TaskInfo second = new TaskInfo("test", "test", "Orders", RUNNING, Instant.now()).countRefresh(first);
+        assertThat(second.getRefreshCount()).isEqualTo(2);
+        assertThat(second.getSkippedRefreshCount()).isEqualTo(2);
+        assertThat(second.getLastSkippedTime()).isEqualTo(lastSkippedTime);
+
+        // and kept in the copy stored for the task
+        TaskInfo copy = TaskInfo.copyFrom(second);
+        assertThat(copy.getRefreshCount()).isEqualTo(2);
+        assertThat(copy.getSkippedRefreshCount()).isEqualTo(2);
+        assertThat(copy.getLastSkippedTime()).isEqualTo(lastSkippedTime);
+
+        copy.countSkippedRefresh();
+        assertThat(copy.getSkippedRefreshCount()).isEqualTo(3);
+        assertThat(second.getSkippedRefreshCount()).isEqualTo(2);
+    }
+}
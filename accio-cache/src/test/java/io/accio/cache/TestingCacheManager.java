@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.cache;
+
+import io.accio.base.client.duckdb.DuckdbClient;
+
+/**
+ * Build a cache manager that reads its caches from the given duckdb, without rewriting the sql it's given.
+ */
+public final class TestingCacheManager
+{
+    private TestingCacheManager() {}
+
+    public static CacheManager createCacheManager(DuckdbClient duckdbClient, CachedTableMapping cachedTableMapping, CacheService cacheService)
+    {
+        return createCacheManager(duckdbClient, cachedTableMapping, cacheService, new CacheStats(), new SharedCacheStore(new SharedCacheConfig()));
+    }
+
+    public static CacheManager createCacheManager(
+            DuckdbClient duckdbClient,
+            CachedTableMapping cachedTableMapping,
+            CacheService cacheService,
+            CacheStats cacheStats,
+            SharedCacheStore sharedCacheStore)
+    {
+        return new CacheManager(
+                (sql, sessionContext) -> sql,
+                cacheService,
+                new NoOpExtraRewriter(),
+                duckdbClient,
+                new DuckdbS3StyleStorageConfig(),
+                cachedTableMapping,
+                cacheStats,
+                sharedCacheStore);
+    }
+}
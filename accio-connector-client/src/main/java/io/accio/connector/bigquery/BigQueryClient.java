@@ -14,23 +14,33 @@
 
 package io.accio.connector.bigquery;
 
+import com.google.api.gax.paging.Page;
+import com.google.api.services.bigquery.model.QueryRequest;
+import com.google.api.services.bigquery.model.QueryResponse;
 import com.google.cloud.bigquery.BigQuery;
 import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.Dataset;
 import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.bigquery.DatasetInfo;
+import com.google.cloud.bigquery.FieldValueList;
 import com.google.cloud.bigquery.Job;
+import com.google.cloud.bigquery.JobConfiguration;
+import com.google.cloud.bigquery.JobId;
 import com.google.cloud.bigquery.JobInfo;
 import com.google.cloud.bigquery.JobStatistics;
 import com.google.cloud.bigquery.QueryJobConfiguration;
 import com.google.cloud.bigquery.QueryParameterValue;
 import com.google.cloud.bigquery.Routine;
+import com.google.cloud.bigquery.Schema;
 import com.google.cloud.bigquery.Table;
 import com.google.cloud.bigquery.TableDefinition;
 import com.google.cloud.bigquery.TableId;
 import com.google.cloud.bigquery.TableInfo;
 import com.google.cloud.bigquery.TableResult;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
 import com.google.cloud.http.BaseHttpServiceException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Streams;
 import io.accio.base.AccioException;
@@ -41,9 +51,12 @@ import io.accio.base.type.PGArray;
 import io.accio.base.type.PGType;
 import io.airlift.log.Logger;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 import static com.google.cloud.bigquery.BigQuery.DatasetDeleteOption.deleteContents;
 import static com.google.common.collect.ImmutableList.toImmutableList;
@@ -107,6 +120,18 @@ public class BigQueryClient
                 catalogSchemaTableName.getSchemaTableName().getTableName()));
     }
 
+    /**
+     * @return empty if the table doesn't exist or isn't a native table, e.g. a view whose data is never modified itself.
+     */
+    public Optional<Long> getLastModifiedTime(CatalogSchemaTableName catalogSchemaTableName)
+    {
+        Table table = getTable(catalogSchemaTableName);
+        if (table == null || table.getDefinition().getType() != TableDefinition.Type.TABLE) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(table.getLastModifiedTime());
+    }
+
     public String getProjectId()
     {
         return bigQuery.getOptions().getProjectId();
@@ -130,15 +155,23 @@ public class BigQueryClient
     public TableResult query(String sql, List<Parameter> parameters)
     {
         try {
-            QueryJobConfiguration.Builder queryConfigBuilder =
-                    QueryJobConfiguration
-                            .newBuilder(sql);
-
-            for (Parameter parameter : parameters) {
-                queryConfigBuilder.addPositionalParameter(toQueryParameterValue(parameter.getType(), parameter.getValue()));
-            }
+            return bigQuery.query(toQueryJobConfiguration(sql, parameters));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BigQueryException(BaseHttpServiceException.UNKNOWN_CODE, format("Failed to run the query [%s]", sql), e);
+        }
+    }
 
-            return bigQuery.query(queryConfigBuilder.build());
+    /**
+     * Run the query as the given job, so that it can be canceled by {@link #cancel(JobId)} while it is running.
+     * The result is read in pages of at most {@code pageSize} rows.
+     */
+    public TableResult query(String sql, List<Parameter> parameters, JobId jobId, long pageSize)
+    {
+        try {
+            Job job = bigQuery.create(JobInfo.of(jobId, toQueryJobConfiguration(sql, parameters)));
+            return job.getQueryResults(BigQuery.QueryResultsOption.pageSize(pageSize));
         }
         catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -146,6 +179,107 @@ public class BigQueryClient
         }
     }
 
+    /**
+     * Run the query with jobs.query instead of creating a job and polling it. A query finished within
+     * {@code timeoutMillis} comes back with its first page of at most {@code pageSize} rows in the same response.
+     * A query taking longer continues as a job: {@code onJob} is called with it, e.g. to cancel it, before waiting
+     * for it to complete, and can throw to not wait for it.
+     */
+    public ShortQueryResult queryWithoutJob(String sql, String location, long timeoutMillis, long pageSize, Consumer<JobId> onJob)
+    {
+        QueryRequest request = new QueryRequest()
+                .setQuery(sql)
+                .setUseLegacySql(false)
+                .setLocation(location)
+                .setTimeoutMs(timeoutMillis)
+                .setMaxResults(pageSize)
+                .setRequestId(UUID.randomUUID().toString());
+        QueryResponse response = queryRpc(request);
+        if (response.getErrors() != null && !response.getErrors().isEmpty()) {
+            throw new BigQueryException(QueryResponses.toErrors(response.getErrors()));
+        }
+        JobId jobId = JobId.newBuilder()
+                .setProject(response.getJobReference().getProjectId())
+                .setJob(response.getJobReference().getJobId())
+                .setLocation(response.getJobReference().getLocation())
+                .build();
+        if (!Boolean.TRUE.equals(response.getJobComplete())) {
+            onJob.accept(jobId);
+            try {
+                return new ShortQueryResult(getQueryResults(jobId, BigQuery.QueryResultsOption.pageSize(pageSize)), jobId, false);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BigQueryException(BaseHttpServiceException.UNKNOWN_CODE, format("Failed to run the query [%s]", sql), e);
+            }
+        }
+        Schema schema = QueryResponses.toSchema(response.getSchema());
+        long totalRows = response.getTotalRows() == null ? 0 : response.getTotalRows().longValue();
+        Page<FieldValueList> firstPage = new ShortQueryPage(QueryResponses.toRows(response.getRows(), schema), response.getPageToken(), jobId, pageSize);
+        return new ShortQueryResult(new TableResult(schema, totalRows, firstPage), jobId, true);
+    }
+
+    @VisibleForTesting
+    QueryResponse queryRpc(QueryRequest request)
+    {
+        return ((BigQueryRpc) bigQuery.getOptions().getRpc()).queryRpc(getProjectId(), request);
+    }
+
+    @VisibleForTesting
+    TableResult getQueryResults(JobId jobId, BigQuery.QueryResultsOption... options)
+            throws InterruptedException
+    {
+        return bigQuery.getJob(jobId).getQueryResults(options);
+    }
+
+    private QueryJobConfiguration toQueryJobConfiguration(String sql, List<Parameter> parameters)
+    {
+        QueryJobConfiguration.Builder queryConfigBuilder =
+                QueryJobConfiguration
+                        .newBuilder(sql);
+
+        for (Parameter parameter : parameters) {
+            queryConfigBuilder.addPositionalParameter(toQueryParameterValue(parameter.getType(), parameter.getValue()));
+        }
+        return queryConfigBuilder.build();
+    }
+
+    /**
+     * The table a finished query job wrote its result to.
+     */
+    public Optional<TableId> getDestinationTable(JobId jobId)
+    {
+        Job job = bigQuery.getJob(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        JobConfiguration configuration = job.getConfiguration();
+        if (!(configuration instanceof QueryJobConfiguration)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(((QueryJobConfiguration) configuration).getDestinationTable());
+    }
+
+    /**
+     * Read {@code rowCount} rows of the table from {@code startIndex}, following the page tokens until all of them are read.
+     */
+    public List<FieldValueList> listTableData(TableId tableId, Schema schema, long startIndex, long rowCount)
+    {
+        TableResult result = bigQuery.listTableData(
+                tableId,
+                schema,
+                BigQuery.TableDataListOption.startIndex(startIndex),
+                BigQuery.TableDataListOption.pageSize(rowCount));
+        return Streams.stream(result.iterateAll())
+                .limit(rowCount)
+                .collect(toImmutableList());
+    }
+
+    public boolean cancel(JobId jobId)
+    {
+        return bigQuery.cancel(jobId);
+    }
+
     public JobStatistics.QueryStatistics queryDryRun(Optional<String> datasetIdOptional, String query, List<Parameter> parameters)
     {
         try {
@@ -202,4 +336,80 @@ public class BigQueryClient
                 BigQueryType.toBqValue(type, value),
                 BigQueryType.toBqType(type));
     }
+
+    /**
+     * The first page of a result returned by jobs.query, the next pages are read from the job.
+     */
+    private class ShortQueryPage
+            implements Page<FieldValueList>
+    {
+        private final List<FieldValueList> values;
+        private final String nextPageToken;
+        private final JobId jobId;
+        private final long pageSize;
+
+        private ShortQueryPage(List<FieldValueList> values, String nextPageToken, JobId jobId, long pageSize)
+        {
+            this.values = values;
+            this.nextPageToken = nextPageToken;
+            this.jobId = jobId;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean hasNextPage()
+        {
+            return nextPageToken != null;
+        }
+
+        @Override
+        public String getNextPageToken()
+        {
+            return nextPageToken;
+        }
+
+        @Override
+        public Page<FieldValueList> getNextPage()
+        {
+            if (nextPageToken == null) {
+                return null;
+            }
+            try {
+                return getQueryResults(jobId, BigQuery.QueryResultsOption.pageToken(nextPageToken), BigQuery.QueryResultsOption.pageSize(pageSize));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BigQueryException(BaseHttpServiceException.UNKNOWN_CODE, format("Failed to read the result of job %s", jobId.getJob()), e);
+            }
+        }
+
+        @Override
+        public Iterable<FieldValueList> iterateAll()
+        {
+            return () -> new AbstractIterator<>()
+            {
+                private Page<FieldValueList> page = ShortQueryPage.this;
+                private Iterator<FieldValueList> rows = values.iterator();
+
+                @Override
+                protected FieldValueList computeNext()
+                {
+                    while (!rows.hasNext()) {
+                        if (!page.hasNextPage()) {
+                            return endOfData();
+                        }
+                        page = page.getNextPage();
+                        rows = page.getValues().iterator();
+                    }
+                    return rows.next();
+                }
+            };
+        }
+
+        @Override
+        public Iterable<FieldValueList> getValues()
+        {
+            return values;
+        }
+    }
 }
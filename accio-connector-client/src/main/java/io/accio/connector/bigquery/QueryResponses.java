@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.connector.bigquery;
+
+import com.google.api.client.util.Data;
+import com.google.api.services.bigquery.model.ErrorProto;
+import com.google.api.services.bigquery.model.TableCell;
+import com.google.api.services.bigquery.model.TableFieldSchema;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import com.google.cloud.bigquery.BigQueryError;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldList;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Converts the JSON model of a jobs.query response into the classes of the BigQuery client, the same way the client
+ * converts the responses of the calls it makes itself.
+ */
+final class QueryResponses
+{
+    private QueryResponses() {}
+
+    static Schema toSchema(TableSchema tableSchema)
+    {
+        return Schema.of(toFields(tableSchema.getFields()));
+    }
+
+    private static List<Field> toFields(List<TableFieldSchema> fields)
+    {
+        return fields.stream()
+                .map(QueryResponses::toField)
+                .collect(toImmutableList());
+    }
+
+    private static Field toField(TableFieldSchema fieldSchema)
+    {
+        FieldList subFields = fieldSchema.getFields() == null ? null : FieldList.of(toFields(fieldSchema.getFields()));
+        Field.Builder field = Field.newBuilder(fieldSchema.getName(), LegacySQLTypeName.valueOf(fieldSchema.getType()), subFields);
+        if (fieldSchema.getMode() != null) {
+            field.setMode(Field.Mode.valueOf(fieldSchema.getMode().toUpperCase(ENGLISH)));
+        }
+        return field.build();
+    }
+
+    static List<FieldValueList> toRows(List<TableRow> rows, Schema schema)
+    {
+        if (rows == null) {
+            return List.of();
+        }
+        return rows.stream()
+                .map(row -> toFieldValueList(row.getF(), schema.getFields()))
+                .collect(toImmutableList());
+    }
+
+    private static FieldValueList toFieldValueList(List<TableCell> cells, FieldList fields)
+    {
+        List<FieldValue> values = cells.stream()
+                .map(cell -> toFieldValue(cell.getV()))
+                .collect(toImmutableList());
+        return FieldValueList.of(values, fields);
+    }
+
+    // a cell is null, a string, a list of {"v": cell} for a repeated field or {"f": [{"v": cell}, ...]} for a record
+    @SuppressWarnings("unchecked")
+    private static FieldValue toFieldValue(Object cell)
+    {
+        if (Data.isNull(cell)) {
+            return FieldValue.of(FieldValue.Attribute.PRIMITIVE, null);
+        }
+        if (cell instanceof String) {
+            return FieldValue.of(FieldValue.Attribute.PRIMITIVE, cell);
+        }
+        if (cell instanceof List) {
+            return FieldValue.of(FieldValue.Attribute.REPEATED, ((List<Object>) cell).stream()
+                    .map(element -> toFieldValue(((Map<String, Object>) element).get("v")))
+                    .collect(toImmutableList()));
+        }
+        if (cell instanceof Map) {
+            List<Object> fields = (List<Object>) ((Map<String, Object>) cell).get("f");
+            return FieldValue.of(FieldValue.Attribute.RECORD, FieldValueList.of(fields.stream()
+                    .map(field -> toFieldValue(((Map<String, Object>) field).get("v")))
+                    .collect(toImmutableList())));
+        }
+        throw new IllegalArgumentException("Unexpected cell value: " + cell);
+    }
+
+    static List<BigQueryError> toErrors(List<ErrorProto> errors)
+    {
+        return errors.stream()
+                .map(error -> new BigQueryError(error.getReason(), error.getLocation(), error.getMessage(), error.getDebugInfo()))
+                .collect(toImmutableList());
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.connector.bigquery;
+
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.TableResult;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The result of a query run by {@link BigQueryClient#queryWithoutJob}.
+ */
+public class ShortQueryResult
+{
+    private final TableResult result;
+    private final JobId jobId;
+    private final boolean completedInline;
+
+    public ShortQueryResult(TableResult result, JobId jobId, boolean completedInline)
+    {
+        this.result = requireNonNull(result, "result is null");
+        this.jobId = requireNonNull(jobId, "jobId is null");
+        this.completedInline = completedInline;
+    }
+
+    public TableResult getResult()
+    {
+        return result;
+    }
+
+    /**
+     * The job BigQuery created for the query, used to read the pages after the first one.
+     */
+    public JobId getJobId()
+    {
+        return jobId;
+    }
+
+    /**
+     * Whether the query finished within the timeout and its first page came with the response, otherwise it was
+     * waited for as a job.
+     */
+    public boolean isCompletedInline()
+    {
+        return completedInline;
+    }
+}
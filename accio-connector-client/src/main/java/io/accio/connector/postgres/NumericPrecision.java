@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.connector.postgres;
+
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The precision and scale of a numeric value or column.
+ */
+public final class NumericPrecision
+{
+    private final int precision;
+    private final int scale;
+
+    public NumericPrecision(int precision, int scale)
+    {
+        checkArgument(precision > 0, "precision must be positive");
+        checkArgument(scale >= 0 && scale <= precision, "scale must be in [0, precision]");
+        this.precision = precision;
+        this.scale = scale;
+    }
+
+    public int getPrecision()
+    {
+        return precision;
+    }
+
+    public int getScale()
+    {
+        return scale;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        NumericPrecision that = (NumericPrecision) o;
+        return precision == that.precision && scale == that.scale;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(precision, scale);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "(" + precision + ", " + scale + ")";
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.connector.postgres;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.accio.base.AccioException;
+import io.accio.base.client.AutoCloseableIterator;
+import io.accio.base.type.PGType;
+import org.postgresql.PGConnection;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.metadata.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static io.accio.base.metadata.StandardErrorCode.NOT_SUPPORTED;
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.BooleanType.BOOLEAN;
+import static io.accio.base.type.DateType.DATE;
+import static io.accio.base.type.DoubleType.DOUBLE;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.NumericType.NUMERIC;
+import static io.accio.base.type.RealType.REAL;
+import static io.accio.base.type.SmallIntType.SMALLINT;
+import static io.accio.base.type.TimestampType.TIMESTAMP;
+import static io.accio.base.type.TimestampWithTimeZoneType.TIMESTAMP_WITH_TIMEZONE;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.temporal.ChronoUnit.MICROS;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decode the output of {@code COPY ... TO STDOUT (FORMAT binary)} row by row.
+ * Only one row is held in memory at a time.
+ *
+ * @see <a href="https://www.postgresql.org/docs/current/sql-copy.html#id-1.9.3.55.9.4">Binary Format</a>
+ */
+public class PostgresBinaryCopyReader
+        implements AutoCloseableIterator<Object[]>
+{
+    private static final byte[] SIGNATURE = "PGCOPY\n\377\r\n\0".getBytes(ISO_8859_1);
+    private static final LocalDateTime PG_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final LocalDate PG_EPOCH_DATE = PG_EPOCH.toLocalDate();
+
+    private static final short NUMERIC_POS = 0x0000;
+    private static final short NUMERIC_NEG = 0x4000;
+    private static final BigInteger NBASE = BigInteger.valueOf(10000);
+
+    private static final Map<PGType<?>, ValueReader> VALUE_READERS = ImmutableMap.<PGType<?>, ValueReader>builder()
+            .put(BOOLEAN, (input, length) -> input.readByte() != 0)
+            .put(SMALLINT, (input, length) -> input.readShort())
+            .put(INTEGER, (input, length) -> input.readInt())
+            .put(BIGINT, (input, length) -> input.readLong())
+            .put(REAL, (input, length) -> input.readFloat())
+            .put(DOUBLE, (input, length) -> input.readDouble())
+            .put(NUMERIC, (input, length) -> readNumeric(input))
+            .put(VARCHAR, PostgresBinaryCopyReader::readString)
+            .put(DATE, (input, length) -> PG_EPOCH_DATE.plusDays(input.readInt()))
+            .put(TIMESTAMP, (input, length) -> PG_EPOCH.plus(input.readLong(), MICROS))
+            .put(TIMESTAMP_WITH_TIMEZONE, (input, length) -> ZonedDateTime.of(PG_EPOCH.plus(input.readLong(), MICROS), ZoneOffset.UTC))
+            .build();
+
+    public static final List<PGType<?>> SUPPORTED_TYPES = ImmutableList.copyOf(VALUE_READERS.keySet());
+
+    private final DataInputStream input;
+    private final List<ValueReader> valueReaders;
+    private final AutoCloseable resource;
+
+    private Object[] nextRow;
+    private boolean finished;
+
+    public PostgresBinaryCopyReader(InputStream input, List<PGType<?>> types, AutoCloseable resource)
+    {
+        this.input = new DataInputStream(requireNonNull(input, "input is null"));
+        this.valueReaders = requireNonNull(types, "types is null").stream()
+                .map(type -> Optional.ofNullable(VALUE_READERS.get(type))
+                        .orElseThrow(() -> new AccioException(NOT_SUPPORTED, format("Unsupported type %s in binary copy", type.typName()))))
+                .collect(toImmutableList());
+        this.resource = requireNonNull(resource, "resource is null");
+        try {
+            readHeader();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readHeader()
+            throws IOException
+    {
+        byte[] signature = new byte[SIGNATURE.length];
+        input.readFully(signature);
+        if (!Arrays.equals(signature, SIGNATURE)) {
+            throw new AccioException(GENERIC_INTERNAL_ERROR, "Invalid binary copy signature");
+        }
+        // flags field; bit 16 marks OIDs included which we never request
+        input.readInt();
+        int extensionLength = input.readInt();
+        input.readFully(new byte[extensionLength]);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (nextRow == null && !finished) {
+            try {
+                nextRow = readRow();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = nextRow == null;
+        }
+        return nextRow != null;
+    }
+
+    @Override
+    public Object[] next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object[] row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    private Object[] readRow()
+            throws IOException
+    {
+        short fieldCount = input.readShort();
+        if (fieldCount == -1) {
+            return null;
+        }
+        if (fieldCount != valueReaders.size()) {
+            throw new AccioException(GENERIC_INTERNAL_ERROR, format("Expect %s fields but got %s", valueReaders.size(), fieldCount));
+        }
+        Object[] row = new Object[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            int length = input.readInt();
+            row[i] = length == -1 ? null : valueReaders.get(i).read(input, length);
+        }
+        return row;
+    }
+
+    private static String readString(DataInputStream input, int length)
+            throws IOException
+    {
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * numeric is sent as | int16 ndigits | int16 weight | int16 sign | int16 dscale | int16[] digits |
+     * where each digit is a base-10000 digit and weight is the exponent of the first digit.
+     */
+    private static BigDecimal readNumeric(DataInputStream input)
+            throws IOException
+    {
+        short ndigits = input.readShort();
+        short weight = input.readShort();
+        short sign = input.readShort();
+        short dscale = input.readShort();
+        if (sign != NUMERIC_POS && sign != NUMERIC_NEG) {
+            throw new AccioException(NOT_SUPPORTED, "NaN and infinity numeric values are not supported");
+        }
+        BigInteger unscaled = BigInteger.ZERO;
+        for (int i = 0; i < ndigits; i++) {
+            unscaled = unscaled.multiply(NBASE).add(BigInteger.valueOf(input.readShort()));
+        }
+        BigDecimal value = new BigDecimal(unscaled).scaleByPowerOfTen(4 * (weight - ndigits + 1));
+        value = value.setScale(dscale, RoundingMode.HALF_UP);
+        return sign == NUMERIC_NEG ? value.negate() : value;
+    }
+
+    /**
+     * Ask the server to cancel the copy. It can be called from another thread, the reader then fails on its next read.
+     */
+    public void cancel()
+            throws SQLException
+    {
+        if (resource instanceof Connection) {
+            ((Connection) resource).unwrap(PGConnection.class).cancelQuery();
+        }
+    }
+
+    @Override
+    public void close()
+            throws Exception
+    {
+        try (AutoCloseable resource = this.resource) {
+            input.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueReader
+    {
+        Object read(DataInputStream input, int length)
+                throws IOException;
+    }
+}
@@ -29,20 +29,26 @@ import io.accio.base.type.PGArray;
 import io.accio.base.type.PGType;
 import io.airlift.log.Logger;
 import org.joda.time.Period;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyInputStream;
 import org.postgresql.util.PGInterval;
 
 import javax.inject.Inject;
 
+import java.io.BufferedInputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.List;
+import java.util.Optional;
 
 import static io.accio.base.metadata.StandardErrorCode.GENERIC_USER_ERROR;
 import static io.accio.connector.postgres.PostgresJdbcType.toPGType;
+import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toUnmodifiableList;
 
@@ -50,6 +56,9 @@ public class PostgresClient
         implements Client
 {
     private static final Logger LOG = Logger.get(PostgresClient.class);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // the max precision of a numeric with a type modifier
+    private static final int MAX_NUMERIC_PRECISION = 1000;
     private final PostgresConfig postgresConfig;
 
     @Inject
@@ -144,6 +153,28 @@ public class PostgresClient
         }
     }
 
+    /**
+     * The declared precision and scale of the numeric columns of the statement, in the order of the columns.
+     * Postgres reports none for an unconstrained numeric column, so it's empty.
+     */
+    public List<Optional<NumericPrecision>> describeNumericPrecisions(String sql)
+    {
+        try (Connection connection = createConnection()) {
+            ResultSetMetaData metaData = connection.prepareStatement(sql).getMetaData();
+            ImmutableList.Builder<Optional<NumericPrecision>> builder = ImmutableList.builder();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                int precision = metaData.getPrecision(i);
+                boolean constrained = metaData.getColumnType(i) == Types.NUMERIC && precision > 0 && precision <= MAX_NUMERIC_PRECISION;
+                builder.add(constrained ? Optional.of(new NumericPrecision(precision, metaData.getScale(i))) : Optional.empty());
+            }
+            return builder.build();
+        }
+        catch (Exception e) {
+            LOG.error(e, "Error executing describe");
+            throw new AccioException(GENERIC_USER_ERROR, e);
+        }
+    }
+
     @Override
     public List<String> listTables()
     {
@@ -174,6 +205,38 @@ public class PostgresClient
         }
     }
 
+    /**
+     * Stream the result of the statement with {@code COPY ... TO STDOUT (FORMAT binary)}.
+     * The statement must produce exactly the given types, e.g. by casting every column explicitly.
+     */
+    public PostgresBinaryCopyReader copyOut(String sql, List<PGType<?>> types)
+    {
+        Connection connection = null;
+        try {
+            connection = createConnection();
+            PGCopyInputStream input = new PGCopyInputStream(connection.unwrap(PGConnection.class), format("COPY (%s) TO STDOUT (FORMAT binary)", sql));
+            return new PostgresBinaryCopyReader(new BufferedInputStream(input, COPY_BUFFER_SIZE), types, connection);
+        }
+        catch (Exception e) {
+            closeQuietly(connection);
+            LOG.error(e, "Error executing copy");
+            throw new AccioException(GENERIC_USER_ERROR, e);
+        }
+    }
+
+    private static void closeQuietly(Connection connection)
+    {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        }
+        catch (SQLException e) {
+            LOG.warn(e, "Failed to close connection");
+        }
+    }
+
     public Connection createConnection()
             throws SQLException
     {
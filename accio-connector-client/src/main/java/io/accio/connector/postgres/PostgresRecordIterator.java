@@ -15,6 +15,7 @@
 package io.accio.connector.postgres;
 
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
 import io.accio.base.client.Client;
 import io.accio.base.client.jdbc.BaseJdbcRecordIterator;
 import org.joda.time.Period;
@@ -26,7 +27,6 @@ import java.sql.Date;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -47,81 +47,89 @@ public class PostgresRecordIterator
     public static PostgresRecordIterator of(Client client, String sql, List<Parameter> parameters)
             throws SQLException
     {
-        return new PostgresRecordIterator(client, sql, parameters);
+        return new PostgresRecordIterator(client, sql, parameters, new QueryCancellation());
     }
 
-    private PostgresRecordIterator(Client client, String sql, List<Parameter> parameters)
+    public static PostgresRecordIterator of(Client client, String sql, List<Parameter> parameters, QueryCancellation cancellation)
             throws SQLException
     {
-        super(client, sql, parameters);
+        return new PostgresRecordIterator(client, sql, parameters, cancellation);
+    }
+
+    private PostgresRecordIterator(Client client, String sql, List<Parameter> parameters, QueryCancellation cancellation)
+            throws SQLException
+    {
+        super(client, sql, parameters, cancellation);
     }
 
     @Override
     public Object[] getCurrentRecord()
             throws SQLException
     {
-        List<Object> builder = new ArrayList<>(columnCount);
+        Object[] record = new Object[columnCount];
         for (int i = 1; i <= columnCount; i++) {
-            if (resultSet.getMetaData().getColumnType(i) == Types.BLOB) {
-                Blob blob = resultSet.getBlob(i);
-                byte[] bytes = blob.getBytes(0, (int) blob.length());
-                builder.add(bytes);
-            }
-            else if (resultSet.getMetaData().getColumnType(i) == Types.SMALLINT) {
-                builder.add(resultSet.getShort(i));
-            }
-            else if (resultSet.getMetaData().getColumnType(i) == Types.TIMESTAMP) {
-                builder.add(resultSet.getTimestamp(i).toLocalDateTime());
-            }
-            else if (resultSet.getMetaData().getColumnType(i) == Types.ARRAY) {
-                List<Object> objArray = Optional.ofNullable(resultSet.getArray(i))
-                        .map(array -> {
-                            try {
-                                return Arrays.stream((Object[]) array.getArray()).map(obj -> {
-                                    if (obj instanceof PGobject) {
-                                        return getPgObjectValue((PGobject) obj);
-                                    }
-                                    if (obj instanceof Timestamp) {
-                                        return ((Timestamp) obj).toLocalDateTime();
-                                    }
-                                    if (obj instanceof Date) {
-                                        return ((Date) obj).toLocalDate();
-                                    }
-                                    return obj;
-                                }).collect(Collectors.toList());
-                            }
-                            catch (SQLException e) {
-                                throw new RuntimeException(e);
-                            }
-                        }).orElse(null);
-                builder.add(objArray);
-            }
-            else if (resultSet.getMetaData().getColumnType(i) == Types.DATE) {
-                builder.add(resultSet.getDate(i).toLocalDate());
-            }
-            else {
-                Object obj = resultSet.getObject(i);
-                if (obj instanceof PGInterval) {
-                    PGInterval pgInterval = (PGInterval) obj;
-                    builder.add(new Period(
-                            pgInterval.getYears(),
-                            pgInterval.getMonths(),
-                            0,
-                            pgInterval.getDays(),
-                            pgInterval.getHours(),
-                            pgInterval.getMinutes(),
-                            pgInterval.getWholeSeconds(),
-                            pgInterval.getMicroSeconds() / 1000));
-                }
-                else if (obj instanceof PGobject) {
-                    builder.add(getPgObjectValue((PGobject) obj));
-                }
-                else {
-                    builder.add(obj);
-                }
-            }
+            record[i - 1] = getCurrentValue(i);
+        }
+        return record;
+    }
+
+    @Override
+    protected Object getCurrentValue(int i)
+            throws SQLException
+    {
+        int columnType = getResultSetMetaData().getColumnType(i);
+        if (columnType == Types.BLOB) {
+            Blob blob = resultSet.getBlob(i);
+            return blob.getBytes(0, (int) blob.length());
+        }
+        if (columnType == Types.SMALLINT) {
+            return resultSet.getShort(i);
+        }
+        if (columnType == Types.TIMESTAMP) {
+            return resultSet.getTimestamp(i).toLocalDateTime();
+        }
+        if (columnType == Types.ARRAY) {
+            return Optional.ofNullable(resultSet.getArray(i))
+                    .map(array -> {
+                        try {
+                            return Arrays.stream((Object[]) array.getArray()).map(obj -> {
+                                if (obj instanceof PGobject) {
+                                    return getPgObjectValue((PGobject) obj);
+                                }
+                                if (obj instanceof Timestamp) {
+                                    return ((Timestamp) obj).toLocalDateTime();
+                                }
+                                if (obj instanceof Date) {
+                                    return ((Date) obj).toLocalDate();
+                                }
+                                return obj;
+                            }).collect(Collectors.toList());
+                        }
+                        catch (SQLException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }).orElse(null);
+        }
+        if (columnType == Types.DATE) {
+            return resultSet.getDate(i).toLocalDate();
+        }
+        Object obj = resultSet.getObject(i);
+        if (obj instanceof PGInterval) {
+            PGInterval pgInterval = (PGInterval) obj;
+            return new Period(
+                    pgInterval.getYears(),
+                    pgInterval.getMonths(),
+                    0,
+                    pgInterval.getDays(),
+                    pgInterval.getHours(),
+                    pgInterval.getMinutes(),
+                    pgInterval.getWholeSeconds(),
+                    pgInterval.getMicroSeconds() / 1000);
+        }
+        if (obj instanceof PGobject) {
+            return getPgObjectValue((PGobject) obj);
         }
-        return builder.toArray();
+        return obj;
     }
 
     public Object getPgObjectValue(PGobject pgObject)
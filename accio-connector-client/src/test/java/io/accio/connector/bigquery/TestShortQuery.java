@@ -0,0 +1,252 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.connector.bigquery;
+
+import com.google.api.client.util.Data;
+import com.google.api.gax.paging.Page;
+import com.google.api.services.bigquery.model.ErrorProto;
+import com.google.api.services.bigquery.model.JobReference;
+import com.google.api.services.bigquery.model.QueryRequest;
+import com.google.api.services.bigquery.model.QueryResponse;
+import com.google.api.services.bigquery.model.TableCell;
+import com.google.api.services.bigquery.model.TableFieldSchema;
+import com.google.api.services.bigquery.model.TableRow;
+import com.google.api.services.bigquery.model.TableSchema;
+import com.google.cloud.bigquery.BigQuery;
+import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.TableResult;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestShortQuery
+{
+    private static final JobId JOB_ID = JobId.newBuilder().setProject("project").setJob("job").setLocation("US").build();
+    private static final Schema SCHEMA = Schema.of(Field.of("id", LegacySQLTypeName.INTEGER));
+
+    @Test
+    public void testConvertResponse()
+    {
+        QueryResponse response = completedResponse()
+                .setSchema(new TableSchema().setFields(List.of(
+                        new TableFieldSchema().setName("id").setType("INTEGER").setMode("required"),
+                        new TableFieldSchema().setName("tags").setType("STRING").setMode("REPEATED"),
+                        new TableFieldSchema().setName("address").setType("RECORD").setFields(List.of(
+                                new TableFieldSchema().setName("city").setType("STRING"))))))
+                .setRows(List.of(
+                        new TableRow().setF(List.of(
+                                new TableCell().setV("1"),
+                                new TableCell().setV(List.of(Map.of("v", "a"), Map.of("v", "b"))),
+                                new TableCell().setV(Map.of("f", List.of(Map.of("v", "Taipei")))))),
+                        new TableRow().setF(List.of(
+                                new TableCell().setV("2"),
+                                new TableCell().setV(List.of()),
+                                new TableCell().setV(Data.nullOf(Object.class))))))
+                .setTotalRows(BigInteger.valueOf(2));
+        StubClient client = new StubClient(response);
+        ShortQueryResult result = client.queryWithoutJob("SELECT 1", "US", 1000, 10, jobId -> {
+            throw new AssertionError("a completed query isn't waited for");
+        });
+
+        assertThat(client.request.getQuery()).isEqualTo("SELECT 1");
+        assertThat(client.request.getLocation()).isEqualTo("US");
+        assertThat(client.request.getTimeoutMs()).isEqualTo(1000);
+        assertThat(client.request.getMaxResults()).isEqualTo(10);
+        assertThat(client.request.getUseLegacySql()).isFalse();
+        assertThat(result.isCompletedInline()).isTrue();
+        assertThat(result.getJobId()).isEqualTo(JOB_ID);
+
+        TableResult tableResult = result.getResult();
+        assertThat(tableResult.getTotalRows()).isEqualTo(2);
+        assertThat(tableResult.getSchema().getFields()).extracting(Field::getName).containsExactly("id", "tags", "address");
+        assertThat(tableResult.getSchema().getFields().get("id").getMode()).isEqualTo(Field.Mode.REQUIRED);
+        assertThat(tableResult.getSchema().getFields().get("address").getSubFields()).extracting(Field::getName).containsExactly("city");
+        assertThat(tableResult.hasNextPage()).isFalse();
+
+        List<FieldValueList> rows = ImmutableList.copyOf(tableResult.getValues());
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).get("id").getLongValue()).isEqualTo(1);
+        assertThat(rows.get(0).get("tags").getRepeatedValue()).extracting(FieldValue::getStringValue).containsExactly("a", "b");
+        assertThat(rows.get(0).get("address").getRecordValue().get(0).getStringValue()).isEqualTo("Taipei");
+        assertThat(rows.get(1).get("tags").getRepeatedValue()).isEmpty();
+        assertThat(rows.get(1).get("address").isNull()).isTrue();
+        assertThat(client.requestedPages).isEmpty();
+    }
+
+    @Test
+    public void testNextPagesFromJob()
+    {
+        QueryResponse response = completedResponse()
+                .setSchema(new TableSchema().setFields(List.of(new TableFieldSchema().setName("id").setType("INTEGER"))))
+                .setRows(List.of(row("1"), row("2")))
+                .setTotalRows(BigInteger.valueOf(5))
+                .setPageToken("token-2");
+        StubClient client = new StubClient(response,
+                new TableResult(SCHEMA, 5, new FakePage(List.of(value("3"), value("4")), new TableResult(SCHEMA, 5, new FakePage(List.of(value("5")), null)))));
+        TableResult result = client.queryWithoutJob("SELECT id FROM t", "US", 1000, 2, jobId -> {}).getResult();
+
+        assertThat(result.hasNextPage()).isTrue();
+        assertThat(result.getNextPageToken()).isEqualTo("token-2");
+        assertThat(ImmutableList.copyOf(result.getValues())).extracting(row -> row.get(0).getStringValue()).containsExactly("1", "2");
+        assertThat(client.requestedPages).isEmpty();
+
+        // the pages after the first are read through the job in pages of the same size
+        assertThat(ImmutableList.copyOf(result.iterateAll())).extracting(row -> row.get(0).getStringValue()).containsExactly("1", "2", "3", "4", "5");
+        assertThat(client.requestedPages).containsExactly("[QueryResultsOption{name=pageToken, value=token-2}, QueryResultsOption{name=maxResults, value=2}]");
+        assertThat(client.jobIds).containsExactly(JOB_ID);
+    }
+
+    @Test
+    public void testFallbackToJob()
+    {
+        QueryResponse response = new QueryResponse()
+                .setJobReference(new JobReference().setProjectId("project").setJobId("job").setLocation("US"))
+                .setJobComplete(false);
+        TableResult jobResult = new TableResult(SCHEMA, 1, new FakePage(List.of(value("1")), null));
+        StubClient client = new StubClient(response, jobResult);
+        List<JobId> waited = new ArrayList<>();
+        ShortQueryResult result = client.queryWithoutJob("SELECT id FROM t", "US", 1000, 10, waited::add);
+
+        assertThat(result.isCompletedInline()).isFalse();
+        assertThat(result.getResult()).isSameAs(jobResult);
+        assertThat(waited).containsExactly(JOB_ID);
+        assertThat(client.jobIds).containsExactly(JOB_ID);
+
+        // onJob can stop the wait for the job, e.g. when the query was canceled
+        StubClient canceled = new StubClient(response, jobResult);
+        assertThatThrownBy(() -> canceled.queryWithoutJob("SELECT id FROM t", "US", 1000, 10, jobId -> {
+            throw new IllegalStateException("canceled");
+        })).hasMessage("canceled");
+        assertThat(canceled.jobIds).isEmpty();
+    }
+
+    @Test
+    public void testErrors()
+    {
+        QueryResponse response = completedResponse()
+                .setErrors(List.of(new ErrorProto().setReason("invalidQuery").setLocation("query").setMessage("Unrecognized name: foo")));
+        assertThatThrownBy(() -> new StubClient(response).queryWithoutJob("SELECT foo", "US", 1000, 10, jobId -> {}))
+                .isInstanceOfSatisfying(BigQueryException.class, e -> assertThat(e.getReason()).isEqualTo("invalidQuery"))
+                .hasMessage("Unrecognized name: foo");
+    }
+
+    private static QueryResponse completedResponse()
+    {
+        return new QueryResponse()
+                .setJobReference(new JobReference().setProjectId("project").setJobId("job").setLocation("US"))
+                .setJobComplete(true);
+    }
+
+    private static TableRow row(String value)
+    {
+        return new TableRow().setF(List.of(new TableCell().setV(value)));
+    }
+
+    private static FieldValueList value(String value)
+    {
+        return FieldValueList.of(List.of(FieldValue.of(FieldValue.Attribute.PRIMITIVE, value)));
+    }
+
+    private static class StubClient
+            extends BigQueryClient
+    {
+        private final QueryResponse response;
+        private final List<TableResult> results;
+        private final List<JobId> jobIds = new ArrayList<>();
+        private final List<String> requestedPages = new ArrayList<>();
+        private QueryRequest request;
+
+        private StubClient(QueryResponse response, TableResult... results)
+        {
+            super(null);
+            this.response = response;
+            this.results = new ArrayList<>(List.of(results));
+        }
+
+        @Override
+        QueryResponse queryRpc(QueryRequest request)
+        {
+            this.request = request;
+            return response;
+        }
+
+        @Override
+        TableResult getQueryResults(JobId jobId, BigQuery.QueryResultsOption... options)
+        {
+            jobIds.add(jobId);
+            if (Arrays.stream(options).anyMatch(option -> option.toString().contains("pageToken"))) {
+                requestedPages.add(Arrays.toString(options));
+            }
+            return results.remove(0);
+        }
+    }
+
+    private static class FakePage
+            implements Page<FieldValueList>
+    {
+        private final List<FieldValueList> values;
+        private final Page<FieldValueList> nextPage;
+
+        private FakePage(List<FieldValueList> values, Page<FieldValueList> nextPage)
+        {
+            this.values = values;
+            this.nextPage = nextPage;
+        }
+
+        @Override
+        public boolean hasNextPage()
+        {
+            return nextPage != null;
+        }
+
+        @Override
+        public String getNextPageToken()
+        {
+            return hasNextPage() ? "next" : null;
+        }
+
+        @Override
+        public Page<FieldValueList> getNextPage()
+        {
+            return nextPage;
+        }
+
+        @Override
+        public Iterable<FieldValueList> iterateAll()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterable<FieldValueList> getValues()
+        {
+            return values;
+        }
+    }
+}
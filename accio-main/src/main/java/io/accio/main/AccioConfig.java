@@ -15,10 +15,12 @@
 package io.accio.main;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 
 import javax.validation.constraints.NotNull;
 
 import java.io.File;
+import java.util.Optional;
 
 public class AccioConfig
 {
@@ -30,6 +32,9 @@ public class AccioConfig
 
     private File accioMDLFile = new File("etc/acciomdl.json");
     private DataSourceType dataSourceType;
+    private boolean persistDateSpine;
+    private boolean cacheDateSpine;
+    private File accioMDLSnapshotFile;
 
     @NotNull
     public File getAccioMDLFile()
@@ -56,4 +61,43 @@ public class AccioConfig
         this.dataSourceType = dataSourceType;
         return this;
     }
+
+    public boolean isPersistDateSpine()
+    {
+        return persistDateSpine;
+    }
+
+    @Config("accio.date-spine.persist")
+    @ConfigDescription("Create the date spine once as a table in the metadata schema of the data source, which cumulative metrics read instead of generating it; default is false")
+    public AccioConfig setPersistDateSpine(boolean persistDateSpine)
+    {
+        this.persistDateSpine = persistDateSpine;
+        return this;
+    }
+
+    public boolean isCacheDateSpine()
+    {
+        return cacheDateSpine;
+    }
+
+    @Config("accio.date-spine.cache")
+    @ConfigDescription("Create the date spine once as a table in duckdb, so that the queries joining it with cached objects run in duckdb; default is false")
+    public AccioConfig setCacheDateSpine(boolean cacheDateSpine)
+    {
+        this.cacheDateSpine = cacheDateSpine;
+        return this;
+    }
+
+    public Optional<File> getAccioMDLSnapshotFile()
+    {
+        return Optional.ofNullable(accioMDLSnapshotFile);
+    }
+
+    @Config("accio.file.snapshot")
+    @ConfigDescription("Keep the compiled mdl in this file, so a restart with an unchanged mdl file skips rendering the macros; not kept by default")
+    public AccioConfig setAccioMDLSnapshotFile(File accioMDLSnapshotFile)
+    {
+        this.accioMDLSnapshotFile = accioMDLSnapshotFile;
+        return this;
+    }
 }
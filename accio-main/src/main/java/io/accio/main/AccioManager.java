@@ -16,7 +16,12 @@ package io.accio.main;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.accio.base.AccioMDL;
+import io.accio.base.AccioMDLSnapshot;
+import io.accio.base.SessionContext;
+import io.accio.base.sql.SqlConverter;
 import io.accio.cache.CacheManager;
+import io.accio.main.metadata.Metadata;
+import io.accio.sqlrewrite.DateSpineInfo;
 import io.airlift.log.Logger;
 
 import javax.inject.Inject;
@@ -24,9 +29,13 @@ import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static io.accio.base.AccioMDL.EMPTY;
+import static io.accio.sqlrewrite.Utils.createDateSpineQuery;
+import static io.trino.sql.SqlFormatter.formatSql;
+import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
 public class AccioManager
@@ -35,17 +44,26 @@ public class AccioManager
     private static final Logger LOG = Logger.get(AccioManager.class);
     private final AtomicReference<AccioMDL> accioMDL = new AtomicReference<>(EMPTY);
     private final File accioMDLFile;
+    private final Optional<File> accioMDLSnapshotFile;
     private final CacheManager cacheManager;
+    private final Metadata metadata;
+    private final SqlConverter sqlConverter;
+    private final boolean persistDateSpine;
+    private final boolean cacheDateSpine;
 
     @Inject
-    public AccioManager(AccioConfig accioConfig, CacheManager cacheManager)
+    public AccioManager(AccioConfig accioConfig, CacheManager cacheManager, Metadata metadata, SqlConverter sqlConverter)
             throws IOException
     {
         this.accioMDLFile = requireNonNull(accioConfig.getAccioMDLFile(), "accioMDLFile is null");
+        this.accioMDLSnapshotFile = accioConfig.getAccioMDLSnapshotFile();
         this.cacheManager = requireNonNull(cacheManager, "cacheManager is null");
+        this.metadata = requireNonNull(metadata, "metadata is null");
+        this.sqlConverter = requireNonNull(sqlConverter, "sqlConverter is null");
+        this.persistDateSpine = accioConfig.isPersistDateSpine();
+        this.cacheDateSpine = accioConfig.isCacheDateSpine();
         if (accioMDLFile.exists()) {
             loadAccioMDLFromFile();
-            cacheManager.createTaskUntilDone(getAccioMDL());
         }
         else {
             LOG.warn("AccioMDL file %s does not exist", accioMDLFile);
@@ -62,8 +80,71 @@ public class AccioManager
             throws JsonProcessingException
     {
         AccioMDL oldAccioMDL = accioMDL.get();
-        cacheManager.removeCacheIfExist(oldAccioMDL.getCatalog(), oldAccioMDL.getSchema());
-        accioMDL.set(AccioMDL.fromJson(json));
+        AccioMDL newAccioMDL = accioMDLSnapshotFile.isPresent()
+                ? AccioMDLSnapshot.load(json, accioMDLSnapshotFile.get().toPath())
+                : AccioMDL.fromJson(json);
+        if (persistDateSpine) {
+            newAccioMDL = persistDateSpine(newAccioMDL);
+        }
+        if (cacheDateSpine) {
+            try {
+                cacheManager.cacheDateSpine(newAccioMDL);
+            }
+            catch (RuntimeException e) {
+                LOG.warn(e, "Failed to cache the date spine in duckdb");
+                // don't read the date spine of the previous mdl
+                cacheManager.removeDateSpineCache(newAccioMDL.getCatalog(), newAccioMDL.getSchema());
+            }
+        }
+        // the queries of the new mdl don't read the caches of the objects it changes until they're rebuilt
+        cacheManager.invalidateChangedCaches(oldAccioMDL, newAccioMDL);
+        accioMDL.set(newAccioMDL);
+        dropPreviousDateSpine(oldAccioMDL, newAccioMDL);
+        // only the caches of the objects changed by the new mdl are rebuilt
+        cacheManager.reloadCacheUntilDone(oldAccioMDL, newAccioMDL);
+    }
+
+    /**
+     * Create the date spine as a table in the metadata schema unless it's already there, and read it from there
+     * instead of generating it in each query. The mdl is unchanged if the table can't be created.
+     */
+    private AccioMDL persistDateSpine(AccioMDL mdl)
+    {
+        String schemaName = metadata.getMetadataSchemaName();
+        String tableName = format("%s.%s", schemaName, DateSpineInfo.getTableName(mdl.getDateSpine()));
+        try {
+            if (!metadata.isSchemaExist(schemaName)) {
+                metadata.createSchema(schemaName);
+            }
+            SessionContext sessionContext = SessionContext.builder()
+                    .setCatalog(mdl.getCatalog())
+                    .setSchema(mdl.getSchema())
+                    .build();
+            String dateSpine = sqlConverter.convert(formatSql(createDateSpineQuery(mdl.getDateSpine())), sessionContext);
+            metadata.directDDL(format("CREATE TABLE IF NOT EXISTS %s AS %s", tableName, dateSpine));
+            return mdl.withDateSpineTable(tableName);
+        }
+        catch (RuntimeException e) {
+            LOG.warn(e, "Failed to persist the date spine in %s, it's generated in each query instead", tableName);
+            return mdl;
+        }
+    }
+
+    /**
+     * Drop the date spine table the previous mdl read, once the new mdl reads another one or generates its date spine.
+     */
+    private void dropPreviousDateSpine(AccioMDL oldMdl, AccioMDL newMdl)
+    {
+        Optional<String> previous = oldMdl.getDateSpineTable();
+        if (previous.isEmpty() || previous.equals(newMdl.getDateSpineTable())) {
+            return;
+        }
+        try {
+            metadata.directDDL(format("DROP TABLE IF EXISTS %s", previous.get()));
+        }
+        catch (RuntimeException e) {
+            LOG.warn(e, "Failed to drop the previous date spine %s", previous.get());
+        }
     }
 
     @Override
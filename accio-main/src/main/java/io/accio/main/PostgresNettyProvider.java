@@ -18,9 +18,12 @@ import com.google.common.collect.ImmutableList;
 import io.accio.base.sql.SqlConverter;
 import io.accio.cache.CacheManager;
 import io.accio.cache.CachedTableMapping;
+import io.accio.main.history.QueryHistory;
 import io.accio.main.metadata.Metadata;
 import io.accio.main.pgcatalog.regtype.RegObjectFactory;
+import io.accio.main.wireprotocol.CancelRegistry;
 import io.accio.main.wireprotocol.PostgresNetty;
+import io.accio.main.wireprotocol.WireProtocolStats;
 import io.accio.main.wireprotocol.ssl.SslContextProvider;
 import org.elasticsearch.common.network.NetworkService;
 
@@ -41,6 +44,9 @@ public class PostgresNettyProvider
     private final AccioMetastore accioMetastore;
     private final CacheManager cacheManager;
     private final CachedTableMapping cachedTableMapping;
+    private final WireProtocolStats wireProtocolStats;
+    private final QueryHistory queryHistory;
+    private final CancelRegistry cancelRegistry;
 
     @Inject
     public PostgresNettyProvider(
@@ -51,7 +57,10 @@ public class PostgresNettyProvider
             SqlConverter sqlConverter,
             AccioMetastore accioMetastore,
             CacheManager cacheManager,
-            CachedTableMapping cachedTableMapping)
+            CachedTableMapping cachedTableMapping,
+            WireProtocolStats wireProtocolStats,
+            QueryHistory queryHistory,
+            CancelRegistry cancelRegistry)
     {
         this.postgresWireProtocolConfig = requireNonNull(postgresWireProtocolConfig, "postgreWireProtocolConfig is null");
         this.sslContextProvider = requireNonNull(sslContextProvider, "sslContextProvider is null");
@@ -61,6 +70,9 @@ public class PostgresNettyProvider
         this.accioMetastore = requireNonNull(accioMetastore, "accioMetastore is null");
         this.cacheManager = requireNonNull(cacheManager, "cacheManager is null");
         this.cachedTableMapping = requireNonNull(cachedTableMapping, "cachedTableMapping is null");
+        this.wireProtocolStats = requireNonNull(wireProtocolStats, "wireProtocolStats is null");
+        this.queryHistory = requireNonNull(queryHistory, "queryHistory is null");
+        this.cancelRegistry = requireNonNull(cancelRegistry, "cancelRegistry is null");
     }
 
     @Override
@@ -76,7 +88,10 @@ public class PostgresNettyProvider
                 sqlConverter,
                 accioMetastore,
                 cacheManager,
-                cachedTableMapping);
+                cachedTableMapping,
+                wireProtocolStats,
+                queryHistory,
+                cancelRegistry);
         postgresNetty.start();
         return postgresNetty;
     }
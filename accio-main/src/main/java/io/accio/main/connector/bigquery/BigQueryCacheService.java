@@ -13,18 +13,27 @@
  */
 package io.accio.main.connector.bigquery;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.accio.base.AccioException;
+import io.accio.base.CatalogSchemaTableName;
 import io.accio.cache.CacheService;
 import io.accio.cache.PathInfo;
+import io.accio.connector.bigquery.BigQueryClient;
 import io.accio.connector.bigquery.GcsStorageClient;
 import io.accio.main.metadata.Metadata;
+import io.airlift.log.Logger;
 
 import javax.inject.Inject;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.accio.base.metadata.StandardErrorCode.GENERIC_USER_ERROR;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
@@ -33,6 +42,7 @@ import static java.util.UUID.randomUUID;
 public class BigQueryCacheService
         implements CacheService
 {
+    private static final Logger LOG = Logger.get(BigQueryCacheService.class);
     private static final String CACHE_FOLDER = format("cache-%s", randomUUID());
     // Pattern: bucket/CACHE_FOLDER/catalog/schema/name/uuid
     private static final Pattern PATH_PATTERN = Pattern.compile(
@@ -46,17 +56,20 @@ public class BigQueryCacheService
     private final Optional<String> bucketName;
     private final Metadata metadata;
     private final GcsStorageClient gcsStorageClient;
+    private final BigQueryClient bigQueryClient;
 
     @Inject
     public BigQueryCacheService(
             Metadata metadata,
             BigQueryConfig bigQueryConfig,
-            GcsStorageClient gcsStorageClient)
+            GcsStorageClient gcsStorageClient,
+            BigQueryClient bigQueryClient)
     {
         requireNonNull(bigQueryConfig, "bigQueryConfig is null");
         this.bucketName = bigQueryConfig.getBucketName();
         this.metadata = requireNonNull(metadata, "metadata is null");
         this.gcsStorageClient = requireNonNull(gcsStorageClient, "gcsStorageClient is null");
+        this.bigQueryClient = requireNonNull(bigQueryClient, "bigQueryClient is null");
     }
 
     @Override
@@ -81,6 +94,36 @@ public class BigQueryCacheService
         return Optional.of(PathInfo.of(path, pattern));
     }
 
+    /**
+     * Use the last modified time of the source tables, which is a metadata lookup without running any job.
+     * Views are unknown since their last modified time doesn't change with the data they read.
+     */
+    @Override
+    public Optional<String> getSourceVersion(Set<CatalogSchemaTableName> sourceTables)
+    {
+        return getSourceVersion(bigQueryClient, sourceTables);
+    }
+
+    @VisibleForTesting
+    static Optional<String> getSourceVersion(BigQueryClient bigQueryClient, Set<CatalogSchemaTableName> sourceTables)
+    {
+        List<String> versions = new ArrayList<>();
+        for (CatalogSchemaTableName sourceTable : sourceTables.stream().sorted(Comparator.comparing(CatalogSchemaTableName::toString)).collect(toImmutableList())) {
+            try {
+                Optional<Long> lastModifiedTime = bigQueryClient.getLastModifiedTime(sourceTable);
+                if (lastModifiedTime.isEmpty()) {
+                    return Optional.empty();
+                }
+                versions.add(format("%s@%s", sourceTable, lastModifiedTime.get()));
+            }
+            catch (Exception e) {
+                LOG.warn(e, "Failed to get the last modified time of %s", sourceTable);
+                return Optional.empty();
+            }
+        }
+        return Optional.of(String.join(",", versions));
+    }
+
     @Override
     public void deleteTarget(PathInfo pathInfo)
     {
@@ -17,13 +17,33 @@ import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.configuration.ConfigSecuritySensitive;
 import io.airlift.configuration.validation.FileExists;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MaxDuration;
+import io.airlift.units.MinDuration;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import java.util.Optional;
 
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
 public class BigQueryConfig
 {
+    public enum QueryMode
+    {
+        /**
+         * Create a job for each query and wait for it.
+         */
+        JOB,
+        /**
+         * Run a query without parameters with jobs.query, which returns the first page of a short query inline.
+         */
+        SHORT,
+    }
+
     private Optional<String> credentialsKey = Optional.empty();
     private Optional<String> credentialsFile = Optional.empty();
     private Optional<String> projectId = Optional.empty();
@@ -34,6 +54,16 @@ public class BigQueryConfig
     private Optional<String> bucketName = Optional.empty();
     private String metadataSchemaPrefix = "";
 
+    private long parallelReadMinRows = 100_000;
+    private DataSize parallelReadMinSize = DataSize.of(64, MEGABYTE);
+    private int parallelReadStreams = 4;
+    private int parallelReadRangeRows = 20_000;
+    private long resultPageSize = 10_000;
+    private int resultPrefetchPages = 2;
+    private int readThreads = 32;
+    private QueryMode queryMode = QueryMode.SHORT;
+    private Duration shortQueryTimeout = new Duration(10, SECONDS);
+
     public Optional<String> getCredentialsKey()
     {
         return credentialsKey;
@@ -126,4 +156,132 @@ public class BigQueryConfig
         this.metadataSchemaPrefix = metadataSchemaPrefix;
         return this;
     }
+
+    @Min(0)
+    public long getParallelReadMinRows()
+    {
+        return parallelReadMinRows;
+    }
+
+    @Config("bigquery.parallel-read.min-rows")
+    @ConfigDescription("A query result with at least this many rows is read in parallel ranges instead of page by page; default is 100000")
+    public BigQueryConfig setParallelReadMinRows(long parallelReadMinRows)
+    {
+        this.parallelReadMinRows = parallelReadMinRows;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getParallelReadMinSize()
+    {
+        return parallelReadMinSize;
+    }
+
+    @Config("bigquery.parallel-read.min-size")
+    @ConfigDescription("A query result of at least this size is read in parallel ranges instead of page by page; default is 64MB")
+    public BigQueryConfig setParallelReadMinSize(DataSize parallelReadMinSize)
+    {
+        this.parallelReadMinSize = parallelReadMinSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getParallelReadStreams()
+    {
+        return parallelReadStreams;
+    }
+
+    @Config("bigquery.parallel-read.streams")
+    @ConfigDescription("The max number of ranges of one query result downloaded concurrently; default is 4")
+    public BigQueryConfig setParallelReadStreams(int parallelReadStreams)
+    {
+        this.parallelReadStreams = parallelReadStreams;
+        return this;
+    }
+
+    @Min(1)
+    public int getParallelReadRangeRows()
+    {
+        return parallelReadRangeRows;
+    }
+
+    @Config("bigquery.parallel-read.range-rows")
+    @ConfigDescription("The number of rows in each range of a query result read in parallel; default is 20000")
+    public BigQueryConfig setParallelReadRangeRows(int parallelReadRangeRows)
+    {
+        this.parallelReadRangeRows = parallelReadRangeRows;
+        return this;
+    }
+
+    @Min(1)
+    public long getResultPageSize()
+    {
+        return resultPageSize;
+    }
+
+    @Config("bigquery.result.page-size")
+    @ConfigDescription("The max number of rows in each page of a query result; default is 10000")
+    public BigQueryConfig setResultPageSize(long resultPageSize)
+    {
+        this.resultPageSize = resultPageSize;
+        return this;
+    }
+
+    @Min(0)
+    public int getResultPrefetchPages()
+    {
+        return resultPrefetchPages;
+    }
+
+    @Config("bigquery.result.prefetch-pages")
+    @ConfigDescription("The number of pages of a query result fetched ahead of the client in the background, 0 to fetch each page when it is needed; default is 2")
+    public BigQueryConfig setResultPrefetchPages(int resultPrefetchPages)
+    {
+        this.resultPrefetchPages = resultPrefetchPages;
+        return this;
+    }
+
+    @Min(1)
+    public int getReadThreads()
+    {
+        return readThreads;
+    }
+
+    @Config("bigquery.read-threads")
+    @ConfigDescription("The max number of threads prefetching pages and reading ranges of the query results of all queries; default is 32")
+    public BigQueryConfig setReadThreads(int readThreads)
+    {
+        this.readThreads = readThreads;
+        return this;
+    }
+
+    @NotNull
+    public QueryMode getQueryMode()
+    {
+        return queryMode;
+    }
+
+    @Config("bigquery.query-mode")
+    @ConfigDescription("How queries are run: JOB creates a job for each query, SHORT returns the result of a short query inline; default is SHORT")
+    public BigQueryConfig setQueryMode(QueryMode queryMode)
+    {
+        this.queryMode = queryMode;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    @MaxDuration("200s")
+    public Duration getShortQueryTimeout()
+    {
+        return shortQueryTimeout;
+    }
+
+    @Config("bigquery.short-query.timeout")
+    @ConfigDescription("How long BigQuery holds a short query before it continues it as a job; default is 10s")
+    public BigQueryConfig setShortQueryTimeout(Duration shortQueryTimeout)
+    {
+        this.shortQueryTimeout = shortQueryTimeout;
+        return this;
+    }
 }
@@ -18,9 +18,12 @@ import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.Dataset;
 import com.google.cloud.bigquery.DatasetId;
 import com.google.cloud.bigquery.DatasetInfo;
+import com.google.cloud.bigquery.JobId;
 import com.google.cloud.bigquery.JobStatistics;
 import com.google.cloud.bigquery.Routine;
+import com.google.cloud.bigquery.Schema;
 import com.google.cloud.bigquery.Table;
+import com.google.cloud.bigquery.TableId;
 import com.google.cloud.bigquery.TableResult;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -29,31 +32,42 @@ import io.accio.base.AccioException;
 import io.accio.base.Column;
 import io.accio.base.ConnectorRecordIterator;
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
 import io.accio.base.metadata.SchemaTableName;
 import io.accio.base.metadata.TableMetadata;
 import io.accio.connector.bigquery.BigQueryClient;
 import io.accio.connector.bigquery.BigQueryType;
+import io.accio.connector.bigquery.ShortQueryResult;
 import io.accio.main.metadata.Metadata;
 import io.accio.main.pgcatalog.function.PgFunctionRegistry;
 import io.airlift.log.Logger;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
 import io.trino.sql.tree.QualifiedName;
 
+import javax.annotation.Nullable;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.accio.base.metadata.StandardErrorCode.GENERIC_USER_ERROR;
 import static io.accio.base.metadata.StandardErrorCode.NOT_FOUND;
+import static io.accio.main.connector.bigquery.BigQueryConfig.QueryMode.SHORT;
 import static io.accio.main.pgcatalog.PgCatalogUtils.ACCIO_TEMP_NAME;
 import static io.accio.main.pgcatalog.PgCatalogUtils.PG_CATALOG_NAME;
 import static io.accio.main.pgcatalog.function.PgFunction.PG_FUNCTION_PATTERN;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static java.lang.String.format;
 import static java.util.Locale.ENGLISH;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 
 public class BigQueryMetadata
         implements Metadata
@@ -69,8 +83,24 @@ public class BigQueryMetadata
     private final String metadataSchemaName;
     private final String pgCatalogName;
 
-    @Inject
+    private final long parallelReadMinRows;
+    private final DataSize parallelReadMinSize;
+    private final int parallelReadStreams;
+    private final int parallelReadRangeRows;
+    private final long resultPageSize;
+    private final int resultPrefetchPages;
+    private final BigQueryConfig.QueryMode queryMode;
+    private final Duration shortQueryTimeout;
+    private final BigQueryStats stats;
+    private final ExecutorService readExecutor;
+
     public BigQueryMetadata(BigQueryClient bigQueryClient, BigQueryConfig bigQueryConfig)
+    {
+        this(bigQueryClient, bigQueryConfig, new BigQueryStats());
+    }
+
+    @Inject
+    public BigQueryMetadata(BigQueryClient bigQueryClient, BigQueryConfig bigQueryConfig, BigQueryStats stats)
     {
         this.bigQueryClient = requireNonNull(bigQueryClient, "bigQueryClient is null");
         requireNonNull(bigQueryConfig, "bigQueryConfig is null");
@@ -80,6 +110,16 @@ public class BigQueryMetadata
         this.metadataSchemaName = bigQueryConfig.getMetadataSchemaPrefix() + ACCIO_TEMP_NAME;
         this.pgCatalogName = bigQueryConfig.getMetadataSchemaPrefix() + PG_CATALOG_NAME;
         this.pgFunctionRegistry = new PgFunctionRegistry(pgCatalogName);
+        this.parallelReadMinRows = bigQueryConfig.getParallelReadMinRows();
+        this.parallelReadMinSize = bigQueryConfig.getParallelReadMinSize();
+        this.parallelReadStreams = bigQueryConfig.getParallelReadStreams();
+        this.parallelReadRangeRows = bigQueryConfig.getParallelReadRangeRows();
+        this.resultPageSize = bigQueryConfig.getResultPageSize();
+        this.resultPrefetchPages = bigQueryConfig.getResultPrefetchPages();
+        this.queryMode = bigQueryConfig.getQueryMode();
+        this.shortQueryTimeout = bigQueryConfig.getShortQueryTimeout();
+        this.stats = requireNonNull(stats, "stats is null");
+        this.readExecutor = newFixedThreadPool(bigQueryConfig.getReadThreads(), daemonThreadsNamed("bigquery-read-%s"));
     }
 
     /**
@@ -200,19 +240,96 @@ public class BigQueryMetadata
 
     @Override
     public ConnectorRecordIterator directQuery(String sql, List<Parameter> parameters)
+    {
+        return directQuery(sql, parameters, new QueryCancellation());
+    }
+
+    @Override
+    public ConnectorRecordIterator directQuery(String sql, List<Parameter> parameters, QueryCancellation cancellation)
     {
         requireNonNull(sql, "sql can't be null.");
+        cancellation.checkCanceled();
+        long start = System.nanoTime();
         try {
-            TableResult results = bigQueryClient.query(sql, parameters);
-            return BigQueryRecordIterator.of(results);
+            // the parameters of jobs.query are only supported through a job
+            if (queryMode == SHORT && parameters.isEmpty()) {
+                ShortQueryResult result = bigQueryClient.queryWithoutJob(
+                        sql,
+                        location,
+                        shortQueryTimeout.toMillis(),
+                        resultPageSize,
+                        jobId -> {
+                            cancellation.onCancel(() -> bigQueryClient.cancel(jobId));
+                            cancellation.checkCanceled();
+                        });
+                // jobs.query names the job in its response, so a cancel request sent while it waits can only be
+                // applied once it returns: the job still running is canceled above, and a finished result is dropped
+                cancellation.checkCanceled();
+                if (result.isCompletedInline()) {
+                    stats.getShortQueries().add(Duration.nanosSince(start));
+                }
+                else {
+                    stats.getShortQueryFallbacks().add(Duration.nanosSince(start));
+                }
+                LOG.debug("Query of job %s ran %s", result.getJobId().getJob(), result.isCompletedInline() ? "inline" : "as a job after the short query timeout");
+                return toRecordIterator(result.getResult(), result.getJobId());
+            }
+            // name the job up front, so that it can be canceled while it is running
+            JobId jobId = JobId.newBuilder()
+                    .setJob(UUID.randomUUID().toString())
+                    .setLocation(location)
+                    .build();
+            cancellation.onCancel(() -> bigQueryClient.cancel(jobId));
+            TableResult results = bigQueryClient.query(sql, parameters, jobId, resultPageSize);
+            stats.getJobQueries().add(Duration.nanosSince(start));
+            return toRecordIterator(results, jobId);
         }
         catch (BigQueryException ex) {
+            stats.getFailedQueries().update(1);
             LOG.error(ex);
             LOG.error("Failed SQL: %s", sql);
             throw ex;
         }
     }
 
+    private ConnectorRecordIterator toRecordIterator(TableResult results, JobId jobId)
+    {
+        // a result in a single page is already read
+        if (!results.hasNextPage()) {
+            return BigQueryRecordIterator.of(results, jobId.getJob());
+        }
+        Optional<Table> destination = bigQueryClient.getDestinationTable(jobId).map(bigQueryClient::getTable);
+        if (destination.isEmpty() || !isLargeResult(results.getTotalRows(), destination.get().getNumBytes())) {
+            if (resultPrefetchPages == 0) {
+                return BigQueryRecordIterator.of(results, jobId.getJob());
+            }
+            return BigQueryRecordIterator.of(results.getSchema(), new PagePrefetcher(results, resultPrefetchPages, readExecutor), jobId.getJob());
+        }
+        // read the rest of the destination table in ranges concurrently, after the first page which is already read
+        TableId tableId = destination.get().getTableId();
+        Schema schema = results.getSchema();
+        ParallelTableReader tableReader = new ParallelTableReader(
+                ImmutableList.copyOf(results.getValues()),
+                results.getTotalRows(),
+                (startIndex, rowCount) -> bigQueryClient.listTableData(tableId, schema, startIndex, rowCount),
+                parallelReadRangeRows,
+                parallelReadStreams,
+                readExecutor);
+        LOG.debug("Reading %s rows of job %s in ranges of %s rows", results.getTotalRows(), jobId.getJob(), parallelReadRangeRows);
+        return BigQueryRecordIterator.of(schema, tableReader, jobId.getJob());
+    }
+
+    private boolean isLargeResult(long rows, @Nullable Long bytes)
+    {
+        return rows >= parallelReadMinRows || (bytes != null && bytes >= parallelReadMinSize.toBytes());
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        readExecutor.shutdownNow();
+    }
+
     @Override
     public List<Column> describeQuery(String sql, List<Parameter> parameters)
     {
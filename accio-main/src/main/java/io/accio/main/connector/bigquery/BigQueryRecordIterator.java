@@ -17,9 +17,11 @@ package io.accio.main.connector.bigquery;
 import com.google.cloud.bigquery.Field;
 import com.google.cloud.bigquery.FieldValue;
 import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.Schema;
 import com.google.cloud.bigquery.StandardSQLTypeName;
 import com.google.cloud.bigquery.TableResult;
 import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.batch.RecordBatch;
 import io.accio.base.type.PGType;
 import io.accio.connector.bigquery.BigQueryType;
 import org.apache.commons.lang3.StringUtils;
@@ -32,6 +34,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -49,26 +52,56 @@ public class BigQueryRecordIterator
     private final List<Field> bqFields;
 
     private final Iterator<FieldValueList> resultIterator;
+    private final String jobId;
+    private final Runnable onClose;
 
-    public static BigQueryRecordIterator of(TableResult tableResult)
+    public static BigQueryRecordIterator of(TableResult tableResult, String jobId)
     {
-        return new BigQueryRecordIterator(tableResult);
+        requireNonNull(tableResult, "tableResult is null");
+        return new BigQueryRecordIterator(tableResult.getSchema(), tableResult.iterateAll().iterator(), jobId, () -> {});
     }
 
-    private BigQueryRecordIterator(TableResult tableResult)
+    /**
+     * Read a query result with its next pages fetched in the background, see {@link PagePrefetcher}.
+     */
+    public static BigQueryRecordIterator of(Schema schema, PagePrefetcher pagePrefetcher, String jobId)
     {
-        requireNonNull(tableResult, "tableResult is null");
-        this.resultIterator = tableResult.iterateAll().iterator();
+        return new BigQueryRecordIterator(schema, pagePrefetcher, jobId, pagePrefetcher::close);
+    }
+
+    /**
+     * Read a large query result by ranges of its destination table, see {@link ParallelTableReader}.
+     */
+    public static BigQueryRecordIterator of(Schema schema, ParallelTableReader tableReader, String jobId)
+    {
+        return new BigQueryRecordIterator(schema, tableReader, jobId, tableReader::close);
+    }
 
-        this.types = tableResult.getSchema().getFields().stream()
+    private BigQueryRecordIterator(Schema schema, Iterator<FieldValueList> resultIterator, String jobId, Runnable onClose)
+    {
+        requireNonNull(schema, "schema is null");
+        this.jobId = requireNonNull(jobId, "jobId is null");
+        this.resultIterator = requireNonNull(resultIterator, "resultIterator is null");
+        this.onClose = requireNonNull(onClose, "onClose is null");
+
+        this.types = schema.getFields().stream()
                 .map(BigQueryType::toPGType)
                 .collect(toImmutableList());
 
-        this.bqFields = tableResult.getSchema().getFields();
+        this.bqFields = schema.getFields();
     }
 
     @Override
-    public void close() {}
+    public Optional<String> getQueryId()
+    {
+        return Optional.of(jobId);
+    }
+
+    @Override
+    public void close()
+    {
+        onClose.run();
+    }
 
     @Override
     public boolean hasNext()
@@ -85,6 +118,40 @@ public class BigQueryRecordIterator
                 .toArray();
     }
 
+    /**
+     * Read the rows into a batch, with the int64, float64 and bool fields parsed straight into primitives.
+     */
+    @Override
+    public RecordBatch nextBatch(int maxRows)
+    {
+        RecordBatch.Builder builder = RecordBatch.builder(types, maxRows);
+        while (!builder.isFull() && resultIterator.hasNext()) {
+            FieldValueList fieldValues = resultIterator.next();
+            for (int column = 0; column < bqFields.size(); column++) {
+                FieldValue fieldValue = fieldValues.get(column);
+                if (fieldValue.isNull()) {
+                    builder.setNull(column);
+                    continue;
+                }
+                switch (builder.getVectorType(column)) {
+                    case LONG:
+                        builder.setLong(column, fieldValue.getLongValue());
+                        break;
+                    case DOUBLE:
+                        builder.setDouble(column, fieldValue.getDoubleValue());
+                        break;
+                    case BOOLEAN:
+                        builder.setBoolean(column, fieldValue.getBooleanValue());
+                        break;
+                    default:
+                        builder.setObject(column, getFieldValue(bqFields.get(column), fieldValue));
+                }
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
     private static Object getFieldValue(Field field, FieldValue fieldValue)
     {
         if (fieldValue.isNull()) {
@@ -19,12 +19,10 @@ import io.accio.base.SessionContext;
 import io.accio.base.sql.SqlConverter;
 import io.accio.main.metadata.Metadata;
 import io.accio.main.sql.SqlRewrite;
-import io.accio.main.sql.bigquery.FlattenGroupingElements;
+import io.accio.main.sql.bigquery.LocalBigQueryRewrite;
 import io.accio.main.sql.bigquery.RemoveCatalogSchemaColumnPrefix;
 import io.accio.main.sql.bigquery.RemoveColumnAliasInAliasRelation;
-import io.accio.main.sql.bigquery.RemoveParameterInTypesInCast;
 import io.accio.main.sql.bigquery.ReplaceColumnAliasInUnnest;
-import io.accio.main.sql.bigquery.RewriteArithmetic;
 import io.accio.main.sql.bigquery.RewriteNamesToAlias;
 import io.accio.main.sql.bigquery.RewriteToBigQueryFunction;
 import io.accio.main.sql.bigquery.RewriteToBigQueryType;
@@ -70,20 +68,25 @@ public class BigQuerySqlConverter
                 TransformCorrelatedJoinToJoin.INSTANCE,
                 RewriteToBigQueryFunction.INSTANCE,
                 RewriteToBigQueryType.INSTANCE,
-                // bigquery doesn't support parameter in types in cast
+                // FlattenGroupingElements, RemoveParameterInTypesInCast and RewriteArithmetic in one traversal.
                 // this should happen after RewriteToBigQueryType since RewriteToBigQueryType will replace
                 // GenericLiteral with Cast and types in Cast could contain parameter.
-                RemoveParameterInTypesInCast.INSTANCE,
-                FlattenGroupingElements.INSTANCE,
-                RewriteNamesToAlias.INSTANCE,
-                RewriteArithmetic.INSTANCE);
+                // this should happen before RewriteNamesToAlias, so a cast in the group by matches the one in the
+                // select items once their type parameters are removed.
+                LocalBigQueryRewrite.INSTANCE,
+                RewriteNamesToAlias.INSTANCE);
 
         LOG.info("[Input sql]: %s", sql);
 
         for (SqlRewrite rewrite : sqlRewrites) {
-            LOG.debug("Before %s: %s", rewrite.getClass().getSimpleName(), formatSql(rewrittenNode));
+            // formatting the whole tree costs as much as a rewrite, only do it when it is logged
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Before %s: %s", rewrite.getClass().getSimpleName(), formatSql(rewrittenNode));
+            }
             rewrittenNode = rewrite.rewrite(rewrittenNode, metadata);
-            LOG.debug("After %s: %s", rewrite.getClass().getSimpleName(), formatSql(rewrittenNode));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("After %s: %s", rewrite.getClass().getSimpleName(), formatSql(rewrittenNode));
+            }
         }
 
         String dialectSql = formatSql(rewrittenNode, BIGQUERY);
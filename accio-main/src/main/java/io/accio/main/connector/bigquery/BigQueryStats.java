@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.bigquery;
+
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.TimeStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * How the queries sent to BigQuery were run, and how long it took until their first page could be read.
+ */
+public class BigQueryStats
+{
+    private final TimeStat shortQueries = new TimeStat(MILLISECONDS);
+    private final TimeStat shortQueryFallbacks = new TimeStat(MILLISECONDS);
+    private final TimeStat jobQueries = new TimeStat(MILLISECONDS);
+    private final CounterStat failedQueries = new CounterStat();
+
+    /**
+     * The queries run with jobs.query which completed within the short query timeout.
+     */
+    @Managed
+    @Nested
+    public TimeStat getShortQueries()
+    {
+        return shortQueries;
+    }
+
+    /**
+     * The queries run with jobs.query which didn't complete within the short query timeout and were waited for as a job.
+     */
+    @Managed
+    @Nested
+    public TimeStat getShortQueryFallbacks()
+    {
+        return shortQueryFallbacks;
+    }
+
+    /**
+     * The queries run by creating a job, because of the query mode or because they have parameters.
+     */
+    @Managed
+    @Nested
+    public TimeStat getJobQueries()
+    {
+        return jobQueries;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFailedQueries()
+    {
+        return failedQueries;
+    }
+}
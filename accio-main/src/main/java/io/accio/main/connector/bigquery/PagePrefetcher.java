@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.bigquery;
+
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.TableResult;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioException;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.accio.base.metadata.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the pages of a query result on a background thread, up to {@code prefetchPages} pages ahead of the reader,
+ * so fetching the next page overlaps with sending the current one to the client. Each page is fetched in its own task,
+ * and no task is scheduled while the queue is full, so a slow reader doesn't hold a thread of the shared executor.
+ */
+public class PagePrefetcher
+        extends AbstractIterator<FieldValueList>
+        implements Closeable
+{
+    private static final Page END = new Page(ImmutableList.of(), Optional.empty());
+
+    private final BlockingQueue<Page> pages = new LinkedBlockingQueue<>();
+    private final int prefetchPages;
+    private final ExecutorService executor;
+    private Iterator<FieldValueList> currentPage;
+    private volatile boolean closed;
+
+    // guarded by this; the last fetched page, null once the last page is fetched or the prefetcher is closed
+    private TableResult lastPage;
+    private Future<?> fetcher;
+    private boolean fetching;
+
+    public PagePrefetcher(TableResult firstPage, int prefetchPages, ExecutorService executor)
+    {
+        requireNonNull(firstPage, "firstPage is null");
+        checkArgument(prefetchPages > 0, "prefetchPages must be positive");
+        this.prefetchPages = prefetchPages;
+        this.executor = requireNonNull(executor, "executor is null");
+        this.currentPage = firstPage.getValues().iterator();
+        synchronized (this) {
+            this.lastPage = firstPage;
+        }
+        scheduleFetch();
+    }
+
+    private synchronized void scheduleFetch()
+    {
+        if (closed || fetching || lastPage == null || pages.size() >= prefetchPages) {
+            return;
+        }
+        if (!lastPage.hasNextPage()) {
+            lastPage = null;
+            pages.add(END);
+            return;
+        }
+        fetching = true;
+        TableResult page = lastPage;
+        fetcher = executor.submit(() -> fetch(page));
+    }
+
+    private void fetch(TableResult previousPage)
+    {
+        TableResult page;
+        try {
+            page = previousPage.getNextPage();
+            pages.add(new Page(ImmutableList.copyOf(page.getValues()), Optional.empty()));
+        }
+        catch (RuntimeException e) {
+            synchronized (this) {
+                fetching = false;
+                lastPage = null;
+            }
+            pages.add(new Page(ImmutableList.of(), Optional.of(e)));
+            return;
+        }
+        synchronized (this) {
+            fetching = false;
+            lastPage = page;
+        }
+        scheduleFetch();
+    }
+
+    @Override
+    protected FieldValueList computeNext()
+    {
+        while (!currentPage.hasNext()) {
+            if (closed) {
+                return endOfData();
+            }
+            Page page = takePage();
+            // a slot in the queue is free
+            scheduleFetch();
+            if (page == END) {
+                return endOfData();
+            }
+            if (page.failure.isPresent()) {
+                throw page.failure.get();
+            }
+            currentPage = page.rows.iterator();
+        }
+        return currentPage.next();
+    }
+
+    private Page takePage()
+    {
+        try {
+            return pages.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AccioException(GENERIC_INTERNAL_ERROR, "Interrupted while reading the query result", e);
+        }
+    }
+
+    /**
+     * Stop fetching the pages not read yet.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        synchronized (this) {
+            lastPage = null;
+            if (fetcher != null) {
+                fetcher.cancel(true);
+            }
+        }
+        pages.clear();
+        // wake up a reader waiting for the next page
+        pages.offer(END);
+    }
+
+    private static class Page
+    {
+        private final List<FieldValueList> rows;
+        private final Optional<RuntimeException> failure;
+
+        private Page(List<FieldValueList> rows, Optional<RuntimeException> failure)
+        {
+            this.rows = rows;
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.bigquery;
+
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.common.collect.AbstractIterator;
+import io.accio.base.AccioException;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static io.accio.base.metadata.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the rows of a table in consecutive ranges of rows, downloading up to {@code streams} ranges concurrently
+ * ahead of the reader. The rows are returned in the order of the table, so a sorted query result stays sorted.
+ */
+public class ParallelTableReader
+        extends AbstractIterator<FieldValueList>
+        implements Closeable
+{
+    /**
+     * Reads {@code rowCount} rows of the table from {@code startIndex}.
+     */
+    public interface RangeReader
+    {
+        List<FieldValueList> read(long startIndex, long rowCount);
+    }
+
+    private final RangeReader rangeReader;
+    private final long totalRows;
+    private final long rangeRows;
+    private final int streams;
+    private final ExecutorService executor;
+    private final Deque<Range> ranges = new ArrayDeque<>();
+    private Iterator<FieldValueList> currentRange;
+    private long nextStart;
+
+    /**
+     * @param firstRows the rows already read from the start of the table, e.g. the first page of a query result
+     */
+    public ParallelTableReader(
+            List<FieldValueList> firstRows,
+            long totalRows,
+            RangeReader rangeReader,
+            long rangeRows,
+            int streams,
+            ExecutorService executor)
+    {
+        checkArgument(firstRows.size() <= totalRows, "firstRows is larger than the table");
+        checkArgument(rangeRows > 0, "rangeRows must be positive");
+        checkArgument(streams > 0, "streams must be positive");
+        this.rangeReader = requireNonNull(rangeReader, "rangeReader is null");
+        this.totalRows = totalRows;
+        this.rangeRows = rangeRows;
+        this.streams = streams;
+        this.executor = requireNonNull(executor, "executor is null");
+        this.currentRange = firstRows.iterator();
+        this.nextStart = firstRows.size();
+        scheduleRanges();
+    }
+
+    @Override
+    protected FieldValueList computeNext()
+    {
+        while (!currentRange.hasNext()) {
+            Range range = ranges.poll();
+            if (range == null) {
+                return endOfData();
+            }
+            currentRange = range.getRows().iterator();
+            scheduleRanges();
+        }
+        return currentRange.next();
+    }
+
+    private void scheduleRanges()
+    {
+        while (ranges.size() < streams && nextStart < totalRows) {
+            long startIndex = nextStart;
+            long rowCount = Math.min(rangeRows, totalRows - startIndex);
+            ranges.add(new Range(startIndex, rowCount, executor.submit(() -> rangeReader.read(startIndex, rowCount))));
+            nextStart += rowCount;
+        }
+    }
+
+    /**
+     * Cancel the ranges not read yet.
+     */
+    @Override
+    public void close()
+    {
+        ranges.forEach(range -> range.rows.cancel(true));
+        ranges.clear();
+        nextStart = totalRows;
+    }
+
+    private static class Range
+    {
+        private final long startIndex;
+        private final long rowCount;
+        private final Future<List<FieldValueList>> rows;
+
+        private Range(long startIndex, long rowCount, Future<List<FieldValueList>> rows)
+        {
+            this.startIndex = startIndex;
+            this.rowCount = rowCount;
+            this.rows = rows;
+        }
+
+        private List<FieldValueList> getRows()
+        {
+            List<FieldValueList> result;
+            try {
+                result = rows.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AccioException(GENERIC_INTERNAL_ERROR, "Interrupted while reading the query result", e);
+            }
+            catch (ExecutionException e) {
+                throwIfUnchecked(e.getCause());
+                throw new AccioException(GENERIC_INTERNAL_ERROR, e.getCause());
+            }
+            if (result.size() != rowCount) {
+                throw new AccioException(GENERIC_INTERNAL_ERROR, format("Expected %s rows from row %s but read %s", rowCount, startIndex, result.size()));
+            }
+            return result;
+        }
+    }
+}
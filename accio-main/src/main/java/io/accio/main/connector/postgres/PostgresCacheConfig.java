@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.postgres;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+
+import javax.validation.constraints.Min;
+
+public class PostgresCacheConfig
+{
+    private int copyParallelism = 3;
+
+    @Min(1)
+    public int getCopyParallelism()
+    {
+        return copyParallelism;
+    }
+
+    @Config("postgres.cache.copy-parallelism")
+    @ConfigDescription("The max number of concurrent COPY streams used to load one cached model, split by primary key range; default is 3, and at most one less than duckdb.max-concurrent-refreshes")
+    public PostgresCacheConfig setCopyParallelism(int copyParallelism)
+    {
+        this.copyParallelism = copyParallelism;
+        return this;
+    }
+}
@@ -14,20 +14,434 @@
 
 package io.accio.main.connector.postgres;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.accio.base.AccioException;
+import io.accio.base.CatalogSchemaTableName;
+import io.accio.base.client.AutoCloseableIterator;
+import io.accio.base.client.duckdb.DuckdbClient;
+import io.accio.base.dto.CacheInfo;
+import io.accio.base.dto.Model;
+import io.accio.base.metadata.ColumnMetadata;
+import io.accio.base.type.PGType;
 import io.accio.cache.CacheService;
 import io.accio.cache.PathInfo;
+import io.accio.connector.postgres.NumericPrecision;
+import io.accio.connector.postgres.PostgresBinaryCopyReader;
+import io.accio.connector.postgres.PostgresClient;
+import io.accio.connector.postgres.PostgresRecordIterator;
+import io.airlift.log.Logger;
 
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.client.duckdb.DuckdbType.DUCKDB_TYPE;
+import static io.accio.base.metadata.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.NumericType.NUMERIC;
+import static io.accio.base.type.SmallIntType.SMALLINT;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.CompletableFuture.supplyAsync;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.stream.Collectors.joining;
 
+/**
+ * Postgres doesn't export files like BigQuery does, so the cache is loaded by streaming
+ * {@code COPY (...) TO STDOUT (FORMAT binary)} straight into the duckdb appender.
+ * If the cached object is a model with an integral primary key, the copy is split by key range
+ * and the ranges are loaded concurrently. Numeric columns keep their declared precision and scale; the precision of
+ * unconstrained ones is probed from the data.
+ */
 public class PostgresCacheService
         implements CacheService
 {
+    private static final Logger LOG = Logger.get(PostgresCacheService.class);
+    private static final Set<PGType<?>> SPLITTABLE_KEY_TYPES = Set.of(SMALLINT, INTEGER, BIGINT);
+    private static final int MAX_DUCKDB_DECIMAL_PRECISION = 38;
+
+    private final PostgresClient postgresClient;
+    private final DuckdbClient duckdbClient;
+    private final int copyParallelism;
+    private final ExecutorService copyExecutor;
+
+    @Inject
+    public PostgresCacheService(
+            PostgresClient postgresClient,
+            DuckdbClient duckdbClient,
+            PostgresCacheConfig postgresCacheConfig)
+    {
+        this.postgresClient = requireNonNull(postgresClient, "postgresClient is null");
+        this.duckdbClient = requireNonNull(duckdbClient, "duckdbClient is null");
+        // a stream holds a duckdb refresh connection while it's copied, so the streams leave one to the other refresh statements
+        this.copyParallelism = Math.min(requireNonNull(postgresCacheConfig, "postgresCacheConfig is null").getCopyParallelism(), duckdbClient.getMaxConcurrentAppends());
+        this.copyExecutor = newFixedThreadPool(copyParallelism, daemonThreadsNamed("postgres-cache-copy-%s"));
+    }
+
     @Override
     public Optional<PathInfo> createCache(String catalog, String schema, String name, String statement)
     {
+        // cache is loaded by loadCacheToDuckdb
         return Optional.empty();
     }
 
+    @Override
+    public boolean loadCacheToDuckdb(CacheInfo cacheInfo, String statement, String duckdbTableName)
+    {
+        List<CopyColumn> columns = getCopyColumns(statement);
+        List<PGType<?>> types = columns.stream()
+                .map(CopyColumn::getCopyType)
+                .collect(toImmutableList());
+
+        duckdbClient.executeDDL(format("CREATE TABLE %s (%s)",
+                quote(duckdbTableName),
+                columns.stream()
+                        .map(column -> quote(column.getName()) + " " + column.getDuckdbType())
+                        .collect(joining(", "))));
+
+        // cast every column explicitly so the binary format of each field is the one the reader expects
+        String copyStatement = format("SELECT %s FROM (%s) t",
+                columns.stream()
+                        .map(column -> quote(column.getName()) + "::" + column.getCopyType().typName())
+                        .collect(joining(", ")),
+                statement);
+
+        CopyStreams streams = new CopyStreams();
+        List<CompletableFuture<Long>> futures = getKeyRangePredicates(cacheInfo, columns, statement).stream()
+                .map(predicate -> supplyAsync(() -> copy(copyStatement + predicate, types, duckdbTableName, streams), copyExecutor))
+                .collect(toImmutableList());
+        try {
+            // wait for every stream, so none of them still appends to the table when it's dropped after a failure
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        }
+        catch (CompletionException e) {
+            throw new AccioException(GENERIC_INTERNAL_ERROR, format("Failed to copy %s into duckdb", cacheInfo.getName()), streams.getFailure().orElse(e.getCause()));
+        }
+        long rows = futures.stream().mapToLong(CompletableFuture::join).sum();
+        LOG.info("Loaded %s rows of %s into duckdb with %s copy streams", rows, cacheInfo.getName(), futures.size());
+        return true;
+    }
+
+    private long copy(String sql, List<PGType<?>> types, String duckdbTableName, CopyStreams streams)
+    {
+        if (streams.isFailed()) {
+            return 0;
+        }
+        try (PostgresBinaryCopyReader reader = postgresClient.copyOut(sql, types)) {
+            streams.add(reader);
+            try {
+                return duckdbClient.appendRows(duckdbTableName, new AbstractIterator<>()
+                {
+                    @Override
+                    protected Object[] computeNext()
+                    {
+                        // stop early if another stream of the same cache failed
+                        if (streams.isFailed() || !reader.hasNext()) {
+                            return endOfData();
+                        }
+                        return reader.next();
+                    }
+                });
+            }
+            finally {
+                streams.remove(reader);
+            }
+        }
+        catch (Exception e) {
+            streams.fail(e);
+            throw new CompletionException(e);
+        }
+    }
+
+    private List<CopyColumn> getCopyColumns(String statement)
+    {
+        List<ColumnMetadata> columns = postgresClient.describe(statement, ImmutableList.of());
+        if (columns.stream().noneMatch(column -> column.getType().equals(NUMERIC))) {
+            return columns.stream()
+                    .map(column -> new CopyColumn(column.getName(), toCopyType(column.getType()), DUCKDB_TYPE.toDuckdbType(toCopyType(column.getType()))))
+                    .collect(toImmutableList());
+        }
+
+        List<Optional<NumericPrecision>> precisions = postgresClient.describeNumericPrecisions(statement);
+        // the precision of unconstrained numeric columns and of those too wide for duckdb is taken from the data
+        List<Integer> probed = IntStream.range(0, columns.size())
+                .filter(i -> columns.get(i).getType().equals(NUMERIC) && precisions.get(i).flatMap(PostgresCacheService::toDuckdbDecimal).isEmpty())
+                .boxed()
+                .collect(toImmutableList());
+        Map<Integer, Optional<NumericPrecision>> probedPrecisions = probeNumericPrecisions(statement, columns, probed);
+
+        ImmutableList.Builder<CopyColumn> copyColumns = ImmutableList.builder();
+        for (int i = 0; i < columns.size(); i++) {
+            ColumnMetadata column = columns.get(i);
+            if (!column.getType().equals(NUMERIC)) {
+                copyColumns.add(new CopyColumn(column.getName(), toCopyType(column.getType()), DUCKDB_TYPE.toDuckdbType(toCopyType(column.getType()))));
+                continue;
+            }
+            Optional<NumericPrecision> precision = probedPrecisions.containsKey(i) ? probedPrecisions.get(i) : precisions.get(i);
+            Optional<String> duckdbType = precision.isEmpty() ? Optional.of(DUCKDB_TYPE.toDuckdbType(NUMERIC)) : precision.flatMap(PostgresCacheService::toDuckdbDecimal);
+            if (duckdbType.isPresent()) {
+                copyColumns.add(new CopyColumn(column.getName(), NUMERIC, duckdbType.get()));
+            }
+            else {
+                LOG.warn("Column %s has numeric values of precision %s that don't fit a duckdb decimal; it's cached as text", column.getName(), precision.get());
+                copyColumns.add(new CopyColumn(column.getName(), VARCHAR, DUCKDB_TYPE.toDuckdbType(VARCHAR)));
+            }
+        }
+        return copyColumns.build();
+    }
+
+    /**
+     * Probe the max scale and the max number of integer digits of the given numeric columns in one query.
+     *
+     * @return the precision to hold every value of each column, or empty if the column has no values
+     */
+    private Map<Integer, Optional<NumericPrecision>> probeNumericPrecisions(String statement, List<ColumnMetadata> columns, List<Integer> probed)
+    {
+        if (probed.isEmpty()) {
+            return ImmutableMap.of();
+        }
+        String sql = format("SELECT %s FROM (%s) t",
+                probed.stream()
+                        .map(i -> format("max(scale(%1$s)), max(length(trunc(abs(%1$s))::text))", quote(columns.get(i).getName())))
+                        .collect(joining(", ")),
+                statement);
+        ImmutableMap.Builder<Integer, Optional<NumericPrecision>> precisions = ImmutableMap.builder();
+        try (PostgresRecordIterator iterator = PostgresRecordIterator.of(postgresClient, sql)) {
+            Object[] row = iterator.next();
+            for (int i = 0; i < probed.size(); i++) {
+                Object scale = row[2 * i];
+                Object integerDigits = row[2 * i + 1];
+                precisions.put(probed.get(i), scale == null || integerDigits == null ?
+                        Optional.empty() :
+                        Optional.of(toPrecision(((Number) integerDigits).intValue(), ((Number) scale).intValue())));
+            }
+        }
+        catch (Exception e) {
+            throw new AccioException(GENERIC_INTERNAL_ERROR, "Failed to probe the precision of the numeric columns", e);
+        }
+        return precisions.build();
+    }
+
+    @VisibleForTesting
+    static NumericPrecision toPrecision(int integerDigits, int scale)
+    {
+        return new NumericPrecision(Math.max(integerDigits, 1) + scale, scale);
+    }
+
+    /**
+     * @return the duckdb decimal holding the values of the precision, or empty if it's wider than a duckdb decimal
+     */
+    @VisibleForTesting
+    static Optional<String> toDuckdbDecimal(NumericPrecision precision)
+    {
+        if (precision.getPrecision() > MAX_DUCKDB_DECIMAL_PRECISION) {
+            return Optional.empty();
+        }
+        return Optional.of(format("DECIMAL(%s, %s)", precision.getPrecision(), precision.getScale()));
+    }
+
+    /**
+     * Split the copy by the range of an integral primary key. The min and max of the key are probed with
+     * one aggregation query; every range is pushed down as a predicate on top of the cache statement.
+     */
+    private List<String> getKeyRangePredicates(CacheInfo cacheInfo, List<CopyColumn> columns, String statement)
+    {
+        List<String> single = ImmutableList.of("");
+        if (copyParallelism <= 1 || !(cacheInfo instanceof Model) || ((Model) cacheInfo).getPrimaryKey() == null) {
+            return single;
+        }
+        String primaryKey = ((Model) cacheInfo).getPrimaryKey();
+        boolean splittable = columns.stream()
+                .anyMatch(column -> column.getName().equals(primaryKey) && SPLITTABLE_KEY_TYPES.contains(column.getCopyType()));
+        if (!splittable) {
+            return single;
+        }
+
+        String key = quote(primaryKey);
+        long min;
+        long max;
+        try (PostgresRecordIterator iterator = PostgresRecordIterator.of(postgresClient, format("SELECT min(%1$s), max(%1$s) FROM (%2$s) t", key, statement))) {
+            Object[] bounds = iterator.next();
+            if (bounds[0] == null || bounds[1] == null) {
+                return single;
+            }
+            min = ((Number) bounds[0]).longValue();
+            max = ((Number) bounds[1]).longValue();
+        }
+        catch (Exception e) {
+            LOG.warn(e, "Failed to get the key range of %s, copy it with one stream", cacheInfo.getName());
+            return single;
+        }
+
+        long span;
+        try {
+            span = Math.addExact(Math.subtractExact(max, min), 1);
+        }
+        catch (ArithmeticException e) {
+            return single;
+        }
+        int splits = (int) Math.min(copyParallelism, span);
+        long step = span / splits + (span % splits == 0 ? 0 : 1);
+        ImmutableList.Builder<String> predicates = ImmutableList.builder();
+        for (int i = 0; i < splits; i++) {
+            long lower = min + step * i;
+            if (i == 0) {
+                predicates.add(format(" WHERE %1$s < %2$s OR %1$s IS NULL", key, lower + step));
+            }
+            else if (i == splits - 1) {
+                predicates.add(format(" WHERE %s >= %s", key, lower));
+            }
+            else {
+                predicates.add(format(" WHERE %1$s >= %2$s AND %1$s < %3$s", key, lower, lower + step));
+            }
+        }
+        return predicates.build();
+    }
+
+    /**
+     * Use the cumulative row change counters of the source tables and their file node, which changes on truncate.
+     * The statistics are collected asynchronously, so a change is noticed at the latest on the next refresh after it.
+     */
+    @Override
+    public Optional<String> getSourceVersion(Set<CatalogSchemaTableName> sourceTables)
+    {
+        List<String> versions = new ArrayList<>();
+        for (CatalogSchemaTableName sourceTable : sourceTables.stream().sorted(Comparator.comparing(CatalogSchemaTableName::toString)).collect(toImmutableList())) {
+            String sql = format("SELECT n_tup_ins, n_tup_upd, n_tup_del, n_live_tup, pg_relation_filenode(relid) FROM pg_stat_all_tables WHERE schemaname = '%s' AND relname = '%s'",
+                    sourceTable.getSchemaTableName().getSchemaName().replace("'", "''"),
+                    sourceTable.getSchemaTableName().getTableName().replace("'", "''"));
+            try (AutoCloseableIterator<Object[]> iterator = postgresClient.query(sql)) {
+                // views and unknown relations have no statistics
+                if (!iterator.hasNext()) {
+                    return Optional.empty();
+                }
+                versions.add(format("%s@%s", sourceTable, Arrays.toString(iterator.next())));
+            }
+            catch (Exception e) {
+                LOG.warn(e, "Failed to get the statistics of %s", sourceTable);
+                return Optional.empty();
+            }
+        }
+        return Optional.of(String.join(",", versions));
+    }
+
+    private static PGType<?> toCopyType(PGType<?> type)
+    {
+        // types without a binary decoder are copied as text
+        return PostgresBinaryCopyReader.SUPPORTED_TYPES.contains(type) ? type : VARCHAR;
+    }
+
+    private static String quote(String identifier)
+    {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
     @Override
     public void deleteTarget(PathInfo pathInfo) {}
+
+    @PreDestroy
+    public void stop()
+    {
+        copyExecutor.shutdownNow();
+    }
+
+    private static class CopyColumn
+    {
+        private final String name;
+        private final PGType<?> copyType;
+        private final String duckdbType;
+
+        private CopyColumn(String name, PGType<?> copyType, String duckdbType)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.copyType = requireNonNull(copyType, "copyType is null");
+            this.duckdbType = requireNonNull(duckdbType, "duckdbType is null");
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public PGType<?> getCopyType()
+        {
+            return copyType;
+        }
+
+        public String getDuckdbType()
+        {
+            return duckdbType;
+        }
+    }
+
+    /**
+     * The copy streams of one cache. The first stream that fails cancels the copies of the others on the server,
+     * so they stop without waiting for their next row.
+     */
+    private static class CopyStreams
+    {
+        private final Set<PostgresBinaryCopyReader> readers = ConcurrentHashMap.newKeySet();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        public void add(PostgresBinaryCopyReader reader)
+        {
+            readers.add(reader);
+            // a stream failed before this one was registered and won't cancel it
+            if (isFailed()) {
+                cancel(reader);
+            }
+        }
+
+        public void remove(PostgresBinaryCopyReader reader)
+        {
+            readers.remove(reader);
+        }
+
+        public boolean isFailed()
+        {
+            return failure.get() != null;
+        }
+
+        public Optional<Throwable> getFailure()
+        {
+            return Optional.ofNullable(failure.get());
+        }
+
+        public void fail(Throwable cause)
+        {
+            if (failure.compareAndSet(null, cause)) {
+                readers.forEach(CopyStreams::cancel);
+            }
+        }
+
+        private static void cancel(PostgresBinaryCopyReader reader)
+        {
+            try {
+                reader.cancel();
+            }
+            catch (Exception e) {
+                LOG.warn(e, "Failed to cancel a copy stream");
+            }
+        }
+    }
 }
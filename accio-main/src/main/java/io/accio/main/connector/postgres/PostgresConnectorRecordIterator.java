@@ -16,6 +16,7 @@ package io.accio.main.connector.postgres;
 
 import com.google.common.collect.ImmutableList;
 import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.batch.RecordBatch;
 import io.accio.base.type.PGType;
 import io.accio.connector.postgres.PostgresJdbcType;
 import io.accio.connector.postgres.PostgresRecordIterator;
@@ -71,4 +72,10 @@ public class PostgresConnectorRecordIterator
     {
         return internalIterator.next();
     }
+
+    @Override
+    public RecordBatch nextBatch(int maxRows)
+    {
+        return internalIterator.nextBatch(types, maxRows);
+    }
 }
@@ -19,6 +19,7 @@ import io.accio.base.AccioException;
 import io.accio.base.Column;
 import io.accio.base.ConnectorRecordIterator;
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
 import io.accio.base.metadata.TableMetadata;
 import io.accio.connector.postgres.PostgresClient;
 import io.accio.connector.postgres.PostgresRecordIterator;
@@ -133,8 +134,15 @@ public class PostgresMetadata
     @Override
     public ConnectorRecordIterator directQuery(String sql, List<Parameter> parameters)
     {
+        return directQuery(sql, parameters, new QueryCancellation());
+    }
+
+    @Override
+    public ConnectorRecordIterator directQuery(String sql, List<Parameter> parameters, QueryCancellation cancellation)
+    {
+        cancellation.checkCanceled();
         try {
-            return new PostgresConnectorRecordIterator(PostgresRecordIterator.of(postgresClient, sql, parameters));
+            return new PostgresConnectorRecordIterator(PostgresRecordIterator.of(postgresClient, sql, parameters, cancellation));
         }
         catch (Exception e) {
             throw new AccioException(GENERIC_INTERNAL_ERROR, e);
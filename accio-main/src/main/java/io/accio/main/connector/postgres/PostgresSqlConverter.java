@@ -52,9 +52,13 @@ public class PostgresSqlConverter
         LOG.info("[Input sql]: %s", sql);
 
         for (SqlRewrite rewrite : sqlRewrites) {
-            LOG.debug("Before %s: %s", rewrite.getClass().getSimpleName(), formatSql(rewrittenNode));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Before %s: %s", rewrite.getClass().getSimpleName(), formatSql(rewrittenNode));
+            }
             rewrittenNode = rewrite.rewrite(rewrittenNode, metadata);
-            LOG.debug("After %s: %s", rewrite.getClass().getSimpleName(), formatSql(rewrittenNode));
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("After %s: %s", rewrite.getClass().getSimpleName(), formatSql(rewrittenNode));
+            }
         }
 
         String dialectSql = formatSql(rewrittenNode, POSTGRES);
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.history;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonCodecFactory;
+import io.airlift.log.Logger;
+import io.airlift.units.Duration;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * The most recent queries in a ring buffer. The queries evicted from the buffer are appended to the spill file if
+ * one is configured, and the queries slower than the threshold are logged when they are added. The spill file is
+ * rotated to {@code <spill-file>.1} once it reaches its max size, so at most twice the max size is kept on disk.
+ */
+public class QueryHistory
+{
+    private static final Logger LOG = Logger.get(QueryHistory.class);
+    // one query per line
+    private static final JsonCodec<QueryInfo> QUERY_INFO_CODEC = new JsonCodecFactory().jsonCodec(QueryInfo.class);
+
+    private final int maxSize;
+    private final Duration slowQueryThreshold;
+    private final Deque<QueryInfo> queries;
+    private final Optional<File> spillFile;
+    private final long spillFileMaxSize;
+    private final Optional<ExecutorService> spillExecutor;
+    // only accessed by the spill executor
+    private BufferedWriter spillWriter;
+    private long spillFileSize;
+
+    @Inject
+    public QueryHistory(QueryHistoryConfig config)
+    {
+        requireNonNull(config, "config is null");
+        this.maxSize = config.getMaxSize();
+        this.slowQueryThreshold = config.getSlowQueryThreshold();
+        this.queries = new ArrayDeque<>(maxSize);
+        this.spillFile = config.getSpillFile();
+        this.spillFileMaxSize = config.getSpillFileMaxSize().toBytes();
+        this.spillExecutor = spillFile.map(file -> newSingleThreadExecutor(daemonThreadsNamed("query-history-spill-%s")));
+    }
+
+    public void add(QueryInfo queryInfo)
+    {
+        if (queryInfo.getElapsed().compareTo(slowQueryThreshold) >= 0) {
+            LOG.warn("Slow query %s took %s (%s): %s",
+                    queryInfo.getQueryId(),
+                    queryInfo.getElapsed(),
+                    queryInfo.getPhases().entrySet().stream()
+                            .map(phase -> phase.getKey() + " " + phase.getValue())
+                            .collect(joining(", ")),
+                    queryInfo.getStatement());
+        }
+
+        QueryInfo evicted = null;
+        synchronized (this) {
+            if (queries.size() == maxSize) {
+                evicted = queries.removeFirst();
+            }
+            queries.addLast(queryInfo);
+        }
+        if (evicted != null && spillExecutor.isPresent()) {
+            QueryInfo spilled = evicted;
+            spillExecutor.get().execute(() -> spill(spilled));
+        }
+    }
+
+    /**
+     * The queries in memory, the most recent first.
+     */
+    public synchronized List<QueryInfo> getQueries()
+    {
+        return ImmutableList.copyOf(queries::descendingIterator);
+    }
+
+    public synchronized Optional<QueryInfo> getQuery(String queryId)
+    {
+        return queries.stream()
+                .filter(queryInfo -> queryInfo.getQueryId().equals(queryId))
+                .findFirst();
+    }
+
+    private void spill(QueryInfo queryInfo)
+    {
+        Path path = spillFile.orElseThrow().toPath();
+        try {
+            String line = QUERY_INFO_CODEC.toJson(queryInfo) + System.lineSeparator();
+            long lineSize = line.getBytes(UTF_8).length;
+            if (spillWriter == null) {
+                spillFileSize = Files.exists(path) ? Files.size(path) : 0;
+            }
+            if (spillFileSize > 0 && spillFileSize + lineSize > spillFileMaxSize) {
+                if (spillWriter != null) {
+                    spillWriter.close();
+                    spillWriter = null;
+                }
+                Files.move(path, path.resolveSibling(path.getFileName() + ".1"), REPLACE_EXISTING);
+                spillFileSize = 0;
+            }
+            if (spillWriter == null) {
+                spillWriter = Files.newBufferedWriter(path, UTF_8, CREATE, APPEND);
+            }
+            spillWriter.write(line);
+            spillWriter.flush();
+            spillFileSize += lineSize;
+        }
+        catch (IOException | UncheckedIOException e) {
+            LOG.warn(e, "Failed to spill query %s to %s", queryInfo.getQueryId(), spillFile.orElseThrow());
+        }
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        spillExecutor.ifPresent(executor -> executor.execute(() -> {
+            try {
+                if (spillWriter != null) {
+                    spillWriter.close();
+                }
+            }
+            catch (IOException e) {
+                LOG.warn(e, "Failed to close %s", spillFile.orElseThrow());
+            }
+        }));
+        spillExecutor.ifPresent(ExecutorService::shutdown);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.history;
+
+import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import java.io.File;
+import java.util.Optional;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class QueryHistoryConfig
+{
+    public static final String QUERY_HISTORY_MAX_SIZE = "query-history.max-size";
+    public static final String QUERY_HISTORY_SPILL_FILE = "query-history.spill-file";
+    public static final String QUERY_HISTORY_SPILL_FILE_MAX_SIZE = "query-history.spill-file-max-size";
+    public static final String QUERY_HISTORY_SLOW_QUERY_THRESHOLD = "query-history.slow-query-threshold";
+
+    private int maxSize = 1000;
+    private Optional<File> spillFile = Optional.empty();
+    private DataSize spillFileMaxSize = DataSize.of(100, MEGABYTE);
+    private Duration slowQueryThreshold = new Duration(5, SECONDS);
+
+    @Min(1)
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    @Config(QUERY_HISTORY_MAX_SIZE)
+    @ConfigDescription("The number of recent queries kept in memory")
+    public QueryHistoryConfig setMaxSize(int maxSize)
+    {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    @NotNull
+    public Optional<File> getSpillFile()
+    {
+        return spillFile;
+    }
+
+    @Config(QUERY_HISTORY_SPILL_FILE)
+    @ConfigDescription("The file the queries evicted from memory are appended to, one json object per line")
+    public QueryHistoryConfig setSpillFile(File spillFile)
+    {
+        this.spillFile = Optional.ofNullable(spillFile);
+        return this;
+    }
+
+    @NotNull
+    public DataSize getSpillFileMaxSize()
+    {
+        return spillFileMaxSize;
+    }
+
+    @Config(QUERY_HISTORY_SPILL_FILE_MAX_SIZE)
+    @ConfigDescription("The spill file is rotated to <spill-file>.1 when it reaches this size, replacing the previous one")
+    public QueryHistoryConfig setSpillFileMaxSize(DataSize spillFileMaxSize)
+    {
+        this.spillFileMaxSize = spillFileMaxSize;
+        return this;
+    }
+
+    @NotNull
+    public Duration getSlowQueryThreshold()
+    {
+        return slowQueryThreshold;
+    }
+
+    @Config(QUERY_HISTORY_SLOW_QUERY_THRESHOLD)
+    @ConfigDescription("The queries taking longer than this are logged with their profile")
+    public QueryHistoryConfig setSlowQueryThreshold(Duration slowQueryThreshold)
+    {
+        this.slowQueryThreshold = slowQueryThreshold;
+        return this;
+    }
+}
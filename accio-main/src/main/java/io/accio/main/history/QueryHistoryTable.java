@@ -0,0 +1,213 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.history;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioException;
+import io.accio.base.Column;
+import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.type.PGType;
+import io.trino.sql.tree.AllColumns;
+import io.trino.sql.tree.Identifier;
+import io.trino.sql.tree.Limit;
+import io.trino.sql.tree.LongLiteral;
+import io.trino.sql.tree.Node;
+import io.trino.sql.tree.Query;
+import io.trino.sql.tree.QuerySpecification;
+import io.trino.sql.tree.SelectItem;
+import io.trino.sql.tree.SingleColumn;
+import io.trino.sql.tree.Statement;
+import io.trino.sql.tree.Table;
+
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.metadata.StandardErrorCode.COLUMN_NOT_FOUND;
+import static io.accio.base.metadata.StandardErrorCode.NOT_SUPPORTED;
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.BooleanType.BOOLEAN;
+import static io.accio.base.type.DoubleType.DOUBLE;
+import static io.accio.base.type.TimestampType.TIMESTAMP;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static java.lang.String.format;
+import static java.time.ZoneOffset.UTC;
+import static java.util.Locale.ENGLISH;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.joining;
+
+/**
+ * {@link QueryHistory} as a table answered by the wire protocol without going to the data source. Only the
+ * projection of columns and a limit are supported, e.g.
+ * <pre>
+ * SELECT query_id, elapsed_ms, statement FROM accio_query_history LIMIT 10
+ * </pre>
+ * The queries are listed the most recent first.
+ */
+public final class QueryHistoryTable
+{
+    public static final String NAME = "accio_query_history";
+
+    private static final List<HistoryColumn> COLUMNS = ImmutableList.of(
+            new HistoryColumn("query_id", VARCHAR, QueryInfo::getQueryId),
+            new HistoryColumn("create_time", TIMESTAMP, queryInfo -> LocalDateTime.ofInstant(queryInfo.getCreateTime(), UTC)),
+            new HistoryColumn("statement", VARCHAR, QueryInfo::getStatement),
+            new HistoryColumn("rewritten_statement", VARCHAR, QueryInfo::getRewrittenStatement),
+            new HistoryColumn("dialect_statement", VARCHAR, queryInfo -> queryInfo.getDialectStatement().orElse(null)),
+            new HistoryColumn("cached", BOOLEAN, QueryInfo::isCached),
+            new HistoryColumn("phases", VARCHAR, queryInfo -> queryInfo.getPhases().entrySet().stream()
+                    .map(phase -> phase.getKey() + "=" + phase.getValue())
+                    .collect(joining(", "))),
+            new HistoryColumn("elapsed_ms", DOUBLE, queryInfo -> queryInfo.getElapsed().getValue(MILLISECONDS)),
+            new HistoryColumn("rows", BIGINT, QueryInfo::getRows),
+            new HistoryColumn("bytes", BIGINT, QueryInfo::getBytes),
+            new HistoryColumn("upstream_query_id", VARCHAR, queryInfo -> queryInfo.getUpstreamQueryId().orElse(null)),
+            new HistoryColumn("error", VARCHAR, queryInfo -> queryInfo.getError().orElse(null)));
+
+    private QueryHistoryTable() {}
+
+    /**
+     * A cheap check before parsing, so that only the statements mentioning the table are analyzed.
+     */
+    public static boolean mayReference(String statement)
+    {
+        return statement.toLowerCase(ENGLISH).contains(NAME);
+    }
+
+    public static Optional<Scan> analyze(Statement statement)
+    {
+        if (!(statement instanceof Query)) {
+            return Optional.empty();
+        }
+        Query query = (Query) statement;
+        if (!(query.getQueryBody() instanceof QuerySpecification)) {
+            return Optional.empty();
+        }
+        QuerySpecification specification = (QuerySpecification) query.getQueryBody();
+        if (specification.getFrom().isEmpty() || !isHistoryTable(specification.getFrom().get())) {
+            return Optional.empty();
+        }
+        if (query.getWith().isPresent() || query.getOrderBy().isPresent() || query.getOffset().isPresent() ||
+                specification.getWhere().isPresent() || specification.getGroupBy().isPresent() || specification.getHaving().isPresent() ||
+                !specification.getWindows().isEmpty() || specification.getOrderBy().isPresent() || specification.getOffset().isPresent() ||
+                specification.getSelect().isDistinct()) {
+            throw new AccioException(NOT_SUPPORTED, format("%s only supports selecting columns with a limit", NAME));
+        }
+
+        ImmutableList.Builder<HistoryColumn> columns = ImmutableList.builder();
+        for (SelectItem item : specification.getSelect().getSelectItems()) {
+            columns.addAll(resolve(item));
+        }
+        Optional<Long> limit = specification.getLimit().or(query::getLimit).map(QueryHistoryTable::getLimit);
+        return Optional.of(new Scan(columns.build(), limit));
+    }
+
+    private static boolean isHistoryTable(Node relation)
+    {
+        return relation instanceof Table && ((Table) relation).getName().getSuffix().equalsIgnoreCase(NAME);
+    }
+
+    private static List<HistoryColumn> resolve(SelectItem item)
+    {
+        if (item instanceof AllColumns && ((AllColumns) item).getAliases().isEmpty()) {
+            return COLUMNS;
+        }
+        if (item instanceof SingleColumn && ((SingleColumn) item).getExpression() instanceof Identifier) {
+            SingleColumn column = (SingleColumn) item;
+            String name = ((Identifier) column.getExpression()).getValue();
+            HistoryColumn historyColumn = COLUMNS.stream()
+                    .filter(candidate -> candidate.column.getName().equalsIgnoreCase(name))
+                    .findFirst()
+                    .orElseThrow(() -> new AccioException(COLUMN_NOT_FOUND, format("column %s not found in %s", name, NAME)));
+            return ImmutableList.of(column.getAlias()
+                    .map(alias -> new HistoryColumn(alias.getValue(), historyColumn.column.getType(), historyColumn.value))
+                    .orElse(historyColumn));
+        }
+        throw new AccioException(NOT_SUPPORTED, format("%s only supports selecting columns, not %s", NAME, item));
+    }
+
+    private static long getLimit(Node limit)
+    {
+        if (limit instanceof Limit && ((Limit) limit).getRowCount() instanceof LongLiteral) {
+            return ((LongLiteral) ((Limit) limit).getRowCount()).getValue();
+        }
+        throw new AccioException(NOT_SUPPORTED, format("%s only supports a constant limit", NAME));
+    }
+
+    public static class Scan
+    {
+        private final List<HistoryColumn> columns;
+        private final Optional<Long> limit;
+
+        private Scan(List<HistoryColumn> columns, Optional<Long> limit)
+        {
+            this.columns = columns;
+            this.limit = limit;
+        }
+
+        public List<Column> getColumns()
+        {
+            return columns.stream().map(column -> column.column).collect(toImmutableList());
+        }
+
+        public ConnectorRecordIterator execute(QueryHistory queryHistory)
+        {
+            List<QueryInfo> queries = queryHistory.getQueries();
+            Iterator<Object[]> rows = queries.stream()
+                    .limit(limit.orElse(Long.MAX_VALUE))
+                    .map(queryInfo -> columns.stream().map(column -> column.value.apply(queryInfo)).toArray())
+                    .iterator();
+            List<PGType> types = columns.stream().map(column -> (PGType) column.column.getType()).collect(toImmutableList());
+            return new ConnectorRecordIterator()
+            {
+                @Override
+                public List<PGType> getTypes()
+                {
+                    return types;
+                }
+
+                @Override
+                public boolean hasNext()
+                {
+                    return rows.hasNext();
+                }
+
+                @Override
+                public Object[] next()
+                {
+                    return rows.next();
+                }
+
+                @Override
+                public void close() {}
+            };
+        }
+    }
+
+    private static class HistoryColumn
+    {
+        private final Column column;
+        private final Function<QueryInfo, Object> value;
+
+        private HistoryColumn(String name, PGType<?> type, Function<QueryInfo, Object> value)
+        {
+            this.column = new Column(name, type);
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.history;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A query executed over the wire protocol with its profile: the time spent in each phase, the sql sent to the data
+ * source and the rows and bytes returned.
+ */
+@JsonInclude(JsonInclude.Include.NON_ABSENT)
+public class QueryInfo
+{
+    private final String queryId;
+    private final Instant createTime;
+    private final String statement;
+    private final String rewrittenStatement;
+    private final Optional<String> dialectStatement;
+    private final boolean cached;
+    private final Map<String, Duration> phases;
+    private final Duration elapsed;
+    private final long rows;
+    private final long bytes;
+    private final Optional<String> upstreamQueryId;
+    private final Optional<String> error;
+
+    @JsonCreator
+    public QueryInfo(
+            @JsonProperty("queryId") String queryId,
+            @JsonProperty("createTime") Instant createTime,
+            @JsonProperty("statement") String statement,
+            @JsonProperty("rewrittenStatement") String rewrittenStatement,
+            @JsonProperty("dialectStatement") Optional<String> dialectStatement,
+            @JsonProperty("cached") boolean cached,
+            @JsonProperty("phases") Map<String, Duration> phases,
+            @JsonProperty("elapsed") Duration elapsed,
+            @JsonProperty("rows") long rows,
+            @JsonProperty("bytes") long bytes,
+            @JsonProperty("upstreamQueryId") Optional<String> upstreamQueryId,
+            @JsonProperty("error") Optional<String> error)
+    {
+        this.queryId = requireNonNull(queryId, "queryId is null");
+        this.createTime = requireNonNull(createTime, "createTime is null");
+        this.statement = requireNonNull(statement, "statement is null");
+        this.rewrittenStatement = requireNonNull(rewrittenStatement, "rewrittenStatement is null");
+        this.dialectStatement = requireNonNull(dialectStatement, "dialectStatement is null");
+        this.cached = cached;
+        this.phases = ImmutableMap.copyOf(requireNonNull(phases, "phases is null"));
+        this.elapsed = requireNonNull(elapsed, "elapsed is null");
+        this.rows = rows;
+        this.bytes = bytes;
+        this.upstreamQueryId = requireNonNull(upstreamQueryId, "upstreamQueryId is null");
+        this.error = requireNonNull(error, "error is null");
+    }
+
+    @JsonProperty
+    public String getQueryId()
+    {
+        return queryId;
+    }
+
+    @JsonProperty
+    public Instant getCreateTime()
+    {
+        return createTime;
+    }
+
+    /**
+     * The statement as sent by the client.
+     */
+    @JsonProperty
+    public String getStatement()
+    {
+        return statement;
+    }
+
+    /**
+     * The statement after the accio planner and the postgres rewrites.
+     */
+    @JsonProperty
+    public String getRewrittenStatement()
+    {
+        return rewrittenStatement;
+    }
+
+    /**
+     * The sql executed by the data source, or by duckdb if the query was served from the cache.
+     */
+    @JsonProperty
+    public Optional<String> getDialectStatement()
+    {
+        return dialectStatement;
+    }
+
+    @JsonProperty
+    public boolean isCached()
+    {
+        return cached;
+    }
+
+    /**
+     * The time spent in each phase, in the order the phases ran. The planning phases are those of the prepared
+     * statement, so they are repeated for each execution of the statement.
+     */
+    @JsonProperty
+    public Map<String, Duration> getPhases()
+    {
+        return phases;
+    }
+
+    /**
+     * From the first Execute of the portal to its last row.
+     */
+    @JsonProperty
+    public Duration getElapsed()
+    {
+        return elapsed;
+    }
+
+    @JsonProperty
+    public long getRows()
+    {
+        return rows;
+    }
+
+    @JsonProperty
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    @JsonProperty
+    public Optional<String> getUpstreamQueryId()
+    {
+        return upstreamQueryId;
+    }
+
+    @JsonProperty
+    public Optional<String> getError()
+    {
+        return error;
+    }
+
+    public boolean isFailed()
+    {
+        return error.isPresent();
+    }
+}
@@ -16,6 +16,7 @@ package io.accio.main.metadata;
 import io.accio.base.Column;
 import io.accio.base.ConnectorRecordIterator;
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
 import io.accio.base.metadata.TableMetadata;
 import io.trino.sql.tree.QualifiedName;
 
@@ -43,6 +44,15 @@ public interface Metadata
 
     ConnectorRecordIterator directQuery(String sql, List<Parameter> parameters);
 
+    /**
+     * Execute the query so that canceling {@code cancellation} aborts it in the data source.
+     */
+    default ConnectorRecordIterator directQuery(String sql, List<Parameter> parameters, QueryCancellation cancellation)
+    {
+        cancellation.checkCanceled();
+        return directQuery(sql, parameters);
+    }
+
     List<Column> describeQuery(String sql, List<Parameter> parameters);
 
     boolean isPgCompatible();
@@ -42,36 +42,41 @@ public class FlattenGroupingElements
         return new FlattenGroupingElementsRewriter().process(node, null);
     }
 
-    public static class FlattenGroupingElementsRewriter
-            extends BaseRewriter<Void>
+    static GroupBy flatten(GroupBy node)
     {
-        protected Node visitGroupBy(GroupBy node, Void context)
-        {
-            ImmutableList.Builder<GroupingElement> builder = ImmutableList.builder();
-            node.getGroupingElements().forEach(groupingElement -> {
-                if (groupingElement instanceof SimpleGroupBy) {
-                    rewriteSimpleGroupBy((SimpleGroupBy) groupingElement, builder);
-                }
-                else {
-                    builder.add(groupingElement);
-                }
-            });
-            if (node.getLocation().isPresent()) {
-                return new GroupBy(
-                        node.getLocation().get(),
-                        node.isDistinct(),
-                        builder.build());
+        ImmutableList.Builder<GroupingElement> builder = ImmutableList.builder();
+        node.getGroupingElements().forEach(groupingElement -> {
+            if (groupingElement instanceof SimpleGroupBy) {
+                rewriteSimpleGroupBy((SimpleGroupBy) groupingElement, builder);
             }
+            else {
+                builder.add(groupingElement);
+            }
+        });
+        if (node.getLocation().isPresent()) {
             return new GroupBy(
+                    node.getLocation().get(),
                     node.isDistinct(),
                     builder.build());
         }
+        return new GroupBy(
+                node.isDistinct(),
+                builder.build());
+    }
 
-        private static void rewriteSimpleGroupBy(SimpleGroupBy node, ImmutableList.Builder<GroupingElement> groupingElementBuilder)
+    private static void rewriteSimpleGroupBy(SimpleGroupBy node, ImmutableList.Builder<GroupingElement> groupingElementBuilder)
+    {
+        for (Expression expression : node.getExpressions()) {
+            groupingElementBuilder.add(new SimpleGroupBy(List.of(expression)));
+        }
+    }
+
+    public static class FlattenGroupingElementsRewriter
+            extends BaseRewriter<Void>
+    {
+        protected Node visitGroupBy(GroupBy node, Void context)
         {
-            for (Expression expression : node.getExpressions()) {
-                groupingElementBuilder.add(new SimpleGroupBy(List.of(expression)));
-            }
+            return flatten(node);
         }
     }
 }
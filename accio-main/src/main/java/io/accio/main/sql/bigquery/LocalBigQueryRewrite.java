@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.sql.bigquery;
+
+import io.accio.main.metadata.Metadata;
+import io.accio.main.sql.SqlRewrite;
+import io.accio.sqlrewrite.BaseRewriter;
+import io.trino.sql.tree.ArithmeticBinaryExpression;
+import io.trino.sql.tree.Cast;
+import io.trino.sql.tree.GroupBy;
+import io.trino.sql.tree.Node;
+
+/**
+ * {@link FlattenGroupingElements}, {@link RemoveParameterInTypesInCast} and {@link RewriteArithmetic} in a single
+ * traversal. Each of them only rewrites the node it visits without looking at its parent, so they can be applied
+ * together, bottom-up. Unlike the separate rewrites, the children of a rewritten node are rewritten too,
+ * e.g. the inner cast of {@code CAST(CAST(a AS VARCHAR(10)) AS VARCHAR(5))}.
+ */
+public class LocalBigQueryRewrite
+        implements SqlRewrite
+{
+    public static final LocalBigQueryRewrite INSTANCE = new LocalBigQueryRewrite();
+
+    private LocalBigQueryRewrite() {}
+
+    @Override
+    public Node rewrite(Node node, Metadata metadata)
+    {
+        return new LocalBigQueryRewriter().process(node);
+    }
+
+    private static class LocalBigQueryRewriter
+            extends BaseRewriter<Void>
+    {
+        @Override
+        protected Node visitGroupBy(GroupBy node, Void context)
+        {
+            return FlattenGroupingElements.flatten((GroupBy) super.visitGroupBy(node, context));
+        }
+
+        @Override
+        protected Node visitCast(Cast node, Void context)
+        {
+            return RemoveParameterInTypesInCast.removeParameters((Cast) super.visitCast(node, context));
+        }
+
+        @Override
+        protected Node visitArithmeticBinary(ArithmeticBinaryExpression node, Void context)
+        {
+            return RewriteArithmetic.castTimestampToDatetime((ArithmeticBinaryExpression) super.visitArithmeticBinary(node, context));
+        }
+    }
+}
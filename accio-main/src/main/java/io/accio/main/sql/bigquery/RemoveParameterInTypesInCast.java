@@ -38,23 +38,28 @@ public class RemoveParameterInTypesInCast
         return new RemoveParameterInTypesInCastRewriter().process(node);
     }
 
+    static Cast removeParameters(Cast node)
+    {
+        DataType dataType = node.getType();
+        if (node.getType() instanceof GenericDataType
+                && !((GenericDataType) node.getType()).getName().getCanonicalValue().equals("ARRAY")) {
+            GenericDataType genericDataType = (GenericDataType) node.getType();
+            dataType = new GenericDataType(Optional.empty(), genericDataType.getName(), ImmutableList.of());
+        }
+        else if (node.getType() instanceof DateTimeDataType) {
+            DateTimeDataType dateTimeDataType = (DateTimeDataType) node.getType();
+            dataType = new DateTimeDataType(dateTimeDataType.getLocation(), dateTimeDataType.getType(), dateTimeDataType.isWithTimeZone(), Optional.empty());
+        }
+        return new Cast(node.getExpression(), dataType);
+    }
+
     private static class RemoveParameterInTypesInCastRewriter
             extends BaseRewriter<Void>
     {
         @Override
         protected Node visitCast(Cast node, Void context)
         {
-            DataType dataType = node.getType();
-            if (node.getType() instanceof GenericDataType
-                    && !((GenericDataType) node.getType()).getName().getCanonicalValue().equals("ARRAY")) {
-                GenericDataType genericDataType = (GenericDataType) node.getType();
-                dataType = new GenericDataType(Optional.empty(), genericDataType.getName(), ImmutableList.of());
-            }
-            else if (node.getType() instanceof DateTimeDataType) {
-                DateTimeDataType dateTimeDataType = (DateTimeDataType) node.getType();
-                dataType = new DateTimeDataType(dateTimeDataType.getLocation(), dateTimeDataType.getType(), dateTimeDataType.isWithTimeZone(), Optional.empty());
-            }
-            return new Cast(node.getExpression(), dataType);
+            return removeParameters(node);
         }
     }
 }
@@ -48,41 +48,44 @@ public class RewriteArithmetic
         return new RewriteArithmeticRewriter().process(node, null);
     }
 
-    public static class RewriteArithmeticRewriter
-            extends BaseRewriter<Void>
+    static Node castTimestampToDatetime(ArithmeticBinaryExpression node)
     {
-        @Override
-        protected Node visitArithmeticBinary(ArithmeticBinaryExpression node, Void context)
-        {
-            if (node.getLeft() instanceof IntervalLiteral && (node.getRight() instanceof TimestampLiteral)) {
-                if (node.getLocation().isPresent()) {
-                    return new ArithmeticBinaryExpression(
-                            node.getLocation().get(),
-                            node.getOperator(),
-                            node.getLeft(),
-                            new Cast(node.getRight(), DATETIME));
-                }
+        if (node.getLeft() instanceof IntervalLiteral && (node.getRight() instanceof TimestampLiteral)) {
+            if (node.getLocation().isPresent()) {
                 return new ArithmeticBinaryExpression(
                         node.getLocation().get(),
                         node.getOperator(),
                         node.getLeft(),
                         new Cast(node.getRight(), DATETIME));
             }
-            else if (node.getLeft() instanceof TimestampLiteral && node.getRight() instanceof IntervalLiteral) {
-                if (node.getLocation().isPresent()) {
-                    return new ArithmeticBinaryExpression(
-                            node.getLocation().get(),
-                            node.getOperator(),
-                            new Cast(node.getLeft(), DATETIME),
-                            node.getRight());
-                }
+            return new ArithmeticBinaryExpression(
+                    node.getOperator(),
+                    node.getLeft(),
+                    new Cast(node.getRight(), DATETIME));
+        }
+        else if (node.getLeft() instanceof TimestampLiteral && node.getRight() instanceof IntervalLiteral) {
+            if (node.getLocation().isPresent()) {
                 return new ArithmeticBinaryExpression(
                         node.getLocation().get(),
                         node.getOperator(),
-                        new Cast(node.getRight(), DATETIME),
+                        new Cast(node.getLeft(), DATETIME),
                         node.getRight());
             }
-            return node;
+            return new ArithmeticBinaryExpression(
+                    node.getOperator(),
+                    new Cast(node.getLeft(), DATETIME),
+                    node.getRight());
+        }
+        return node;
+    }
+
+    public static class RewriteArithmeticRewriter
+            extends BaseRewriter<Void>
+    {
+        @Override
+        protected Node visitArithmeticBinary(ArithmeticBinaryExpression node, Void context)
+        {
+            return castTimestampToDatetime(node);
         }
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.web;
+
+import io.accio.base.AccioException;
+import io.accio.main.history.QueryHistory;
+import io.accio.main.history.QueryInfo;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.metadata.StandardErrorCode.NOT_FOUND;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+@Path("/v1/query")
+public class QueryHistoryResource
+{
+    private final QueryHistory queryHistory;
+
+    @Inject
+    public QueryHistoryResource(QueryHistory queryHistory)
+    {
+        this.queryHistory = requireNonNull(queryHistory, "queryHistory is null");
+    }
+
+    /**
+     * The recent queries, the most recent first.
+     *
+     * @param failed only the failed queries
+     * @param limit the max number of queries to return
+     */
+    @GET
+    @Produces(APPLICATION_JSON)
+    public List<QueryInfo> getQueries(@QueryParam("failed") boolean failed, @QueryParam("limit") Integer limit)
+    {
+        Stream<QueryInfo> queries = queryHistory.getQueries().stream()
+                .filter(queryInfo -> !failed || queryInfo.isFailed());
+        if (limit != null) {
+            queries = queries.limit(limit);
+        }
+        return queries.collect(toImmutableList());
+    }
+
+    @GET
+    @Path("{queryId}")
+    @Produces(APPLICATION_JSON)
+    public QueryInfo getQuery(@PathParam("queryId") String queryId)
+    {
+        return queryHistory.getQuery(queryId)
+                .orElseThrow(() -> new AccioException(NOT_FOUND, format("Query %s not found.", queryId)));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.web;
+
+import com.google.common.collect.ImmutableMap;
+import io.accio.cache.CacheStats;
+import io.accio.main.wireprotocol.WireProtocolStats;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+/**
+ * The same statistics as exported via JMX, for the deployments without a JMX client.
+ */
+@Path("/v1/stats")
+public class StatsResource
+{
+    private final WireProtocolStats wireProtocolStats;
+    private final CacheStats cacheStats;
+
+    @Inject
+    public StatsResource(WireProtocolStats wireProtocolStats, CacheStats cacheStats)
+    {
+        this.wireProtocolStats = requireNonNull(wireProtocolStats, "wireProtocolStats is null");
+        this.cacheStats = requireNonNull(cacheStats, "cacheStats is null");
+    }
+
+    @GET
+    @Produces(APPLICATION_JSON)
+    public Map<String, Object> getStats()
+    {
+        return ImmutableMap.of(
+                "wireProtocol", wireProtocolStats.snapshot(),
+                "cache", cacheStats.snapshot());
+    }
+}
@@ -65,6 +65,7 @@ import io.trino.sql.tree.Execute;
 import io.trino.sql.tree.ExistsPredicate;
 import io.trino.sql.tree.Explain;
 import io.trino.sql.tree.ExplainOption;
+import io.trino.sql.tree.Expression;
 import io.trino.sql.tree.Extract;
 import io.trino.sql.tree.FetchFirst;
 import io.trino.sql.tree.FieldReference;
@@ -173,17 +174,25 @@ import io.trino.sql.tree.Use;
 import io.trino.sql.tree.Values;
 import io.trino.sql.tree.WhenClause;
 import io.trino.sql.tree.Window;
+import io.trino.sql.tree.WindowDefinition;
 import io.trino.sql.tree.WindowFrame;
 import io.trino.sql.tree.WindowReference;
 import io.trino.sql.tree.WindowSpecification;
 import io.trino.sql.tree.With;
 import io.trino.sql.tree.WithQuery;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Rewrites a tree bottom-up like {@link io.accio.sqlrewrite.BaseRewriter}. A node none of whose children was rewritten
+ * is returned as is instead of a copy, so the caller can tell whether anything changed with {@code rewritten != node}.
+ */
 public class BaseRewriteVisitor<C>
         extends AstVisitor<Node, C>
 {
@@ -196,11 +205,15 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitCreateTableAsSelect(CreateTableAsSelect node, C context)
     {
+        Query query = visitAndCast(node.getQuery());
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new CreateTableAsSelect(
                     node.getLocation().get(),
                     node.getName(),
-                    visitAndCast(node.getQuery()),
+                    query,
                     node.isNotExists(),
                     node.getProperties(),
                     node.isWithData(),
@@ -209,7 +222,7 @@ public class BaseRewriteVisitor<C>
         }
         return new CreateTableAsSelect(
                 node.getName(),
-                visitAndCast(node.getQuery()),
+                query,
                 node.isNotExists(),
                 node.getProperties(),
                 node.isWithData(),
@@ -220,19 +233,25 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitQuery(Query node, C context)
     {
+        Optional<With> with = visitOptional(node.getWith());
+        QueryBody queryBody = visitAndCast(node.getQueryBody());
+        Optional<OrderBy> orderBy = visitOptional(node.getOrderBy());
+        if (with == node.getWith() && queryBody == node.getQueryBody() && orderBy == node.getOrderBy()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Query(
                     node.getLocation().get(),
-                    node.getWith().map(this::visitAndCast),
-                    visitAndCast(node.getQueryBody()),
-                    node.getOrderBy().map(this::visitAndCast),
+                    with,
+                    queryBody,
+                    orderBy,
                     node.getOffset(),
                     node.getLimit());
         }
         return new Query(
-                node.getWith().map(this::visitAndCast),
-                visitAndCast(node.getQueryBody()),
-                node.getOrderBy().map(this::visitAndCast),
+                with,
+                queryBody,
+                orderBy,
                 node.getOffset(),
                 node.getLimit());
     }
@@ -246,24 +265,32 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitExtract(Extract node, C context)
     {
+        Expression expression = visitAndCast(node.getExpression());
+        if (expression == node.getExpression()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
-            new Extract(
+            return new Extract(
                     node.getLocation().get(),
-                    visitAndCast(node.getExpression()),
+                    expression,
                     node.getField());
         }
-        return new Extract(visitAndCast(node.getExpression()), node.getField());
+        return new Extract(expression, node.getField());
     }
 
     @Override
     protected Node visitCoalesceExpression(CoalesceExpression node, C context)
     {
+        List<Expression> operands = visitNodes(node.getOperands());
+        if (operands == node.getOperands()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new CoalesceExpression(
                     node.getLocation().get(),
-                    visitNodes(node.getOperands()));
+                    operands);
         }
-        return new CoalesceExpression(visitNodes(node.getOperands()));
+        return new CoalesceExpression(operands);
     }
 
     @Override
@@ -293,15 +320,19 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitPrepare(Prepare node, C context)
     {
+        Statement statement = visitAndCast(node.getStatement());
+        if (statement == node.getStatement()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Prepare(
                     node.getLocation().get(),
                     node.getName(),
-                    visitAndCast(node.getStatement()));
+                    statement);
         }
         return new Prepare(
                 node.getName(),
-                visitAndCast(node.getStatement()));
+                statement);
     }
 
     @Override
@@ -313,13 +344,17 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitExecute(Execute node, C context)
     {
+        List<Expression> parameters = visitNodes(node.getParameters());
+        if (parameters == node.getParameters()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Execute(
                     node.getLocation().get(),
                     node.getName(),
-                    visitNodes(node.getParameters()));
+                    parameters);
         }
-        return new Execute(node.getName(), visitNodes(node.getParameters()));
+        return new Execute(node.getName(), parameters);
     }
 
     @Override
@@ -337,47 +372,31 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitExplain(Explain node, C context)
     {
+        Statement statement = visitAndCast(node.getStatement());
+        if (statement == node.getStatement()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Explain(
                     node.getLocation().get(),
-                    visitAndCast(node.getStatement()),
+                    statement,
                     node.getOptions());
         }
         return new Explain(
-                visitAndCast(node.getStatement()),
+                statement,
                 node.getOptions());
     }
 
     @Override
     protected Node visitShowTables(ShowTables node, C context)
     {
-        if (node.getLocation().isPresent()) {
-            return new ShowTables(
-                    node.getLocation().get(),
-                    node.getSchema(),
-                    node.getLikePattern(),
-                    node.getEscape());
-        }
-        return new ShowTables(
-                node.getSchema(),
-                node.getLikePattern(),
-                node.getEscape());
+        return node;
     }
 
     @Override
     protected Node visitShowSchemas(ShowSchemas node, C context)
     {
-        if (node.getLocation().isPresent()) {
-            return new ShowSchemas(
-                    node.getLocation().get(),
-                    node.getCatalog(),
-                    node.getLikePattern(),
-                    node.getEscape());
-        }
-        return new ShowSchemas(
-                node.getCatalog(),
-                node.getLikePattern(),
-                node.getEscape());
+        return node;
     }
 
     @Override
@@ -389,12 +408,16 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitShowStats(ShowStats node, C context)
     {
+        Relation relation = visitAndCast(node.getRelation());
+        if (relation == node.getRelation()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ShowStats(
                     node.getLocation(),
-                    visitAndCast(node.getRelation()));
+                    relation);
         }
-        return new ShowStats(visitAndCast(node.getRelation()));
+        return new ShowStats(relation);
     }
 
     @Override
@@ -502,28 +525,37 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitIntersect(Intersect node, C context)
     {
+        List<Relation> relations = visitNodes(node.getRelations());
+        if (relations == node.getRelations()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Intersect(
                     node.getLocation().get(),
-                    visitNodes(node.getRelations()),
+                    relations,
                     node.isDistinct());
         }
-        return new Intersect(visitNodes(node.getRelations()), node.isDistinct());
+        return new Intersect(relations, node.isDistinct());
     }
 
     @Override
     protected Node visitExcept(Except node, C context)
     {
+        Relation left = visitAndCast(node.getLeft());
+        Relation right = visitAndCast(node.getRight());
+        if (left == node.getLeft() && right == node.getRight()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Except(
                     node.getLocation().get(),
-                    visitAndCast(node.getLeft()),
-                    visitAndCast(node.getRight()),
+                    left,
+                    right,
                     node.isDistinct());
         }
         return new Except(
-                visitAndCast(node.getLeft()),
-                visitAndCast(node.getRight()),
+                left,
+                right,
                 node.isDistinct());
     }
 
@@ -536,15 +568,20 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitWhenClause(WhenClause node, C context)
     {
+        Expression operand = visitAndCast(node.getOperand());
+        Expression result = visitAndCast(node.getResult());
+        if (operand == node.getOperand() && result == node.getResult()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new WhenClause(
                     node.getLocation().get(),
-                    visitAndCast(node.getOperand()),
-                    visitAndCast(node.getResult()));
+                    operand,
+                    result);
         }
         return new WhenClause(
-                visitAndCast(node.getOperand()),
-                visitAndCast(node.getResult()));
+                operand,
+                result);
     }
 
     @Override
@@ -556,31 +593,41 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitLambdaExpression(LambdaExpression node, C context)
     {
+        Expression body = visitAndCast(node.getBody());
+        if (body == node.getBody()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new LambdaExpression(
                     node.getLocation().get(),
                     node.getArguments(),
-                    visitAndCast(node.getBody()));
+                    body);
         }
         return new LambdaExpression(
                 node.getArguments(),
-                visitAndCast(node.getBody()));
+                body);
     }
 
     @Override
     protected Node visitSimpleCaseExpression(SimpleCaseExpression node, C context)
     {
+        Expression operand = visitAndCast(node.getOperand());
+        List<WhenClause> whenClauses = visitNodes(node.getWhenClauses());
+        Optional<Expression> defaultValue = visitOptional(node.getDefaultValue());
+        if (operand == node.getOperand() && whenClauses == node.getWhenClauses() && defaultValue == node.getDefaultValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SimpleCaseExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getOperand()),
-                    visitNodes(node.getWhenClauses()),
-                    node.getDefaultValue().map(this::visitAndCast));
+                    operand,
+                    whenClauses,
+                    defaultValue);
         }
         return new SimpleCaseExpression(
-                visitAndCast(node.getOperand()),
-                visitNodes(node.getWhenClauses()),
-                node.getDefaultValue().map(this::visitAndCast));
+                operand,
+                whenClauses,
+                defaultValue);
     }
 
     @Override
@@ -610,12 +657,16 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitInListExpression(InListExpression node, C context)
     {
+        List<Expression> values = visitNodes(node.getValues());
+        if (values == node.getValues()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new InListExpression(
                     node.getLocation().get(),
-                    visitNodes(node.getValues()));
+                    values);
         }
-        return new InListExpression(visitNodes(node.getValues()));
+        return new InListExpression(values);
     }
 
     @Override
@@ -627,31 +678,42 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitNullIfExpression(NullIfExpression node, C context)
     {
+        Expression first = visitAndCast(node.getFirst());
+        Expression second = visitAndCast(node.getSecond());
+        if (first == node.getFirst() && second == node.getSecond()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new NullIfExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getFirst()),
-                    visitAndCast(node.getSecond()));
+                    first,
+                    second);
         }
         return new NullIfExpression(
-                visitAndCast(node.getFirst()),
-                visitAndCast(node.getSecond()));
+                first,
+                second);
     }
 
     @Override
     protected Node visitIfExpression(IfExpression node, C context)
     {
+        Expression condition = visitAndCast(node.getCondition());
+        Expression trueValue = visitAndCast(node.getTrueValue());
+        Optional<Expression> falseValue = visitOptional(node.getFalseValue());
+        if (condition == node.getCondition() && trueValue == node.getTrueValue() && falseValue == node.getFalseValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new IfExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getCondition()),
-                    visitAndCast(node.getTrueValue()),
-                    node.getFalseValue().map(this::visitAndCast).orElse(null));
+                    condition,
+                    trueValue,
+                    falseValue.orElse(null));
         }
         return new IfExpression(
-                visitAndCast(node.getCondition()),
-                visitAndCast(node.getTrueValue()),
-                node.getFalseValue().map(this::visitAndCast).orElse(null));
+                condition,
+                trueValue,
+                falseValue.orElse(null));
     }
 
     @Override
@@ -663,13 +725,17 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitArithmeticUnary(ArithmeticUnaryExpression node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ArithmeticUnaryExpression(
                     node.getLocation().get(),
                     node.getSign(),
-                    visitAndCast(node.getValue()));
+                    value);
         }
-        return new ArithmeticUnaryExpression(node.getSign(), visitAndCast(node.getValue()));
+        return new ArithmeticUnaryExpression(node.getSign(), value);
     }
 
     @Override
@@ -687,90 +753,122 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitSearchedCaseExpression(SearchedCaseExpression node, C context)
     {
+        List<WhenClause> whenClauses = visitNodes(node.getWhenClauses());
+        Optional<Expression> defaultValue = visitOptional(node.getDefaultValue());
+        if (whenClauses == node.getWhenClauses() && defaultValue == node.getDefaultValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SearchedCaseExpression(
                     node.getLocation().get(),
-                    visitNodes(node.getWhenClauses()),
-                    node.getDefaultValue().map(this::visitAndCast));
+                    whenClauses,
+                    defaultValue);
         }
         return new SearchedCaseExpression(
-                visitNodes(node.getWhenClauses()),
-                node.getDefaultValue().map(this::visitAndCast));
+                whenClauses,
+                defaultValue);
     }
 
     @Override
     protected Node visitLikePredicate(LikePredicate node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        Expression pattern = visitAndCast(node.getPattern());
+        Optional<Expression> escape = visitOptional(node.getEscape());
+        if (value == node.getValue() && pattern == node.getPattern() && escape == node.getEscape()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new LikePredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue()),
-                    visitAndCast(node.getPattern()),
-                    node.getEscape().map(this::visitAndCast));
+                    value,
+                    pattern,
+                    escape);
         }
         return new LikePredicate(
-                visitAndCast(node.getValue()),
-                visitAndCast(node.getPattern()),
-                node.getEscape().map(this::visitAndCast));
+                value,
+                pattern,
+                escape);
     }
 
     @Override
     protected Node visitIsNotNullPredicate(IsNotNullPredicate node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new IsNotNullPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue()));
+                    value);
         }
-        return new IsNotNullPredicate(visitAndCast(node.getValue()));
+        return new IsNotNullPredicate(value);
     }
 
     @Override
     protected Node visitIsNullPredicate(IsNullPredicate node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new IsNullPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue()));
+                    value);
         }
-        return new IsNullPredicate(visitAndCast(node.getValue()));
+        return new IsNullPredicate(value);
     }
 
     @Override
     protected Node visitArrayConstructor(ArrayConstructor node, C context)
     {
+        List<Expression> values = visitNodes(node.getValues());
+        if (values == node.getValues()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ArrayConstructor(
                     node.getLocation().get(),
-                    visitNodes(node.getValues()));
+                    values);
         }
-        return new ArrayConstructor(visitNodes(node.getValues()));
+        return new ArrayConstructor(values);
     }
 
     @Override
     protected Node visitLogicalExpression(LogicalExpression node, C context)
     {
+        List<Expression> terms = visitNodes(node.getTerms(), context);
+        if (terms == node.getTerms()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new LogicalExpression(
                     node.getLocation().get(),
                     node.getOperator(),
-                    visitNodes(node.getTerms(), context));
+                    terms);
         }
         return new LogicalExpression(
                 node.getOperator(),
-                visitNodes(node.getTerms(), context));
+                terms);
     }
 
     @Override
     protected Node visitSubscriptExpression(SubscriptExpression node, C context)
     {
+        Expression base = visitAndCast(node.getBase());
+        Expression index = visitAndCast(node.getIndex());
+        if (base == node.getBase() && index == node.getIndex()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SubscriptExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getBase()),
-                    visitAndCast(node.getIndex()));
+                    base,
+                    index);
         }
-        return new SubscriptExpression(visitAndCast(node.getBase()), visitAndCast(node.getIndex()));
+        return new SubscriptExpression(base, index);
     }
 
     @Override
@@ -788,88 +886,117 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitUnnest(Unnest node, C context)
     {
+        List<Expression> expressions = visitNodes(node.getExpressions());
+        if (expressions == node.getExpressions()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Unnest(
                     node.getLocation().get(),
-                    visitNodes(node.getExpressions()),
+                    expressions,
                     node.isWithOrdinality());
         }
-        return new Unnest(visitNodes(node.getExpressions()), node.isWithOrdinality());
+        return new Unnest(expressions, node.isWithOrdinality());
     }
 
     @Override
     protected Node visitLateral(Lateral node, C context)
     {
+        Query query = visitAndCast(node.getQuery());
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Lateral(
                     node.getLocation().get(),
-                    visitAndCast(node.getQuery()));
+                    query);
         }
-        return new Lateral(visitAndCast(node.getQuery()));
+        return new Lateral(query);
     }
 
     @Override
     protected Node visitValues(Values node, C context)
     {
+        List<Expression> rows = visitNodes(node.getRows());
+        if (rows == node.getRows()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Values(
                     node.getLocation().get(),
-                    visitNodes(node.getRows()));
+                    rows);
         }
-        return new Values(visitNodes(node.getRows()));
+        return new Values(rows);
     }
 
     @Override
     protected Node visitRow(Row node, C context)
     {
+        List<Expression> items = visitNodes(node.getItems());
+        if (items == node.getItems()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Row(
                     node.getLocation().get(),
-                    visitNodes(node.getItems()));
+                    items);
         }
-        return new Row(visitNodes(node.getItems()));
+        return new Row(items);
     }
 
     @Override
     protected Node visitSampledRelation(SampledRelation node, C context)
     {
+        Relation relation = visitAndCast(node.getRelation());
+        Expression samplePercentage = visitAndCast(node.getSamplePercentage());
+        if (relation == node.getRelation() && samplePercentage == node.getSamplePercentage()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SampledRelation(
                     node.getLocation().get(),
-                    visitAndCast(node.getRelation()),
+                    relation,
                     node.getType(),
-                    visitAndCast(node.getSamplePercentage()));
+                    samplePercentage);
         }
         return new SampledRelation(
-                visitAndCast(node.getRelation()),
+                relation,
                 node.getType(),
-                visitAndCast(node.getSamplePercentage()));
+                samplePercentage);
     }
 
     @Override
     protected Node visitTryExpression(TryExpression node, C context)
     {
+        Expression innerExpression = visitAndCast(node.getInnerExpression());
+        if (innerExpression == node.getInnerExpression()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new TryExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getInnerExpression()));
+                    innerExpression);
         }
-        return new TryExpression(visitAndCast(node.getInnerExpression()));
+        return new TryExpression(innerExpression);
     }
 
     @Override
     protected Node visitCast(Cast node, C context)
     {
+        Expression expression = visitAndCast(node.getExpression());
+        if (expression == node.getExpression()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Cast(
                     node.getLocation().get(),
-                    visitAndCast(node.getExpression()),
+                    expression,
                     node.getType(),
                     node.isSafe(),
                     node.isTypeOnly());
         }
         return new Cast(
-                visitAndCast(node.getExpression()),
+                expression,
                 node.getType(),
                 node.isSafe(),
                 node.isTypeOnly());
@@ -884,30 +1011,40 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitWindowSpecification(WindowSpecification node, C context)
     {
+        List<Expression> partitionBy = visitNodes(node.getPartitionBy());
+        Optional<WindowFrame> frame = visitOptional(node.getFrame());
+        if (partitionBy == node.getPartitionBy() && frame == node.getFrame()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new WindowSpecification(
                     node.getLocation().get(),
                     node.getExistingWindowName(),
-                    visitNodes(node.getPartitionBy()),
+                    partitionBy,
                     node.getOrderBy(),
-                    node.getFrame().map(this::visitAndCast));
+                    frame);
         }
         return new WindowSpecification(
                 node.getExistingWindowName(),
-                visitNodes(node.getPartitionBy()),
+                partitionBy,
                 node.getOrderBy(),
-                node.getFrame().map(this::visitAndCast));
+                frame);
     }
 
     @Override
     protected Node visitWindowFrame(WindowFrame node, C context)
     {
+        FrameBound start = visitAndCast(node.getStart());
+        Optional<FrameBound> end = visitOptional(node.getEnd());
+        if (start == node.getStart() && end == node.getEnd()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new WindowFrame(
                     node.getLocation().get(),
                     node.getType(),
-                    visitAndCast(node.getStart()),
-                    node.getEnd().map(this::visitAndCast),
+                    start,
+                    end,
                     node.getMeasures(),
                     node.getAfterMatchSkipTo(),
                     node.getPatternSearchMode(),
@@ -917,8 +1054,8 @@ public class BaseRewriteVisitor<C>
         }
         return new WindowFrame(
                 node.getType(),
-                visitAndCast(node.getStart()),
-                node.getEnd().map(this::visitAndCast),
+                start,
+                end,
                 node.getMeasures(),
                 node.getAfterMatchSkipTo(),
                 node.getPatternSearchMode(),
@@ -930,24 +1067,32 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitFrameBound(FrameBound node, C context)
     {
+        Optional<Expression> value = visitOptional(node.getValue());
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new FrameBound(
                     node.getLocation().get(),
                     node.getType(),
-                    node.getValue().map(this::visitAndCast).orElse(null));
+                    value.orElse(null));
         }
         return new FrameBound(
                 node.getType(),
-                node.getValue().map(this::visitAndCast).orElse(null));
+                value.orElse(null));
     }
 
     @Override
     protected Node visitCallArgument(CallArgument node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        if (value == node.getValue()) {
+            return node;
+        }
         return new CallArgument(
                 node.getLocation(),
                 node.getName(),
-                visitAndCast(node.getValue()));
+                value);
     }
 
     @Override
@@ -1043,18 +1188,22 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitCreateView(CreateView node, C context)
     {
+        Query query = visitAndCast(node.getQuery());
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new CreateView(
                     node.getLocation().get(),
                     node.getName(),
-                    visitAndCast(node.getQuery()),
+                    query,
                     node.isReplace(),
                     node.getComment(),
                     node.getSecurity());
         }
         return new CreateView(
                 node.getName(),
-                visitAndCast(node.getQuery()),
+                query,
                 node.isReplace(),
                 node.getComment(),
                 node.getSecurity());
@@ -1075,27 +1224,36 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitCall(Call node, C context)
     {
+        List<CallArgument> arguments = visitNodes(node.getArguments());
+        if (arguments == node.getArguments()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Call(
                     node.getLocation().get(),
                     node.getName(),
-                    visitNodes(node.getArguments()));
+                    arguments);
         }
-        return new Call(node.getName(), visitNodes(node.getArguments()));
+        return new Call(node.getName(), arguments);
     }
 
     @Override
     protected Node visitDelete(Delete node, C context)
     {
+        Table table = visitAndCast(node.getTable());
+        Optional<Expression> where = visitOptional(node.getWhere());
+        if (table == node.getTable() && where == node.getWhere()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Delete(
                     node.getLocation().get(),
-                    visitAndCast(node.getTable()),
-                    node.getWhere().map(this::visitAndCast));
+                    table,
+                    where);
         }
         return new Delete(
-                visitAndCast(node.getTable()),
-                node.getWhere().map(this::visitAndCast));
+                table,
+                where);
     }
 
     @Override
@@ -1233,19 +1391,24 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitQuantifiedComparisonExpression(QuantifiedComparisonExpression node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        Expression subquery = visitAndCast(node.getSubquery());
+        if (value == node.getValue() && subquery == node.getSubquery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new QuantifiedComparisonExpression(
                     node.getLocation().get(),
                     node.getOperator(),
                     node.getQuantifier(),
-                    visitAndCast(node.getValue()),
-                    visitAndCast(node.getSubquery()));
+                    value,
+                    subquery);
         }
         return new QuantifiedComparisonExpression(
                 node.getOperator(),
                 node.getQuantifier(),
-                visitAndCast(node.getValue()),
-                visitAndCast(node.getSubquery()));
+                value,
+                subquery);
     }
 
     @Override
@@ -1257,13 +1420,18 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitBindExpression(BindExpression node, C context)
     {
+        List<Expression> values = visitNodes(node.getValues());
+        Expression function = visitAndCast(node.getFunction());
+        if (values == node.getValues() && function == node.getFunction()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new BindExpression(
                     node.getLocation().get(),
-                    visitNodes(node.getValues()),
-                    visitAndCast(node.getFunction()));
+                    values,
+                    function);
         }
-        return new BindExpression(visitNodes(node.getValues()), visitAndCast(node.getFunction()));
+        return new BindExpression(values, function);
     }
 
     @Override
@@ -1287,12 +1455,16 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitFormat(Format node, C context)
     {
+        List<Expression> arguments = visitNodes(node.getArguments());
+        if (arguments == node.getArguments()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Format(
                     node.getLocation().get(),
-                    visitNodes(node.getArguments()));
+                    arguments);
         }
-        return new Format(visitNodes(node.getArguments()));
+        return new Format(arguments);
     }
 
     @Override
@@ -1352,129 +1524,180 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitInPredicate(InPredicate node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        Expression valueList = visitAndCast(node.getValueList());
+        if (value == node.getValue() && valueList == node.getValueList()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new InPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue()),
-                    visitAndCast(node.getValueList()));
+                    value,
+                    valueList);
         }
         return new InPredicate(
-                visitAndCast(node.getValue()),
-                visitAndCast(node.getValueList()));
+                value,
+                valueList);
     }
 
     @Override
     protected Node visitComparisonExpression(ComparisonExpression node, C context)
     {
+        Expression left = visitAndCast(node.getLeft());
+        Expression right = visitAndCast(node.getRight());
+        if (left == node.getLeft() && right == node.getRight()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ComparisonExpression(
                     node.getLocation().get(),
                     node.getOperator(),
-                    visitAndCast(node.getLeft()),
-                    visitAndCast(node.getRight()));
+                    left,
+                    right);
         }
         return new ComparisonExpression(
                 node.getOperator(),
-                visitAndCast(node.getLeft()),
-                visitAndCast(node.getRight()));
+                left,
+                right);
     }
 
     @Override
     protected Node visitExists(ExistsPredicate node, C context)
     {
+        Expression subquery = visitAndCast(node.getSubquery());
+        if (subquery == node.getSubquery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ExistsPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getSubquery()));
+                    subquery);
         }
-        return new ExistsPredicate(visitAndCast(node.getSubquery()));
+        return new ExistsPredicate(subquery);
     }
 
     @Override
     protected Node visitNotExpression(NotExpression node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new NotExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue()));
+                    value);
         }
-        return new NotExpression(visitAndCast(node.getValue()));
+        return new NotExpression(value);
     }
 
     @Override
     protected Node visitArithmeticBinary(ArithmeticBinaryExpression node, C context)
     {
+        Expression left = visitAndCast(node.getLeft());
+        Expression right = visitAndCast(node.getRight());
+        if (left == node.getLeft() && right == node.getRight()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ArithmeticBinaryExpression(
                     node.getLocation().get(),
                     node.getOperator(),
-                    visitAndCast(node.getLeft()),
-                    visitAndCast(node.getRight()));
+                    left,
+                    right);
         }
         return new ArithmeticBinaryExpression(
                 node.getOperator(),
-                visitAndCast(node.getLeft()),
-                visitAndCast(node.getRight()));
+                left,
+                right);
     }
 
     @Override
     protected Node visitBetweenPredicate(BetweenPredicate node, C context)
     {
+        Expression value = visitAndCast(node.getValue());
+        Expression min = visitAndCast(node.getMin());
+        Expression max = visitAndCast(node.getMax());
+        if (value == node.getValue() && min == node.getMin() && max == node.getMax()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new BetweenPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue()),
-                    visitAndCast(node.getMin()),
-                    visitAndCast(node.getMax()));
+                    value,
+                    min,
+                    max);
         }
         return new BetweenPredicate(
-                visitAndCast(node.getValue()),
-                visitAndCast(node.getMin()),
-                visitAndCast(node.getMax()));
+                value,
+                min,
+                max);
     }
 
     @Override
     protected Node visitFunctionCall(FunctionCall node, C context)
     {
+        Optional<Window> window = rewriteOptional(node.getWindow(), this::visitAndCast);
+        Optional<Expression> filter = visitOptional(node.getFilter());
+        Optional<OrderBy> orderBy = visitOptional(node.getOrderBy());
+        List<Expression> arguments = visitNodes(node.getArguments());
+        if (window == node.getWindow() && filter == node.getFilter() && orderBy == node.getOrderBy() && arguments == node.getArguments()) {
+            return node;
+        }
         return new FunctionCall(
                 node.getLocation(),
                 node.getName(),
-                node.getWindow().map(this::visitAndCast),
-                node.getFilter().map(this::visitAndCast),
-                node.getOrderBy().map(this::visitAndCast),
+                window,
+                filter,
+                orderBy,
                 node.isDistinct(),
                 node.getNullTreatment(),
-                Optional.empty(),
-                visitNodes(node.getArguments()));
+                node.getProcessingMode(),
+                arguments);
     }
 
     @Override
     protected Node visitQuerySpecification(QuerySpecification node, C context)
     {
         // Relations should be visited first for alias.
-        Optional<Relation> from = node.getFrom().map(this::visitAndCast);
+        Optional<Relation> from = visitOptional(node.getFrom());
+        Select select = visitAndCast(node.getSelect());
+        Optional<Expression> where = visitOptional(node.getWhere());
+        Optional<GroupBy> groupBy = visitOptional(node.getGroupBy());
+        Optional<Expression> having = visitOptional(node.getHaving());
+        List<WindowDefinition> windows = visitNodes(node.getWindows());
+        Optional<OrderBy> orderBy = visitOptional(node.getOrderBy());
+        if (from == node.getFrom()
+                && select == node.getSelect()
+                && where == node.getWhere()
+                && groupBy == node.getGroupBy()
+                && having == node.getHaving()
+                && windows == node.getWindows()
+                && orderBy == node.getOrderBy()) {
+            return node;
+        }
 
         if (node.getLocation().isPresent()) {
             return new QuerySpecification(
                     node.getLocation().get(),
-                    visitAndCast(node.getSelect()),
+                    select,
                     from,
-                    node.getWhere().map(this::visitAndCast),
-                    node.getGroupBy().map(this::visitAndCast),
-                    node.getHaving().map(this::visitAndCast),
-                    visitNodes(node.getWindows()),
-                    node.getOrderBy().map(this::visitAndCast),
+                    where,
+                    groupBy,
+                    having,
+                    windows,
+                    orderBy,
                     node.getOffset(),
                     node.getLimit());
         }
         return new QuerySpecification(
-                visitAndCast(node.getSelect()),
+                select,
                 from,
-                node.getWhere().map(this::visitAndCast),
-                node.getGroupBy().map(this::visitAndCast),
-                node.getHaving().map(this::visitAndCast),
-                visitNodes(node.getWindows()),
-                node.getOrderBy().map(this::visitAndCast),
+                where,
+                groupBy,
+                having,
+                windows,
+                orderBy,
                 node.getOffset(),
                 node.getLimit());
     }
@@ -1496,43 +1719,55 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitJoin(Join node, C context)
     {
+        Relation left = visitAndCast(node.getLeft());
+        Relation right = visitAndCast(node.getRight());
+        Optional<JoinCriteria> criteria = rewriteOptional(node.getCriteria(), this::visitJoinCriteria);
+        if (left == node.getLeft() && right == node.getRight() && criteria == node.getCriteria()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Join(
                     node.getLocation().get(),
                     node.getType(),
-                    visitAndCast(node.getLeft()),
-                    visitAndCast(node.getRight()),
-                    node.getCriteria().map(this::visitJoinCriteria));
+                    left,
+                    right,
+                    criteria);
         }
         return new Join(
                 node.getType(),
-                visitAndCast(node.getLeft()),
-                visitAndCast(node.getRight()),
-                node.getCriteria().map(this::visitJoinCriteria));
+                left,
+                right,
+                criteria);
     }
 
     protected JoinCriteria visitJoinCriteria(JoinCriteria joinCriteria)
     {
         if (joinCriteria instanceof JoinOn) {
             JoinOn joinOn = (JoinOn) joinCriteria;
-            return new JoinOn(visitAndCast(joinOn.getExpression()));
+            Expression expression = visitAndCast(joinOn.getExpression());
+            if (expression != joinOn.getExpression()) {
+                return new JoinOn(expression);
+            }
         }
-
         return joinCriteria;
     }
 
     @Override
     protected Node visitAliasedRelation(AliasedRelation node, C context)
     {
+        Relation relation = visitAndCast(node.getRelation());
+        if (relation == node.getRelation()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new AliasedRelation(
                     node.getLocation().get(),
-                    visitAndCast(node.getRelation()),
+                    relation,
                     node.getAlias(),
                     node.getColumnNames());
         }
         return new AliasedRelation(
-                visitAndCast(node.getRelation()),
+                relation,
                 node.getAlias(),
                 node.getColumnNames());
     }
@@ -1540,167 +1775,216 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitSubqueryExpression(SubqueryExpression node, C context)
     {
+        Query query = visitAndCast(node.getQuery());
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SubqueryExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getQuery()));
+                    query);
         }
-        return new SubqueryExpression(visitAndCast(node.getQuery()));
+        return new SubqueryExpression(query);
     }
 
     @Override
     protected Node visitTableSubquery(TableSubquery node, C context)
     {
+        Query query = visitAndCast(node.getQuery());
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new TableSubquery(
                     node.getLocation().get(),
-                    visitAndCast(node.getQuery()));
+                    query);
         }
-        return new TableSubquery(visitAndCast(node.getQuery()));
+        return new TableSubquery(query);
     }
 
     @Override
     protected Node visitWith(With node, C context)
     {
+        List<WithQuery> queries = visitNodes(node.getQueries());
+        if (queries == node.getQueries()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new With(
                     node.getLocation().get(),
                     node.isRecursive(),
-                    visitNodes(node.getQueries()));
+                    queries);
         }
         return new With(
                 node.isRecursive(),
-                visitNodes(node.getQueries()));
+                queries);
     }
 
     @Override
     protected Node visitWithQuery(WithQuery node, C context)
     {
+        Query query = visitAndCast(node.getQuery());
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new WithQuery(
                     node.getLocation().get(),
                     node.getName(),
-                    visitAndCast(node.getQuery()),
+                    query,
                     node.getColumnNames());
         }
         return new WithQuery(
                 node.getName(),
-                visitAndCast(node.getQuery()),
+                query,
                 node.getColumnNames());
     }
 
     @Override
     protected Node visitUnion(Union node, C context)
     {
+        List<Relation> relations = visitNodes(node.getRelations());
+        if (relations == node.getRelations()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Union(
                     node.getLocation().get(),
-                    visitNodes(node.getRelations()),
+                    relations,
                     node.isDistinct());
         }
         return new Union(
-                visitNodes(node.getRelations()),
+                relations,
                 node.isDistinct());
     }
 
     @Override
     protected Node visitSelect(Select node, C context)
     {
+        List<SelectItem> selectItems = visitNodes(node.getSelectItems());
+        if (selectItems == node.getSelectItems()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Select(
                     node.getLocation().get(),
                     node.isDistinct(),
-                    visitNodes(node.getSelectItems()));
+                    selectItems);
         }
         return new Select(
                 node.isDistinct(),
-                visitNodes(node.getSelectItems()));
+                selectItems);
     }
 
     @Override
     protected Node visitGroupBy(GroupBy node, C context)
     {
+        List<GroupingElement> groupingElements = visitNodes(node.getGroupingElements(), context);
+        if (groupingElements == node.getGroupingElements()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new GroupBy(
                     node.getLocation().get(),
                     node.isDistinct(),
-                    visitNodes(node.getGroupingElements(), context));
+                    groupingElements);
         }
-        return new GroupBy(node.isDistinct(), visitNodes(node.getGroupingElements()));
+        return new GroupBy(node.isDistinct(), groupingElements);
     }
 
     @Override
     protected Node visitCube(Cube node, C context)
     {
+        List<Expression> expressions = visitNodes(node.getExpressions());
+        if (expressions == node.getExpressions()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Cube(
                     node.getLocation().get(),
-                    visitNodes(node.getExpressions()));
+                    expressions);
         }
-        return new Cube(visitNodes(node.getExpressions()));
+        return new Cube(expressions);
     }
 
     @Override
     protected Node visitGroupingSets(GroupingSets node, C context)
     {
+        List<List<Expression>> sets = node.getSets().stream()
+                .map(this::visitNodes)
+                .collect(toList());
+        if (IntStream.range(0, sets.size()).allMatch(i -> sets.get(i) == node.getSets().get(i))) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new GroupingSets(
                     node.getLocation().get(),
-                    node.getSets().stream()
-                            .map(this::visitNodes)
-                            .collect(toList()));
+                    sets);
         }
-        return new GroupingSets(
-                node.getSets().stream()
-                        .map(this::visitNodes)
-                        .collect(toList()));
+        return new GroupingSets(sets);
     }
 
     @Override
     protected Node visitSimpleGroupBy(SimpleGroupBy node, C context)
     {
+        List<Expression> expressions = visitNodes(node.getExpressions());
+        if (expressions == node.getExpressions()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SimpleGroupBy(
                     node.getLocation().get(),
-                    visitNodes(node.getExpressions()));
+                    expressions);
         }
-        return new SimpleGroupBy(visitNodes(node.getExpressions()));
+        return new SimpleGroupBy(expressions);
     }
 
     @Override
     protected Node visitRollup(Rollup node, C context)
     {
+        List<Expression> expressions = visitNodes(node.getExpressions());
+        if (expressions == node.getExpressions()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Rollup(
                     node.getLocation().get(),
-                    visitNodes(node.getExpressions()));
+                    expressions);
         }
-        return new Rollup(visitNodes(node.getExpressions()));
+        return new Rollup(expressions);
     }
 
     @Override
     protected Node visitOrderBy(OrderBy node, C context)
     {
+        List<SortItem> sortItems = visitNodes(node.getSortItems());
+        if (sortItems == node.getSortItems()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new OrderBy(
                     node.getLocation().get(),
-                    visitNodes(node.getSortItems()));
+                    sortItems);
         }
-        return new OrderBy(visitNodes(node.getSortItems()));
+        return new OrderBy(sortItems);
     }
 
     @Override
     protected Node visitSortItem(SortItem node, C context)
     {
+        Expression sortKey = visitAndCast(node.getSortKey());
+        if (sortKey == node.getSortKey()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SortItem(
                     node.getLocation().get(),
-                    visitAndCast(node.getSortKey()),
+                    sortKey,
                     node.getOrdering(),
                     node.getNullOrdering());
         }
         return new SortItem(
-                visitAndCast(node.getSortKey()),
+                sortKey,
                 node.getOrdering(),
                 node.getNullOrdering());
     }
@@ -1708,35 +1992,31 @@ public class BaseRewriteVisitor<C>
     @Override
     protected Node visitSingleColumn(SingleColumn node, C context)
     {
+        Expression expression = visitAndCast(node.getExpression());
+        if (expression == node.getExpression()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SingleColumn(
                     node.getLocation().get(),
-                    visitAndCast(node.getExpression()),
+                    expression,
                     node.getAlias());
         }
         return new SingleColumn(
-                visitAndCast(node.getExpression()),
+                expression,
                 node.getAlias());
     }
 
     @Override
     protected Node visitDereferenceExpression(DereferenceExpression node, C context)
     {
-        return new DereferenceExpression(
-                node.getLocation(),
-                node.getBase(),
-                node.getField());
+        return node;
     }
 
     @Override
     protected Node visitTable(Table node, C context)
     {
-        if (node.getLocation().isPresent()) {
-            return new Table(
-                    node.getLocation().get(),
-                    node.getName());
-        }
-        return new Table(node.getName());
+        return node;
     }
 
     @SuppressWarnings("unchecked")
@@ -1758,18 +2038,48 @@ public class BaseRewriteVisitor<C>
         return (T) process(node);
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * @return {@code nodes} itself if none of them was rewritten
+     */
     protected <T extends Node> List<T> visitNodes(List<T> nodes)
     {
-        return nodes.stream()
-                .map(node -> (T) process(node))
-                .collect(toList());
+        return visitNodes(nodes, null);
     }
 
+    /**
+     * @return {@code nodes} itself if none of them was rewritten
+     */
+    @SuppressWarnings("unchecked")
     protected <T extends Node> List<T> visitNodes(List<T> nodes, C context)
     {
-        return nodes.stream()
-                .map(node -> (T) process(node, context))
-                .collect(toList());
+        List<T> rewritten = null;
+        for (int i = 0; i < nodes.size(); i++) {
+            T node = nodes.get(i);
+            T result = (T) process(node, context);
+            if (rewritten == null && result != node) {
+                rewritten = new ArrayList<>(nodes.subList(0, i));
+            }
+            if (rewritten != null) {
+                rewritten.add(result);
+            }
+        }
+        return rewritten == null ? nodes : rewritten;
+    }
+
+    /**
+     * @return {@code node} itself if it is empty or its value wasn't rewritten
+     */
+    protected <T extends Node> Optional<T> visitOptional(Optional<T> node)
+    {
+        return rewriteOptional(node, this::visitAndCast);
+    }
+
+    protected static <T> Optional<T> rewriteOptional(Optional<T> optional, UnaryOperator<T> rewriter)
+    {
+        if (optional.isEmpty()) {
+            return optional;
+        }
+        T rewritten = rewriter.apply(optional.get());
+        return rewritten == optional.get() ? optional : Optional.of(rewritten);
     }
 }
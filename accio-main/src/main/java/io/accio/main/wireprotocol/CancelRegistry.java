@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import io.airlift.log.Logger;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The connections that can be canceled by a CancelRequest. Every connection gets a process id and a secret key,
+ * sent to the client in BackendKeyData, and a CancelRequest on another connection names the connection to cancel
+ * by both of them.
+ */
+public class CancelRegistry
+{
+    private static final Logger LOG = Logger.get(CancelRegistry.class);
+
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicInteger lastProcessId = new AtomicInteger();
+    private final Map<Integer, Registration> registrations = new ConcurrentHashMap<>();
+
+    public BackendKey register(Runnable canceller)
+    {
+        requireNonNull(canceller, "canceller is null");
+        while (true) {
+            // process ids are positive, like the ones of postgres
+            int processId = lastProcessId.updateAndGet(id -> id == Integer.MAX_VALUE ? 1 : id + 1);
+            Registration registration = new Registration(new BackendKey(processId, random.nextInt()), canceller);
+            if (registrations.putIfAbsent(processId, registration) == null) {
+                return registration.key;
+            }
+        }
+    }
+
+    public void unregister(BackendKey key)
+    {
+        requireNonNull(key, "key is null");
+        registrations.computeIfPresent(key.getProcessId(), (processId, registration) -> registration.key.equals(key) ? null : registration);
+    }
+
+    /**
+     * Cancel what the connection is running, if the secret key matches.
+     *
+     * @return whether a connection was canceled
+     */
+    public boolean cancel(int processId, int secretKey)
+    {
+        Registration registration = registrations.get(processId);
+        if (registration == null || registration.key.getSecretKey() != secretKey) {
+            LOG.warn("Ignored a CancelRequest for process %s with a wrong secret key or of a closed connection", processId);
+            return false;
+        }
+        registration.canceller.run();
+        return true;
+    }
+
+    public int size()
+    {
+        return registrations.size();
+    }
+
+    public static final class BackendKey
+    {
+        private final int processId;
+        private final int secretKey;
+
+        public BackendKey(int processId, int secretKey)
+        {
+            this.processId = processId;
+            this.secretKey = secretKey;
+        }
+
+        public int getProcessId()
+        {
+            return processId;
+        }
+
+        public int getSecretKey()
+        {
+            return secretKey;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            BackendKey that = (BackendKey) o;
+            return processId == that.processId && secretKey == that.secretKey;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(processId, secretKey);
+        }
+    }
+
+    private static final class Registration
+    {
+        private final BackendKey key;
+        private final Runnable canceller;
+
+        private Registration(BackendKey key, Runnable canceller)
+        {
+            this.key = key;
+            this.canceller = canceller;
+        }
+    }
+}
@@ -0,0 +1,663 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioException;
+import io.accio.base.Column;
+import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.type.PGType;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.metadata.StandardErrorCode.NOT_FOUND;
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.BooleanType.BOOLEAN;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static io.accio.main.wireprotocol.PostgresSessionProperties.SERVER_VERSION;
+import static io.accio.main.wireprotocol.PostgresSessionProperties.TIMEZONE;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The statements drivers and BI tools send around the real queries, answered from the state of the session without
+ * parsing them or going to the data source:
+ * <ul>
+ * <li>{@code BEGIN}, {@code COMMIT}, {@code ROLLBACK}, {@code DISCARD}, {@code CLOSE} and {@code UNLISTEN}, which do nothing
+ * since there are no transactions, cursors or notifications</li>
+ * <li>{@code SET name {= | TO} value}, {@code SET TIME ZONE value} and {@code RESET name}, which change the settings of
+ * the session</li>
+ * <li>{@code SHOW name}, which reads a setting</li>
+ * <li>{@code SELECT} of constants and session functions without a FROM, e.g. {@code SELECT 1} or {@code SELECT version()}</li>
+ * </ul>
+ * A statement is recognized in a single pass over its characters, anything else is left to the parser.
+ */
+public class ChatterStatement
+{
+    private static final String UNNAMED_COLUMN = "?column?";
+
+    // SET statements of postgres that are not settings
+    private static final Set<String> SET_STATEMENTS = Set.of("ROLE", "CONSTRAINTS");
+    // SHOW statements of trino, not settings of postgres
+    private static final Set<String> SHOW_STATEMENTS = Set.of(
+            "TABLES", "SCHEMAS", "CATALOGS", "COLUMNS", "FUNCTIONS", "SESSION", "ROLES", "ROLE", "GRANTS", "STATS", "CREATE", "CURRENT", "ALL");
+    // keywords that start a clause after the select list, so they can't be an alias without AS
+    private static final Set<String> SELECT_CLAUSE_KEYWORDS = Set.of(
+            "FROM", "INTO", "WHERE", "GROUP", "HAVING", "ORDER", "LIMIT", "OFFSET", "UNION", "INTERSECT", "EXCEPT", "WINDOW", "FETCH", "FOR");
+
+    /**
+     * The state of the session the statements read and change.
+     */
+    public interface Session
+    {
+        Optional<String> getSetting(String name);
+
+        void setSetting(String name, String value);
+
+        void resetSetting(String name);
+
+        void resetSettings();
+
+        String getClientUser();
+
+        String getDefaultDatabase();
+
+        String getDefaultSchema();
+    }
+
+    private final String commandTag;
+    private final List<Item> items;
+    private final Consumer<Session> action;
+    private final Optional<String> setting;
+
+    private ChatterStatement(String commandTag, List<Item> items, Consumer<Session> action, Optional<String> setting)
+    {
+        this.commandTag = requireNonNull(commandTag, "commandTag is null");
+        this.items = requireNonNull(items, "items is null");
+        this.action = requireNonNull(action, "action is null");
+        this.setting = requireNonNull(setting, "setting is null");
+    }
+
+    private static Optional<ChatterStatement> command(String commandTag)
+    {
+        return Optional.of(new ChatterStatement(commandTag, ImmutableList.of(), session -> {}, Optional.empty()));
+    }
+
+    private static Optional<ChatterStatement> command(String commandTag, Consumer<Session> action)
+    {
+        return Optional.of(new ChatterStatement(commandTag, ImmutableList.of(), action, Optional.empty()));
+    }
+
+    private static Optional<ChatterStatement> settingCommand(String commandTag, String setting, Consumer<Session> action)
+    {
+        return Optional.of(new ChatterStatement(commandTag, ImmutableList.of(), action, Optional.of(setting)));
+    }
+
+    private static Optional<ChatterStatement> query(String commandTag, List<Item> items)
+    {
+        return Optional.of(new ChatterStatement(commandTag, items, session -> {}, Optional.empty()));
+    }
+
+    public static Optional<ChatterStatement> classify(String statement)
+    {
+        Lexer lexer = new Lexer(statement);
+        Optional<String> command = lexer.word();
+        if (command.isEmpty()) {
+            return Optional.empty();
+        }
+        switch (command.get().toUpperCase(ENGLISH)) {
+            case "BEGIN":
+            case "COMMIT":
+            case "ROLLBACK":
+            case "CLOSE":
+            case "UNLISTEN":
+                return command(command.get().toUpperCase(ENGLISH));
+            case "END":
+                return command("COMMIT");
+            case "ABORT":
+                return command("ROLLBACK");
+            case "DISCARD":
+                return lexer.keyword("ALL") ? command("DISCARD", Session::resetSettings) : command("DISCARD");
+            case "RESET":
+                return classifyReset(lexer);
+            case "SET":
+                return classifySet(lexer);
+            case "SHOW":
+                return classifyShow(lexer);
+            case "SELECT":
+                return classifySelect(lexer);
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private static Optional<ChatterStatement> classifyReset(Lexer lexer)
+    {
+        if (lexer.keyword("ALL")) {
+            return command("RESET", Session::resetSettings);
+        }
+        if (lexer.keyword("SESSION")) {
+            // RESET SESSION AUTHORIZATION
+            return command("RESET");
+        }
+        Optional<String> name = lexer.keyword("TIME") && lexer.keyword("ZONE") ? Optional.of(TIMEZONE) : lexer.name();
+        if (name.isEmpty() || !lexer.isEnd()) {
+            return command("RESET");
+        }
+        return settingCommand("RESET", name.get(), session -> session.resetSetting(name.get()));
+    }
+
+    private static Optional<ChatterStatement> classifySet(Lexer lexer)
+    {
+        boolean local = false;
+        if (lexer.keyword("SESSION")) {
+            if (lexer.keyword("AUTHORIZATION") || lexer.keyword("CHARACTERISTICS")) {
+                return command("SET");
+            }
+        }
+        else if (lexer.keyword("LOCAL")) {
+            local = true;
+            if (lexer.keyword("SESSION") && lexer.keyword("AUTHORIZATION")) {
+                return command("SET");
+            }
+        }
+        if (lexer.keyword("TRANSACTION")) {
+            return command("SET");
+        }
+
+        String name;
+        if (lexer.keyword("TIME")) {
+            if (!lexer.keyword("ZONE")) {
+                return Optional.empty();
+            }
+            name = TIMEZONE;
+        }
+        else {
+            Optional<String> setting = lexer.name();
+            if (setting.isEmpty() || SET_STATEMENTS.contains(setting.get().toUpperCase(ENGLISH))) {
+                return Optional.empty();
+            }
+            if (!lexer.accept('=') && !lexer.keyword("TO")) {
+                return Optional.empty();
+            }
+            name = setting.get();
+        }
+        boolean reset = lexer.keyword("DEFAULT") || (name.equals(TIMEZONE) && lexer.keyword("LOCAL"));
+        Optional<String> value = reset ? Optional.empty() : lexer.values();
+        if ((!reset && value.isEmpty()) || !lexer.isEnd()) {
+            return Optional.empty();
+        }
+        // outside a transaction block SET LOCAL has no effect
+        if (local) {
+            return command("SET");
+        }
+        if (value.isEmpty()) {
+            return settingCommand("SET", name, session -> session.resetSetting(name));
+        }
+        return settingCommand("SET", name, session -> session.setSetting(name, value.get()));
+    }
+
+    private static Optional<ChatterStatement> classifyShow(Lexer lexer)
+    {
+        String name;
+        if (lexer.keyword("TRANSACTION")) {
+            if (!lexer.keyword("ISOLATION") || !lexer.keyword("LEVEL")) {
+                return Optional.empty();
+            }
+            name = "transaction_isolation";
+        }
+        else if (lexer.keyword("TIME")) {
+            if (!lexer.keyword("ZONE")) {
+                return Optional.empty();
+            }
+            name = TIMEZONE;
+        }
+        else {
+            Optional<String> setting = lexer.name();
+            if (setting.isEmpty() || SHOW_STATEMENTS.contains(setting.get().toUpperCase(ENGLISH))) {
+                return Optional.empty();
+            }
+            name = setting.get();
+        }
+        if (!lexer.isEnd()) {
+            return Optional.empty();
+        }
+        return query("SHOW", ImmutableList.of(new Item(name.toLowerCase(ENGLISH), VARCHAR, session -> getSetting(session, name))));
+    }
+
+    private static Optional<ChatterStatement> classifySelect(Lexer lexer)
+    {
+        ImmutableList.Builder<Item> items = ImmutableList.builder();
+        do {
+            Optional<Item> item = selectItem(lexer);
+            if (item.isEmpty()) {
+                return Optional.empty();
+            }
+            if (lexer.keyword("AS")) {
+                Optional<String> alias = lexer.name();
+                if (alias.isEmpty()) {
+                    return Optional.empty();
+                }
+                items.add(item.get().withName(alias.get()));
+            }
+            else {
+                // a clause after the select list, e.g. SELECT 1 FROM t, is left to the parser
+                Optional<String> alias = lexer.peekKeyword(SELECT_CLAUSE_KEYWORDS) ? Optional.empty() : lexer.name();
+                items.add(alias.map(name -> item.get().withName(name)).orElse(item.get()));
+            }
+        }
+        while (lexer.accept(','));
+        if (!lexer.isEnd()) {
+            return Optional.empty();
+        }
+        return query("SELECT", items.build());
+    }
+
+    private static Optional<Item> selectItem(Lexer lexer)
+    {
+        Optional<String> string = lexer.string();
+        if (string.isPresent()) {
+            return Optional.of(new Item(UNNAMED_COLUMN, VARCHAR, session -> string.get()));
+        }
+        Optional<Long> number = lexer.integer();
+        if (number.isPresent()) {
+            long value = number.get();
+            if (value == (int) value) {
+                return Optional.of(new Item(UNNAMED_COLUMN, INTEGER, session -> (int) value));
+            }
+            return Optional.of(new Item(UNNAMED_COLUMN, BIGINT, session -> value));
+        }
+        Optional<String> word = lexer.name();
+        if (word.isEmpty()) {
+            return Optional.empty();
+        }
+        String name = word.get().toLowerCase(ENGLISH);
+        if (name.startsWith("pg_catalog.")) {
+            name = name.substring("pg_catalog.".length());
+        }
+        switch (name) {
+            case "true":
+            case "false":
+                boolean bool = name.equals("true");
+                return Optional.of(new Item("bool", BOOLEAN, session -> bool));
+            case "current_user":
+            case "session_user":
+            case "user":
+                return Optional.of(new Item(name, VARCHAR, Session::getClientUser));
+            case "current_catalog":
+                return Optional.of(new Item(name, VARCHAR, Session::getDefaultDatabase));
+            case "current_schema":
+                // the parentheses are optional
+                if (lexer.accept('(') && !lexer.accept(')')) {
+                    return Optional.empty();
+                }
+                return Optional.of(new Item(name, VARCHAR, Session::getDefaultSchema));
+            case "current_database":
+                return lexer.accept('(') && lexer.accept(')')
+                        ? Optional.of(new Item(name, VARCHAR, Session::getDefaultDatabase))
+                        : Optional.empty();
+            case "version":
+                return lexer.accept('(') && lexer.accept(')')
+                        ? Optional.of(new Item(name, VARCHAR, session -> "PostgreSQL " + getSetting(session, SERVER_VERSION)))
+                        : Optional.empty();
+            case "current_setting":
+                if (!lexer.accept('(')) {
+                    return Optional.empty();
+                }
+                Optional<String> setting = lexer.string();
+                if (setting.isEmpty() || !lexer.accept(')')) {
+                    return Optional.empty();
+                }
+                return Optional.of(new Item(name, VARCHAR, session -> getSetting(session, setting.get())));
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private static String getSetting(Session session, String name)
+    {
+        return session.getSetting(name)
+                .orElseThrow(() -> new AccioException(NOT_FOUND, format("unrecognized configuration parameter \"%s\"", name)));
+    }
+
+    /**
+     * @return the tag of the CommandComplete message, e.g. {@code SET} or {@code SELECT}
+     */
+    public String getCommandTag()
+    {
+        return commandTag;
+    }
+
+    /**
+     * Whether the statement returns rows, i.e. it is a SHOW or a SELECT.
+     */
+    public boolean hasResult()
+    {
+        return !items.isEmpty();
+    }
+
+    /**
+     * The setting changed by a SET or RESET.
+     */
+    public Optional<String> getSetting()
+    {
+        return setting;
+    }
+
+    public List<Column> getColumns()
+    {
+        return items.stream().map(item -> item.column).collect(toImmutableList());
+    }
+
+    /**
+     * Run a statement which doesn't return rows.
+     */
+    public void run(Session session)
+    {
+        checkState(!hasResult(), "%s returns rows", commandTag);
+        action.accept(session);
+    }
+
+    /**
+     * Evaluate the single row of a SHOW or a SELECT.
+     */
+    public ConnectorRecordIterator execute(Session session)
+    {
+        checkState(hasResult(), "%s returns no rows", commandTag);
+        Object[] row = items.stream().map(item -> item.value.apply(session)).toArray();
+        List<PGType> types = items.stream().map(item -> (PGType) item.column.getType()).collect(toImmutableList());
+        return new ConnectorRecordIterator()
+        {
+            private boolean hasNext = true;
+
+            @Override
+            public List<PGType> getTypes()
+            {
+                return types;
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return hasNext;
+            }
+
+            @Override
+            public Object[] next()
+            {
+                checkState(hasNext, "no more rows");
+                hasNext = false;
+                return row;
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    private static class Item
+    {
+        private final Column column;
+        private final Function<Session, Object> value;
+
+        private Item(String name, PGType<?> type, Function<Session, Object> value)
+        {
+            this.column = new Column(name, type);
+            this.value = value;
+        }
+
+        private Item withName(String name)
+        {
+            return new Item(name, column.getType(), value);
+        }
+    }
+
+    /**
+     * Reads the tokens of a statement from left to right. A method reading a token moves past it only if the token is
+     * there, so the alternatives can be tried one after another. Unquoted names are folded to lower case.
+     */
+    private static class Lexer
+    {
+        private final String statement;
+        private int position;
+
+        private Lexer(String statement)
+        {
+            this.statement = statement;
+        }
+
+        private Optional<String> word()
+        {
+            skipSpaces();
+            int start = position;
+            if (start >= statement.length() || !isIdentifierStart(statement.charAt(start))) {
+                return Optional.empty();
+            }
+            int end = start + 1;
+            while (end < statement.length() && isIdentifierPart(statement.charAt(end))) {
+                end++;
+            }
+            position = end;
+            return Optional.of(statement.substring(start, end));
+        }
+
+        private boolean keyword(String keyword)
+        {
+            skipSpaces();
+            int end = position + keyword.length();
+            if (!statement.regionMatches(true, position, keyword, 0, keyword.length()) ||
+                    (end < statement.length() && isIdentifierPart(statement.charAt(end)))) {
+                return false;
+            }
+            position = end;
+            return true;
+        }
+
+        /**
+         * Whether the next word is one of the keywords, without consuming it.
+         */
+        private boolean peekKeyword(Set<String> keywords)
+        {
+            int start = position;
+            Optional<String> word = word();
+            position = start;
+            return word.isPresent() && keywords.contains(word.get().toUpperCase(ENGLISH));
+        }
+
+        /**
+         * A name, qualified or not, e.g. {@code search_path} or {@code pg_catalog.version}.
+         */
+        private Optional<String> name()
+        {
+            int start = position;
+            StringBuilder name = new StringBuilder();
+            do {
+                Optional<String> part = identifier();
+                if (part.isEmpty()) {
+                    position = start;
+                    return Optional.empty();
+                }
+                if (name.length() > 0) {
+                    name.append('.');
+                }
+                name.append(part.get());
+            }
+            while (acceptImmediately('.'));
+            return Optional.of(name.toString());
+        }
+
+        private Optional<String> identifier()
+        {
+            skipSpaces();
+            if (position < statement.length() && statement.charAt(position) == '"') {
+                return quoted('"');
+            }
+            return word().map(word -> word.toLowerCase(ENGLISH));
+        }
+
+        private Optional<String> string()
+        {
+            skipSpaces();
+            if (position < statement.length() && statement.charAt(position) == '\'') {
+                return quoted('\'');
+            }
+            return Optional.empty();
+        }
+
+        private Optional<String> quoted(char quote)
+        {
+            StringBuilder value = new StringBuilder();
+            int index = position + 1;
+            while (index < statement.length()) {
+                char c = statement.charAt(index++);
+                if (c != quote) {
+                    value.append(c);
+                }
+                else if (index < statement.length() && statement.charAt(index) == quote) {
+                    value.append(quote);
+                    index++;
+                }
+                else {
+                    position = index;
+                    return Optional.of(value.toString());
+                }
+            }
+            return Optional.empty();
+        }
+
+        private Optional<Long> integer()
+        {
+            skipSpaces();
+            int end = position;
+            if (end < statement.length() && statement.charAt(end) == '-') {
+                end++;
+            }
+            int digits = end;
+            while (end < statement.length() && Character.isDigit(statement.charAt(end))) {
+                end++;
+            }
+            // 1.5, 1e3 and 1abc are not integers
+            if (end == digits || end - digits > 18 || (end < statement.length() && (statement.charAt(end) == '.' || isIdentifierPart(statement.charAt(end))))) {
+                return Optional.empty();
+            }
+            long value = Long.parseLong(statement.substring(position, end));
+            position = end;
+            return Optional.of(value);
+        }
+
+        /**
+         * The comma separated values of a SET, joined by {@code ", "} as postgres shows them.
+         */
+        private Optional<String> values()
+        {
+            StringBuilder values = new StringBuilder();
+            do {
+                Optional<String> value = string().or(this::value);
+                if (value.isEmpty()) {
+                    return Optional.empty();
+                }
+                if (values.length() > 0) {
+                    values.append(", ");
+                }
+                values.append(value.get());
+            }
+            while (accept(','));
+            return Optional.of(values.toString());
+        }
+
+        // a word, a number or a quoted identifier, e.g. on, -1, 0.5 or "$user"
+        private Optional<String> value()
+        {
+            skipSpaces();
+            int start = position;
+            int end = start;
+            if (end < statement.length() && statement.charAt(end) == '"') {
+                return quoted('"').map(value -> '"' + value.replace("\"", "\"\"") + '"');
+            }
+            while (end < statement.length() && (isIdentifierPart(statement.charAt(end)) || statement.charAt(end) == '.' || statement.charAt(end) == '-')) {
+                end++;
+            }
+            if (end == start) {
+                return Optional.empty();
+            }
+            position = end;
+            return Optional.of(statement.substring(start, end));
+        }
+
+        private boolean accept(char c)
+        {
+            skipSpaces();
+            return acceptImmediately(c);
+        }
+
+        private boolean acceptImmediately(char c)
+        {
+            if (position < statement.length() && statement.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Whether only a semicolon, spaces and comments are left.
+         */
+        private boolean isEnd()
+        {
+            accept(';');
+            skipSpaces();
+            return position == statement.length();
+        }
+
+        private void skipSpaces()
+        {
+            while (position < statement.length()) {
+                char c = statement.charAt(position);
+                if (Character.isWhitespace(c)) {
+                    position++;
+                }
+                else if (statement.startsWith("--", position)) {
+                    int end = statement.indexOf('\n', position);
+                    position = end < 0 ? statement.length() : end + 1;
+                }
+                else if (statement.startsWith("/*", position)) {
+                    int end = statement.indexOf("*/", position + 2);
+                    position = end < 0 ? statement.length() : end + 2;
+                }
+                else {
+                    return;
+                }
+            }
+        }
+
+        private static boolean isIdentifierStart(char c)
+        {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+        }
+
+        private static boolean isIdentifierPart(char c)
+        {
+            return isIdentifierStart(c) || (c >= '0' && c <= '9') || c == '$';
+        }
+    }
+}
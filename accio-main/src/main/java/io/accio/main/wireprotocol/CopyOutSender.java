@@ -0,0 +1,305 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.type.PGType;
+import io.airlift.units.Duration;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static io.accio.main.wireprotocol.QueryProfile.ROW_STREAMING;
+import static io.accio.main.wireprotocol.QueryProfile.TIME_TO_FIRST_ROW;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sends the rows of a {@link CopyStatement}: CopyOutResponse, the rows in CopyData messages of about
+ * {@link #CHUNK_SIZE} bytes each, CopyDone and CommandComplete. Every DataRow repeats a message header and the
+ * length of every value, while a CopyData message carries many rows with a single header and, except in binary,
+ * only a delimiter between the values.
+ */
+class CopyOutSender
+{
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    // PGCOPY\n\377\r\n\0, then the flags and the length of the header extension
+    private static final byte[] BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+
+    private final Channel channel;
+    private final Portal portal;
+    private final CopyStatement copyStatement;
+    private final List<String> columnNames;
+    private final WireProtocolStats stats;
+    private final long executeStartNanos;
+    private final byte[] nullString;
+    private final boolean binary;
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    // the state of a send paused until the client reads what is buffered, only accessed by the event loop
+    private ConnectorRecordIterator iterator;
+    private List<PGType> types;
+    private ByteBuf chunk;
+    private long start;
+    private long rowCount;
+    private long byteCount;
+
+    /**
+     * @param columnNames the header of the csv format, unused by the others
+     * @param executeStartNanos when the statement was received, to measure the time to the first row
+     */
+    CopyOutSender(Channel channel, Portal portal, CopyStatement copyStatement, List<String> columnNames, WireProtocolStats stats, long executeStartNanos)
+    {
+        this.channel = requireNonNull(channel, "channel is null");
+        this.portal = requireNonNull(portal, "portal is null");
+        this.copyStatement = requireNonNull(copyStatement, "copyStatement is null");
+        this.columnNames = requireNonNull(columnNames, "columnNames is null");
+        this.stats = requireNonNull(stats, "stats is null");
+        this.executeStartNanos = executeStartNanos;
+        this.nullString = copyStatement.getNullString().getBytes(UTF_8);
+        this.binary = copyStatement.getFormat() == CopyStatement.Format.BINARY;
+    }
+
+    /**
+     * Send the rows as fast as the client reads them. Once the chunks the client hasn't read yet fill the write buffer
+     * of the channel, the sender stops reading rows and resumes when the last chunk is written to the socket, instead
+     * of buffering the whole result in memory. The event loop reads no message of the connection in the meantime.
+     *
+     * @return the number of rows sent, once CommandComplete is written
+     */
+    CompletableFuture<Long> send()
+    {
+        iterator = portal.getConnectorRecordIterable();
+        types = iterator.getTypes();
+        Messages.sendCopyOutResponse(channel, binary, types.size());
+
+        start = System.nanoTime();
+        chunk = Messages.newCopyData(channel, CHUNK_SIZE);
+        if (binary) {
+            chunk.writeBytes(BINARY_SIGNATURE);
+            chunk.writeInt(0);
+            chunk.writeInt(0);
+        }
+        else if (copyStatement.isHeader()) {
+            writeHeader(chunk);
+        }
+        sendRows();
+        return result;
+    }
+
+    private void sendRows()
+    {
+        try {
+            while (iterator.hasNext()) {
+                portal.getCancellation().checkCanceled();
+                Object[] row = iterator.next();
+                if (rowCount++ == 0) {
+                    Duration timeToFirstRow = Duration.nanosSince(executeStartNanos);
+                    stats.getTimeToFirstRow().add(timeToFirstRow);
+                    portal.getProfile().addPhase(TIME_TO_FIRST_ROW, timeToFirstRow);
+                }
+                writeRow(chunk, types, row);
+                if (chunk.readableBytes() >= CHUNK_SIZE) {
+                    ChannelFuture written = sendChunk();
+                    chunk = Messages.newCopyData(channel, CHUNK_SIZE);
+                    if (!channel.isWritable()) {
+                        pause(written);
+                        return;
+                    }
+                }
+            }
+            if (binary) {
+                chunk.writeShort(-1);
+            }
+            sendChunk();
+            Messages.sendCopyDone(channel);
+            Messages.sendCommandComplete(channel, "COPY", rowCount);
+            stats.getRowsPerPortal().add(rowCount);
+            stats.getBytesPerPortal().add(byteCount);
+            finish(null);
+        }
+        catch (Throwable t) {
+            finish(t);
+        }
+    }
+
+    private ChannelFuture sendChunk()
+    {
+        ByteBuf full = chunk;
+        chunk = null;
+        byteCount += full.readableBytes();
+        return Messages.sendCopyData(channel, full);
+    }
+
+    private void pause(ChannelFuture written)
+    {
+        channel.config().setAutoRead(false);
+        // the chunks are written in order, the buffer is empty once the last one is written
+        written.addListener(future -> {
+            channel.config().setAutoRead(true);
+            if (future.isSuccess()) {
+                sendRows();
+            }
+            else {
+                finish(future.cause());
+            }
+        });
+    }
+
+    private void finish(Throwable failure)
+    {
+        if (chunk != null) {
+            chunk.release();
+            chunk = null;
+        }
+        portal.setRowCount(rowCount);
+        portal.setByteCount(byteCount);
+        Duration rowStreaming = Duration.nanosSince(start);
+        stats.getRowStreaming().add(rowStreaming);
+        portal.getProfile().addPhase(ROW_STREAMING, rowStreaming);
+        if (failure == null) {
+            result.complete(rowCount);
+        }
+        else {
+            result.completeExceptionally(failure);
+        }
+    }
+
+    private void writeHeader(ByteBuf chunk)
+    {
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (i > 0) {
+                chunk.writeByte(copyStatement.getDelimiter());
+            }
+            writeCsvValue(chunk, columnNames.get(i).getBytes(UTF_8));
+        }
+        chunk.writeByte('\n');
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void writeRow(ByteBuf chunk, List<PGType> types, Object[] row)
+    {
+        if (binary) {
+            chunk.writeShort(row.length);
+            for (int i = 0; i < row.length; i++) {
+                if (row[i] == null) {
+                    chunk.writeInt(-1);
+                }
+                else {
+                    types.get(i).writeAsBinary(chunk, row[i]);
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                chunk.writeByte(copyStatement.getDelimiter());
+            }
+            if (row[i] == null) {
+                chunk.writeBytes(nullString);
+            }
+            else if (copyStatement.getFormat() == CopyStatement.Format.CSV) {
+                writeCsvValue(chunk, types.get(i).encodeAsUTF8Text(row[i]));
+            }
+            else {
+                writeTextValue(chunk, types.get(i).encodeAsUTF8Text(row[i]));
+            }
+        }
+        chunk.writeByte('\n');
+    }
+
+    /**
+     * Escape the control characters, the backslash and the delimiter with a backslash, like postgres. The bytes of a
+     * multibyte UTF-8 character are never ASCII, so they are copied as is.
+     */
+    private void writeTextValue(ByteBuf chunk, byte[] value)
+    {
+        char delimiter = copyStatement.getDelimiter();
+        int copied = 0;
+        for (int i = 0; i < value.length; i++) {
+            byte b = value[i];
+            char escaped;
+            switch (b) {
+                case '\b':
+                    escaped = 'b';
+                    break;
+                case '\f':
+                    escaped = 'f';
+                    break;
+                case '\n':
+                    escaped = 'n';
+                    break;
+                case '\r':
+                    escaped = 'r';
+                    break;
+                case '\t':
+                    escaped = 't';
+                    break;
+                case 0x0b:
+                    escaped = 'v';
+                    break;
+                case '\\':
+                    escaped = '\\';
+                    break;
+                default:
+                    if (b != delimiter) {
+                        continue;
+                    }
+                    escaped = delimiter;
+            }
+            chunk.writeBytes(value, copied, i - copied);
+            chunk.writeByte('\\');
+            chunk.writeByte(escaped);
+            copied = i + 1;
+        }
+        chunk.writeBytes(value, copied, value.length - copied);
+    }
+
+    /**
+     * Quote the value if it contains the delimiter, the quote or a line break, or if it would read as null.
+     */
+    private void writeCsvValue(ByteBuf chunk, byte[] value)
+    {
+        char delimiter = copyStatement.getDelimiter();
+        char quote = copyStatement.getQuote();
+        boolean quoted = value.length == 0 ? nullString.length == 0 : Arrays.equals(value, nullString);
+        for (int i = 0; !quoted && i < value.length; i++) {
+            byte b = value[i];
+            quoted = b == delimiter || b == quote || b == '\n' || b == '\r';
+        }
+        if (!quoted) {
+            chunk.writeBytes(value);
+            return;
+        }
+        chunk.writeByte(quote);
+        int copied = 0;
+        for (int i = 0; i < value.length; i++) {
+            if (value[i] == quote) {
+                // double the quote, up to and including it
+                chunk.writeBytes(value, copied, i + 1 - copied);
+                chunk.writeByte(quote);
+                copied = i + 1;
+            }
+        }
+        chunk.writeBytes(value, copied, value.length - copied);
+        chunk.writeByte(quote);
+    }
+}
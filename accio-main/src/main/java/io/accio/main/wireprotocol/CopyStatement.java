@@ -0,0 +1,304 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.accio.base.metadata.StandardErrorCode.NOT_SUPPORTED;
+import static io.accio.base.metadata.StandardErrorCode.SYNTAX_ERROR;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@code COPY (query) TO STDOUT} or {@code COPY table [(column, ...)] TO STDOUT}, with the options of postgres 13
+ * in either the {@code WITH (FORMAT csv, HEADER)} or the legacy {@code WITH CSV HEADER} syntax. Copying from
+ * STDIN or to a file is not supported.
+ */
+public class CopyStatement
+{
+    private static final Pattern COPY_PREFIX = Pattern.compile("(?i)^\\s*COPY\\b");
+    private static final Pattern COPY_QUERY = Pattern.compile("(?is)^\\s*COPY\\s*\\((?<query>.+)\\)\\s*TO\\s+STDOUT\\b(?<options>.*)$");
+    private static final Pattern COPY_TABLE = Pattern.compile("(?is)^\\s*COPY\\s+(?<table>[\\w.\"]+)\\s*(\\((?<columns>[^()]*)\\))?\\s*TO\\s+STDOUT\\b(?<options>.*)$");
+    private static final Pattern TOKEN = Pattern.compile("\\s*('(?:[^']|'')*'|[(),]|[^\\s(),']+)");
+
+    public enum Format
+    {
+        TEXT,
+        CSV,
+        BINARY
+    }
+
+    private final String query;
+    private final Format format;
+    private final char delimiter;
+    private final String nullString;
+    private final boolean header;
+    private final char quote;
+
+    public CopyStatement(String query, Format format, char delimiter, String nullString, boolean header, char quote)
+    {
+        this.query = requireNonNull(query, "query is null");
+        this.format = requireNonNull(format, "format is null");
+        this.delimiter = delimiter;
+        this.nullString = requireNonNull(nullString, "nullString is null");
+        this.header = header;
+        this.quote = quote;
+    }
+
+    /**
+     * Parse the statement if it is a COPY, without parsing the query it copies.
+     */
+    public static Optional<CopyStatement> parse(String statement)
+    {
+        if (!COPY_PREFIX.matcher(statement).lookingAt()) {
+            return Optional.empty();
+        }
+        Matcher matcher = COPY_QUERY.matcher(statement);
+        if (matcher.matches()) {
+            return Optional.of(parseOptions(matcher.group("query"), matcher.group("options")));
+        }
+        matcher = COPY_TABLE.matcher(statement);
+        if (matcher.matches()) {
+            String columns = Optional.ofNullable(matcher.group("columns")).orElse("*");
+            return Optional.of(parseOptions(format("SELECT %s FROM %s", columns, matcher.group("table")), matcher.group("options")));
+        }
+        throw new AccioException(NOT_SUPPORTED, "Only COPY ... TO STDOUT is supported");
+    }
+
+    private static CopyStatement parseOptions(String query, String options)
+    {
+        List<String> tokens = tokenize(options);
+        Format format = Format.TEXT;
+        Optional<String> delimiter = Optional.empty();
+        Optional<String> nullString = Optional.empty();
+        Optional<String> quote = Optional.empty();
+        boolean header = false;
+
+        int i = 0;
+        if (i < tokens.size() && tokens.get(i).equalsIgnoreCase("WITH")) {
+            i++;
+        }
+        if (i < tokens.size() && tokens.get(i).equals("(")) {
+            // FORMAT csv, HEADER true, DELIMITER ','
+            i++;
+            while (i < tokens.size() && !tokens.get(i).equals(")")) {
+                String option = tokens.get(i++).toUpperCase(ENGLISH);
+                Optional<String> value = Optional.empty();
+                if (i < tokens.size() && !tokens.get(i).equals(",") && !tokens.get(i).equals(")")) {
+                    value = Optional.of(unquote(tokens.get(i++)));
+                }
+                switch (option) {
+                    case "FORMAT":
+                        format = toFormat(value.orElseThrow(() -> syntaxError("FORMAT requires a value")));
+                        break;
+                    case "HEADER":
+                        header = value.map(CopyStatement::toBoolean).orElse(true);
+                        break;
+                    case "DELIMITER":
+                        delimiter = Optional.of(value.orElseThrow(() -> syntaxError("DELIMITER requires a value")));
+                        break;
+                    case "NULL":
+                        nullString = Optional.of(value.orElseThrow(() -> syntaxError("NULL requires a value")));
+                        break;
+                    case "QUOTE":
+                        quote = Optional.of(value.orElseThrow(() -> syntaxError("QUOTE requires a value")));
+                        break;
+                    default:
+                        throw new AccioException(NOT_SUPPORTED, format("COPY option %s is not supported", option));
+                }
+                if (i < tokens.size() && tokens.get(i).equals(",")) {
+                    i++;
+                }
+            }
+            if (i >= tokens.size()) {
+                throw syntaxError("missing ) after the COPY options");
+            }
+            i++;
+        }
+        else {
+            // the syntax before postgres 9.0: [BINARY] [DELIMITER [AS] 'x'] [NULL [AS] 'x'] [CSV [HEADER] [QUOTE [AS] 'x']]
+            while (i < tokens.size() && !tokens.get(i).equals(";")) {
+                String option = tokens.get(i++).toUpperCase(ENGLISH);
+                switch (option) {
+                    case "BINARY":
+                        format = Format.BINARY;
+                        break;
+                    case "CSV":
+                        format = Format.CSV;
+                        break;
+                    case "HEADER":
+                        header = true;
+                        break;
+                    case "DELIMITER":
+                    case "NULL":
+                    case "QUOTE":
+                        if (i < tokens.size() && tokens.get(i).equalsIgnoreCase("AS")) {
+                            i++;
+                        }
+                        if (i >= tokens.size()) {
+                            throw syntaxError(option + " requires a value");
+                        }
+                        String value = unquote(tokens.get(i++));
+                        if (option.equals("DELIMITER")) {
+                            delimiter = Optional.of(value);
+                        }
+                        else if (option.equals("NULL")) {
+                            nullString = Optional.of(value);
+                        }
+                        else {
+                            quote = Optional.of(value);
+                        }
+                        break;
+                    default:
+                        throw new AccioException(NOT_SUPPORTED, format("COPY option %s is not supported", option));
+                }
+            }
+        }
+        if (i < tokens.size() && !tokens.get(i).equals(";")) {
+            throw syntaxError("unexpected " + tokens.get(i) + " after the COPY options");
+        }
+
+        if (format == Format.BINARY && (delimiter.isPresent() || nullString.isPresent() || header || quote.isPresent())) {
+            throw syntaxError("cannot specify DELIMITER, NULL, HEADER or QUOTE in BINARY mode");
+        }
+        if (format != Format.CSV && (header || quote.isPresent())) {
+            throw syntaxError("COPY HEADER and QUOTE are only available in CSV mode");
+        }
+        char delimiterChar = toChar("DELIMITER", delimiter.orElse(format == Format.CSV ? "," : "\t"));
+        char quoteChar = toChar("QUOTE", quote.orElse("\""));
+        if (format == Format.CSV && delimiterChar == quoteChar) {
+            throw syntaxError("COPY delimiter and quote must be different");
+        }
+        return new CopyStatement(
+                query,
+                format,
+                delimiterChar,
+                nullString.orElse(format == Format.CSV ? "" : "\\N"),
+                header,
+                quoteChar);
+    }
+
+    private static List<String> tokenize(String options)
+    {
+        ImmutableList.Builder<String> tokens = ImmutableList.builder();
+        String trimmed = options.strip();
+        Matcher matcher = TOKEN.matcher(trimmed);
+        int end = 0;
+        while (end < trimmed.length()) {
+            if (!matcher.find(end) || matcher.start() != end) {
+                throw syntaxError("invalid COPY options: " + options);
+            }
+            String token = matcher.group(1);
+            // a trailing semicolon sticks to the last word
+            if (token.length() > 1 && token.endsWith(";") && !token.startsWith("'")) {
+                tokens.add(token.substring(0, token.length() - 1));
+                tokens.add(";");
+            }
+            else {
+                tokens.add(token);
+            }
+            end = matcher.end();
+        }
+        return tokens.build();
+    }
+
+    private static String unquote(String token)
+    {
+        if (token.length() >= 2 && token.startsWith("'") && token.endsWith("'")) {
+            return token.substring(1, token.length() - 1).replace("''", "'");
+        }
+        return token;
+    }
+
+    private static Format toFormat(String value)
+    {
+        switch (value.toLowerCase(ENGLISH)) {
+            case "text":
+                return Format.TEXT;
+            case "csv":
+                return Format.CSV;
+            case "binary":
+                return Format.BINARY;
+            default:
+                throw syntaxError(format("COPY format \"%s\" not recognized", value));
+        }
+    }
+
+    private static boolean toBoolean(String value)
+    {
+        switch (value.toLowerCase(ENGLISH)) {
+            case "true":
+            case "on":
+            case "1":
+                return true;
+            case "false":
+            case "off":
+            case "0":
+                return false;
+            default:
+                throw syntaxError(format("HEADER requires a Boolean value, not %s", value));
+        }
+    }
+
+    private static char toChar(String option, String value)
+    {
+        if (value.length() != 1 || value.charAt(0) > 0x7f || value.charAt(0) == '\r' || value.charAt(0) == '\n') {
+            throw syntaxError(format("COPY %s must be a single one-byte character", option));
+        }
+        return value.charAt(0);
+    }
+
+    private static AccioException syntaxError(String message)
+    {
+        return new AccioException(SYNTAX_ERROR, message);
+    }
+
+    public String getQuery()
+    {
+        return query;
+    }
+
+    public Format getFormat()
+    {
+        return format;
+    }
+
+    public char getDelimiter()
+    {
+        return delimiter;
+    }
+
+    public String getNullString()
+    {
+        return nullString;
+    }
+
+    public boolean isHeader()
+    {
+        return header;
+    }
+
+    public char getQuote()
+    {
+        return quote;
+    }
+}
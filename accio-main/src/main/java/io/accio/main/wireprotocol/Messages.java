@@ -15,9 +15,16 @@
 package io.accio.main.wireprotocol;
 
 import io.accio.base.Column;
+import io.accio.base.batch.BooleanVector;
+import io.accio.base.batch.ColumnVector;
+import io.accio.base.batch.DoubleVector;
+import io.accio.base.batch.IntVector;
+import io.accio.base.batch.LongVector;
+import io.accio.base.batch.RecordBatch;
 import io.accio.base.type.PGType;
 import io.airlift.log.Logger;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
@@ -151,6 +158,24 @@ public class Messages
         }
     }
 
+    /**
+     * | 'K' | int32 len | int32 processId | int32 secretKey
+     * <p>
+     * The key the client sends in a CancelRequest to cancel the queries of this connection.
+     */
+    static void sendBackendKeyData(Channel channel, int processId, int secretKey)
+    {
+        ByteBuf buffer = channel.alloc().buffer(13);
+        buffer.writeByte('K');
+        buffer.writeInt(12);
+        buffer.writeInt(processId);
+        buffer.writeInt(secretKey);
+        ChannelFuture channelFuture = channel.write(buffer);
+        if (LOGGER.isDebugEnabled()) {
+            channelFuture.addListener((ChannelFutureListener) future -> LOGGER.debug("sentBackendKeyData %s", processId));
+        }
+    }
+
     static void sendAuthenticationError(Channel channel, String message)
     {
         LOGGER.warn(message);
@@ -262,9 +287,11 @@ public class Messages
      * <p>
      * ByteN
      * The value of the column, in the format indicated by the associated format code. n is the above length.
+     *
+     * @return the size of the message in bytes
      */
     @SuppressWarnings({"unchecked", "rawtypes"})
-    static void sendDataRow(Channel channel, Object[] row, List<PGType> schema, @Nullable FormatCodes.FormatCode[] formatCodes)
+    static int sendDataRow(Channel channel, Object[] row, List<PGType> schema, @Nullable FormatCodes.FormatCode[] formatCodes)
     {
         int length = 4 + 2;
 
@@ -301,6 +328,91 @@ public class Messages
 
         buffer.setInt(1, length);
         channel.write(buffer);
+        return length + 1;
+    }
+
+    /**
+     * Send the row at the position of the batch, in the same encoding as {@link #sendDataRow(Channel, Object[], List, FormatCodes.FormatCode[])}.
+     * The values of the primitive columns are encoded without being boxed.
+     */
+    @SuppressWarnings("unchecked")
+    static int sendDataRow(Channel channel, RecordBatch batch, int position, List<PGType> schema, @Nullable FormatCodes.FormatCode[] formatCodes)
+    {
+        int length = 4 + 2;
+
+        ByteBuf buffer = channel.alloc().buffer();
+        buffer.writeByte('D');
+        buffer.writeInt(0); // will be set at the end
+        buffer.writeShort(batch.getColumnCount());
+
+        for (int i = 0; i < batch.getColumnCount(); i++) {
+            ColumnVector column = batch.getColumn(i);
+            try {
+                if (column.isNull(position)) {
+                    buffer.writeInt(-1);
+                    length += 4;
+                    continue;
+                }
+                boolean binary = FormatCodes.getFormatCode(formatCodes, i) == FormatCodes.FormatCode.BINARY;
+                if (column instanceof LongVector) {
+                    long value = ((LongVector) column).getLong(position);
+                    if (binary) {
+                        buffer.writeInt(8);
+                        buffer.writeLong(value);
+                        length += 4 + 8;
+                    }
+                    else {
+                        length += writeAsciiText(buffer, Long.toString(value));
+                    }
+                }
+                else if (column instanceof IntVector) {
+                    int value = ((IntVector) column).getInt(position);
+                    if (binary) {
+                        buffer.writeInt(4);
+                        buffer.writeInt(value);
+                        length += 4 + 4;
+                    }
+                    else {
+                        length += writeAsciiText(buffer, Integer.toString(value));
+                    }
+                }
+                else if (column instanceof DoubleVector) {
+                    double value = ((DoubleVector) column).getDouble(position);
+                    if (binary) {
+                        buffer.writeInt(8);
+                        buffer.writeDouble(value);
+                        length += 4 + 8;
+                    }
+                    else {
+                        length += writeAsciiText(buffer, Double.toString(value));
+                    }
+                }
+                else if (column instanceof BooleanVector) {
+                    // the boxed booleans are cached
+                    Boolean value = ((BooleanVector) column).getBoolean(position);
+                    length += binary ? schema.get(i).writeAsBinary(buffer, value) : schema.get(i).writeAsText(buffer, value);
+                }
+                else {
+                    Object value = column.getObject(position);
+                    length += binary ? schema.get(i).writeAsBinary(buffer, value) : schema.get(i).writeAsText(buffer, value);
+                }
+            }
+            catch (Exception e) {
+                buffer.release();
+                throw e;
+            }
+        }
+
+        buffer.setInt(1, length);
+        channel.write(buffer);
+        return length + 1;
+    }
+
+    private static int writeAsciiText(ByteBuf buffer, String text)
+    {
+        buffer.writeInt(text.length());
+        ByteBufUtil.writeAscii(buffer, text);
+        return 4 + text.length();
     }
 
     static void writeCString(ByteBuf buffer, byte[] valBytes)
@@ -463,6 +575,61 @@ public class Messages
         return channelFuture;
     }
 
+    /**
+     * CopyOutResponse
+     * | 'H' | int32 len | int8 format | int16 numColumns | int16 format per column
+     * <p>
+     * The format is 0 for text and csv, 1 for binary, and the same for every column.
+     */
+    static void sendCopyOutResponse(Channel channel, boolean binary, int columnCount)
+    {
+        int length = 4 + 1 + 2 + 2 * columnCount;
+        ByteBuf buffer = channel.alloc().buffer(length + 1);
+        buffer.writeByte('H');
+        buffer.writeInt(length);
+        buffer.writeByte(binary ? 1 : 0);
+        buffer.writeShort(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            buffer.writeShort(binary ? 1 : 0);
+        }
+        ChannelFuture channelFuture = channel.write(buffer);
+        if (LOGGER.isDebugEnabled()) {
+            channelFuture.addListener((ChannelFutureListener) future -> LOGGER.debug("sentCopyOutResponse"));
+        }
+    }
+
+    /**
+     * CopyData
+     * | 'd' | int32 len | byteN data
+     * <p>
+     * Start a CopyData message. The data is written into the returned buffer, which is sent by {@link #sendCopyData}.
+     */
+    static ByteBuf newCopyData(Channel channel, int initialCapacity)
+    {
+        ByteBuf buffer = channel.alloc().buffer(initialCapacity);
+        buffer.writeByte('d');
+        buffer.writeInt(0); // will be set when sent
+        return buffer;
+    }
+
+    /**
+     * @return done once the message is written to the socket
+     */
+    static ChannelFuture sendCopyData(Channel channel, ByteBuf copyData)
+    {
+        copyData.setInt(1, copyData.readableBytes() - 1);
+        return channel.writeAndFlush(copyData);
+    }
+
+    /**
+     * CopyDone
+     * | 'c' | int32 len |
+     */
+    static void sendCopyDone(Channel channel)
+    {
+        sendShortMsg(channel, 'c', "sentCopyDone");
+    }
+
     /**
      * CloseComplete
      * | '3' | int32 len |
@@ -510,6 +677,7 @@ public class Messages
             case "INSERT":
                 return "INSERT 0 " + rowCount;
             case "SELECT":
+            case "COPY":
                 return query + " " + rowCount;
             default:
                 return query;
@@ -19,6 +19,7 @@ import com.google.common.collect.ImmutableList;
 import io.accio.base.AccioException;
 import io.accio.base.ConnectorRecordIterator;
 import io.accio.base.Parameter;
+import io.accio.base.QueryCancellation;
 import io.accio.base.type.PGType;
 import io.accio.base.type.PGTypes;
 import io.airlift.log.Logger;
@@ -43,6 +44,11 @@ public class Portal
     private final List<Object> params;
     private ConnectorRecordIterator connectorRecordIterator;
     private long rowCount;
+    private long byteCount;
+    private final QueryProfile profile;
+    private final QueryCancellation cancellation = new QueryCancellation();
+    // suspended after maxRows rows until the client executes it again, read by a CancelRequest on another connection
+    private volatile boolean awaitingExecute;
 
     @Nullable
     private final FormatCodes.FormatCode[] resultFormatCodes;
@@ -52,6 +58,7 @@ public class Portal
         this.preparedStatement = preparedStatement;
         this.params = params;
         this.resultFormatCodes = resultFormatCodes;
+        this.profile = new QueryProfile(preparedStatement.getPlanningPhases());
     }
 
     public PreparedStatement getPreparedStatement()
@@ -111,11 +118,47 @@ public class Portal
         this.rowCount = rowCount;
     }
 
+    public long getByteCount()
+    {
+        return byteCount;
+    }
+
+    public void setByteCount(long byteCount)
+    {
+        this.byteCount = byteCount;
+    }
+
+    QueryProfile getProfile()
+    {
+        return profile;
+    }
+
+    /**
+     * Canceled by a CancelRequest while the portal is executed or suspended.
+     */
+    public QueryCancellation getCancellation()
+    {
+        return cancellation;
+    }
+
     public boolean isSuspended()
     {
         return connectorRecordIterator != null;
     }
 
+    /**
+     * Whether the portal sent some of its rows and waits for the next Execute to send the rest.
+     */
+    public boolean isAwaitingExecute()
+    {
+        return awaitingExecute;
+    }
+
+    public void setAwaitingExecute(boolean awaitingExecute)
+    {
+        this.awaitingExecute = awaitingExecute;
+    }
+
     public List<Parameter> getParameters()
     {
         List<PGType<?>> pgTypes = preparedStatement.getParamTypeOids().stream().map(PGTypes::oidToPgType).collect(Collectors.toList());
@@ -149,6 +192,7 @@ public class Portal
             catch (Exception ex) {
                 LOG.error(ex, "ConnectorRecordIterable close failed");
             }
+            connectorRecordIterator = null;
             LOG.info("ConnectorRecordIterable is closed.");
         }
     }
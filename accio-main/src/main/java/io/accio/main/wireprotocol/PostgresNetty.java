@@ -22,6 +22,7 @@ import io.accio.cache.CacheManager;
 import io.accio.cache.CachedTableMapping;
 import io.accio.main.AccioMetastore;
 import io.accio.main.PostgresWireProtocolConfig;
+import io.accio.main.history.QueryHistory;
 import io.accio.main.metadata.Metadata;
 import io.accio.main.netty.ChannelBootstrapFactory;
 import io.accio.main.pgcatalog.regtype.RegObjectFactory;
@@ -90,6 +91,9 @@ public class PostgresNetty
     private final AccioMetastore accioMetastore;
     private final CacheManager cacheManager;
     private final CachedTableMapping cachedTableMapping;
+    private final WireProtocolStats wireProtocolStats;
+    private final QueryHistory queryHistory;
+    private final CancelRegistry cancelRegistry;
 
     public PostgresNetty(
             NetworkService networkService,
@@ -100,7 +104,10 @@ public class PostgresNetty
             SqlConverter sqlConverter,
             AccioMetastore accioMetastore,
             CacheManager cacheManager,
-            CachedTableMapping cachedTableMapping)
+            CachedTableMapping cachedTableMapping,
+            WireProtocolStats wireProtocolStats,
+            QueryHistory queryHistory,
+            CancelRegistry cancelRegistry)
     {
         this.settings = toWireProtocolSettings();
         this.port = postgresWireProtocolConfig.getPort();
@@ -115,6 +122,9 @@ public class PostgresNetty
         this.accioMetastore = requireNonNull(accioMetastore, "accioMetastore is null");
         this.cacheManager = requireNonNull(cacheManager, "cacheManager is null");
         this.cachedTableMapping = requireNonNull(cachedTableMapping, "cachedTableMapping is null");
+        this.wireProtocolStats = requireNonNull(wireProtocolStats, "wireProtocolStats is null");
+        this.queryHistory = requireNonNull(queryHistory, "queryHistory is null");
+        this.cancelRegistry = requireNonNull(cancelRegistry, "cancelRegistry is null");
     }
 
     public void start()
@@ -130,8 +140,9 @@ public class PostgresNetty
                 ChannelPipeline pipeline = ch.pipeline();
                 pipeline.addLast("open_channels", openChannels);
                 WireProtocolSession wireProtocolSession =
-                        new WireProtocolSession(regObjectFactory, connector, sqlConverter, accioMetastore, cacheManager, cachedTableMapping);
-                PostgresWireProtocol postgresWireProtocol = new PostgresWireProtocol(wireProtocolSession, new SslReqHandler(sslContextProvider));
+                        new WireProtocolSession(regObjectFactory, connector, sqlConverter, accioMetastore, cacheManager, cachedTableMapping, wireProtocolStats, queryHistory);
+                PostgresWireProtocol postgresWireProtocol =
+                        new PostgresWireProtocol(wireProtocolSession, new SslReqHandler(sslContextProvider), wireProtocolStats, queryHistory, cancelRegistry);
                 pipeline.addLast("frame-decoder", postgresWireProtocol.decoder);
                 pipeline.addLast("handler", postgresWireProtocol.handler);
             }
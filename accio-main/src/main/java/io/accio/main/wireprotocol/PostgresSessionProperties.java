@@ -15,9 +15,12 @@
 package io.accio.main.wireprotocol;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.function.Function;
@@ -44,6 +47,13 @@ public final class PostgresSessionProperties
     public static final String EXTRA_FLOAT_DIGITS = "extra_float_digits";
     public static final String DATE_STYLE = "datestyle";
     public static final String CLIENT_ENCODING = "client_encoding";
+    public static final String SEARCH_PATH = "search_path";
+
+    // the settings shown to the client which it can't change
+    private static final Map<String, String> READ_ONLY_SETTINGS = ImmutableMap.of(
+            STANDARD_CONFORMING_STRINGS, "on",
+            "max_identifier_length", "63",
+            "transaction_isolation", "read uncommitted");
 
     /**
      * unsupported server configuration list
@@ -454,6 +464,18 @@ public final class PostgresSessionProperties
         return hardWiredSessionProperties.contains(property.toLowerCase(ENGLISH));
     }
 
+    /**
+     * The value of a setting before the session changes it, if it is one of the settings reported to the client.
+     */
+    public static Optional<String> getDefaultValue(String property)
+    {
+        return PostgresWireProtocol.DEFAULT_PG_CONFIGS.entrySet().stream()
+                .filter(config -> config.getKey().equalsIgnoreCase(property))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .or(() -> Optional.ofNullable(READ_ONLY_SETTINGS.get(property.toLowerCase(ENGLISH))));
+    }
+
     public static String formatValue(String value, Function<String, String> strategy)
     {
         if (isNumeric(value) ||
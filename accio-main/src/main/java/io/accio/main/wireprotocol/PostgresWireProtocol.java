@@ -20,6 +20,7 @@ import io.accio.base.Column;
 import io.accio.base.ConnectorRecordIterator;
 import io.accio.base.type.PGType;
 import io.accio.base.type.PGTypes;
+import io.accio.main.history.QueryHistory;
 import io.accio.main.wireprotocol.ssl.SslReqHandler;
 import io.airlift.log.Logger;
 import io.netty.buffer.ByteBuf;
@@ -28,29 +29,24 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.ByteToMessageDecoder;
-import org.apache.commons.lang3.tuple.Pair;
 
 import javax.annotation.Nullable;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.IntUnaryOperator;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.accio.base.metadata.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static java.lang.String.format;
-import static java.util.Locale.ENGLISH;
 import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
 
@@ -66,21 +62,10 @@ public class PostgresWireProtocol
             .put(PostgresSessionProperties.INTEGER_DATETIMES, "on")
             .build();
 
-    // set (session) property { = | to } { value | 'value' }
-    private static final Pattern SET_STMT_PATTERN = Pattern.compile("(?i)^ *SET( +SESSION)* +(?<property>[a-zA-Z0-9_]+)( *= *| +TO +)(?<value>[^ ']+|'.*')");
-    private static final Pattern SET_TRANSACTION_PATTERN = Pattern.compile("SET +(SESSION CHARACTERISTICS AS )? *TRANSACTION");
-    private static final Pattern SET_SESSION_AUTHORIZATION = Pattern.compile("SET (SESSION |LOCAL )?SESSION AUTHORIZATION");
-
-    private static final Set<String> IGNORED_COMMAND = Set.of(
-            "BEGIN",
-            "COMMIT",
-            "DISCARD",
-            "RESET",
-            "CLOSE",
-            "UNLISTEN");
-
     private static final Logger LOG = Logger.get(PostgresWireProtocol.class);
 
+    private static final int CANCEL_REQUEST_CODE = 80877102;
+
     final MessageDecoder decoder;
     final MessageHandler handler;
     private Channel channel;
@@ -89,6 +74,13 @@ public class PostgresWireProtocol
     private final SslReqHandler sslReqHandler;
 
     private final WireProtocolSession wireProtocolSession;
+    private final WireProtocolStats stats;
+    private final QueryHistory queryHistory;
+    private final CancelRegistry cancelRegistry;
+    private CancelRegistry.BackendKey backendKey;
+    private int protocol;
+    // the portal being executed, canceled by a CancelRequest on another connection along with the suspended portals
+    private volatile Portal runningPortal;
 
     enum State
     {
@@ -101,10 +93,18 @@ public class PostgresWireProtocol
 
     private State state = State.PRE_STARTUP;
 
-    public PostgresWireProtocol(WireProtocolSession wireProtocolSession, SslReqHandler sslReqHandler)
+    public PostgresWireProtocol(
+            WireProtocolSession wireProtocolSession,
+            SslReqHandler sslReqHandler,
+            WireProtocolStats stats,
+            QueryHistory queryHistory,
+            CancelRegistry cancelRegistry)
     {
         this.wireProtocolSession = requireNonNull(wireProtocolSession, "wireProtocolSession is null");
         this.sslReqHandler = sslReqHandler;
+        this.stats = requireNonNull(stats, "stats is null");
+        this.queryHistory = requireNonNull(queryHistory, "queryHistory is null");
+        this.cancelRegistry = requireNonNull(cancelRegistry, "cancelRegistry is null");
         this.decoder = new MessageDecoder();
         this.handler = new MessageHandler();
     }
@@ -175,16 +175,55 @@ public class PostgresWireProtocol
      * |       ParameterStatus            |
      * |<---------------------------------|
      * |                                  |
+     * |       BackendKeyData             |
+     * |<---------------------------------|
+     * |                                  |
      * |       ReadyForQuery              |
      * |<---------------------------------|
      */
 
     private void handleStartupBody(ByteBuf buffer, Channel channel)
     {
+        if (protocol == CANCEL_REQUEST_CODE) {
+            handleCancelRequest(buffer, channel);
+            return;
+        }
         wireProtocolSession.setProperties(readStartupMessage(buffer));
         initAuthentication(channel);
     }
 
+    /**
+     * CancelRequest, sent on a new connection instead of a StartupMessage:
+     * | int32 length | int32 80877102 | int32 processId | int32 secretKey
+     * <p>
+     * Nothing is sent back, the connection is closed once the query is canceled as postgres does.
+     */
+    private void handleCancelRequest(ByteBuf buffer, Channel channel)
+    {
+        int processId = buffer.readInt();
+        int secretKey = buffer.readInt();
+        // cancelling a BigQuery job is a remote call, don't block the event loop on it
+        CompletableFuture.runAsync(() -> cancelRegistry.cancel(processId, secretKey))
+                .whenComplete((ignored, e) -> channel.close());
+    }
+
+    /**
+     * Cancel the portal being executed, if any, and the portals suspended between two Execute messages. A suspended
+     * portal still holds its query, e.g. a cursor of a JDBC driver fetching a few rows at a time.
+     */
+    private void cancel()
+    {
+        Portal portal = runningPortal;
+        if (portal != null) {
+            LOG.info("Cancel statement: %s", portal.getPreparedStatement().getOriginalStatement());
+            portal.getCancellation().cancel();
+        }
+        for (Portal suspended : wireProtocolSession.getAwaitingPortals()) {
+            LOG.info("Cancel suspended statement: %s", suspended.getPreparedStatement().getOriginalStatement());
+            suspended.getCancellation().cancel();
+        }
+    }
+
     private void initAuthentication(Channel channel)
     {
         finishAuthentication(channel, "");
@@ -231,6 +270,10 @@ public class PostgresWireProtocol
         for (Map.Entry<String, String> config : DEFAULT_PG_CONFIGS.entrySet()) {
             Messages.sendParameterStatus(channel, config.getKey(), config.getValue());
         }
+        if (backendKey == null) {
+            backendKey = cancelRegistry.register(this::cancel);
+        }
+        Messages.sendBackendKeyData(channel, backendKey.getProcessId(), backendKey.getSecretKey());
         Messages.sendReadyForQuery(channel, TransactionState.IDLE);
     }
 
@@ -255,72 +298,93 @@ public class PostgresWireProtocol
             Messages.sendEmptyQueryResponse(channel);
             return CompletableFuture.completedFuture(null);
         }
-        if (isIgnoredCommand(statement)) {
-            sendHardWiredSessionProperty(statement);
-            Messages.sendCommandComplete(channel, statement, 0);
-            return CompletableFuture.completedFuture(null);
-        }
+        long start = System.nanoTime();
+        Portal portal = null;
+        boolean copying = false;
         try {
-            wireProtocolSession.parse("", statement, ImmutableList.of());
+            Optional<ChatterStatement> chatterStatement = ChatterStatement.classify(statement);
+            if (chatterStatement.isPresent() && !chatterStatement.get().hasResult()) {
+                runCommand(chatterStatement.get());
+                return CompletableFuture.completedFuture(null);
+            }
+            // COPY (query) TO STDOUT plans and executes its query like any other, only the rows are sent differently
+            Optional<CopyStatement> copyStatement = CopyStatement.parse(statement);
+            wireProtocolSession.parse("", copyStatement.map(CopyStatement::getQuery).orElse(statement), ImmutableList.of());
             wireProtocolSession.bind("", "", ImmutableList.of(), null);
+            portal = wireProtocolSession.getPortal("");
+            portal.getProfile().start(start);
+            runningPortal = portal;
             Optional<ConnectorRecordIterator> iterator = wireProtocolSession.execute("").join();
             if (iterator.isEmpty()) {
-                sendHardWiredSessionProperty(statement);
                 Messages.sendCommandComplete(channel, statement, 0);
                 return CompletableFuture.completedFuture(null);
             }
-            ResultSetSender resultSetSender = new ResultSetSender(
-                    statement,
-                    channel,
-                    iterator.get(),
-                    0,
-                    0,
-                    null);
-            Messages.sendRowDescription(channel, wireProtocolSession.describePortal("").get(), null);
-            resultSetSender.sendResultSet();
+            portal.setResultSetSender(iterator.get());
+            if (copyStatement.isPresent()) {
+                List<String> columnNames = copyStatement.get().isHeader()
+                        ? wireProtocolSession.describePortal("").get().stream().map(Column::getName).collect(toImmutableList())
+                        : ImmutableList.of();
+                Portal copied = portal;
+                CompletableFuture<Long> sent = new CopyOutSender(channel, portal, copyStatement.get(), columnNames, stats, start).send();
+                // the rows are sent as fast as the client reads them, the portal can be canceled until the last one
+                copying = !sent.isDone();
+                return sent.handle((rows, e) -> {
+                    runningPortal = null;
+                    if (e != null) {
+                        return failQuery(channel, statement, copied, e);
+                    }
+                    completeQuery(copied, Optional.empty());
+                    return wireProtocolSession.sync();
+                }).thenCompose(future -> future);
+            }
+            else {
+                ResultSetSender resultSetSender = new ResultSetSender(
+                        statement,
+                        channel,
+                        portal,
+                        0,
+                        null,
+                        stats,
+                        start);
+                Messages.sendRowDescription(channel, wireProtocolSession.describePortal("").get(), null);
+                resultSetSender.sendResultSet();
+            }
+            completeQuery(portal, Optional.empty());
             return wireProtocolSession.sync();
         }
         catch (Exception e) {
-            LOG.error(e, format("Query failed. Statement: %s", statement));
-            Messages.sendErrorResponse(channel, e);
-            CompletableFuture<?> future = CompletableFuture.completedFuture(null);
-            future.completeExceptionally(e);
-            return future;
+            return failQuery(channel, statement, portal, e);
         }
-    }
-
-    public static boolean isIgnoredCommand(String statement)
-    {
-        Optional<String> command = Arrays.stream(statement.toUpperCase(ENGLISH).split(" |;"))
-                .filter(split -> !split.isEmpty())
-                .findFirst();
-
-        if ((command.isPresent() && IGNORED_COMMAND.contains(command.get())) ||
-                SET_TRANSACTION_PATTERN.matcher(statement).find() || SET_SESSION_AUTHORIZATION.matcher(statement).find()) {
-            return true;
+        finally {
+            if (!copying) {
+                runningPortal = null;
+            }
         }
-
-        Matcher matcher = SET_STMT_PATTERN.matcher(statement);
-        return matcher.find() && PostgresSessionProperties.isIgnoredSessionProperties(matcher.group("property"));
     }
 
-    public static Optional<Pair<String, String>> parseSetStmt(String statement)
+    private CompletableFuture<?> failQuery(Channel channel, String statement, @Nullable Portal portal, Throwable e)
     {
-        Matcher matcher = SET_STMT_PATTERN.matcher(statement);
-        if (matcher.find()) {
-            String property = matcher.group("property");
-            String val = matcher.group("value");
-            return Optional.of(Pair.of(property, val.matches("'.*'") ? val.substring(1, val.length() - 1) : val));
-        }
-        return Optional.empty();
+        Throwable failure = toQueryFailure(portal, e);
+        LOG.error(failure, format("Query failed. Statement: %s", statement));
+        stats.getFailedQueries().update(1);
+        completeQuery(portal, Optional.of(failure));
+        Messages.sendErrorResponse(channel, failure);
+        CompletableFuture<?> future = CompletableFuture.completedFuture(null);
+        future.completeExceptionally(failure);
+        return future;
     }
 
-    private void sendHardWiredSessionProperty(String statement)
+    /**
+     * Run a statement answered by the session, reporting the new value of a setting the client tracks.
+     */
+    private void runCommand(ChatterStatement command)
     {
-        Optional<Pair<String, String>> property = parseSetStmt(statement);
-        if (property.isPresent() && PostgresSessionProperties.isHardWiredSessionProperty(property.get().getKey())) {
-            Messages.sendParameterStatus(channel, property.get().getKey(), property.get().getValue());
-        }
+        command.run(wireProtocolSession);
+        command.getSetting()
+                .filter(PostgresSessionProperties::isHardWiredSessionProperty)
+                .ifPresent(setting -> wireProtocolSession.getSetting(setting)
+                        .ifPresent(value -> Messages.sendParameterStatus(channel, setting, value)));
+        Messages.sendCommandComplete(channel, command.getCommandTag(), 0);
     }
 
     /**
@@ -352,6 +416,7 @@ public class PostgresWireProtocol
         }
         catch (Exception e) {
             LOG.error(e, "Parse query failed. Query: %s", query);
+            stats.getFailedQueries().update(1);
             Messages.sendErrorResponse(channel, e);
         }
     }
@@ -383,7 +448,8 @@ public class PostgresWireProtocol
             String portalName = readCString(buffer);
             statementName = readCString(buffer);
             FormatCodes.FormatCode[] formatCodes = FormatCodes.fromBuffer(buffer);
-            List<Object> params = readParameters(buffer, statementName, formatCodes);
+            String boundStatementName = statementName;
+            List<Object> params = readParameters(buffer, formatCodes, index -> wireProtocolSession.getParamTypeOid(boundStatementName, index));
             FormatCodes.FormatCode[] resultFormatCodes = FormatCodes.fromBuffer(buffer);
             wireProtocolSession.bind(portalName, statementName, params, resultFormatCodes);
             Messages.sendBindComplete(channel);
@@ -394,7 +460,7 @@ public class PostgresWireProtocol
         }
     }
 
-    private List<Object> readParameters(ByteBuf buffer, String statementName, FormatCodes.FormatCode[] formatCodes)
+    static List<Object> readParameters(ByteBuf buffer, FormatCodes.FormatCode[] formatCodes, IntUnaryOperator paramTypeOids)
     {
         short numParams = buffer.readShort();
         List<Object> params = new ArrayList<>(); // use `ArrayList` to handle `null` elements.
@@ -404,7 +470,7 @@ public class PostgresWireProtocol
                 params.add(null);
             }
             else {
-                int paramType = wireProtocolSession.getParamTypeOid(statementName, i);
+                int paramType = paramTypeOids.applyAsInt(i);
                 PGType<?> pgType = PGTypes.oidToPgType(paramType);
                 FormatCodes.FormatCode formatCode = FormatCodes.getFormatCode(formatCodes, i);
                 switch (formatCode) {
@@ -437,49 +503,86 @@ public class PostgresWireProtocol
         String portalName = readCString(buffer);
         int maxRows = buffer.readInt();
         String statement = "uninitialized statement";
+        long start = System.nanoTime();
+        Portal portal = null;
 
-        LOG.info("Execute portal: %s", portalName);
+        LOG.debug("Execute portal: %s", portalName);
         try {
-            Portal portal = wireProtocolSession.getPortal(portalName);
+            portal = wireProtocolSession.getPortal(portalName);
 
             statement = portal.getPreparedStatement().getOriginalStatement();
             if (statement.isEmpty()) {
                 Messages.sendEmptyQueryResponse(channel);
                 return;
             }
-            if (isIgnoredCommand(statement)) {
-                sendHardWiredSessionProperty(statement);
-                Messages.sendCommandComplete(channel, statement, 0);
+            Optional<ChatterStatement> chatterStatement = portal.getPreparedStatement().getChatterStatement();
+            if (chatterStatement.isPresent() && !chatterStatement.get().hasResult()) {
+                runCommand(chatterStatement.get());
                 return;
             }
 
+            portal.getProfile().start(start);
+            runningPortal = portal;
+            portal.setAwaitingExecute(false);
+            // canceled while it was suspended
+            portal.getCancellation().checkCanceled();
             if (!portal.isSuspended()) {
                 Optional<ConnectorRecordIterator> connectorRecordIterable = wireProtocolSession.execute(portalName).join();
                 if (connectorRecordIterable.isEmpty()) {
-                    sendHardWiredSessionProperty(statement);
                     Messages.sendCommandComplete(channel, statement, 0);
                     return;
                 }
                 portal.setResultSetSender(connectorRecordIterable.get());
             }
 
-            ConnectorRecordIterator connectorRecordIterable = portal.getConnectorRecordIterable();
             FormatCodes.FormatCode[] resultFormatCodes = wireProtocolSession.getResultFormatCodes(portalName);
             ResultSetSender resultSetSender = new ResultSetSender(
                     statement,
                     channel,
-                    connectorRecordIterable,
+                    portal,
                     maxRows,
-                    portal.getRowCount(),
-                    resultFormatCodes);
-            portal.setRowCount(resultSetSender.sendResultSet());
+                    resultFormatCodes,
+                    stats,
+                    start);
+            resultSetSender.sendResultSet();
+            if (resultSetSender.isCompleted()) {
+                completeQuery(portal, Optional.empty());
+            }
+            else {
+                portal.setAwaitingExecute(true);
+            }
         }
         catch (Exception e) {
-            LOG.error(e, format("Execute query failed. Statement: %s. Root cause is %s", statement, e.getMessage()));
-            Messages.sendErrorResponse(channel, e);
+            Throwable failure = toQueryFailure(portal, e);
+            LOG.error(failure, format("Execute query failed. Statement: %s. Root cause is %s", statement, failure.getMessage()));
+            stats.getFailedQueries().update(1);
+            completeQuery(portal, Optional.of(failure));
+            Messages.sendErrorResponse(channel, failure);
+        }
+        finally {
+            runningPortal = null;
+        }
+    }
+
+    private void completeQuery(@Nullable Portal portal, Optional<Throwable> failure)
+    {
+        if (portal != null) {
+            queryHistory.add(portal.getProfile().complete(portal.getPreparedStatement(), portal.getRowCount(), portal.getByteCount(), failure));
         }
     }
 
+    /**
+     * Report a canceled query as canceled, and release what it holds in the data source right away.
+     */
+    private static Throwable toQueryFailure(@Nullable Portal portal, Throwable e)
+    {
+        if (portal == null || !portal.getCancellation().isCanceled()) {
+            return e;
+        }
+        portal.close();
+        return portal.getCancellation().toFailure(e);
+    }
+
     private void handleSync(final Channel channel)
     {
         try {
@@ -567,7 +670,7 @@ public class PostgresWireProtocol
     {
         byte type = buffer.readByte();
         String portalOrStatementName = readCString(buffer);
-        LOG.info("Close %s", portalOrStatementName);
+        LOG.debug("Close %s", portalOrStatementName);
         wireProtocolSession.close(type, portalOrStatementName);
         Messages.sendCloseComplete(channel);
     }
@@ -615,7 +718,7 @@ public class PostgresWireProtocol
 
         private void dispatchState(ByteBuf buffer, Channel channel)
         {
-            LOG.info("channel dispatch state: %s", state);
+            LOG.debug("channel dispatch state: %s", state);
             switch (state) {
                 case STARTUP_HEADER:
                 case MSG_HEADER:
@@ -646,7 +749,7 @@ public class PostgresWireProtocol
          */
         private void dispatchMessage(ByteBuf buffer, Channel channel)
         {
-            LOG.info("channel dispatch message. msgType: %s", msgType);
+            LOG.debug("channel dispatch message. msgType: %s", msgType);
             switch (msgType) {
                 case 'Q': // Query (simple)
                     handleSimpleQuery(buffer, channel);
@@ -697,6 +800,9 @@ public class PostgresWireProtocol
         {
             LOG.debug("channelDisconnected");
             channel = null;
+            if (backendKey != null) {
+                cancelRegistry.unregister(backendKey);
+            }
             super.channelUnregistered(ctx);
         }
     }
@@ -741,7 +847,7 @@ public class PostgresWireProtocol
                     }
                     msgLength = buffer.readInt() - 8; // exclude length itself and protocol
                     LOG.warn("Header pkgLength: %s", msgLength);
-                    int protocol = buffer.readInt();
+                    protocol = buffer.readInt();
                     traceLogProtocol(protocol);
                     return nullOrBuffer(buffer, State.STARTUP_BODY);
                 /*
@@ -14,7 +14,12 @@
 
 package io.accio.main.wireprotocol;
 
+import com.google.common.collect.ImmutableMap;
+import io.accio.main.history.QueryHistoryTable;
+import io.airlift.units.Duration;
+
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class PreparedStatement
@@ -27,6 +32,10 @@ public class PreparedStatement
     private final List<Integer> paramTypeOids;
     private final String originalStatement;
     private final boolean isSessionCommand;
+    private final Map<String, Duration> planningPhases;
+    private final Optional<QueryHistoryTable.Scan> historyScan;
+    private final Optional<ChatterStatement> chatterStatement;
+    private volatile String dialectStatement;
 
     public PreparedStatement(
             String name,
@@ -45,6 +54,42 @@ public class PreparedStatement
             List<Integer> paramTypeOids,
             String originalStatement,
             boolean isSessionCommand)
+    {
+        this(name, statement, cacheStatement, paramTypeOids, originalStatement, isSessionCommand, ImmutableMap.of(), Optional.empty());
+    }
+
+    public PreparedStatement(
+            String name,
+            List<Integer> paramTypeOids,
+            String originalStatement,
+            Optional<ChatterStatement> chatterStatement)
+    {
+        this(name, "", Optional.empty(), paramTypeOids, originalStatement, false, ImmutableMap.of(), Optional.empty(), chatterStatement);
+    }
+
+    public PreparedStatement(
+            String name,
+            String statement,
+            Optional<String> cacheStatement,
+            List<Integer> paramTypeOids,
+            String originalStatement,
+            boolean isSessionCommand,
+            Map<String, Duration> planningPhases,
+            Optional<QueryHistoryTable.Scan> historyScan)
+    {
+        this(name, statement, cacheStatement, paramTypeOids, originalStatement, isSessionCommand, planningPhases, historyScan, Optional.empty());
+    }
+
+    public PreparedStatement(
+            String name,
+            String statement,
+            Optional<String> cacheStatement,
+            List<Integer> paramTypeOids,
+            String originalStatement,
+            boolean isSessionCommand,
+            Map<String, Duration> planningPhases,
+            Optional<QueryHistoryTable.Scan> historyScan,
+            Optional<ChatterStatement> chatterStatement)
     {
         this.name = name.isEmpty() ? CANNERFLOW_RESERVED_PREPARE_NAME : name;
         this.statement = statement;
@@ -52,6 +97,9 @@ public class PreparedStatement
         this.paramTypeOids = paramTypeOids;
         this.originalStatement = originalStatement;
         this.isSessionCommand = isSessionCommand;
+        this.planningPhases = ImmutableMap.copyOf(planningPhases);
+        this.historyScan = historyScan;
+        this.chatterStatement = chatterStatement;
     }
 
     public String getName()
@@ -83,4 +131,42 @@ public class PreparedStatement
     {
         return cacheStatement;
     }
+
+    /**
+     * The time spent planning the statement by phase.
+     */
+    public Map<String, Duration> getPlanningPhases()
+    {
+        return planningPhases;
+    }
+
+    /**
+     * The statement converted to the dialect of the data source, present once a portal of this statement was
+     * described or executed in the data source. Statements served from the cache never need it.
+     */
+    public Optional<String> getDialectStatement()
+    {
+        return Optional.ofNullable(dialectStatement);
+    }
+
+    public void setDialectStatement(String dialectStatement)
+    {
+        this.dialectStatement = dialectStatement;
+    }
+
+    /**
+     * Present if the statement queries {@link QueryHistoryTable} instead of the data source.
+     */
+    public Optional<QueryHistoryTable.Scan> getHistoryScan()
+    {
+        return historyScan;
+    }
+
+    /**
+     * Present if the statement is answered by the session, see {@link ChatterStatement}.
+     */
+    public Optional<ChatterStatement> getChatterStatement()
+    {
+        return chatterStatement;
+    }
 }
@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import io.accio.main.history.QueryInfo;
+import io.airlift.units.Duration;
+
+import javax.annotation.Nullable;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.UUID.randomUUID;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * What a portal has done so far, completed into a {@link QueryInfo} when the portal sends its last row or fails.
+ */
+class QueryProfile
+{
+    static final String PARSE = "parse";
+    static final String ACCIO_PLANNER = "accioPlanner";
+    static final String POSTGRESQL_REWRITE = "postgreSqlRewrite";
+    static final String CACHE_REWRITE = "cacheRewrite";
+    static final String DIALECT_CONVERSION = "dialectConversion";
+    static final String DESCRIBE = "describe";
+    static final String EXECUTION = "execution";
+    static final String TIME_TO_FIRST_ROW = "timeToFirstRow";
+    static final String ROW_STREAMING = "rowStreaming";
+
+    private final String queryId = randomUUID().toString();
+    private final Instant createTime = Instant.now();
+    private final Map<String, Duration> phases = new LinkedHashMap<>();
+    private boolean started;
+    private long startNanos;
+    @Nullable
+    private String dialectStatement;
+    private boolean cached;
+    @Nullable
+    private String upstreamQueryId;
+
+    QueryProfile(Map<String, Duration> planningPhases)
+    {
+        phases.putAll(requireNonNull(planningPhases, "planningPhases is null"));
+    }
+
+    /**
+     * Start the clock at the first Execute of the portal.
+     */
+    synchronized void start(long nanos)
+    {
+        if (!started) {
+            started = true;
+            startNanos = nanos;
+        }
+    }
+
+    synchronized void addPhase(String phase, Duration duration)
+    {
+        // a suspended portal streams rows in several executes
+        phases.merge(phase, duration, (previous, current) -> new Duration(previous.getValue() + current.getValue(previous.getUnit()), previous.getUnit()));
+    }
+
+    synchronized void setExecution(String dialectStatement, boolean cached, Optional<String> upstreamQueryId)
+    {
+        this.dialectStatement = dialectStatement;
+        this.cached = cached;
+        this.upstreamQueryId = upstreamQueryId.orElse(null);
+    }
+
+    synchronized QueryInfo complete(PreparedStatement preparedStatement, long rows, long bytes, Optional<Throwable> failure)
+    {
+        return new QueryInfo(
+                queryId,
+                createTime,
+                preparedStatement.getOriginalStatement(),
+                preparedStatement.getStatement(),
+                Optional.ofNullable(dialectStatement),
+                cached,
+                phases,
+                started ? Duration.nanosSince(startNanos) : new Duration(0, MILLISECONDS),
+                rows,
+                bytes,
+                Optional.ofNullable(upstreamQueryId),
+                failure.map(throwable -> Optional.ofNullable(throwable.getMessage()).orElse(throwable.getClass().getName())));
+    }
+}
@@ -15,56 +15,96 @@
 package io.accio.main.wireprotocol;
 
 import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.batch.RecordBatch;
 import io.accio.base.type.PGType;
+import io.airlift.units.Duration;
 import io.netty.channel.Channel;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
-import java.util.Iterator;
 import java.util.List;
 
+import static io.accio.base.batch.RecordBatch.DEFAULT_BATCH_SIZE;
+import static io.accio.main.wireprotocol.QueryProfile.ROW_STREAMING;
+import static io.accio.main.wireprotocol.QueryProfile.TIME_TO_FIRST_ROW;
+
 class ResultSetSender
         extends BaseResultSender
 {
     private final String query;
     private final Channel channel;
-    private final Iterator<Object[]> connectorRecordIterator;
+    private final Portal portal;
+    private final ConnectorRecordIterator connectorRecordIterator;
     private final List<PGType> schema;
     private final int maxRows;
 
     @Nullable
     private final FormatCodes.FormatCode[] formatCodes;
+    private final WireProtocolStats stats;
+    private final long executeStartNanos;
 
     private long localRowCount;
     private long totalRowCount;
+    private long totalByteCount;
+    private boolean completed;
 
+    /**
+     * Send the rows of the portal, continuing after the rows sent by the previous executions of a suspended portal.
+     *
+     * @param executeStartNanos when the Execute message was received, to measure the time to the first row
+     */
     ResultSetSender(String query,
             Channel channel,
-            ConnectorRecordIterator connectorRecordIterator,
+            Portal portal,
             int maxRows,
-            long previousCount,
-            @Nullable FormatCodes.FormatCode[] formatCodes)
+            @Nullable FormatCodes.FormatCode[] formatCodes,
+            WireProtocolStats stats,
+            long executeStartNanos)
     {
         this.query = query;
         this.channel = channel;
-        this.connectorRecordIterator = connectorRecordIterator;
+        this.portal = portal;
+        this.connectorRecordIterator = portal.getConnectorRecordIterable();
         this.schema = connectorRecordIterator.getTypes();
         this.maxRows = maxRows;
-        this.totalRowCount = previousCount;
+        this.totalRowCount = portal.getRowCount();
+        this.totalByteCount = portal.getByteCount();
         this.formatCodes = formatCodes;
+        this.stats = stats;
+        this.executeStartNanos = executeStartNanos;
     }
 
     @Override
     public void sendRow(Object[] row)
     {
         localRowCount++;
-        Messages.sendDataRow(channel, row, schema, formatCodes);
+        totalByteCount += Messages.sendDataRow(channel, row, schema, formatCodes);
+        recordTimeToFirstRow();
         if (localRowCount % 1000 == 0) {
             channel.flush();
         }
     }
 
+    private void sendBatch(RecordBatch batch)
+    {
+        for (int position = 0; position < batch.getRowCount(); position++) {
+            localRowCount++;
+            totalByteCount += Messages.sendDataRow(channel, batch, position, schema, formatCodes);
+            recordTimeToFirstRow();
+        }
+        channel.flush();
+    }
+
+    private void recordTimeToFirstRow()
+    {
+        if (localRowCount == 1 && totalRowCount == 0) {
+            Duration timeToFirstRow = Duration.nanosSince(executeStartNanos);
+            stats.getTimeToFirstRow().add(timeToFirstRow);
+            portal.getProfile().addPhase(TIME_TO_FIRST_ROW, timeToFirstRow);
+        }
+    }
+
     @Override
     public void batchFinished()
     {
@@ -79,6 +119,9 @@ class ResultSetSender
         }
         else {
             Messages.sendCommandComplete(channel, query, totalRowCount);
+            stats.getRowsPerPortal().add(totalRowCount);
+            stats.getBytesPerPortal().add(totalByteCount);
+            completed = true;
         }
     }
 
@@ -88,18 +131,39 @@ class ResultSetSender
         Messages.sendErrorResponse(channel, throwable).addListener(f -> super.fail(throwable));
     }
 
+    /**
+     * Whether the portal sent its last row, as opposed to being suspended after maxRows.
+     */
+    public boolean isCompleted()
+    {
+        return completed;
+    }
+
     public long sendResultSet()
     {
-        while (connectorRecordIterator.hasNext()) {
-            sendRow(connectorRecordIterator.next());
-            if (maxRows > 0 && connectorRecordIterator.hasNext() && localRowCount % maxRows == 0) {
-                batchFinished();
-                totalRowCount += localRowCount;
-                return totalRowCount;
+        long start = System.nanoTime();
+        try {
+            while (connectorRecordIterator.hasNext()) {
+                portal.getCancellation().checkCanceled();
+                // a batch doesn't go past the rows the portal is suspended at
+                int batchSize = maxRows > 0 ? (int) Math.min(DEFAULT_BATCH_SIZE, maxRows - localRowCount) : DEFAULT_BATCH_SIZE;
+                sendBatch(connectorRecordIterator.nextBatch(batchSize));
+                if (maxRows > 0 && connectorRecordIterator.hasNext() && localRowCount % maxRows == 0) {
+                    batchFinished();
+                    totalRowCount += localRowCount;
+                    return totalRowCount;
+                }
             }
+            totalRowCount += localRowCount;
+            allFinished(false);
+            return totalRowCount;
+        }
+        finally {
+            portal.setRowCount(totalRowCount);
+            portal.setByteCount(totalByteCount);
+            Duration rowStreaming = Duration.nanosSince(start);
+            stats.getRowStreaming().add(rowStreaming);
+            portal.getProfile().addPhase(ROW_STREAMING, rowStreaming);
         }
-        totalRowCount += localRowCount;
-        allFinished(false);
-        return totalRowCount;
     }
 }
@@ -15,6 +15,7 @@
 package io.accio.main.wireprotocol;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import io.accio.base.AccioException;
 import io.accio.base.Column;
 import io.accio.base.ConnectorRecordIterator;
@@ -23,6 +24,8 @@ import io.accio.base.sql.SqlConverter;
 import io.accio.cache.CacheManager;
 import io.accio.cache.CachedTableMapping;
 import io.accio.main.AccioMetastore;
+import io.accio.main.history.QueryHistory;
+import io.accio.main.history.QueryHistoryTable;
 import io.accio.main.metadata.Metadata;
 import io.accio.main.pgcatalog.regtype.RegObjectFactory;
 import io.accio.main.sql.PostgreSqlRewrite;
@@ -30,6 +33,8 @@ import io.accio.main.wireprotocol.patterns.PostgreSqlRewriteUtil;
 import io.accio.sqlrewrite.AccioPlanner;
 import io.accio.sqlrewrite.CacheRewrite;
 import io.airlift.log.Logger;
+import io.airlift.stats.TimeStat;
+import io.airlift.units.Duration;
 import io.trino.sql.parser.ParsingOptions;
 import io.trino.sql.parser.SqlParser;
 import io.trino.sql.tree.Deallocate;
@@ -54,8 +59,17 @@ import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.accio.base.metadata.StandardErrorCode.INVALID_PARAMETER_USAGE;
 import static io.accio.base.metadata.StandardErrorCode.NOT_FOUND;
-import static io.accio.main.wireprotocol.PostgresWireProtocol.isIgnoredCommand;
+import static io.accio.main.wireprotocol.PostgresSessionProperties.APPLICATION_NAME;
+import static io.accio.main.wireprotocol.PostgresSessionProperties.SEARCH_PATH;
 import static io.accio.main.wireprotocol.PostgresWireProtocolErrorCode.INVALID_PREPARED_STATEMENT_NAME;
+import static io.accio.main.wireprotocol.QueryProfile.ACCIO_PLANNER;
+import static io.accio.main.wireprotocol.QueryProfile.CACHE_REWRITE;
+import static io.accio.main.wireprotocol.QueryProfile.DESCRIBE;
+import static io.accio.main.wireprotocol.QueryProfile.DIALECT_CONVERSION;
+import static io.accio.main.wireprotocol.QueryProfile.EXECUTION;
+import static io.accio.main.wireprotocol.QueryProfile.PARSE;
+import static io.accio.main.wireprotocol.QueryProfile.POSTGRESQL_REWRITE;
+import static io.airlift.units.Duration.succinctNanos;
 import static io.trino.execution.ParameterExtractor.getParameterCount;
 import static io.trino.execution.sql.SqlFormatterUtil.getFormattedSql;
 import static java.lang.String.format;
@@ -64,6 +78,7 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
 
 public class WireProtocolSession
+        implements ChatterStatement.Session
 {
     private static final Logger LOG = Logger.get(WireProtocolSession.class);
 
@@ -75,7 +90,8 @@ public class WireProtocolSession
     private Properties properties;
     private final PreparedStatementMap preparedStatements = new PreparedStatementMap();
     private final PortalMap portals = new PortalMap();
-    private final List<String> sessionProperties = new ArrayList<>();
+    // the settings changed by SET, by lower case name
+    private final Map<String, String> settings = new ConcurrentHashMap<>();
     private CompletableFuture<Optional<GenericTableRecordIterable>> runningQuery = CompletableFuture.completedFuture(null);
     private final SqlParser sqlParser;
     private final RegObjectFactory regObjectFactory;
@@ -85,6 +101,8 @@ public class WireProtocolSession
     private final AccioMetastore accioMetastore;
     private final CacheManager cacheManager;
     private final CachedTableMapping cachedTableMapping;
+    private final WireProtocolStats stats;
+    private final QueryHistory queryHistory;
 
     public WireProtocolSession(
             RegObjectFactory regObjectFactory,
@@ -92,7 +110,9 @@ public class WireProtocolSession
             SqlConverter sqlConverter,
             AccioMetastore accioMetastore,
             CacheManager cacheManager,
-            CachedTableMapping cachedTableMapping)
+            CachedTableMapping cachedTableMapping,
+            WireProtocolStats stats,
+            QueryHistory queryHistory)
     {
         this.sqlParser = new SqlParser();
         this.regObjectFactory = requireNonNull(regObjectFactory, "regObjectFactory is null");
@@ -101,6 +121,8 @@ public class WireProtocolSession
         this.accioMetastore = requireNonNull(accioMetastore, "accioMetastore is null");
         this.cacheManager = requireNonNull(cacheManager, "cacheManager is null");
         this.cachedTableMapping = requireNonNull(cachedTableMapping, "cachedTableMapping is null");
+        this.stats = requireNonNull(stats, "stats is null");
+        this.queryHistory = requireNonNull(queryHistory, "queryHistory is null");
     }
 
     public int getParamTypeOid(String statementName, int fieldPosition)
@@ -123,6 +145,16 @@ public class WireProtocolSession
         }
     }
 
+    /**
+     * The portals suspended after maxRows rows, waiting for the next Execute. Safe to call from another connection.
+     */
+    public List<Portal> getAwaitingPortals()
+    {
+        return portals.values().stream()
+                .filter(Portal::isAwaitingExecute)
+                .collect(toImmutableList());
+    }
+
     @Nullable
     public String getOriginalStatement(String statementName)
     {
@@ -149,23 +181,74 @@ public class WireProtocolSession
     }
 
     @Nullable
+    @Override
     public String getClientUser()
     {
         return properties.getProperty("user");
     }
 
+    @Override
     public String getDefaultDatabase()
     {
         return properties.getProperty("database");
     }
 
+    @Override
     public String getDefaultSchema()
     {
-        return Optional.ofNullable(properties.getProperty("search_path"))
+        return Optional.ofNullable(settings.get(SEARCH_PATH))
+                .map(searchPath -> unquote(searchPath.split(",")[0].trim()))
+                .or(() -> Optional.ofNullable(properties.getProperty(SEARCH_PATH)))
                 // we only support the first search path to be the default schema
                 .orElse(extraFirstSearchPath(properties.getProperty("options")));
     }
 
+    /**
+     * The value of a setting changed by SET, or else the value reported to the client on startup.
+     */
+    @Override
+    public Optional<String> getSetting(String name)
+    {
+        String key = name.toLowerCase(ENGLISH);
+        String value = settings.get(key);
+        if (value != null) {
+            return Optional.of(value);
+        }
+        if (key.equals(SEARCH_PATH)) {
+            return Optional.ofNullable(getDefaultSchema());
+        }
+        if (key.equals(APPLICATION_NAME)) {
+            return Optional.of(nullToEmpty(properties.getProperty(APPLICATION_NAME)));
+        }
+        return PostgresSessionProperties.getDefaultValue(key);
+    }
+
+    @Override
+    public void setSetting(String name, String value)
+    {
+        settings.put(name.toLowerCase(ENGLISH), value);
+    }
+
+    @Override
+    public void resetSetting(String name)
+    {
+        settings.remove(name.toLowerCase(ENGLISH));
+    }
+
+    @Override
+    public void resetSettings()
+    {
+        settings.clear();
+    }
+
+    private static String unquote(String identifier)
+    {
+        if (identifier.length() > 1 && identifier.startsWith("\"") && identifier.endsWith("\"")) {
+            return identifier.substring(1, identifier.length() - 1).replace("\"\"", "\"");
+        }
+        return identifier;
+    }
+
     private String extraFirstSearchPath(String options)
     {
         if (options == null) {
@@ -194,17 +277,29 @@ public class WireProtocolSession
         Portal portal = getPortal(name);
 
         String oriStmt = portal.getPreparedStatement().getOriginalStatement();
-        if (oriStmt.isEmpty() || isIgnoredCommand(oriStmt)) {
+        if (oriStmt.isEmpty()) {
             return Optional.empty();
         }
+        Optional<ChatterStatement> chatterStatement = portal.getPreparedStatement().getChatterStatement();
+        if (chatterStatement.isPresent()) {
+            return chatterStatement.get().hasResult() ? Optional.of(chatterStatement.get().getColumns()) : Optional.empty();
+        }
 
-        String sql = sqlConverter.convert(
-                portal.getPreparedStatement().getStatement(),
-                SessionContext.builder()
-                        .setCatalog(getDefaultDatabase())
-                        .setSchema(getDefaultSchema())
-                        .build());
-        return Optional.of(metadata.describeQuery(sql, portal.getParameters()));
+        Optional<QueryHistoryTable.Scan> historyScan = portal.getPreparedStatement().getHistoryScan();
+        if (historyScan.isPresent()) {
+            return Optional.of(historyScan.get().getColumns());
+        }
+
+        String sql = convertDialect(portal);
+        long start = System.nanoTime();
+        try {
+            return Optional.of(metadata.describeQuery(sql, portal.getParameters()));
+        }
+        finally {
+            Duration describe = Duration.nanosSince(start);
+            stats.getDescribe().add(describe);
+            portal.getProfile().addPhase(DESCRIBE, describe);
+        }
     }
 
     public List<Integer> describeStatement(String name)
@@ -217,36 +312,77 @@ public class WireProtocolSession
         if (statementName.equalsIgnoreCase(ALL)) {
             throw new AccioException(INVALID_PREPARED_STATEMENT_NAME, format("%s is a preserved word. Can't be the name of prepared statement", statementName));
         }
-        String statementTrimmed = rewritePreparedChar(statement.split(";")[0].trim());
-        if (statementTrimmed.isEmpty() || isIgnoredCommand(statementTrimmed)) {
-            preparedStatements.put(statementName, new PreparedStatement(statementName, "", paramTypes, statementTrimmed, false));
+        String trimmed = statement.split(";")[0].trim();
+        // the statements of drivers and BI tools answered by the session are recognized before any regex or parsing
+        Optional<ChatterStatement> chatterStatement = ChatterStatement.classify(trimmed);
+        if (trimmed.isEmpty() || chatterStatement.isPresent()) {
+            preparedStatements.put(statementName, new PreparedStatement(statementName, paramTypes, trimmed, chatterStatement));
         }
         else {
+            String statementTrimmed = rewritePreparedChar(trimmed);
             SessionContext sessionContext = SessionContext.builder()
                     .setCatalog(getDefaultDatabase())
                     .setSchema(getDefaultSchema())
                     .build();
+            long start = System.nanoTime();
             String statementPreRewritten = PostgreSqlRewriteUtil.rewrite(statementTrimmed);
+            long preRewritten = System.nanoTime();
+            if (QueryHistoryTable.mayReference(statementPreRewritten)) {
+                Statement historyStatement = sqlParser.createStatement(statementPreRewritten, PARSE_AS_DECIMAL);
+                Optional<QueryHistoryTable.Scan> historyScan = QueryHistoryTable.analyze(historyStatement);
+                if (historyScan.isPresent()) {
+                    preparedStatements.put(statementName,
+                            new PreparedStatement(
+                                    statementName,
+                                    getFormattedSql(historyStatement, sqlParser),
+                                    Optional.empty(),
+                                    paramTypes,
+                                    statementTrimmed,
+                                    false,
+                                    ImmutableMap.of(),
+                                    historyScan));
+                    return;
+                }
+            }
+            ImmutableMap.Builder<String, Duration> phases = ImmutableMap.builder();
             String accioRewritten = AccioPlanner.rewrite(
                     statementPreRewritten,
                     sessionContext,
                     accioMetastore.getAccioMDL());
+            long planned = System.nanoTime();
             // validateSetSessionProperty(statementPreRewritten);
             Statement parsedStatement = sqlParser.createStatement(accioRewritten, PARSE_AS_DECIMAL);
+            long parsed = System.nanoTime();
+            addPhase(phases, stats.getParse(), PARSE, (preRewritten - start) + (parsed - planned));
+            addPhase(phases, stats.getAccioPlanner(), ACCIO_PLANNER, planned - preRewritten);
             Statement rewrittenStatement = PostgreSqlRewrite.rewrite(regObjectFactory, metadata.getDefaultCatalog(), metadata.getPgCatalogName(), parsedStatement);
             List<Integer> rewrittenParamTypes = rewriteParameters(rewrittenStatement, paramTypes);
+            String formattedSql = getFormattedSql(rewrittenStatement, sqlParser);
+            long rewritten = System.nanoTime();
+            addPhase(phases, stats.getPostgreSqlRewrite(), POSTGRESQL_REWRITE, rewritten - parsed);
+            Optional<String> cacheStatement = CacheRewrite.rewrite(sessionContext, statementPreRewritten, cachedTableMapping::convertToCachedTable, accioMetastore.getAccioMDL());
+            addPhase(phases, stats.getCacheRewrite(), CACHE_REWRITE, System.nanoTime() - rewritten);
             preparedStatements.put(statementName,
                     new PreparedStatement(
                             statementName,
-                            getFormattedSql(rewrittenStatement, sqlParser),
-                            CacheRewrite.rewrite(sessionContext, statementPreRewritten, cachedTableMapping::convertToCachedTable, accioMetastore.getAccioMDL()),
+                            formattedSql,
+                            cacheStatement,
                             rewrittenParamTypes,
                             statementTrimmed,
-                            isSessionCommand(rewrittenStatement)));
-            LOG.info("Create preparedStatement %s", statementName);
+                            isSessionCommand(rewrittenStatement),
+                            phases.build(),
+                            Optional.empty()));
+            LOG.debug("Create preparedStatement %s", statementName);
         }
     }
 
+    private static void addPhase(ImmutableMap.Builder<String, Duration> phases, TimeStat stat, String phase, long nanos)
+    {
+        Duration duration = succinctNanos(nanos);
+        stat.add(duration);
+        phases.put(phase, duration);
+    }
+
     private static boolean isSessionCommand(Statement statement)
     {
         return SESSION_COMMAND.contains(statement.getClass());
@@ -265,10 +401,12 @@ public class WireProtocolSession
     public void bind(String portalName, String statementName, List<Object> params, @Nullable FormatCodes.FormatCode[] resultFormatCodes)
     {
         portals.put(portalName, new Portal(preparedStatements.get(statementName), params, resultFormatCodes));
-        String paramString = params.stream()
-                .map(element -> (isNull(element)) ? "null" : element.toString())
-                .collect(Collectors.joining(","));
-        LOG.info("Bind Portal %s with parameters %s to Statement %s", portalName, paramString, statementName);
+        if (LOG.isDebugEnabled()) {
+            String paramString = params.stream()
+                    .map(element -> (isNull(element)) ? "null" : element.toString())
+                    .collect(Collectors.joining(","));
+            LOG.debug("Bind Portal %s with parameters %s to Statement %s", portalName, paramString, statementName);
+        }
     }
 
     public CompletableFuture<Optional<ConnectorRecordIterator>> execute(String portalName)
@@ -278,28 +416,89 @@ public class WireProtocolSession
 
     private CompletableFuture<Optional<ConnectorRecordIterator>> execute(Portal portal)
     {
-        String execStmt = portal.getPreparedStatement().getStatement();
+        Optional<QueryHistoryTable.Scan> historyScan = portal.getPreparedStatement().getHistoryScan();
+        if (historyScan.isPresent()) {
+            return CompletableFuture.completedFuture(Optional.of(historyScan.get().execute(queryHistory)));
+        }
+        Optional<ChatterStatement> chatterStatement = portal.getPreparedStatement().getChatterStatement();
+        if (chatterStatement.isPresent()) {
+            if (!chatterStatement.get().hasResult()) {
+                chatterStatement.get().run(this);
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+            return CompletableFuture.completedFuture(Optional.of(chatterStatement.get().execute(this)));
+        }
+
         return CompletableFuture.supplyAsync(() -> executeCache(portal).or(() -> {
-            String sql = sqlConverter.convert(execStmt,
+            String sql = convertDialect(portal);
+            long start = System.nanoTime();
+            try {
+                ConnectorRecordIterator iterator = metadata.directQuery(sql, portal.getParameters(), portal.getCancellation());
+                portal.getProfile().setExecution(sql, false, iterator.getQueryId());
+                return Optional.of(iterator);
+            }
+            finally {
+                addPhase(portal, stats.getExecution(), EXECUTION, start);
+            }
+        }));
+    }
+
+    private Optional<ConnectorRecordIterator> executeCache(Portal portal)
+    {
+        portal.getCancellation().checkCanceled();
+        Optional<String> cacheStatement = portal.getPreparedStatement().getCacheStatement();
+        if (cacheStatement.isEmpty()) {
+            stats.getCacheMisses().update(1);
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        try {
+            ConnectorRecordIterator iterator = cacheManager.query(cacheStatement.get(), portal.getParameters(), portal.getCancellation());
+            addPhase(portal, stats.getExecution(), EXECUTION, start);
+            stats.getCacheHits().update(1);
+            portal.getProfile().setExecution(cacheStatement.get(), true, Optional.empty());
+            return Optional.of(iterator);
+        }
+        catch (Exception e) {
+            // a canceled query isn't run again in the data source
+            portal.getCancellation().checkCanceled();
+            LOG.warn(e, "Failed to execute cache query: %s", cacheStatement.get());
+            stats.getCacheFallbacks().update(1);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Convert the statement of the portal once, the executions and descriptions of the other portals of the same
+     * prepared statement reuse the result.
+     */
+    private String convertDialect(Portal portal)
+    {
+        PreparedStatement preparedStatement = portal.getPreparedStatement();
+        Optional<String> converted = preparedStatement.getDialectStatement();
+        if (converted.isPresent()) {
+            return converted.get();
+        }
+        long start = System.nanoTime();
+        try {
+            String sql = sqlConverter.convert(preparedStatement.getStatement(),
                     SessionContext.builder()
                             .setCatalog(getDefaultDatabase())
                             .setSchema(getDefaultSchema())
                             .build());
-            return Optional.of(metadata.directQuery(sql, portal.getParameters()));
-        }));
+            preparedStatement.setDialectStatement(sql);
+            return sql;
+        }
+        finally {
+            addPhase(portal, stats.getDialectConversion(), DIALECT_CONVERSION, start);
+        }
     }
 
-    private Optional<ConnectorRecordIterator> executeCache(Portal portal)
+    private static void addPhase(Portal portal, TimeStat stat, String phase, long start)
     {
-        return portal.getPreparedStatement().getCacheStatement().map(statement -> {
-            try {
-                return cacheManager.query(statement, portal.getParameters());
-            }
-            catch (Exception e) {
-                LOG.warn(e, "Failed to execute cache query: %s", statement);
-                return null;
-            }
-        });
+        Duration duration = Duration.nanosSince(start);
+        stat.add(duration);
+        portal.getProfile().addPhase(phase, duration);
     }
 
     private CompletableFuture<Optional<Iterable<?>>> executeSessionCommand(Portal portal)
@@ -420,6 +619,11 @@ public class WireProtocolSession
             return delegate.entrySet();
         }
 
+        public Collection<Portal> values()
+        {
+            return delegate.values();
+        }
+
         private void close(String key)
         {
             if (delegate.get(key) != null) {
@@ -0,0 +1,202 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.DistributionStat;
+import io.airlift.stats.TimeStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.Map;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The time a query spends in each phase of the wire protocol, shared by all sessions. The planning phases are
+ * recorded when a statement is parsed, the execution phases when a portal is described or executed.
+ */
+public class WireProtocolStats
+{
+    private final TimeStat parse = new TimeStat(MILLISECONDS);
+    private final TimeStat accioPlanner = new TimeStat(MILLISECONDS);
+    private final TimeStat postgreSqlRewrite = new TimeStat(MILLISECONDS);
+    private final TimeStat cacheRewrite = new TimeStat(MILLISECONDS);
+    private final TimeStat dialectConversion = new TimeStat(MILLISECONDS);
+    private final TimeStat describe = new TimeStat(MILLISECONDS);
+    private final TimeStat execution = new TimeStat(MILLISECONDS);
+    private final TimeStat timeToFirstRow = new TimeStat(MILLISECONDS);
+    private final TimeStat rowStreaming = new TimeStat(MILLISECONDS);
+    private final DistributionStat rowsPerPortal = new DistributionStat();
+    private final DistributionStat bytesPerPortal = new DistributionStat();
+    private final CounterStat cacheHits = new CounterStat();
+    private final CounterStat cacheMisses = new CounterStat();
+    private final CounterStat cacheFallbacks = new CounterStat();
+    private final CounterStat failedQueries = new CounterStat();
+
+    /**
+     * Parsing a statement, including the rewrites of the postgres syntax done before parsing.
+     */
+    @Managed
+    @Nested
+    public TimeStat getParse()
+    {
+        return parse;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getAccioPlanner()
+    {
+        return accioPlanner;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getPostgreSqlRewrite()
+    {
+        return postgreSqlRewrite;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getCacheRewrite()
+    {
+        return cacheRewrite;
+    }
+
+    /**
+     * Converting the planned statement to the dialect of the data source.
+     */
+    @Managed
+    @Nested
+    public TimeStat getDialectConversion()
+    {
+        return dialectConversion;
+    }
+
+    /**
+     * Describing the result of a portal, usually by a dry run in the data source.
+     */
+    @Managed
+    @Nested
+    public TimeStat getDescribe()
+    {
+        return describe;
+    }
+
+    /**
+     * Executing a portal in the data source or in duckdb until its result can be read.
+     */
+    @Managed
+    @Nested
+    public TimeStat getExecution()
+    {
+        return execution;
+    }
+
+    /**
+     * From receiving Execute to sending the first row.
+     */
+    @Managed
+    @Nested
+    public TimeStat getTimeToFirstRow()
+    {
+        return timeToFirstRow;
+    }
+
+    /**
+     * Reading and sending the rows of an Execute.
+     */
+    @Managed
+    @Nested
+    public TimeStat getRowStreaming()
+    {
+        return rowStreaming;
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getRowsPerPortal()
+    {
+        return rowsPerPortal;
+    }
+
+    @Managed
+    @Nested
+    public DistributionStat getBytesPerPortal()
+    {
+        return bytesPerPortal;
+    }
+
+    /**
+     * The portals executed in duckdb.
+     */
+    @Managed
+    @Nested
+    public CounterStat getCacheHits()
+    {
+        return cacheHits;
+    }
+
+    /**
+     * The portals executed in the data source because they don't only query cached objects.
+     */
+    @Managed
+    @Nested
+    public CounterStat getCacheMisses()
+    {
+        return cacheMisses;
+    }
+
+    /**
+     * The portals executed in the data source because querying duckdb failed.
+     */
+    @Managed
+    @Nested
+    public CounterStat getCacheFallbacks()
+    {
+        return cacheFallbacks;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFailedQueries()
+    {
+        return failedQueries;
+    }
+
+    public Map<String, Object> snapshot()
+    {
+        return ImmutableMap.<String, Object>builder()
+                .put("parse", parse.snapshot())
+                .put("accioPlanner", accioPlanner.snapshot())
+                .put("postgreSqlRewrite", postgreSqlRewrite.snapshot())
+                .put("cacheRewrite", cacheRewrite.snapshot())
+                .put("dialectConversion", dialectConversion.snapshot())
+                .put("describe", describe.snapshot())
+                .put("execution", execution.snapshot())
+                .put("timeToFirstRow", timeToFirstRow.snapshot())
+                .put("rowStreaming", rowStreaming.snapshot())
+                .put("rowsPerPortal", rowsPerPortal.snapshot())
+                .put("bytesPerPortal", bytesPerPortal.snapshot())
+                .put("cacheHits", cacheHits.snapshot())
+                .put("cacheMisses", cacheMisses.snapshot())
+                .put("cacheFallbacks", cacheFallbacks.snapshot())
+                .put("failedQueries", failedQueries.snapshot())
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main;
+
+import io.accio.base.CatalogSchemaTableName;
+import io.accio.base.client.duckdb.DuckdbClient;
+import io.accio.cache.CacheManager;
+import io.accio.cache.CachedTableMapping;
+import io.accio.cache.DefaultCachedTableMapping;
+import io.accio.cache.NoCacheService;
+import io.accio.sqlrewrite.DateSpineInfo;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.accio.cache.TestingCacheManager.createCacheManager;
+import static io.accio.main.pgcatalog.PgCatalogUtils.ACCIO_TEMP_NAME;
+import static java.lang.String.format;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(singleThreaded = true)
+public class TestAccioManager
+{
+    private static final String DAILY = "date_spine_day_20200101_20200131";
+    private static final String MONTHLY = "date_spine_month_20200101_20201231";
+    private static final CatalogSchemaTableName DATE_SPINE = new CatalogSchemaTableName("test", "test", DateSpineInfo.NAME);
+
+    private final DdlRecordingMetadata metadata = new DdlRecordingMetadata();
+    private File mdlFile;
+    private CachedTableMapping cachedTableMapping;
+    private CacheManager cacheManager;
+
+    @BeforeMethod
+    public void setup()
+            throws IOException
+    {
+        metadata.ddls.clear();
+        metadata.schemas.clear();
+        mdlFile = File.createTempFile("mdl", ".json");
+        mdlFile.deleteOnExit();
+        DuckdbClient duckdbClient = new DuckdbClient();
+        cachedTableMapping = new DefaultCachedTableMapping(duckdbClient);
+        cacheManager = createCacheManager(duckdbClient, cachedTableMapping, new NoCacheService());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup()
+    {
+        cacheManager.stop();
+    }
+
+    @Test
+    public void testReplaceDateSpine()
+            throws IOException
+    {
+        writeMdl("DAY", "2020-01-31");
+        AccioManager accioManager = new AccioManager(
+                new AccioConfig()
+                        .setAccioMDLFile(mdlFile)
+                        .setPersistDateSpine(true)
+                        .setCacheDateSpine(true),
+                cacheManager,
+                metadata,
+                (sql, sessionContext) -> sql);
+        assertThat(accioManager.getAccioMDL().getDateSpineTable()).contains(tableName(DAILY));
+        assertThat(cachedTableMapping.convertToCachedTable(DATE_SPINE)).contains(DAILY);
+        assertThat(metadata.ddls).hasSize(1).allMatch(ddl -> ddl.startsWith(format("CREATE TABLE IF NOT EXISTS %s AS ", tableName(DAILY))));
+
+        // the same date spine is read again
+        accioManager.loadAccioMDLFromFile();
+        assertThat(metadata.ddls).hasSize(2).noneMatch(ddl -> ddl.startsWith("DROP"));
+
+        // the table of the previous date spine isn't read any more
+        writeMdl("MONTH", "2020-12-31");
+        accioManager.loadAccioMDLFromFile();
+        assertThat(accioManager.getAccioMDL().getDateSpineTable()).contains(tableName(MONTHLY));
+        assertThat(cachedTableMapping.convertToCachedTable(DATE_SPINE)).contains(MONTHLY);
+        assertThat(metadata.ddls.subList(2, metadata.ddls.size())).hasSize(2)
+                .anyMatch(ddl -> ddl.startsWith(format("CREATE TABLE IF NOT EXISTS %s AS ", tableName(MONTHLY))))
+                .contains(format("DROP TABLE IF EXISTS %s", tableName(DAILY)));
+    }
+
+    private void writeMdl(String unit, String end)
+            throws IOException
+    {
+        Files.writeString(mdlFile.toPath(), format("{\"catalog\": \"test\", \"schema\": \"test\", " +
+                "\"dateSpine\": {\"unit\": \"%s\", \"start\": \"2020-01-01\", \"end\": \"%s\"}}", unit, end));
+    }
+
+    private static String tableName(String dateSpine)
+    {
+        return format("%s.%s", ACCIO_TEMP_NAME, dateSpine);
+    }
+
+    private static class DdlRecordingMetadata
+            extends TestingMetadata
+    {
+        private final List<String> ddls = new ArrayList<>();
+        private final Set<String> schemas = new HashSet<>();
+
+        @Override
+        public void createSchema(String name)
+        {
+            schemas.add(name);
+        }
+
+        @Override
+        public boolean isSchemaExist(String name)
+        {
+            return schemas.contains(name);
+        }
+
+        @Override
+        public void directDDL(String sql)
+        {
+            ddls.add(sql);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector;
+
+import io.accio.base.AccioMDL;
+import io.accio.base.SessionContext;
+import io.accio.base.sql.SqlConverter;
+import io.accio.main.TestingMetadata;
+import io.accio.main.connector.bigquery.BigQuerySqlConverter;
+import io.accio.main.connector.postgres.PostgresSqlConverter;
+import io.accio.sqlrewrite.AccioPlanner;
+import io.accio.testing.SyntheticManifest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.testng.annotations.Test;
+
+import static io.accio.testing.AbstractTestFramework.DEFAULT_SESSION_CONTEXT;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The dialect conversion of the planned sql of a query over a generated mdl, i.e. the last step before
+ * the sql is sent to the data source.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkSqlConverter
+{
+    @Param({"BIGQUERY", "POSTGRES"})
+    private Dialect dialect = Dialect.BIGQUERY;
+
+    @Param({"10", "100", "1000"})
+    private int modelCount = 10;
+
+    @Param({"MODEL", "CALCULATED_FIELD", "METRIC", "METRIC_ROLLUP", "CUMULATIVE_METRIC"})
+    private SyntheticManifest.Query query = SyntheticManifest.Query.MODEL;
+
+    private final SessionContext sessionContext = DEFAULT_SESSION_CONTEXT;
+    private SqlConverter sqlConverter;
+    private String plannedSql;
+
+    public enum Dialect
+    {
+        BIGQUERY,
+        POSTGRES,
+    }
+
+    @Setup
+    public void setup()
+    {
+        sqlConverter = dialect == Dialect.BIGQUERY
+                ? new BigQuerySqlConverter(new TestingMetadata())
+                : new PostgresSqlConverter(new TestingMetadata());
+        AccioMDL accioMDL = AccioMDL.fromManifest(SyntheticManifest.create(modelCount));
+        plannedSql = AccioPlanner.rewrite(query.getSql(modelCount), sessionContext, accioMDL);
+    }
+
+    @Benchmark
+    public String convert()
+    {
+        return sqlConverter.convert(plannedSql, sessionContext);
+    }
+
+    @Test
+    public void verify()
+    {
+        for (Dialect dialect : Dialect.values()) {
+            for (SyntheticManifest.Query query : SyntheticManifest.Query.values()) {
+                BenchmarkSqlConverter benchmark = new BenchmarkSqlConverter();
+                benchmark.dialect = dialect;
+                benchmark.query = query;
+                benchmark.setup();
+                assertThat(benchmark.convert()).isNotBlank();
+            }
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*" + BenchmarkSqlConverter.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.bigquery;
+
+import io.accio.base.CatalogSchemaTableName;
+import io.accio.connector.bigquery.BigQueryClient;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static io.accio.main.connector.bigquery.BigQueryCacheService.getSourceVersion;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestBigQueryCacheService
+{
+    private static final CatalogSchemaTableName ORDERS = new CatalogSchemaTableName("project", "tpch", "orders");
+    private static final CatalogSchemaTableName CUSTOMER = new CatalogSchemaTableName("project", "tpch", "customer");
+
+    @Test
+    public void testSourceVersion()
+    {
+        TestingBigQueryClient client = new TestingBigQueryClient();
+        client.setLastModifiedTime(ORDERS, 1000L);
+        client.setLastModifiedTime(CUSTOMER, 2000L);
+
+        Optional<String> version = getSourceVersion(client, Set.of(ORDERS, CUSTOMER));
+        // the tables are in a stable order
+        assertThat(version).hasValue("project.tpch.customer@2000,project.tpch.orders@1000");
+        assertThat(getSourceVersion(client, Set.of(CUSTOMER, ORDERS))).isEqualTo(version);
+
+        // unchanged
+        assertThat(getSourceVersion(client, Set.of(ORDERS, CUSTOMER))).isEqualTo(version);
+
+        // changed
+        client.setLastModifiedTime(ORDERS, 1001L);
+        assertThat(getSourceVersion(client, Set.of(ORDERS, CUSTOMER)))
+                .isNotEqualTo(version)
+                .hasValue("project.tpch.customer@2000,project.tpch.orders@1001");
+    }
+
+    @Test
+    public void testUnknownSourceVersion()
+    {
+        TestingBigQueryClient client = new TestingBigQueryClient();
+        client.setLastModifiedTime(ORDERS, 1000L);
+
+        // a view or a missing table makes the version unknown
+        assertThat(getSourceVersion(client, Set.of(ORDERS, CUSTOMER))).isEmpty();
+
+        client.setLastModifiedTime(CUSTOMER, 2000L);
+        client.setFailure(new RuntimeException("permission denied"));
+        assertThat(getSourceVersion(client, Set.of(ORDERS, CUSTOMER))).isEmpty();
+    }
+
+    private static class TestingBigQueryClient
+            extends BigQueryClient
+    {
+        private final Map<CatalogSchemaTableName, Long> lastModifiedTimes = new HashMap<>();
+        private RuntimeException failure;
+
+        private TestingBigQueryClient()
+        {
+            super(null);
+        }
+
+        private void setLastModifiedTime(CatalogSchemaTableName table, long lastModifiedTime)
+        {
+            lastModifiedTimes.put(table, lastModifiedTime);
+        }
+
+        private void setFailure(RuntimeException failure)
+        {
+            this.failure = failure;
+        }
+
+        @Override
+        public Optional<Long> getLastModifiedTime(CatalogSchemaTableName catalogSchemaTableName)
+        {
+            if (failure != null) {
+                throw failure;
+            }
+            return Optional.ofNullable(lastModifiedTimes.get(catalogSchemaTableName));
+        }
+    }
+}
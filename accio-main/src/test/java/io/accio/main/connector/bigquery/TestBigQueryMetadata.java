@@ -0,0 +1,175 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.bigquery;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.JobId;
+import com.google.cloud.bigquery.LegacySQLTypeName;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.TableResult;
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioException;
+import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.QueryCancellation;
+import io.accio.connector.bigquery.BigQueryClient;
+import io.accio.connector.bigquery.ShortQueryResult;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static io.accio.base.metadata.StandardErrorCode.USER_CANCELED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestBigQueryMetadata
+{
+    private static final JobId JOB_ID = JobId.newBuilder().setProject("project").setJob("job").setLocation("US").build();
+    private static final Schema SCHEMA = Schema.of(Field.of("id", LegacySQLTypeName.INTEGER));
+    private static final TableResult RESULT = new TableResult(SCHEMA, 1, new SinglePage(
+            List.of(FieldValueList.of(List.of(FieldValue.of(FieldValue.Attribute.PRIMITIVE, "1")), SCHEMA.getFields()))));
+
+    @Test
+    public void testShortQuery()
+            throws Exception
+    {
+        ShortQueryClient client = new ShortQueryClient(true, () -> {});
+        BigQueryMetadata metadata = new BigQueryMetadata(client, new BigQueryConfig().setLocation("US"));
+        try (ConnectorRecordIterator iterator = metadata.directQuery("SELECT id FROM t", ImmutableList.of(), new QueryCancellation())) {
+            assertThat(iterator.next()).containsExactly(1L);
+            assertThat(iterator.hasNext()).isFalse();
+        }
+        finally {
+            metadata.stop();
+        }
+        assertThat(client.canceled).isEmpty();
+    }
+
+    @Test
+    public void testCancelWhileWaitingInline()
+    {
+        // the cancel request arrives while jobs.query waits, before the job of the query is known
+        QueryCancellation cancellation = new QueryCancellation();
+        ShortQueryClient client = new ShortQueryClient(true, cancellation::cancel);
+        BigQueryMetadata metadata = new BigQueryMetadata(client, new BigQueryConfig().setLocation("US"));
+        try {
+            assertThatThrownBy(() -> metadata.directQuery("SELECT id FROM t", ImmutableList.of(), cancellation))
+                    .isInstanceOfSatisfying(AccioException.class, e -> assertThat(e.getErrorCode()).isEqualTo(USER_CANCELED.toErrorCode()));
+        }
+        finally {
+            metadata.stop();
+        }
+        // the query is already finished, there is no job to cancel
+        assertThat(client.canceled).isEmpty();
+        assertThat(client.waited).isFalse();
+    }
+
+    @Test
+    public void testCancelBeforeFallback()
+    {
+        QueryCancellation cancellation = new QueryCancellation();
+        ShortQueryClient client = new ShortQueryClient(false, cancellation::cancel);
+        BigQueryMetadata metadata = new BigQueryMetadata(client, new BigQueryConfig().setLocation("US"));
+        try {
+            assertThatThrownBy(() -> metadata.directQuery("SELECT id FROM t", ImmutableList.of(), cancellation))
+                    .isInstanceOfSatisfying(AccioException.class, e -> assertThat(e.getErrorCode()).isEqualTo(USER_CANCELED.toErrorCode()));
+        }
+        finally {
+            metadata.stop();
+        }
+        // the job still running is canceled and not waited for
+        assertThat(client.canceled).containsExactly(JOB_ID);
+        assertThat(client.waited).isFalse();
+    }
+
+    private static class ShortQueryClient
+            extends BigQueryClient
+    {
+        private final boolean completedInline;
+        private final Runnable whileWaiting;
+        private final List<JobId> canceled = new ArrayList<>();
+        private boolean waited;
+
+        private ShortQueryClient(boolean completedInline, Runnable whileWaiting)
+        {
+            super(null);
+            this.completedInline = completedInline;
+            this.whileWaiting = whileWaiting;
+        }
+
+        @Override
+        public ShortQueryResult queryWithoutJob(String sql, String location, long timeoutMillis, long pageSize, Consumer<JobId> onJob)
+        {
+            whileWaiting.run();
+            if (!completedInline) {
+                onJob.accept(JOB_ID);
+                waited = true;
+            }
+            return new ShortQueryResult(RESULT, JOB_ID, completedInline);
+        }
+
+        @Override
+        public boolean cancel(JobId jobId)
+        {
+            canceled.add(jobId);
+            return true;
+        }
+    }
+
+    private static class SinglePage
+            implements Page<FieldValueList>
+    {
+        private final List<FieldValueList> values;
+
+        private SinglePage(List<FieldValueList> values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public boolean hasNextPage()
+        {
+            return false;
+        }
+
+        @Override
+        public String getNextPageToken()
+        {
+            return null;
+        }
+
+        @Override
+        public Page<FieldValueList> getNextPage()
+        {
+            return null;
+        }
+
+        @Override
+        public Iterable<FieldValueList> iterateAll()
+        {
+            return values;
+        }
+
+        @Override
+        public Iterable<FieldValueList> getValues()
+        {
+            return values;
+        }
+    }
+}
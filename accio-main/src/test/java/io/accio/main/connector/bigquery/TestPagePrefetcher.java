@@ -0,0 +1,263 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.bigquery;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.bigquery.Field;
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.cloud.bigquery.Schema;
+import com.google.cloud.bigquery.StandardSQLTypeName;
+import com.google.cloud.bigquery.TableResult;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestPagePrefetcher
+{
+    private static final Schema SCHEMA = Schema.of(Field.of("c", StandardSQLTypeName.INT64));
+
+    private final ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("test-page-prefetch-%s"));
+
+    @AfterClass(alwaysRun = true)
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testAllPages()
+    {
+        List<List<FieldValueList>> pages = pages(7, 10);
+        try (PagePrefetcher prefetcher = new PagePrefetcher(tableResult(pages, new AtomicInteger(), -1), 2, executor)) {
+            assertThat(ImmutableList.copyOf(prefetcher)).isEqualTo(ImmutableList.copyOf(Iterables.concat(pages)));
+        }
+    }
+
+    @Test
+    public void testSinglePage()
+    {
+        List<List<FieldValueList>> pages = pages(1, 10);
+        try (PagePrefetcher prefetcher = new PagePrefetcher(tableResult(pages, new AtomicInteger(), -1), 2, executor)) {
+            assertThat(ImmutableList.copyOf(prefetcher)).isEqualTo(pages.get(0));
+        }
+    }
+
+    @Test
+    public void testPrefetchIsBounded()
+            throws InterruptedException
+    {
+        AtomicInteger fetched = new AtomicInteger();
+        try (PagePrefetcher prefetcher = new PagePrefetcher(tableResult(pages(20, 10), fetched, -1), 3, executor)) {
+            assertThat(prefetcher.next()).isNotNull();
+            // wait for the fetcher to fill the queue
+            while (fetched.get() < 3) {
+                MILLISECONDS.sleep(10);
+            }
+            MILLISECONDS.sleep(100);
+            // three pages in the queue, and no fetch waits for space
+            assertThat(fetched.get()).isEqualTo(3);
+
+            // reading a queued page fetches the next one
+            IntStream.range(0, 11).forEach(i -> prefetcher.next());
+            while (fetched.get() < 4) {
+                MILLISECONDS.sleep(10);
+            }
+            MILLISECONDS.sleep(100);
+            assertThat(fetched.get()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    public void testSharedExecutor()
+    {
+        // the prefetchers don't hold the only thread while their queues are full
+        ExecutorService singleThread = newSingleThreadExecutor(daemonThreadsNamed("test-page-prefetch-single-%s"));
+        List<List<FieldValueList>> pages = pages(10, 10);
+        try (PagePrefetcher first = new PagePrefetcher(tableResult(pages, new AtomicInteger(), -1), 1, singleThread);
+                PagePrefetcher second = new PagePrefetcher(tableResult(pages, new AtomicInteger(), -1), 1, singleThread)) {
+            ImmutableList.Builder<FieldValueList> firstRows = ImmutableList.builder();
+            ImmutableList.Builder<FieldValueList> secondRows = ImmutableList.builder();
+            while (first.hasNext() || second.hasNext()) {
+                if (first.hasNext()) {
+                    firstRows.add(first.next());
+                }
+                if (second.hasNext()) {
+                    secondRows.add(second.next());
+                }
+            }
+            assertThat(firstRows.build()).isEqualTo(ImmutableList.copyOf(Iterables.concat(pages)));
+            assertThat(secondRows.build()).isEqualTo(ImmutableList.copyOf(Iterables.concat(pages)));
+        }
+        finally {
+            singleThread.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFailure()
+    {
+        try (PagePrefetcher prefetcher = new PagePrefetcher(tableResult(pages(5, 10), new AtomicInteger(), 3), 2, executor)) {
+            assertThat(IntStream.range(0, 30).mapToObj(i -> prefetcher.next())).hasSize(30);
+            assertThatThrownBy(prefetcher::next)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("failed to fetch page 3");
+        }
+    }
+
+    @Test
+    public void testCloseStopsFetching()
+            throws InterruptedException
+    {
+        AtomicInteger fetched = new AtomicInteger();
+        PagePrefetcher prefetcher = new PagePrefetcher(tableResult(pages(100, 10), fetched, -1), 1, executor);
+        while (fetched.get() < 1) {
+            MILLISECONDS.sleep(10);
+        }
+        prefetcher.close();
+        MILLISECONDS.sleep(100);
+        assertThat(fetched.get()).isEqualTo(1);
+        assertThat(prefetcher.hasNext()).isTrue();
+        assertThat(ImmutableList.copyOf(prefetcher)).hasSize(10);
+    }
+
+    @Test
+    public void testCloseWakesUpReader()
+            throws InterruptedException
+    {
+        CountDownLatch blocked = new CountDownLatch(1);
+        Page<FieldValueList> secondPage = new FakePage(ImmutableList.of(), 1, ImmutableList.of(), new AtomicInteger(), -1)
+        {
+            @Override
+            public Iterable<FieldValueList> getValues()
+            {
+                blocked.countDown();
+                try {
+                    SECONDS.sleep(60);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ImmutableList.of();
+            }
+        };
+        Page<FieldValueList> firstPage = new FakePage(ImmutableList.of(), 0, ImmutableList.of(), new AtomicInteger(), -1)
+        {
+            @Override
+            public boolean hasNextPage()
+            {
+                return true;
+            }
+
+            @Override
+            public Page<FieldValueList> getNextPage()
+            {
+                return secondPage;
+            }
+        };
+        PagePrefetcher prefetcher = new PagePrefetcher(new TableResult(SCHEMA, 0, firstPage), 1, executor);
+        assertThat(blocked.await(10, SECONDS)).isTrue();
+        executor.submit(() -> {
+            MILLISECONDS.sleep(100);
+            prefetcher.close();
+            return null;
+        });
+        assertThat(prefetcher.hasNext()).isFalse();
+    }
+
+    private static List<List<FieldValueList>> pages(int pageCount, int pageSize)
+    {
+        return IntStream.range(0, pageCount)
+                .mapToObj(page -> IntStream.range(page * pageSize, (page + 1) * pageSize)
+                        .mapToObj(value -> FieldValueList.of(ImmutableList.of(FieldValue.of(FieldValue.Attribute.PRIMITIVE, String.valueOf(value)))))
+                        .collect(toImmutableList()))
+                .collect(toImmutableList());
+    }
+
+    private static TableResult tableResult(List<List<FieldValueList>> pages, AtomicInteger fetched, int failingPage)
+    {
+        return new TableResult(SCHEMA, pages.stream().mapToLong(List::size).sum(), new FakePage(pages, 0, pages.get(0), fetched, failingPage));
+    }
+
+    private static class FakePage
+            implements Page<FieldValueList>
+    {
+        private final List<List<FieldValueList>> pages;
+        private final int index;
+        private final List<FieldValueList> values;
+        private final AtomicInteger fetched;
+        private final int failingPage;
+
+        private FakePage(List<List<FieldValueList>> pages, int index, List<FieldValueList> values, AtomicInteger fetched, int failingPage)
+        {
+            this.pages = pages;
+            this.index = index;
+            this.values = values;
+            this.fetched = fetched;
+            this.failingPage = failingPage;
+        }
+
+        @Override
+        public boolean hasNextPage()
+        {
+            return index + 1 < pages.size();
+        }
+
+        @Override
+        public String getNextPageToken()
+        {
+            return hasNextPage() ? String.valueOf(index + 1) : null;
+        }
+
+        @Override
+        public Page<FieldValueList> getNextPage()
+        {
+            int next = index + 1;
+            if (next == failingPage) {
+                throw new IllegalStateException("failed to fetch page " + next);
+            }
+            fetched.incrementAndGet();
+            return new FakePage(pages, next, pages.get(next), fetched, failingPage);
+        }
+
+        @Override
+        public Iterable<FieldValueList> iterateAll()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterable<FieldValueList> getValues()
+        {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.bigquery;
+
+import com.google.cloud.bigquery.FieldValue;
+import com.google.cloud.bigquery.FieldValueList;
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestParallelTableReader
+{
+    private final ExecutorService executor = newCachedThreadPool(daemonThreadsNamed("test-parallel-read-%s"));
+
+    @AfterClass(alwaysRun = true)
+    public void close()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRowsInTableOrder()
+    {
+        List<FieldValueList> table = rows(0, 1000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Queue<Long> starts = new ConcurrentLinkedQueue<>();
+        ParallelTableReader.RangeReader rangeReader = (startIndex, rowCount) -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            starts.add(startIndex);
+            try {
+                // finish the ranges out of order
+                MILLISECONDS.sleep(ThreadLocalRandom.current().nextInt(5));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return table.subList((int) startIndex, (int) (startIndex + rowCount));
+        };
+
+        try (ParallelTableReader reader = new ParallelTableReader(table.subList(0, 10), table.size(), rangeReader, 64, 3, executor)) {
+            assertThat(ImmutableList.copyOf(reader)).isEqualTo(table);
+        }
+        assertThat(starts).containsExactlyInAnyOrderElementsOf(LongStream.iterate(10, start -> start < 1000, start -> start + 64).boxed().collect(toImmutableList()));
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    public void testFirstRowsOnly()
+    {
+        List<FieldValueList> table = rows(0, 10);
+        ParallelTableReader.RangeReader rangeReader = (startIndex, rowCount) -> {
+            throw new AssertionError("no range should be read");
+        };
+        try (ParallelTableReader reader = new ParallelTableReader(table, table.size(), rangeReader, 64, 3, executor)) {
+            assertThat(ImmutableList.copyOf(reader)).isEqualTo(table);
+        }
+    }
+
+    @Test
+    public void testShortRange()
+    {
+        List<FieldValueList> table = rows(0, 100);
+        ParallelTableReader.RangeReader rangeReader = (startIndex, rowCount) -> table.subList((int) startIndex, (int) (startIndex + rowCount - 1));
+        try (ParallelTableReader reader = new ParallelTableReader(ImmutableList.of(), table.size(), rangeReader, 50, 2, executor)) {
+            assertThatThrownBy(() -> ImmutableList.copyOf(reader))
+                    .isInstanceOf(AccioException.class)
+                    .hasMessage("Expected 50 rows from row 0 but read 49");
+        }
+    }
+
+    @Test
+    public void testFailure()
+    {
+        ParallelTableReader.RangeReader rangeReader = (startIndex, rowCount) -> {
+            throw new IllegalStateException("read failed");
+        };
+        try (ParallelTableReader reader = new ParallelTableReader(rows(0, 10), 100, rangeReader, 50, 2, executor)) {
+            assertThatThrownBy(() -> ImmutableList.copyOf(reader))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("read failed");
+        }
+    }
+
+    @Test
+    public void testCloseCancelsRanges()
+            throws InterruptedException
+    {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch interrupted = new CountDownLatch(2);
+        AtomicInteger reads = new AtomicInteger();
+        ParallelTableReader.RangeReader rangeReader = (startIndex, rowCount) -> {
+            reads.incrementAndGet();
+            started.countDown();
+            try {
+                SECONDS.sleep(60);
+            }
+            catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return ImmutableList.of();
+        };
+        ParallelTableReader reader = new ParallelTableReader(rows(0, 1), 1000, rangeReader, 10, 2, executor);
+        assertThat(reader.next()).isEqualTo(rows(0, 1).get(0));
+        assertThat(started.await(10, SECONDS)).isTrue();
+        reader.close();
+
+        assertThat(interrupted.await(10, SECONDS)).isTrue();
+        assertThat(reader.hasNext()).isFalse();
+        assertThat(reads.get()).isEqualTo(2);
+    }
+
+    private static List<FieldValueList> rows(int start, int end)
+    {
+        return LongStream.range(start, end)
+                .mapToObj(value -> FieldValueList.of(ImmutableList.of(FieldValue.of(FieldValue.Attribute.PRIMITIVE, String.valueOf(value)))))
+                .collect(toImmutableList());
+    }
+}
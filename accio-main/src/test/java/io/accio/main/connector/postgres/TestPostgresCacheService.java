@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.connector.postgres;
+
+import io.accio.base.CatalogSchemaTableName;
+import io.accio.base.client.AutoCloseableIterator;
+import io.accio.base.client.duckdb.DuckdbClient;
+import io.accio.connector.postgres.NumericPrecision;
+import io.accio.connector.postgres.PostgresClient;
+import io.accio.connector.postgres.PostgresConfig;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.accio.main.connector.postgres.PostgresCacheService.toDuckdbDecimal;
+import static io.accio.main.connector.postgres.PostgresCacheService.toPrecision;
+import static java.util.Collections.emptyIterator;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestPostgresCacheService
+{
+    @Test
+    public void testDuckdbDecimal()
+    {
+        assertThat(toDuckdbDecimal(new NumericPrecision(10, 2))).hasValue("DECIMAL(10, 2)");
+        // the scale isn't truncated to 9 digits
+        assertThat(toDuckdbDecimal(new NumericPrecision(20, 12))).hasValue("DECIMAL(20, 12)");
+        assertThat(toDuckdbDecimal(new NumericPrecision(38, 38))).hasValue("DECIMAL(38, 38)");
+        assertThat(toDuckdbDecimal(new NumericPrecision(39, 2))).isEmpty();
+    }
+
+    @Test
+    public void testProbedPrecision()
+    {
+        assertThat(toPrecision(3, 2)).isEqualTo(new NumericPrecision(5, 2));
+        // the integer part of 0.5 is printed as one digit
+        assertThat(toPrecision(1, 1)).isEqualTo(new NumericPrecision(2, 1));
+        assertThat(toPrecision(0, 0)).isEqualTo(new NumericPrecision(1, 0));
+    }
+
+    @Test
+    public void testSourceVersion()
+    {
+        CatalogSchemaTableName orders = new CatalogSchemaTableName("postgres", "tpch", "orders");
+        CatalogSchemaTableName customer = new CatalogSchemaTableName("postgres", "tpch", "customer");
+        TestingPostgresClient postgresClient = new TestingPostgresClient();
+        postgresClient.setStatistics("orders", new Object[] {100L, 0L, 0L, 100L, 16384L});
+        postgresClient.setStatistics("customer", new Object[] {10L, 0L, 0L, 10L, 16390L});
+
+        PostgresCacheService cacheService = new PostgresCacheService(postgresClient, new DuckdbClient(), new PostgresCacheConfig());
+        try {
+            Optional<String> version = cacheService.getSourceVersion(Set.of(orders, customer));
+            assertThat(version).hasValue("postgres.tpch.customer@[10, 0, 0, 10, 16390],postgres.tpch.orders@[100, 0, 0, 100, 16384]");
+            assertThat(postgresClient.getQueries()).allMatch(sql -> sql.contains("schemaname = 'tpch'"));
+
+            // unchanged
+            assertThat(cacheService.getSourceVersion(Set.of(customer, orders))).isEqualTo(version);
+
+            // changed, e.g. rows updated
+            postgresClient.setStatistics("orders", new Object[] {100L, 5L, 0L, 100L, 16384L});
+            assertThat(cacheService.getSourceVersion(Set.of(orders, customer))).isPresent().isNotEqualTo(version);
+
+            // views and unknown relations have no statistics
+            assertThat(cacheService.getSourceVersion(Set.of(orders, new CatalogSchemaTableName("postgres", "tpch", "orders_view")))).isEmpty();
+        }
+        finally {
+            cacheService.stop();
+        }
+    }
+
+    /**
+     * Answers the statistics lookup of the source version with the rows set by the test, without any postgres.
+     */
+    private static class TestingPostgresClient
+            extends PostgresClient
+    {
+        private static final Pattern RELNAME = Pattern.compile("relname = '([^']*)'");
+
+        private final Map<String, Object[]> statistics = new ConcurrentHashMap<>();
+        private final List<String> queries = new ArrayList<>();
+
+        private TestingPostgresClient()
+        {
+            super(new PostgresConfig());
+        }
+
+        private void setStatistics(String tableName, Object[] row)
+        {
+            statistics.put(tableName, row);
+        }
+
+        private synchronized List<String> getQueries()
+        {
+            return List.copyOf(queries);
+        }
+
+        @Override
+        public synchronized AutoCloseableIterator<Object[]> query(String sql)
+        {
+            queries.add(sql);
+            Matcher matcher = RELNAME.matcher(sql);
+            assertThat(matcher.find()).isTrue();
+            Optional<Object[]> row = Optional.ofNullable(statistics.get(matcher.group(1)));
+            return new AutoCloseableIterator<>()
+            {
+                private final Iterator<Object[]> iterator = row.map(value -> singletonList(value).iterator()).orElse(emptyIterator());
+
+                @Override
+                public boolean hasNext()
+                {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Object[] next()
+                {
+                    return iterator.next();
+                }
+
+                @Override
+                public void close() {}
+            };
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.history;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.json.JsonCodec;
+import io.airlift.json.JsonCodecFactory;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.json.JsonCodec.jsonCodec;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestQueryHistory
+{
+    @Test
+    public void testRingBuffer()
+    {
+        QueryHistory queryHistory = new QueryHistory(new QueryHistoryConfig().setMaxSize(3));
+        for (int i = 0; i < 5; i++) {
+            queryHistory.add(queryInfo("query_" + i));
+        }
+
+        assertThat(queryHistory.getQueries()).extracting(QueryInfo::getQueryId).containsExactly("query_4", "query_3", "query_2");
+        assertThat(queryHistory.getQuery("query_3")).isPresent();
+        assertThat(queryHistory.getQuery("query_1")).isEmpty();
+    }
+
+    @Test
+    public void testSpill()
+            throws Exception
+    {
+        Path directory = Files.createTempDirectory("query-history");
+        File spillFile = directory.resolve("queries.json").toFile();
+        QueryHistory queryHistory = new QueryHistory(new QueryHistoryConfig().setMaxSize(2).setSpillFile(spillFile));
+        try {
+            for (int i = 0; i < 4; i++) {
+                queryHistory.add(queryInfo("query_" + i));
+            }
+        }
+        finally {
+            queryHistory.stop();
+        }
+
+        List<String> lines = waitForLines(spillFile, 2);
+        assertThat(lines).hasSize(2);
+        QueryInfo spilled = jsonCodec(QueryInfo.class).fromJson(lines.get(0));
+        assertThat(spilled.getQueryId()).isEqualTo("query_0");
+        assertThat(spilled.getPhases()).containsEntry("parse", new Duration(1, MILLISECONDS));
+        assertThat(spilled.getUpstreamQueryId()).hasValue("job_query_0");
+        assertThat(spilled.getDialectStatement()).isEmpty();
+    }
+
+    @Test
+    public void testRotateSpillFile()
+            throws Exception
+    {
+        Path directory = Files.createTempDirectory("query-history");
+        File spillFile = directory.resolve("queries.json").toFile();
+        File rotatedFile = directory.resolve("queries.json.1").toFile();
+        List<QueryInfo> queryInfos = IntStream.range(0, 6)
+                .mapToObj(i -> queryInfo("query_" + i))
+                .collect(toImmutableList());
+        // two queries fit in the spill file, which has a compact json object per line
+        JsonCodec<QueryInfo> codec = new JsonCodecFactory().jsonCodec(QueryInfo.class);
+        long lineSize = queryInfos.stream()
+                .mapToLong(queryInfo -> codec.toJson(queryInfo).length() + 1)
+                .max()
+                .orElseThrow();
+        QueryHistory queryHistory = new QueryHistory(new QueryHistoryConfig()
+                .setMaxSize(1)
+                .setSpillFile(spillFile)
+                .setSpillFileMaxSize(DataSize.ofBytes(lineSize * 5 / 2)));
+        try {
+            queryInfos.forEach(queryHistory::add);
+        }
+        finally {
+            queryHistory.stop();
+        }
+
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(10_000);
+        while (!readQueryIds(spillFile).contains("query_4") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // query_0 and query_1 are rotated first, then replaced by query_2 and query_3
+        assertThat(readQueryIds(spillFile)).containsExactly("query_4");
+        assertThat(readQueryIds(rotatedFile)).containsExactly("query_2", "query_3");
+        assertThat(directory.toFile().list()).containsExactlyInAnyOrder("queries.json", "queries.json.1");
+    }
+
+    private static List<String> waitForLines(File file, int lines)
+            throws Exception
+    {
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(10_000);
+        while ((!file.exists() || Files.readAllLines(file.toPath(), UTF_8).size() < lines) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return Files.readAllLines(file.toPath(), UTF_8);
+    }
+
+    private static List<String> readQueryIds(File file)
+            throws Exception
+    {
+        if (!file.exists()) {
+            return List.of();
+        }
+        return Files.readAllLines(file.toPath(), UTF_8).stream()
+                .map(line -> jsonCodec(QueryInfo.class).fromJson(line).getQueryId())
+                .collect(toImmutableList());
+    }
+
+    static QueryInfo queryInfo(String queryId)
+    {
+        return new QueryInfo(
+                queryId,
+                Instant.now(),
+                "SELECT * FROM Orders",
+                "SELECT * FROM \"Orders\"",
+                Optional.empty(),
+                false,
+                ImmutableMap.of("parse", new Duration(1, MILLISECONDS), "execution", new Duration(20, MILLISECONDS)),
+                new Duration(30, MILLISECONDS),
+                10,
+                1000,
+                Optional.of("job_" + queryId),
+                Optional.empty());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.history;
+
+import io.accio.base.AccioException;
+import io.accio.base.Column;
+import io.accio.base.ConnectorRecordIterator;
+import io.trino.sql.parser.SqlParser;
+import org.testng.annotations.Test;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static io.accio.main.history.TestQueryHistory.queryInfo;
+import static io.accio.main.wireprotocol.WireProtocolSession.PARSE_AS_DECIMAL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestQueryHistoryTable
+{
+    private static final SqlParser SQL_PARSER = new SqlParser();
+
+    @Test
+    public void testSelectColumns()
+            throws Exception
+    {
+        QueryHistory queryHistory = new QueryHistory(new QueryHistoryConfig());
+        queryHistory.add(queryInfo("query_0"));
+        queryHistory.add(queryInfo("query_1"));
+
+        QueryHistoryTable.Scan scan = analyze("SELECT query_id, rows AS row_count FROM accio_query_history LIMIT 1").orElseThrow();
+        assertThat(scan.getColumns()).extracting(Column::getName).containsExactly("query_id", "row_count");
+        assertThat(scan.getColumns()).extracting(Column::getType).containsExactly(VARCHAR, BIGINT);
+        try (ConnectorRecordIterator iterator = scan.execute(queryHistory)) {
+            assertThat(iterator.next()).containsExactly("query_1", 10L);
+            assertThat(iterator.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    public void testSelectAll()
+            throws Exception
+    {
+        QueryHistory queryHistory = new QueryHistory(new QueryHistoryConfig());
+        queryHistory.add(queryInfo("query_0"));
+
+        QueryHistoryTable.Scan scan = analyze("select * from pg_catalog.ACCIO_QUERY_HISTORY").orElseThrow();
+        assertThat(scan.getColumns()).extracting(Column::getName).startsWith("query_id", "create_time", "statement");
+        try (ConnectorRecordIterator iterator = scan.execute(queryHistory)) {
+            Object[] row = iterator.next();
+            assertThat(row).hasSize(scan.getColumns().size());
+            assertThat(row[1]).isInstanceOf(LocalDateTime.class);
+            assertThat(row[6]).isEqualTo("parse=1.00ms, execution=20.00ms");
+            assertThat(iterator.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    public void testOtherTables()
+    {
+        assertThat(QueryHistoryTable.mayReference("SELECT * FROM orders")).isFalse();
+        assertThat(analyze("SELECT * FROM accio_query_history_archive")).isEmpty();
+        assertThat(analyze("SELECT 1")).isEmpty();
+    }
+
+    @Test
+    public void testUnsupported()
+    {
+        assertThatThrownBy(() -> analyze("SELECT * FROM accio_query_history WHERE cached"))
+                .isInstanceOf(AccioException.class)
+                .hasMessage("accio_query_history only supports selecting columns with a limit");
+        assertThatThrownBy(() -> analyze("SELECT count(*) FROM accio_query_history"))
+                .isInstanceOf(AccioException.class)
+                .hasMessageStartingWith("accio_query_history only supports selecting columns, not");
+        assertThatThrownBy(() -> analyze("SELECT foo FROM accio_query_history"))
+                .isInstanceOf(AccioException.class)
+                .hasMessage("column foo not found in accio_query_history");
+    }
+
+    private static Optional<QueryHistoryTable.Scan> analyze(String sql)
+    {
+        return QueryHistoryTable.analyze(SQL_PARSER.createStatement(sql, PARSE_AS_DECIMAL));
+    }
+}
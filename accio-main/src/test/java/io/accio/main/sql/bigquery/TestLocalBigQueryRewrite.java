@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.sql.bigquery;
+
+import io.accio.base.SessionContext;
+import io.accio.main.TestingMetadata;
+import io.accio.main.connector.bigquery.BigQuerySqlConverter;
+import io.accio.main.sql.SqlRewrite;
+import io.trino.sql.tree.Node;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static io.accio.sqlrewrite.Utils.parseSql;
+import static io.trino.sql.SqlFormatter.Dialect.BIGQUERY;
+import static io.trino.sql.SqlFormatter.formatSql;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestLocalBigQueryRewrite
+{
+    private final BigQuerySqlConverter sqlConverter = new BigQuerySqlConverter(new TestingMetadata());
+
+    @DataProvider
+    public Object[][] statements()
+    {
+        return new Object[][] {
+                {"SELECT CAST(a AS VARCHAR(10)), CAST(b AS DECIMAL(10, 2)), CAST(c AS ARRAY(VARCHAR(5))) FROM t"},
+                {"SELECT CAST(a AS TIMESTAMP(3)) FROM t"},
+                {"SELECT a, b, count(*) FROM t GROUP BY (a, b), c"},
+                {"SELECT a, count(*) FROM t GROUP BY ROLLUP (a, b)"},
+                {"SELECT TIMESTAMP '2023-07-04 09:41:43' + INTERVAL '1' YEAR, INTERVAL '1' DAY + TIMESTAMP '2023-07-04 09:41:43'"},
+                {"SELECT DATE '2023-07-04' + INTERVAL '1' YEAR, a + 1 FROM t"},
+        };
+    }
+
+    @Test(dataProvider = "statements")
+    public void testSameAsSeparateRewrites(String statement)
+    {
+        assertThat(rewrite(statement, LocalBigQueryRewrite.INSTANCE))
+                .isEqualTo(rewrite(statement, RemoveParameterInTypesInCast.INSTANCE, FlattenGroupingElements.INSTANCE, RewriteArithmetic.INSTANCE));
+    }
+
+    @Test
+    public void testNested()
+    {
+        // the separate rewrites didn't rewrite the children of a rewritten node
+        assertThat(rewrite("SELECT CAST(CAST(a AS VARCHAR(10)) AS VARCHAR(5)) FROM t", LocalBigQueryRewrite.INSTANCE))
+                .isEqualTo("SELECT CAST(CAST(a AS VARCHAR) AS VARCHAR)\n" +
+                        "FROM\n" +
+                        "  t\n");
+        assertThat(rewrite("SELECT TIMESTAMP '2023-07-04 09:41:43' + INTERVAL '1' YEAR + INTERVAL '1' DAY", LocalBigQueryRewrite.INSTANCE))
+                .isEqualTo("SELECT ((CAST(TIMESTAMP '2023-07-04 09:41:43' AS DATETIME) + INTERVAL '1' YEAR) + INTERVAL '1' DAY)\n\n");
+    }
+
+    @Test
+    public void testBeforeRewriteNamesToAlias()
+    {
+        // the casts match once their type parameters are removed, so the group by and the order by use the alias
+        assertThat(sqlConverter.convert("SELECT CAST(a AS VARCHAR(10)) x, count(*) FROM t GROUP BY CAST(a AS VARCHAR(5)) ORDER BY CAST(a AS VARCHAR(5))", SessionContext.builder().build()))
+                .isEqualTo("SELECT\n" +
+                        "  CAST(a AS STRING) x\n" +
+                        ", count(*)\n" +
+                        "FROM\n" +
+                        "  t\n" +
+                        "GROUP BY x\n" +
+                        "ORDER BY x ASC\n");
+        // the grouping set is flattened before its elements are replaced by the aliases
+        assertThat(sqlConverter.convert("SELECT a x, b, count(*) FROM t GROUP BY (a, b)", SessionContext.builder().build()))
+                .isEqualTo("SELECT\n" +
+                        "  a x\n" +
+                        ", b\n" +
+                        ", count(*)\n" +
+                        "FROM\n" +
+                        "  t\n" +
+                        "GROUP BY x, b\n");
+        // the timestamp is cast in both the select item and the group by, which still match
+        assertThat(sqlConverter.convert("SELECT TIMESTAMP '2023-07-04 09:41:43' + INTERVAL '1' YEAR x, count(*) FROM t GROUP BY TIMESTAMP '2023-07-04 09:41:43' + INTERVAL '1' YEAR", SessionContext.builder().build()))
+                .isEqualTo("SELECT\n" +
+                        "  (CAST(TIMESTAMP '2023-07-04 09:41:43' AS DATETIME) + INTERVAL '1' YEAR) x\n" +
+                        ", count(*)\n" +
+                        "FROM\n" +
+                        "  t\n" +
+                        "GROUP BY x\n");
+    }
+
+    private static String rewrite(String statement, SqlRewrite... rewrites)
+    {
+        Node node = parseSql(statement);
+        for (SqlRewrite rewrite : List.of(rewrites)) {
+            node = rewrite.rewrite(node, null);
+        }
+        return formatSql(node, BIGQUERY);
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import io.accio.base.batch.RecordBatch;
+import io.accio.base.type.BigIntType;
+import io.accio.base.type.BooleanType;
+import io.accio.base.type.ByteaType;
+import io.accio.base.type.DateType;
+import io.accio.base.type.DoubleType;
+import io.accio.base.type.IntegerType;
+import io.accio.base.type.IntervalType;
+import io.accio.base.type.JsonType;
+import io.accio.base.type.NumericType;
+import io.accio.base.type.PGArray;
+import io.accio.base.type.PGType;
+import io.accio.base.type.RealType;
+import io.accio.base.type.SmallIntType;
+import io.accio.base.type.TimestampType;
+import io.accio.base.type.UuidType;
+import io.accio.base.type.VarcharType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.joda.time.Period;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The per row hot path of sending a result: {@link Messages#sendDataRow} for narrow and wide rows, and the text
+ * and binary encoding of every type on its own. Run {@link #main} to report the allocation rate too.
+ */
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkDataRow
+{
+    private static final int ROWS_PER_BATCH = 1024;
+
+    @SuppressWarnings("rawtypes")
+    public enum ColumnType
+    {
+        BOOLEAN(BooleanType.BOOLEAN, true, true),
+        SMALLINT(SmallIntType.SMALLINT, (short) 42, true),
+        INTEGER(IntegerType.INTEGER, 42, true),
+        BIGINT(BigIntType.BIGINT, 4_200_000_000L, true),
+        REAL(RealType.REAL, 4.2f, true),
+        DOUBLE(DoubleType.DOUBLE, 4.2, true),
+        NUMERIC(NumericType.NUMERIC, new BigDecimal("123456789.0123"), true),
+        VARCHAR(VarcharType.VARCHAR, "the quick brown fox jumps over the lazy dog", true),
+        // dates and timestamps have no binary encoding
+        DATE(DateType.DATE, LocalDate.of(2023, 2, 12), false),
+        TIMESTAMP(TimestampType.TIMESTAMP, LocalDateTime.of(2023, 2, 12, 10, 11, 12, 123_456_000), false),
+        INTERVAL(IntervalType.INTERVAL, new Period(1, 2, 0, 3, 4, 5, 6, 7), true),
+        JSON(JsonType.JSON, "{\"id\": 1, \"tags\": [\"a\", \"b\"]}", true),
+        BYTEA(ByteaType.BYTEA, "accio".getBytes(UTF_8), true),
+        UUID(UuidType.UUID, "a0eebc99-9c0b-4ef8-bb6d-6bb9bd380a11", true),
+        INTEGER_ARRAY(PGArray.INT4_ARRAY, List.of(1, 2, 3, 4), true),
+        VARCHAR_ARRAY(PGArray.VARCHAR_ARRAY, List.of("a", "bb", "ccc"), true);
+
+        private final PGType type;
+        private final Object value;
+        private final boolean binary;
+
+        ColumnType(PGType type, Object value, boolean binary)
+        {
+            this.type = type;
+            this.value = value;
+            this.binary = binary;
+        }
+    }
+
+    public enum Schema
+    {
+        NARROW,
+        WIDE,
+    }
+
+    @State(Scope.Thread)
+    public static class Rows
+    {
+        @Param({"NARROW", "WIDE"})
+        private Schema schema = Schema.NARROW;
+
+        @Param({"TEXT", "BINARY"})
+        private FormatCodes.FormatCode format = FormatCodes.FormatCode.TEXT;
+
+        private EmbeddedChannel channel;
+        private List<PGType> types;
+        private Object[] row;
+        private RecordBatch batch;
+        private FormatCodes.FormatCode[] formatCodes;
+
+        @Setup
+        public void setup()
+        {
+            List<ColumnType> columns = schema == Schema.NARROW
+                    ? List.of(ColumnType.BIGINT, ColumnType.VARCHAR, ColumnType.NUMERIC)
+                    : Arrays.stream(ColumnType.values())
+                    .filter(column -> format == FormatCodes.FormatCode.TEXT || column.binary)
+                    .collect(toImmutableList());
+            channel = new EmbeddedChannel();
+            channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+            types = columns.stream().map(column -> column.type).collect(toImmutableList());
+            row = columns.stream().map(column -> column.value).toArray();
+            RecordBatch.Builder builder = RecordBatch.builder(types, ROWS_PER_BATCH);
+            for (int i = 0; i < ROWS_PER_BATCH; i++) {
+                builder.appendRow(row);
+            }
+            batch = builder.build();
+            formatCodes = new FormatCodes.FormatCode[] {format};
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TextColumn
+    {
+        @Param({"BOOLEAN", "SMALLINT", "INTEGER", "BIGINT", "REAL", "DOUBLE", "NUMERIC", "VARCHAR", "DATE", "TIMESTAMP", "INTERVAL", "JSON", "BYTEA", "UUID", "INTEGER_ARRAY", "VARCHAR_ARRAY"})
+        private ColumnType column = ColumnType.BOOLEAN;
+
+        private ByteBuf buffer;
+
+        @Setup
+        public void setup()
+        {
+            buffer = PooledByteBufAllocator.DEFAULT.buffer(1024);
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            buffer.release();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BinaryColumn
+    {
+        @Param({"BOOLEAN", "SMALLINT", "INTEGER", "BIGINT", "REAL", "DOUBLE", "NUMERIC", "VARCHAR", "INTERVAL", "JSON", "BYTEA", "UUID", "INTEGER_ARRAY", "VARCHAR_ARRAY"})
+        private ColumnType column = ColumnType.BOOLEAN;
+
+        private ByteBuf buffer;
+
+        @Setup
+        public void setup()
+        {
+            buffer = PooledByteBufAllocator.DEFAULT.buffer(1024);
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Send a batch of rows and release them, like a result set sender between two flushes.
+     */
+    @Benchmark
+    public int sendDataRows(Rows rows)
+    {
+        for (int i = 0; i < ROWS_PER_BATCH; i++) {
+            Messages.sendDataRow(rows.channel, rows.row, rows.types, rows.formatCodes);
+        }
+        return flush(rows);
+    }
+
+    /**
+     * Send the same rows from a batch of columns.
+     */
+    @Benchmark
+    public int sendDataRowBatch(Rows rows)
+    {
+        for (int position = 0; position < rows.batch.getRowCount(); position++) {
+            Messages.sendDataRow(rows.channel, rows.batch, position, rows.types, rows.formatCodes);
+        }
+        return flush(rows);
+    }
+
+    private static int flush(Rows rows)
+    {
+        rows.channel.flushOutbound();
+        int bytes = 0;
+        Object message;
+        while ((message = rows.channel.readOutbound()) != null) {
+            bytes += ((ByteBuf) message).readableBytes();
+            ReferenceCountUtil.release(message);
+        }
+        return bytes;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Benchmark
+    public int writeAsText(TextColumn state)
+    {
+        state.buffer.clear();
+        return state.column.type.writeAsText(state.buffer, state.column.value);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Benchmark
+    public int writeAsBinary(BinaryColumn state)
+    {
+        state.buffer.clear();
+        return state.column.type.writeAsBinary(state.buffer, state.column.value);
+    }
+
+    @Test
+    public void verify()
+    {
+        for (Schema schema : Schema.values()) {
+            for (FormatCodes.FormatCode format : FormatCodes.FormatCode.values()) {
+                Rows rows = new Rows();
+                rows.schema = schema;
+                rows.format = format;
+                rows.setup();
+                try {
+                    assertThat(sendDataRowBatch(rows)).isEqualTo(sendDataRows(rows));
+                }
+                finally {
+                    rows.tearDown();
+                }
+            }
+        }
+
+        TextColumn text = new TextColumn();
+        BinaryColumn binary = new BinaryColumn();
+        text.setup();
+        binary.setup();
+        try {
+            for (ColumnType column : ColumnType.values()) {
+                text.column = column;
+                assertThat(writeAsText(text)).isPositive();
+                if (column.binary) {
+                    binary.column = column;
+                    assertThat(writeAsBinary(binary)).isPositive();
+                }
+            }
+        }
+        finally {
+            text.tearDown();
+            binary.tearDown();
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*" + BenchmarkDataRow.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
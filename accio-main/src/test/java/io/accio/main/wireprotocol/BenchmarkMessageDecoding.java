@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import io.accio.base.type.BooleanType;
+import io.accio.base.type.DoubleType;
+import io.accio.base.type.PGType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The per message work of the extended query protocol before a query runs: reading the format codes and
+ * the parameters of a Bind message, and splitting a simple query into statements.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkMessageDecoding
+{
+    // the types a client binds most, which can be decoded from both the text and the binary format
+    @SuppressWarnings("rawtypes")
+    private static final List<PGType> PARAMETER_TYPES = List.of(INTEGER, BIGINT, VARCHAR, DoubleType.DOUBLE, BooleanType.BOOLEAN, VARCHAR);
+    private static final List<Object> PARAMETERS = List.of(42, 4_200_000_000L, "accio", 1234.5678, true, "2023-02-12");
+    private static final String QUERIES = "SET search_path = 'accio';\n" +
+            "-- the orders of a customer; a comment with a ; inside\n" +
+            "SELECT o.orderkey, o.totalprice, 'it''s; quoted' AS note FROM \"Orders\" o WHERE o.custkey = 42;\n" +
+            "/* a block comment; with a ; */ SELECT count(*) FROM \"Customer\"";
+
+    @Param({"TEXT", "BINARY"})
+    private FormatCodes.FormatCode format = FormatCodes.FormatCode.TEXT;
+
+    private ByteBuf formatCodes;
+    private ByteBuf parameters;
+    private FormatCodes.FormatCode[] parameterFormatCodes;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setup()
+    {
+        formatCodes = PooledByteBufAllocator.DEFAULT.buffer();
+        formatCodes.writeShort(PARAMETER_TYPES.size());
+        for (int i = 0; i < PARAMETER_TYPES.size(); i++) {
+            formatCodes.writeShort(format.ordinal());
+        }
+
+        parameters = PooledByteBufAllocator.DEFAULT.buffer();
+        parameters.writeShort(PARAMETER_TYPES.size());
+        for (int i = 0; i < PARAMETER_TYPES.size(); i++) {
+            if (format == FormatCodes.FormatCode.TEXT) {
+                PARAMETER_TYPES.get(i).writeAsText(parameters, PARAMETERS.get(i));
+            }
+            else {
+                PARAMETER_TYPES.get(i).writeAsBinary(parameters, PARAMETERS.get(i));
+            }
+        }
+        parameterFormatCodes = new FormatCodes.FormatCode[] {format};
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        formatCodes.release();
+        parameters.release();
+    }
+
+    @Benchmark
+    public FormatCodes.FormatCode[] readFormatCodes()
+    {
+        formatCodes.readerIndex(0);
+        return FormatCodes.fromBuffer(formatCodes);
+    }
+
+    @Benchmark
+    public List<Object> readParameters()
+    {
+        parameters.readerIndex(0);
+        return PostgresWireProtocol.readParameters(parameters, parameterFormatCodes, index -> PARAMETER_TYPES.get(index).oid());
+    }
+
+    @Benchmark
+    public List<String> splitQuery()
+    {
+        return QueryStringSplitter.splitQuery(QUERIES);
+    }
+
+    @Test
+    public void verify()
+    {
+        for (FormatCodes.FormatCode format : FormatCodes.FormatCode.values()) {
+            BenchmarkMessageDecoding benchmark = new BenchmarkMessageDecoding();
+            benchmark.format = format;
+            benchmark.setup();
+            try {
+                assertThat(benchmark.readFormatCodes()).hasSize(PARAMETER_TYPES.size()).containsOnly(format);
+                assertThat(benchmark.readParameters()).isEqualTo(PARAMETERS);
+                assertThat(benchmark.splitQuery()).hasSize(3);
+            }
+            finally {
+                benchmark.tearDown();
+            }
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*" + BenchmarkMessageDecoding.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import io.accio.base.AccioException;
+import io.accio.base.QueryCancellation;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.accio.base.metadata.StandardErrorCode.USER_CANCELED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestCancelRegistry
+{
+    @Test
+    public void testCancel()
+    {
+        CancelRegistry cancelRegistry = new CancelRegistry();
+        QueryCancellation cancellation = new QueryCancellation();
+        AtomicInteger aborted = new AtomicInteger();
+        cancellation.onCancel(aborted::incrementAndGet);
+
+        CancelRegistry.BackendKey key = cancelRegistry.register(cancellation::cancel);
+        CancelRegistry.BackendKey other = cancelRegistry.register(() -> {
+            throw new AssertionError("canceled the wrong connection");
+        });
+        assertThat(key.getProcessId()).isPositive().isNotEqualTo(other.getProcessId());
+
+        assertThat(cancelRegistry.cancel(key.getProcessId(), key.getSecretKey() + 1)).isFalse();
+        assertThat(cancellation.isCanceled()).isFalse();
+
+        assertThat(cancelRegistry.cancel(key.getProcessId(), key.getSecretKey())).isTrue();
+        assertThat(cancelRegistry.cancel(key.getProcessId(), key.getSecretKey())).isTrue();
+        assertThat(aborted).hasValue(1);
+        assertThatThrownBy(cancellation::checkCanceled)
+                .isInstanceOf(AccioException.class)
+                .hasMessage("canceling statement due to user request");
+
+        // registered after the query was canceled
+        cancellation.onCancel(aborted::incrementAndGet);
+        assertThat(aborted).hasValue(2);
+
+        cancelRegistry.unregister(key);
+        assertThat(cancelRegistry.cancel(key.getProcessId(), key.getSecretKey())).isFalse();
+        assertThat(cancelRegistry.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailure()
+    {
+        QueryCancellation cancellation = new QueryCancellation();
+        RuntimeException failure = new RuntimeException("ERROR: canceling statement due to user request");
+        assertThat(cancellation.toFailure(failure)).isSameAs(failure);
+
+        cancellation.onCancel(() -> {
+            throw new IllegalStateException("job not found");
+        });
+        cancellation.cancel();
+        assertThat(cancellation.toFailure(failure))
+                .isInstanceOf(AccioException.class)
+                .hasCause(failure)
+                .extracting(e -> ((AccioException) e).getErrorCode())
+                .isEqualTo(USER_CANCELED.toErrorCode());
+    }
+}
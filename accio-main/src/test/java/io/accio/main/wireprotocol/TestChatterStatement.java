@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import io.accio.base.AccioException;
+import io.accio.base.Column;
+import io.accio.base.ConnectorRecordIterator;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.type.BooleanType.BOOLEAN;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static java.util.Locale.ENGLISH;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class TestChatterStatement
+{
+    private TestingSession session;
+
+    @BeforeMethod
+    public void setup()
+    {
+        session = new TestingSession();
+    }
+
+    @Test
+    public void testNotChatter()
+    {
+        assertThat(ChatterStatement.classify("")).isEmpty();
+        assertThat(ChatterStatement.classify("SELECT 1 + 1")).isEmpty();
+        assertThat(ChatterStatement.classify("SELECT * FROM t")).isEmpty();
+        assertThat(ChatterStatement.classify("SELECT 1 FROM t")).isEmpty();
+        assertThat(ChatterStatement.classify("SELECT a FROM t")).isEmpty();
+        // a keyword of a clause isn't an alias
+        for (String keyword : List.of("from", "INTO", "where", "GROUP", "having", "ORDER", "limit", "OFFSET", "union", "INTERSECT", "except", "WINDOW", "fetch", "FOR")) {
+            assertThat(ChatterStatement.classify("SELECT 1 " + keyword)).isEmpty();
+        }
+        assertThat(ChatterStatement.classify("SELECT 1 limit 1")).isEmpty();
+        assertThat(ChatterStatement.classify("SELECT version")).isEmpty();
+        assertThat(ChatterStatement.classify("SELECT true::int")).isEmpty();
+        assertThat(ChatterStatement.classify("SHOW TABLES")).isEmpty();
+        assertThat(ChatterStatement.classify("show columns from t")).isEmpty();
+        assertThat(ChatterStatement.classify("SET ROLE x")).isEmpty();
+        assertThat(ChatterStatement.classify("SET a")).isEmpty();
+        assertThat(ChatterStatement.classify("BEGINNING")).isEmpty();
+        assertThat(ChatterStatement.classify("selection")).isEmpty();
+    }
+
+    @Test
+    public void testCommands()
+    {
+        assertCommand("BEGIN", "BEGIN");
+        assertCommand("begin;", "BEGIN");
+        assertCommand("COMMIT", "COMMIT");
+        assertCommand("END", "COMMIT");
+        assertCommand("ROLLBACK", "ROLLBACK");
+        assertCommand("ABORT", "ROLLBACK");
+        assertCommand("CLOSE ALL", "CLOSE");
+        assertCommand("UNLISTEN *", "UNLISTEN");
+        assertCommand("DISCARD PLANS", "DISCARD");
+        assertCommand("SET SESSION CHARACTERISTICS AS TRANSACTION ISOLATION LEVEL READ COMMITTED", "SET");
+        assertCommand("SET TRANSACTION READ ONLY", "SET");
+        assertCommand("SET SESSION AUTHORIZATION DEFAULT", "SET");
+        assertCommand("RESET SESSION AUTHORIZATION", "RESET");
+        assertCommand("  -- a comment\n /* another */ COMMIT", "COMMIT");
+    }
+
+    @Test
+    public void testSet()
+    {
+        run("SET application_name = 'DBeaver 22.1'");
+        assertThat(session.getSetting("application_name")).hasValue("DBeaver 22.1");
+
+        run("set SESSION DateStyle TO ISO, MDY");
+        assertThat(session.getSetting("datestyle")).hasValue("ISO, MDY");
+
+        run("SET extra_float_digits = 3");
+        assertThat(session.getSetting("extra_float_digits")).hasValue("3");
+
+        run("SET TIME ZONE 'Asia/Taipei'");
+        assertThat(session.getSetting("timezone")).hasValue("Asia/Taipei");
+
+        run("SET search_path TO \"tpch\", public");
+        assertThat(session.getSetting("search_path")).hasValue("\"tpch\", public");
+
+        // outside a transaction block SET LOCAL does nothing
+        run("SET LOCAL statement_timeout = 0");
+        assertThat(session.getSetting("statement_timeout")).isEmpty();
+
+        assertThat(ChatterStatement.classify("SET application_name = 'x'").orElseThrow().getSetting()).hasValue("application_name");
+    }
+
+    @Test
+    public void testReset()
+    {
+        session.setSetting("application_name", "x");
+        session.setSetting("extra_float_digits", "3");
+        session.setSetting("timezone", "Asia/Taipei");
+
+        run("RESET application_name");
+        assertThat(session.getSetting("application_name")).isEmpty();
+        run("SET extra_float_digits TO DEFAULT");
+        assertThat(session.getSetting("extra_float_digits")).isEmpty();
+        run("SET TIME ZONE LOCAL");
+        assertThat(session.getSetting("timezone")).isEmpty();
+
+        session.setSetting("application_name", "x");
+        run("DISCARD ALL");
+        assertThat(session.getSetting("application_name")).isEmpty();
+        session.setSetting("application_name", "x");
+        run("RESET ALL");
+        assertThat(session.getSetting("application_name")).isEmpty();
+    }
+
+    @Test
+    public void testShow()
+    {
+        session.setSetting("transaction_isolation", "read uncommitted");
+        session.setSetting("timezone", "UTC");
+        assertResult("SHOW transaction_isolation", List.of(new Column("transaction_isolation", VARCHAR)), "read uncommitted");
+        assertResult("SHOW TRANSACTION ISOLATION LEVEL", List.of(new Column("transaction_isolation", VARCHAR)), "read uncommitted");
+        assertResult("show time zone", List.of(new Column("timezone", VARCHAR)), "UTC");
+        assertResult("SHOW TimeZone;", List.of(new Column("timezone", VARCHAR)), "UTC");
+
+        assertThatThrownBy(() -> execute("SHOW unknown"))
+                .isInstanceOf(AccioException.class)
+                .hasMessage("unrecognized configuration parameter \"unknown\"");
+    }
+
+    @Test
+    public void testSelect()
+    {
+        assertResult("SELECT 1", List.of(new Column("?column?", INTEGER)), 1);
+        assertResult("select 'a' AS x, 2 y", List.of(new Column("x", VARCHAR), new Column("y", INTEGER)), "a", 2);
+        assertResult("SELECT true", List.of(new Column("bool", BOOLEAN)), true);
+        assertResult("SELECT 1 \"from\", 2 AS limit, 3 fromage", List.of(new Column("from", INTEGER), new Column("limit", INTEGER), new Column("fromage", INTEGER)), 1, 2, 3);
+        assertResult("SELECT current_user, session_user", List.of(new Column("current_user", VARCHAR), new Column("session_user", VARCHAR)), "canner", "canner");
+        assertResult("SELECT current_database(), current_catalog", List.of(new Column("current_database", VARCHAR), new Column("current_catalog", VARCHAR)), "accio", "accio");
+        assertResult("SELECT current_schema(), pg_catalog.current_schema", List.of(new Column("current_schema", VARCHAR), new Column("current_schema", VARCHAR)), "tpch", "tpch");
+
+        session.setSetting("server_version", "13.0");
+        assertResult("SELECT version()", List.of(new Column("version", VARCHAR)), "PostgreSQL 13.0");
+        assertResult("SELECT current_setting('server_version')", List.of(new Column("current_setting", VARCHAR)), "13.0");
+    }
+
+    private void assertCommand(String statement, String commandTag)
+    {
+        ChatterStatement command = ChatterStatement.classify(statement).orElseThrow();
+        assertThat(command.getCommandTag()).isEqualTo(commandTag);
+        assertThat(command.hasResult()).isFalse();
+        command.run(session);
+    }
+
+    private void run(String statement)
+    {
+        ChatterStatement.classify(statement).orElseThrow().run(session);
+    }
+
+    private Object[] execute(String statement)
+    {
+        try (ConnectorRecordIterator iterator = ChatterStatement.classify(statement).orElseThrow().execute(session)) {
+            Object[] row = iterator.next();
+            assertThat(iterator.hasNext()).isFalse();
+            return row;
+        }
+        catch (Exception e) {
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
+    }
+
+    private void assertResult(String statement, List<Column> columns, Object... values)
+    {
+        assertThat(ChatterStatement.classify(statement).orElseThrow().getColumns())
+                .extracting(Column::getName, Column::getType)
+                .containsExactlyElementsOf(columns.stream().map(column -> tuple(column.getName(), column.getType())).collect(toImmutableList()));
+        assertThat(execute(statement)).containsExactly(values);
+    }
+
+    private static class TestingSession
+            implements ChatterStatement.Session
+    {
+        private final Map<String, String> settings = new HashMap<>();
+
+        @Override
+        public Optional<String> getSetting(String name)
+        {
+            return Optional.ofNullable(settings.get(name.toLowerCase(ENGLISH)));
+        }
+
+        @Override
+        public void setSetting(String name, String value)
+        {
+            settings.put(name.toLowerCase(ENGLISH), value);
+        }
+
+        @Override
+        public void resetSetting(String name)
+        {
+            settings.remove(name.toLowerCase(ENGLISH));
+        }
+
+        @Override
+        public void resetSettings()
+        {
+            settings.clear();
+        }
+
+        @Override
+        public String getClientUser()
+        {
+            return "canner";
+        }
+
+        @Override
+        public String getDefaultDatabase()
+        {
+            return "accio";
+        }
+
+        @Override
+        public String getDefaultSchema()
+        {
+            return "tpch";
+        }
+    }
+}
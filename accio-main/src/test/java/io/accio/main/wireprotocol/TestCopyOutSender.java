@@ -0,0 +1,299 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.accio.main.wireprotocol;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.type.PGType;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestCopyOutSender
+{
+    @Test
+    public void testText()
+    {
+        List<Object[]> rows = ImmutableList.of(
+                new Object[] {1, "a\tb\\c\nd"},
+                new Object[] {2, null});
+        assertThat(copy("COPY (SELECT 1) TO STDOUT", rows))
+                .isEqualTo("1\ta\\tb\\\\c\\nd\n2\t\\N\n");
+        assertThat(copy("COPY (SELECT 1) TO STDOUT (DELIMITER '|', NULL '')", rows))
+                .isEqualTo("1|a\\tb\\\\c\\nd\n2|\n");
+    }
+
+    @Test
+    public void testCsv()
+    {
+        List<Object[]> rows = ImmutableList.of(
+                new Object[] {1, "plain"},
+                new Object[] {2, "a,\"b\""},
+                new Object[] {3, ""},
+                new Object[] {4, null});
+        assertThat(copy("COPY (SELECT 1) TO STDOUT (FORMAT csv, HEADER)", rows))
+                .isEqualTo("id,name\n1,plain\n2,\"a,\"\"b\"\"\"\n3,\"\"\n4,\n");
+    }
+
+    @Test
+    public void testBinary()
+    {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Portal portal = portal(new RecordIterator(ImmutableList.of(new Object[] {7, null})));
+        new CopyOutSender(channel, portal, CopyStatement.parse("COPY (SELECT 1) TO STDOUT BINARY").orElseThrow(), ImmutableList.of(), new WireProtocolStats(), System.nanoTime()).send();
+
+        ByteBuf response = readMessage(channel);
+        assertThat(response.readByte()).isEqualTo((byte) 'H');
+        response.skipBytes(4);
+        assertThat(response.readByte()).isEqualTo((byte) 1);
+        assertThat(response.readShort()).isEqualTo((short) 2);
+        response.release();
+
+        ByteBuf data = readMessage(channel);
+        assertThat(data.readByte()).isEqualTo((byte) 'd');
+        assertThat(data.readInt()).isEqualTo(data.readableBytes() + 4);
+        byte[] signature = new byte[11];
+        data.readBytes(signature);
+        assertThat(signature).isEqualTo(new byte[] {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0});
+        assertThat(data.readInt()).isZero();
+        assertThat(data.readInt()).isZero();
+        assertThat(data.readShort()).isEqualTo((short) 2);
+        assertThat(data.readInt()).isEqualTo(4);
+        assertThat(data.readInt()).isEqualTo(7);
+        assertThat(data.readInt()).isEqualTo(-1);
+        assertThat(data.readShort()).isEqualTo((short) -1);
+        assertThat(data.isReadable()).isFalse();
+        data.release();
+
+        assertThat(readMessage(channel).getByte(0)).isEqualTo((byte) 'c');
+        assertThat(readCommandTag(readMessage(channel))).isEqualTo("COPY 1");
+    }
+
+    @Test
+    public void testChunks()
+    {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        // about 20 bytes a row, so the rows are sent in a few chunks
+        List<Object[]> rows = IntStream.range(0, 10_000)
+                .mapToObj(i -> new Object[] {i, "row_" + i})
+                .collect(toImmutableList());
+        Portal portal = portal(new RecordIterator(rows));
+        WireProtocolStats stats = new WireProtocolStats();
+        new CopyOutSender(channel, portal, CopyStatement.parse("COPY (SELECT 1) TO STDOUT").orElseThrow(), ImmutableList.of(), stats, System.nanoTime()).send();
+
+        readMessage(channel).release();
+        int chunks = 0;
+        long bytes = 0;
+        ByteBuf message = readMessage(channel);
+        while (message.getByte(0) == 'd') {
+            assertThat(message.readableBytes()).isLessThan(CopyOutSender.CHUNK_SIZE + 100);
+            chunks++;
+            bytes += message.readableBytes();
+            message.release();
+            message = readMessage(channel);
+        }
+        message.release();
+        assertThat(chunks).isGreaterThan(1);
+        assertThat(readCommandTag(readMessage(channel))).isEqualTo("COPY 10000");
+        assertThat(portal.getRowCount()).isEqualTo(10_000);
+        assertThat(portal.getByteCount()).isEqualTo(bytes);
+        assertThat(stats.getRowsPerPortal().getAllTime().getMax()).isEqualTo(10_000);
+    }
+
+    @Test
+    public void testBackpressure()
+    {
+        // the client doesn't read the chunks until they are released
+        List<ChannelPromise> unread = new ArrayList<>();
+        AtomicBoolean writable = new AtomicBoolean(false);
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter()
+        {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+            {
+                unread.add(promise);
+                ctx.write(msg);
+            }
+        })
+        {
+            @Override
+            public boolean isWritable()
+            {
+                return writable.get();
+            }
+        };
+        List<Object[]> rows = IntStream.range(0, 10_000)
+                .mapToObj(i -> new Object[] {i, "row_" + i})
+                .collect(toImmutableList());
+        Portal portal = portal(new RecordIterator(rows));
+        CompletableFuture<Long> sent = new CopyOutSender(channel, portal, CopyStatement.parse("COPY (SELECT 1) TO STDOUT").orElseThrow(), ImmutableList.of(), new WireProtocolStats(), System.nanoTime()).send();
+
+        // CopyOutResponse and the first chunk, then the sender waits for the client
+        assertThat(sent).isNotDone();
+        assertThat(unread).hasSize(2);
+        assertThat(channel.config().isAutoRead()).isFalse();
+        readMessage(channel).release();
+        readMessage(channel).release();
+        assertThat((Object) channel.readOutbound()).isNull();
+
+        writable.set(true);
+        // the client read them, the rest is sent right away
+        List.copyOf(unread).forEach(ChannelPromise::setSuccess);
+        assertThat(sent).isCompletedWithValue(10_000L);
+        assertThat(channel.config().isAutoRead()).isTrue();
+        ByteBuf message = readMessage(channel);
+        while (message.getByte(0) == 'd') {
+            message.release();
+            message = readMessage(channel);
+        }
+        message.release();
+        assertThat(readCommandTag(readMessage(channel))).isEqualTo("COPY 10000");
+    }
+
+    @Test
+    public void testClientGone()
+    {
+        List<ChannelPromise> unread = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelOutboundHandlerAdapter()
+        {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+            {
+                unread.add(promise);
+                ctx.write(msg);
+            }
+        })
+        {
+            @Override
+            public boolean isWritable()
+            {
+                return false;
+            }
+        };
+        List<Object[]> rows = IntStream.range(0, 10_000)
+                .mapToObj(i -> new Object[] {i, "row_" + i})
+                .collect(toImmutableList());
+        Portal portal = portal(new RecordIterator(rows));
+        CompletableFuture<Long> sent = new CopyOutSender(channel, portal, CopyStatement.parse("COPY (SELECT 1) TO STDOUT").orElseThrow(), ImmutableList.of(), new WireProtocolStats(), System.nanoTime()).send();
+        assertThat(sent).isNotDone();
+
+        IOException failure = new IOException("Connection reset by peer");
+        List.copyOf(unread).forEach(promise -> promise.setFailure(failure));
+        assertThatThrownBy(sent::join).hasCause(failure);
+        assertThat(portal.getRowCount()).isPositive().isLessThan(10_000);
+        channel.finishAndReleaseAll();
+    }
+
+    private static String copy(String statement, List<Object[]> rows)
+    {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Portal portal = portal(new RecordIterator(rows));
+        CopyStatement copyStatement = CopyStatement.parse(statement).orElseThrow();
+        new CopyOutSender(channel, portal, copyStatement, ImmutableList.of("id", "name"), new WireProtocolStats(), System.nanoTime()).send();
+
+        ByteBuf response = readMessage(channel);
+        assertThat(response.getByte(0)).isEqualTo((byte) 'H');
+        response.release();
+
+        StringBuilder output = new StringBuilder();
+        ByteBuf message = readMessage(channel);
+        while (message.getByte(0) == 'd') {
+            output.append(message.toString(5, message.readableBytes() - 5, UTF_8));
+            message.release();
+            message = readMessage(channel);
+        }
+        assertThat(message.getByte(0)).isEqualTo((byte) 'c');
+        message.release();
+        assertThat(readCommandTag(readMessage(channel))).isEqualTo("COPY " + rows.size());
+        return output.toString();
+    }
+
+    private static Portal portal(ConnectorRecordIterator iterator)
+    {
+        Portal portal = new Portal(new PreparedStatement("", "SELECT 1", ImmutableList.of(), "SELECT 1", false), ImmutableList.of(), null);
+        portal.setResultSetSender(iterator);
+        return portal;
+    }
+
+    private static ByteBuf readMessage(EmbeddedChannel channel)
+    {
+        channel.flushOutbound();
+        Object message = channel.readOutbound();
+        assertThat(message).isNotNull();
+        return (ByteBuf) message;
+    }
+
+    private static String readCommandTag(ByteBuf message)
+    {
+        try {
+            assertThat(message.getByte(0)).isEqualTo((byte) 'C');
+            // type, length and the trailing zero
+            return message.toString(5, message.readableBytes() - 6, UTF_8);
+        }
+        finally {
+            ReferenceCountUtil.release(message);
+        }
+    }
+
+    private static class RecordIterator
+            implements ConnectorRecordIterator
+    {
+        private final Iterator<Object[]> rows;
+
+        private RecordIterator(List<Object[]> rows)
+        {
+            this.rows = rows.iterator();
+        }
+
+        @Override
+        public List<PGType> getTypes()
+        {
+            return ImmutableList.of(INTEGER, VARCHAR);
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return rows.hasNext();
+        }
+
+        @Override
+        public Object[] next()
+        {
+            return rows.next();
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.accio.main.wireprotocol;
+
+import org.testng.annotations.Test;
+
+import static io.accio.main.wireprotocol.CopyStatement.Format.BINARY;
+import static io.accio.main.wireprotocol.CopyStatement.Format.CSV;
+import static io.accio.main.wireprotocol.CopyStatement.Format.TEXT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestCopyStatement
+{
+    @Test
+    public void testNotCopy()
+    {
+        assertThat(CopyStatement.parse("SELECT * FROM copy")).isEmpty();
+        assertThat(CopyStatement.parse("copy_table")).isEmpty();
+    }
+
+    @Test
+    public void testQuery()
+    {
+        CopyStatement copy = CopyStatement.parse("COPY (SELECT a, (b + 1) FROM t WHERE c = ')') TO STDOUT").orElseThrow();
+        assertThat(copy.getQuery()).isEqualTo("SELECT a, (b + 1) FROM t WHERE c = ')'");
+        assertThat(copy.getFormat()).isEqualTo(TEXT);
+        assertThat(copy.getDelimiter()).isEqualTo('\t');
+        assertThat(copy.getNullString()).isEqualTo("\\N");
+        assertThat(copy.isHeader()).isFalse();
+
+        assertThat(CopyStatement.parse("copy(select 1)to stdout;").orElseThrow().getQuery()).isEqualTo("select 1");
+    }
+
+    @Test
+    public void testTable()
+    {
+        assertThat(CopyStatement.parse("COPY orders TO STDOUT").orElseThrow().getQuery()).isEqualTo("SELECT * FROM orders");
+        assertThat(CopyStatement.parse("COPY \"tpch\".orders (orderkey, custkey) TO STDOUT").orElseThrow().getQuery())
+                .isEqualTo("SELECT orderkey, custkey FROM \"tpch\".orders");
+    }
+
+    @Test
+    public void testOptions()
+    {
+        CopyStatement copy = CopyStatement.parse("COPY (SELECT 1) TO STDOUT WITH (FORMAT csv, HEADER, DELIMITER '|', NULL 'null', QUOTE '''');").orElseThrow();
+        assertThat(copy.getFormat()).isEqualTo(CSV);
+        assertThat(copy.isHeader()).isTrue();
+        assertThat(copy.getDelimiter()).isEqualTo('|');
+        assertThat(copy.getNullString()).isEqualTo("null");
+        assertThat(copy.getQuote()).isEqualTo('\'');
+
+        copy = CopyStatement.parse("COPY (SELECT 1) TO STDOUT (FORMAT csv, HEADER false)").orElseThrow();
+        assertThat(copy.isHeader()).isFalse();
+        assertThat(copy.getDelimiter()).isEqualTo(',');
+        assertThat(copy.getNullString()).isEmpty();
+        assertThat(copy.getQuote()).isEqualTo('"');
+
+        assertThat(CopyStatement.parse("COPY (SELECT 1) TO STDOUT (FORMAT binary)").orElseThrow().getFormat()).isEqualTo(BINARY);
+    }
+
+    @Test
+    public void testLegacyOptions()
+    {
+        CopyStatement copy = CopyStatement.parse("COPY (SELECT 1) TO STDOUT WITH CSV HEADER DELIMITER AS ';' NULL 'x';").orElseThrow();
+        assertThat(copy.getFormat()).isEqualTo(CSV);
+        assertThat(copy.isHeader()).isTrue();
+        assertThat(copy.getDelimiter()).isEqualTo(';');
+        assertThat(copy.getNullString()).isEqualTo("x");
+
+        assertThat(CopyStatement.parse("COPY (SELECT 1) TO STDOUT BINARY").orElseThrow().getFormat()).isEqualTo(BINARY);
+    }
+
+    @Test
+    public void testInvalid()
+    {
+        assertThatThrownBy(() -> CopyStatement.parse("COPY orders FROM STDIN"))
+                .hasMessage("Only COPY ... TO STDOUT is supported");
+        assertThatThrownBy(() -> CopyStatement.parse("COPY (SELECT 1) TO '/tmp/orders.csv'"))
+                .hasMessage("Only COPY ... TO STDOUT is supported");
+        assertThatThrownBy(() -> CopyStatement.parse("COPY (SELECT 1) TO STDOUT (FORMAT parquet)"))
+                .hasMessage("COPY format \"parquet\" not recognized");
+        assertThatThrownBy(() -> CopyStatement.parse("COPY (SELECT 1) TO STDOUT (FORMAT binary, HEADER)"))
+                .hasMessage("cannot specify DELIMITER, NULL, HEADER or QUOTE in BINARY mode");
+        assertThatThrownBy(() -> CopyStatement.parse("COPY (SELECT 1) TO STDOUT WITH HEADER"))
+                .hasMessage("COPY HEADER and QUOTE are only available in CSV mode");
+        assertThatThrownBy(() -> CopyStatement.parse("COPY (SELECT 1) TO STDOUT (DELIMITER '||')"))
+                .hasMessage("COPY DELIMITER must be a single one-byte character");
+        assertThatThrownBy(() -> CopyStatement.parse("COPY (SELECT 1) TO STDOUT (FORMAT csv, DELIMITER '\"')"))
+                .hasMessage("COPY delimiter and quote must be different");
+        assertThatThrownBy(() -> CopyStatement.parse("COPY (SELECT 1) TO STDOUT (FREEZE)"))
+                .hasMessage("COPY option FREEZE is not supported");
+    }
+}
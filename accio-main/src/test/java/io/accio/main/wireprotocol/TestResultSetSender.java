@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.type.PGType;
+import io.accio.main.history.QueryInfo;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.testng.annotations.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.base.type.BigIntType.BIGINT;
+import static io.accio.base.type.BooleanType.BOOLEAN;
+import static io.accio.base.type.DoubleType.DOUBLE;
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.SmallIntType.SMALLINT;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static io.accio.main.wireprotocol.QueryProfile.ROW_STREAMING;
+import static io.accio.main.wireprotocol.QueryProfile.TIME_TO_FIRST_ROW;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestResultSetSender
+{
+    @Test
+    public void testStats()
+    {
+        WireProtocolStats stats = new WireProtocolStats();
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Portal portal = new Portal(new PreparedStatement("", "SELECT 1", ImmutableList.of(), "SELECT 1", false), ImmutableList.of(), null);
+        portal.setResultSetSender(new RecordIterator(ImmutableList.of(INTEGER, VARCHAR), 5));
+
+        // the portal is suspended after 2 rows twice, the last execute sends the last row
+        ResultSetSender sender = null;
+        for (int i = 0; i < 3; i++) {
+            assertThat(sender == null || !sender.isCompleted()).isTrue();
+            sender = new ResultSetSender("SELECT 1", channel, portal, 2, null, stats, System.nanoTime());
+            sender.sendResultSet();
+        }
+        assertThat(sender.isCompleted()).isTrue();
+        channel.flushOutbound();
+
+        long dataRowBytes = 0;
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            ByteBuf buffer = (ByteBuf) message;
+            if (buffer.getByte(0) == 'D') {
+                dataRowBytes += buffer.readableBytes();
+            }
+            ReferenceCountUtil.release(message);
+        }
+
+        assertThat(portal.getRowCount()).isEqualTo(5);
+        assertThat(portal.getByteCount()).isEqualTo(dataRowBytes);
+        assertThat(stats.getTimeToFirstRow().getAllTime().getCount()).isEqualTo(1);
+        assertThat(stats.getRowStreaming().getAllTime().getCount()).isEqualTo(3);
+        assertThat(stats.getRowsPerPortal().getAllTime().getCount()).isEqualTo(1);
+        assertThat(stats.getRowsPerPortal().getAllTime().getMax()).isEqualTo(5);
+        assertThat(stats.getBytesPerPortal().getAllTime().getMax()).isEqualTo(dataRowBytes);
+
+        QueryInfo queryInfo = portal.getProfile().complete(portal.getPreparedStatement(), portal.getRowCount(), portal.getByteCount(), Optional.empty());
+        assertThat(queryInfo.getPhases()).containsOnlyKeys(TIME_TO_FIRST_ROW, ROW_STREAMING);
+        assertThat(queryInfo.getRows()).isEqualTo(5);
+        assertThat(queryInfo.getBytes()).isEqualTo(dataRowBytes);
+        assertThat(queryInfo.getError()).isEmpty();
+    }
+
+    @Test
+    public void testBatchEncoding()
+    {
+        List<PGType> types = ImmutableList.of(BIGINT, INTEGER, DOUBLE, BOOLEAN, SMALLINT, VARCHAR);
+        List<Object[]> rows = IntStream.range(0, 2500)
+                .mapToObj(i -> i % 7 == 0
+                        ? new Object[] {null, null, null, null, null, null}
+                        : new Object[] {i * 1_000_000_000L, -i, i / 3.0, i % 2 == 0, (short) i, "row_" + i})
+                .collect(toImmutableList());
+
+        for (FormatCodes.FormatCode format : FormatCodes.FormatCode.values()) {
+            FormatCodes.FormatCode[] formatCodes = {format};
+            EmbeddedChannel expected = new EmbeddedChannel();
+            rows.forEach(row -> Messages.sendDataRow(expected, row, types, formatCodes));
+
+            EmbeddedChannel actual = new EmbeddedChannel();
+            Portal portal = new Portal(new PreparedStatement("", "SELECT 1", ImmutableList.of(), "SELECT 1", false), ImmutableList.of(), null);
+            portal.setResultSetSender(new RecordIterator(types, rows));
+            new ResultSetSender("SELECT 1", actual, portal, 0, formatCodes, new WireProtocolStats(), System.nanoTime()).sendResultSet();
+
+            expected.flushOutbound();
+            actual.flushOutbound();
+            for (int i = 0; i < rows.size(); i++) {
+                ByteBuf expectedRow = expected.readOutbound();
+                ByteBuf actualRow = actual.readOutbound();
+                try {
+                    assertThat(ByteBufUtil.getBytes(actualRow)).isEqualTo(ByteBufUtil.getBytes(expectedRow));
+                }
+                finally {
+                    ReferenceCountUtil.release(expectedRow);
+                    ReferenceCountUtil.release(actualRow);
+                }
+            }
+            assertThat((Object) expected.readOutbound()).isNull();
+            assertThat(portal.getRowCount()).isEqualTo(rows.size());
+            actual.finishAndReleaseAll();
+        }
+    }
+
+    private static class RecordIterator
+            implements ConnectorRecordIterator
+    {
+        private final List<PGType> types;
+        private final Iterator<Object[]> rows;
+
+        private RecordIterator(List<PGType> types, int rowCount)
+        {
+            this(types, IntStream.range(0, rowCount)
+                    .mapToObj(i -> new Object[] {i, "row_" + i})
+                    .collect(toImmutableList()));
+        }
+
+        private RecordIterator(List<PGType> types, List<Object[]> rows)
+        {
+            this.types = types;
+            this.rows = rows.iterator();
+        }
+
+        @Override
+        public List<PGType> getTypes()
+        {
+            return types;
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return rows.hasNext();
+        }
+
+        @Override
+        public Object[] next()
+        {
+            return rows.next();
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.wireprotocol;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.AccioMDL;
+import io.accio.base.Column;
+import io.accio.base.ConnectorRecordIterator;
+import io.accio.base.Parameter;
+import io.accio.base.SessionContext;
+import io.accio.base.client.duckdb.DuckdbClient;
+import io.accio.base.sql.SqlConverter;
+import io.accio.base.type.PGType;
+import io.accio.cache.CacheManager;
+import io.accio.cache.DefaultCachedTableMapping;
+import io.accio.cache.NoCacheService;
+import io.accio.main.TestingMetadata;
+import io.accio.main.history.QueryHistory;
+import io.accio.main.history.QueryHistoryConfig;
+import io.accio.main.pgcatalog.regtype.RegObjectFactory;
+import io.accio.main.pgcatalog.regtype.TestingPgMetadata;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.cache.TestingCacheManager.createCacheManager;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(singleThreaded = true)
+public class TestWireProtocolSession
+{
+    private final CountingSqlConverter sqlConverter = new CountingSqlConverter();
+    private final QueryingMetadata metadata = new QueryingMetadata();
+    private DuckdbClient duckdbClient;
+    private CacheManager cacheManager;
+    private WireProtocolSession session;
+
+    @BeforeMethod
+    public void setup()
+    {
+        sqlConverter.converted.clear();
+        metadata.queries.clear();
+        duckdbClient = new DuckdbClient();
+        DefaultCachedTableMapping cachedTableMapping = new DefaultCachedTableMapping(duckdbClient);
+        cacheManager = createCacheManager(duckdbClient, cachedTableMapping, new NoCacheService());
+        session = new WireProtocolSession(
+                new RegObjectFactory(new TestingPgMetadata()),
+                metadata,
+                sqlConverter,
+                () -> AccioMDL.EMPTY,
+                cacheManager,
+                cachedTableMapping,
+                new WireProtocolStats(),
+                new QueryHistory(new QueryHistoryConfig()));
+        Properties properties = new Properties();
+        properties.setProperty("user", "canner");
+        properties.setProperty("database", "accio");
+        properties.setProperty("search_path", "tpch");
+        session.setProperties(properties);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void cleanup()
+    {
+        cacheManager.stop();
+    }
+
+    @Test
+    public void testConvertOncePerPreparedStatement()
+    {
+        session.parse("stmt", "SELECT orderkey FROM orders WHERE custkey = 1", ImmutableList.of());
+        session.bind("portal1", "stmt", ImmutableList.of(), null);
+        assertThat(session.describePortal("portal1").orElseThrow()).extracting(Column::getName).containsExactly("col");
+        assertThat(session.execute("portal1").join()).isPresent();
+
+        // another portal of the same statement, described and executed again
+        session.bind("portal2", "stmt", ImmutableList.of(), null);
+        assertThat(session.describePortal("portal2")).isPresent();
+        assertThat(session.execute("portal2").join()).isPresent();
+        assertThat(session.execute("portal2").join()).isPresent();
+
+        assertThat(sqlConverter.converted).hasSize(1);
+        assertThat(metadata.queries).hasSize(5).containsOnly(sqlConverter.converted.get(0));
+
+        // parsing the statement again converts the new one
+        session.parse("stmt", "SELECT orderkey FROM orders WHERE custkey = 2", ImmutableList.of());
+        session.bind("portal3", "stmt", ImmutableList.of(), null);
+        assertThat(session.execute("portal3").join()).isPresent();
+        assertThat(sqlConverter.converted).hasSize(2);
+        assertThat(metadata.queries.get(5)).contains("custkey = 2");
+    }
+
+    private static class CountingSqlConverter
+            implements SqlConverter
+    {
+        private final List<String> converted = new ArrayList<>();
+
+        @Override
+        public synchronized String convert(String sql, SessionContext sessionContext)
+        {
+            converted.add(sql);
+            return sql;
+        }
+    }
+
+    private static class QueryingMetadata
+            extends TestingMetadata
+    {
+        private final List<String> queries = new ArrayList<>();
+
+        @Override
+        public String getDefaultCatalog()
+        {
+            return "accio";
+        }
+
+        @Override
+        public synchronized ConnectorRecordIterator directQuery(String sql, List<Parameter> parameters)
+        {
+            queries.add(sql);
+            return new ConnectorRecordIterator()
+            {
+                @Override
+                public List<PGType> getTypes()
+                {
+                    return ImmutableList.of(INTEGER);
+                }
+
+                @Override
+                public boolean hasNext()
+                {
+                    return false;
+                }
+
+                @Override
+                public Object[] next()
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public void close() {}
+            };
+        }
+
+        @Override
+        public synchronized List<Column> describeQuery(String sql, List<Parameter> parameters)
+        {
+            queries.add(sql);
+            return ImmutableList.of(new Column("col", INTEGER));
+        }
+    }
+}
@@ -23,6 +23,7 @@ import io.accio.main.AccioModule;
 import io.accio.main.pgcatalog.PgCatalogManager;
 import io.accio.main.server.Server;
 import io.accio.main.server.module.BigQueryConnectorModule;
+import io.accio.main.server.module.JmxModule;
 import io.accio.main.server.module.PostgresConnectorModule;
 import io.accio.main.server.module.PostgresWireProtocolModule;
 import io.accio.main.server.module.WebModule;
@@ -61,6 +62,7 @@ public class AccioServer
                 new JsonModule(),
                 new JaxrsModule(),
                 new EventModule(),
+                new JmxModule(),
                 new PostgresWireProtocolModule(new EmptyTlsDataProvider()),
                 conditionalModule(AccioConfig.class, config -> config.getDataSourceType().equals(BIGQUERY), new BigQueryConnectorModule()),
                 conditionalModule(AccioConfig.class, config -> config.getDataSourceType().equals(POSTGRES), new PostgresConnectorModule()),
@@ -33,6 +33,7 @@ import io.accio.main.connector.bigquery.BigQueryConfig;
 import io.accio.main.connector.bigquery.BigQueryCredentialsSupplier;
 import io.accio.main.connector.bigquery.BigQueryMetadata;
 import io.accio.main.connector.bigquery.BigQuerySqlConverter;
+import io.accio.main.connector.bigquery.BigQueryStats;
 import io.accio.main.metadata.Metadata;
 import io.accio.main.pgcatalog.builder.BigQueryPgCatalogTableBuilder;
 import io.accio.main.pgcatalog.builder.BigQueryPgFunctionBuilder;
@@ -45,6 +46,7 @@ import io.airlift.configuration.AbstractConfigurationAwareModule;
 import java.util.Optional;
 
 import static io.airlift.configuration.ConfigBinder.configBinder;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class BigQueryConnectorModule
         extends AbstractConfigurationAwareModule
@@ -58,6 +60,8 @@ public class BigQueryConnectorModule
         binder.bind(PgMetadata.class).to(BigQueryPgMetadata.class).in(Scopes.SINGLETON);
         binder.bind(SqlConverter.class).to(BigQuerySqlConverter.class).in(Scopes.SINGLETON);
         configBinder(binder).bindConfig(BigQueryConfig.class);
+        binder.bind(BigQueryStats.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(BigQueryStats.class).withGeneratedName();
 
         binder.bind(CacheService.class).to(BigQueryCacheService.class).in(Scopes.SINGLETON);
     }
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.main.server.module;
+
+import com.google.inject.Binder;
+import io.airlift.configuration.AbstractConfigurationAwareModule;
+import org.weakref.jmx.guice.MBeanModule;
+
+import javax.management.MBeanServer;
+
+import java.lang.management.ManagementFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Exports the objects bound with {@code ExportBinder.newExporter} to an {@link MBeanServer}.
+ */
+public class JmxModule
+        extends AbstractConfigurationAwareModule
+{
+    private final MBeanServer mBeanServer;
+
+    public JmxModule()
+    {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * @param mBeanServer the server to export to; servers sharing a JVM need their own to avoid name clashes
+     */
+    public JmxModule(MBeanServer mBeanServer)
+    {
+        this.mBeanServer = requireNonNull(mBeanServer, "mBeanServer is null");
+    }
+
+    @Override
+    protected void setup(Binder binder)
+    {
+        binder.bind(MBeanServer.class).toInstance(mBeanServer);
+        binder.install(new MBeanModule());
+    }
+}
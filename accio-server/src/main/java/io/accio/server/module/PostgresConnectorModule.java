@@ -20,6 +20,7 @@ import io.accio.base.sql.SqlConverter;
 import io.accio.cache.CacheService;
 import io.accio.connector.postgres.PostgresClient;
 import io.accio.connector.postgres.PostgresConfig;
+import io.accio.main.connector.postgres.PostgresCacheConfig;
 import io.accio.main.connector.postgres.PostgresCacheService;
 import io.accio.main.connector.postgres.PostgresMetadata;
 import io.accio.main.connector.postgres.PostgresSqlConverter;
@@ -48,5 +49,6 @@ public class PostgresConnectorModule
         binder.bind(PgMetadata.class).to(PostgresPgMetadata.class).in(Scopes.SINGLETON);
         binder.bind(CacheService.class).to(PostgresCacheService.class).in(Scopes.SINGLETON);
         configBinder(binder).bindConfig(PostgresConfig.class);
+        configBinder(binder).bindConfig(PostgresCacheConfig.class);
     }
 }
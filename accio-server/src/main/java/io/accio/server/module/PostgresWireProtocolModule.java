@@ -19,16 +19,21 @@ import com.google.inject.Scopes;
 import io.accio.cache.ExtraRewriter;
 import io.accio.main.PostgresNettyProvider;
 import io.accio.main.PostgresWireProtocolConfig;
+import io.accio.main.history.QueryHistory;
+import io.accio.main.history.QueryHistoryConfig;
 import io.accio.main.pgcatalog.PgCatalogManager;
 import io.accio.main.pgcatalog.regtype.RegObjectFactory;
+import io.accio.main.wireprotocol.CancelRegistry;
 import io.accio.main.wireprotocol.PgWireProtocolExtraRewriter;
 import io.accio.main.wireprotocol.PostgresNetty;
+import io.accio.main.wireprotocol.WireProtocolStats;
 import io.accio.main.wireprotocol.ssl.SslContextProvider;
 import io.accio.main.wireprotocol.ssl.TlsDataProvider;
 import io.airlift.configuration.AbstractConfigurationAwareModule;
 import io.trino.sql.parser.SqlParser;
 
 import static io.airlift.configuration.ConfigBinder.configBinder;
+import static org.weakref.jmx.guice.ExportBinder.newExporter;
 
 public class PostgresWireProtocolModule
         extends AbstractConfigurationAwareModule
@@ -49,6 +54,11 @@ public class PostgresWireProtocolModule
         binder.bind(SslContextProvider.class).in(Scopes.SINGLETON);
         binder.bind(PgCatalogManager.class).in(Scopes.SINGLETON);
         binder.bind(RegObjectFactory.class).in((Scopes.SINGLETON));
+        binder.bind(WireProtocolStats.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(WireProtocolStats.class).withGeneratedName();
+        configBinder(binder).bindConfig(QueryHistoryConfig.class);
+        binder.bind(QueryHistory.class).in(Scopes.SINGLETON);
+        binder.bind(CancelRegistry.class).in(Scopes.SINGLETON);
         binder.bind(PostgresNetty.class).toProvider(PostgresNettyProvider.class).in(Scopes.SINGLETON);
 
         // for cache extra rewrite
@@ -17,7 +17,9 @@ package io.accio.main.server.module;
 import com.google.inject.Binder;
 import io.accio.main.web.AccioExceptionMapper;
 import io.accio.main.web.CacheResource;
+import io.accio.main.web.QueryHistoryResource;
 import io.accio.main.web.ReloadResource;
+import io.accio.main.web.StatsResource;
 import io.airlift.configuration.AbstractConfigurationAwareModule;
 
 import static io.airlift.jaxrs.JaxrsBinder.jaxrsBinder;
@@ -30,6 +32,8 @@ public class WebModule
     {
         jaxrsBinder(binder).bind(ReloadResource.class);
         jaxrsBinder(binder).bind(CacheResource.class);
+        jaxrsBinder(binder).bind(QueryHistoryResource.class);
+        jaxrsBinder(binder).bind(StatsResource.class);
         jaxrsBinder(binder).bindInstance(new AccioExceptionMapper());
     }
 }
@@ -65,6 +65,7 @@ import io.trino.sql.tree.Execute;
 import io.trino.sql.tree.ExistsPredicate;
 import io.trino.sql.tree.Explain;
 import io.trino.sql.tree.ExplainOption;
+import io.trino.sql.tree.Expression;
 import io.trino.sql.tree.Extract;
 import io.trino.sql.tree.FetchFirst;
 import io.trino.sql.tree.FieldReference;
@@ -174,17 +175,26 @@ import io.trino.sql.tree.Use;
 import io.trino.sql.tree.Values;
 import io.trino.sql.tree.WhenClause;
 import io.trino.sql.tree.Window;
+import io.trino.sql.tree.WindowDefinition;
 import io.trino.sql.tree.WindowFrame;
 import io.trino.sql.tree.WindowReference;
 import io.trino.sql.tree.WindowSpecification;
 import io.trino.sql.tree.With;
 import io.trino.sql.tree.WithQuery;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 import static java.util.stream.Collectors.toList;
 
+/**
+ * Rewrites a tree bottom-up. A node none of whose children was rewritten is returned as is instead of a copy, so a
+ * rewrite allocates only the nodes on the paths to the nodes it changes, and the caller can tell whether anything
+ * changed with {@code rewritten != node}. Subclasses returning a new node must do so only if they changed it.
+ */
 public class BaseRewriter<T>
         extends AstVisitor<Node, T>
 {
@@ -197,11 +207,15 @@ public class BaseRewriter<T>
     @Override
     protected Node visitCreateTableAsSelect(CreateTableAsSelect node, T context)
     {
+        Query query = visitAndCast(node.getQuery(), context);
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new CreateTableAsSelect(
                     node.getLocation().get(),
                     node.getName(),
-                    visitAndCast(node.getQuery(), context),
+                    query,
                     node.isNotExists(),
                     node.getProperties(),
                     node.isWithData(),
@@ -210,7 +224,7 @@ public class BaseRewriter<T>
         }
         return new CreateTableAsSelect(
                 node.getName(),
-                visitAndCast(node.getQuery(), context),
+                query,
                 node.isNotExists(),
                 node.getProperties(),
                 node.isWithData(),
@@ -221,19 +235,25 @@ public class BaseRewriter<T>
     @Override
     protected Node visitQuery(Query node, T context)
     {
+        Optional<With> with = visitOptional(node.getWith(), context);
+        QueryBody queryBody = visitAndCast(node.getQueryBody(), context);
+        Optional<OrderBy> orderBy = visitOptional(node.getOrderBy(), context);
+        if (with == node.getWith() && queryBody == node.getQueryBody() && orderBy == node.getOrderBy()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Query(
                     node.getLocation().get(),
-                    node.getWith().map(expression -> visitAndCast(expression, context)),
-                    visitAndCast(node.getQueryBody(), context),
-                    node.getOrderBy().map(expression -> visitAndCast(expression, context)),
+                    with,
+                    queryBody,
+                    orderBy,
                     node.getOffset(),
                     node.getLimit());
         }
         return new Query(
-                node.getWith().map(expression -> visitAndCast(expression, context)),
-                visitAndCast(node.getQueryBody(), context),
-                node.getOrderBy().map(expression -> visitAndCast(expression, context)),
+                with,
+                queryBody,
+                orderBy,
                 node.getOffset(),
                 node.getLimit());
     }
@@ -247,24 +267,32 @@ public class BaseRewriter<T>
     @Override
     protected Node visitExtract(Extract node, T context)
     {
+        Expression expression = visitAndCast(node.getExpression(), context);
+        if (expression == node.getExpression()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
-            new Extract(
+            return new Extract(
                     node.getLocation().get(),
-                    visitAndCast(node.getExpression(), context),
+                    expression,
                     node.getField());
         }
-        return new Extract(visitAndCast(node.getExpression(), context), node.getField());
+        return new Extract(expression, node.getField());
     }
 
     @Override
     protected Node visitCoalesceExpression(CoalesceExpression node, T context)
     {
+        List<Expression> operands = visitNodes(node.getOperands(), context);
+        if (operands == node.getOperands()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new CoalesceExpression(
                     node.getLocation().get(),
-                    visitNodes(node.getOperands(), context));
+                    operands);
         }
-        return new CoalesceExpression(visitNodes(node.getOperands(), context));
+        return new CoalesceExpression(operands);
     }
 
     @Override
@@ -294,15 +322,19 @@ public class BaseRewriter<T>
     @Override
     protected Node visitPrepare(Prepare node, T context)
     {
+        Statement statement = visitAndCast(node.getStatement(), context);
+        if (statement == node.getStatement()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Prepare(
                     node.getLocation().get(),
                     node.getName(),
-                    visitAndCast(node.getStatement(), context));
+                    statement);
         }
         return new Prepare(
                 node.getName(),
-                visitAndCast(node.getStatement(), context));
+                statement);
     }
 
     @Override
@@ -314,13 +346,17 @@ public class BaseRewriter<T>
     @Override
     protected Node visitExecute(Execute node, T context)
     {
+        List<Expression> parameters = visitNodes(node.getParameters(), context);
+        if (parameters == node.getParameters()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Execute(
                     node.getLocation().get(),
                     node.getName(),
-                    visitNodes(node.getParameters(), context));
+                    parameters);
         }
-        return new Execute(node.getName(), visitNodes(node.getParameters(), context));
+        return new Execute(node.getName(), parameters);
     }
 
     @Override
@@ -338,47 +374,31 @@ public class BaseRewriter<T>
     @Override
     protected Node visitExplain(Explain node, T context)
     {
+        Statement statement = visitAndCast(node.getStatement(), context);
+        if (statement == node.getStatement()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Explain(
                     node.getLocation().get(),
-                    visitAndCast(node.getStatement(), context),
+                    statement,
                     node.getOptions());
         }
         return new Explain(
-                visitAndCast(node.getStatement(), context),
+                statement,
                 node.getOptions());
     }
 
     @Override
     protected Node visitShowTables(ShowTables node, T context)
     {
-        if (node.getLocation().isPresent()) {
-            return new ShowTables(
-                    node.getLocation().get(),
-                    node.getSchema(),
-                    node.getLikePattern(),
-                    node.getEscape());
-        }
-        return new ShowTables(
-                node.getSchema(),
-                node.getLikePattern(),
-                node.getEscape());
+        return node;
     }
 
     @Override
     protected Node visitShowSchemas(ShowSchemas node, T context)
     {
-        if (node.getLocation().isPresent()) {
-            return new ShowSchemas(
-                    node.getLocation().get(),
-                    node.getCatalog(),
-                    node.getLikePattern(),
-                    node.getEscape());
-        }
-        return new ShowSchemas(
-                node.getCatalog(),
-                node.getLikePattern(),
-                node.getEscape());
+        return node;
     }
 
     @Override
@@ -390,12 +410,16 @@ public class BaseRewriter<T>
     @Override
     protected Node visitShowStats(ShowStats node, T context)
     {
+        Relation relation = visitAndCast(node.getRelation(), context);
+        if (relation == node.getRelation()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ShowStats(
                     node.getLocation(),
-                    visitAndCast(node.getRelation(), context));
+                    relation);
         }
-        return new ShowStats(visitAndCast(node.getRelation(), context));
+        return new ShowStats(relation);
     }
 
     @Override
@@ -503,28 +527,37 @@ public class BaseRewriter<T>
     @Override
     protected Node visitIntersect(Intersect node, T context)
     {
+        List<Relation> relations = visitNodes(node.getRelations(), context);
+        if (relations == node.getRelations()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Intersect(
                     node.getLocation().get(),
-                    visitNodes(node.getRelations(), context),
+                    relations,
                     node.isDistinct());
         }
-        return new Intersect(visitNodes(node.getRelations(), context), node.isDistinct());
+        return new Intersect(relations, node.isDistinct());
     }
 
     @Override
     protected Node visitExcept(Except node, T context)
     {
+        Relation left = visitAndCast(node.getLeft(), context);
+        Relation right = visitAndCast(node.getRight(), context);
+        if (left == node.getLeft() && right == node.getRight()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Except(
                     node.getLocation().get(),
-                    visitAndCast(node.getLeft(), context),
-                    visitAndCast(node.getRight(), context),
+                    left,
+                    right,
                     node.isDistinct());
         }
         return new Except(
-                visitAndCast(node.getLeft(), context),
-                visitAndCast(node.getRight(), context),
+                left,
+                right,
                 node.isDistinct());
     }
 
@@ -537,15 +570,20 @@ public class BaseRewriter<T>
     @Override
     protected Node visitWhenClause(WhenClause node, T context)
     {
+        Expression operand = visitAndCast(node.getOperand(), context);
+        Expression result = visitAndCast(node.getResult(), context);
+        if (operand == node.getOperand() && result == node.getResult()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new WhenClause(
                     node.getLocation().get(),
-                    visitAndCast(node.getOperand(), context),
-                    visitAndCast(node.getResult(), context));
+                    operand,
+                    result);
         }
         return new WhenClause(
-                visitAndCast(node.getOperand(), context),
-                visitAndCast(node.getResult(), context));
+                operand,
+                result);
     }
 
     @Override
@@ -557,31 +595,41 @@ public class BaseRewriter<T>
     @Override
     protected Node visitLambdaExpression(LambdaExpression node, T context)
     {
+        Expression body = visitAndCast(node.getBody(), context);
+        if (body == node.getBody()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new LambdaExpression(
                     node.getLocation().get(),
                     node.getArguments(),
-                    visitAndCast(node.getBody(), context));
+                    body);
         }
         return new LambdaExpression(
                 node.getArguments(),
-                visitAndCast(node.getBody(), context));
+                body);
     }
 
     @Override
     protected Node visitSimpleCaseExpression(SimpleCaseExpression node, T context)
     {
+        Expression operand = visitAndCast(node.getOperand(), context);
+        List<WhenClause> whenClauses = visitNodes(node.getWhenClauses(), context);
+        Optional<Expression> defaultValue = visitOptional(node.getDefaultValue(), context);
+        if (operand == node.getOperand() && whenClauses == node.getWhenClauses() && defaultValue == node.getDefaultValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SimpleCaseExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getOperand(), context),
-                    visitNodes(node.getWhenClauses(), context),
-                    node.getDefaultValue().map(expression -> visitAndCast(expression, context)));
+                    operand,
+                    whenClauses,
+                    defaultValue);
         }
         return new SimpleCaseExpression(
-                visitAndCast(node.getOperand(), context),
-                visitNodes(node.getWhenClauses(), context),
-                node.getDefaultValue().map(expression -> visitAndCast(expression, context)));
+                operand,
+                whenClauses,
+                defaultValue);
     }
 
     @Override
@@ -611,12 +659,16 @@ public class BaseRewriter<T>
     @Override
     protected Node visitInListExpression(InListExpression node, T context)
     {
+        List<Expression> values = visitNodes(node.getValues(), context);
+        if (values == node.getValues()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new InListExpression(
                     node.getLocation().get(),
-                    visitNodes(node.getValues(), context));
+                    values);
         }
-        return new InListExpression(visitNodes(node.getValues(), context));
+        return new InListExpression(values);
     }
 
     @Override
@@ -628,31 +680,42 @@ public class BaseRewriter<T>
     @Override
     protected Node visitNullIfExpression(NullIfExpression node, T context)
     {
+        Expression first = visitAndCast(node.getFirst(), context);
+        Expression second = visitAndCast(node.getSecond(), context);
+        if (first == node.getFirst() && second == node.getSecond()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new NullIfExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getFirst(), context),
-                    visitAndCast(node.getSecond(), context));
+                    first,
+                    second);
         }
         return new NullIfExpression(
-                visitAndCast(node.getFirst(), context),
-                visitAndCast(node.getSecond(), context));
+                first,
+                second);
     }
 
     @Override
     protected Node visitIfExpression(IfExpression node, T context)
     {
+        Expression condition = visitAndCast(node.getCondition(), context);
+        Expression trueValue = visitAndCast(node.getTrueValue(), context);
+        Optional<Expression> falseValue = visitOptional(node.getFalseValue(), context);
+        if (condition == node.getCondition() && trueValue == node.getTrueValue() && falseValue == node.getFalseValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new IfExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getCondition(), context),
-                    visitAndCast(node.getTrueValue(), context),
-                    node.getFalseValue().map(expression -> visitAndCast(expression, context)).orElse(null));
+                    condition,
+                    trueValue,
+                    falseValue.orElse(null));
         }
         return new IfExpression(
-                visitAndCast(node.getCondition(), context),
-                visitAndCast(node.getTrueValue(), context),
-                node.getFalseValue().map(expression -> visitAndCast(expression, context)).orElse(null));
+                condition,
+                trueValue,
+                falseValue.orElse(null));
     }
 
     @Override
@@ -664,13 +727,17 @@ public class BaseRewriter<T>
     @Override
     protected Node visitArithmeticUnary(ArithmeticUnaryExpression node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ArithmeticUnaryExpression(
                     node.getLocation().get(),
                     node.getSign(),
-                    visitAndCast(node.getValue(), context));
+                    value);
         }
-        return new ArithmeticUnaryExpression(node.getSign(), visitAndCast(node.getValue(), context));
+        return new ArithmeticUnaryExpression(node.getSign(), value);
     }
 
     @Override
@@ -688,90 +755,122 @@ public class BaseRewriter<T>
     @Override
     protected Node visitSearchedCaseExpression(SearchedCaseExpression node, T context)
     {
+        List<WhenClause> whenClauses = visitNodes(node.getWhenClauses(), context);
+        Optional<Expression> defaultValue = visitOptional(node.getDefaultValue(), context);
+        if (whenClauses == node.getWhenClauses() && defaultValue == node.getDefaultValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SearchedCaseExpression(
                     node.getLocation().get(),
-                    visitNodes(node.getWhenClauses(), context),
-                    node.getDefaultValue().map(expression -> visitAndCast(expression, context)));
+                    whenClauses,
+                    defaultValue);
         }
         return new SearchedCaseExpression(
-                visitNodes(node.getWhenClauses(), context),
-                node.getDefaultValue().map(expression -> visitAndCast(expression, context)));
+                whenClauses,
+                defaultValue);
     }
 
     @Override
     protected Node visitLikePredicate(LikePredicate node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        Expression pattern = visitAndCast(node.getPattern(), context);
+        Optional<Expression> escape = visitOptional(node.getEscape(), context);
+        if (value == node.getValue() && pattern == node.getPattern() && escape == node.getEscape()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new LikePredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue(), context),
-                    visitAndCast(node.getPattern(), context),
-                    node.getEscape().map(expression -> visitAndCast(expression, context)));
+                    value,
+                    pattern,
+                    escape);
         }
         return new LikePredicate(
-                visitAndCast(node.getValue(), context),
-                visitAndCast(node.getPattern(), context),
-                node.getEscape().map(expression -> visitAndCast(expression, context)));
+                value,
+                pattern,
+                escape);
     }
 
     @Override
     protected Node visitIsNotNullPredicate(IsNotNullPredicate node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new IsNotNullPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue(), context));
+                    value);
         }
-        return new IsNotNullPredicate(visitAndCast(node.getValue(), context));
+        return new IsNotNullPredicate(value);
     }
 
     @Override
     protected Node visitIsNullPredicate(IsNullPredicate node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new IsNullPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue(), context));
+                    value);
         }
-        return new IsNullPredicate(visitAndCast(node.getValue(), context));
+        return new IsNullPredicate(value);
     }
 
     @Override
     protected Node visitArrayConstructor(ArrayConstructor node, T context)
     {
+        List<Expression> values = visitNodes(node.getValues(), context);
+        if (values == node.getValues()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ArrayConstructor(
                     node.getLocation().get(),
-                    visitNodes(node.getValues(), context));
+                    values);
         }
-        return new ArrayConstructor(visitNodes(node.getValues(), context));
+        return new ArrayConstructor(values);
     }
 
     @Override
     protected Node visitLogicalExpression(LogicalExpression node, T context)
     {
+        List<Expression> terms = visitNodes(node.getTerms(), context);
+        if (terms == node.getTerms()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new LogicalExpression(
                     node.getLocation().get(),
                     node.getOperator(),
-                    visitNodes(node.getTerms(), context));
+                    terms);
         }
         return new LogicalExpression(
                 node.getOperator(),
-                visitNodes(node.getTerms(), context));
+                terms);
     }
 
     @Override
     protected Node visitSubscriptExpression(SubscriptExpression node, T context)
     {
+        Expression base = visitAndCast(node.getBase(), context);
+        Expression index = visitAndCast(node.getIndex(), context);
+        if (base == node.getBase() && index == node.getIndex()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SubscriptExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getBase(), context),
-                    visitAndCast(node.getIndex(), context));
+                    base,
+                    index);
         }
-        return new SubscriptExpression(visitAndCast(node.getBase(), context), visitAndCast(node.getIndex(), context));
+        return new SubscriptExpression(base, index);
     }
 
     @Override
@@ -789,98 +888,125 @@ public class BaseRewriter<T>
     @Override
     protected Node visitUnnest(Unnest node, T context)
     {
+        List<Expression> expressions = visitNodes(node.getExpressions(), context);
+        if (expressions == node.getExpressions()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Unnest(
                     node.getLocation().get(),
-                    visitNodes(node.getExpressions(), context),
+                    expressions,
                     node.isWithOrdinality());
         }
-        return new Unnest(visitNodes(node.getExpressions(), context), node.isWithOrdinality());
+        return new Unnest(expressions, node.isWithOrdinality());
     }
 
     @Override
     protected Node visitFunctionRelation(FunctionRelation node, T context)
     {
-        return new FunctionRelation(
-                node.getLocation().orElse(null),
-                node.getName(),
-                node.getArguments());
+        return node;
     }
 
     @Override
     protected Node visitLateral(Lateral node, T context)
     {
+        Query query = visitAndCast(node.getQuery(), context);
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Lateral(
                     node.getLocation().get(),
-                    visitAndCast(node.getQuery(), context));
+                    query);
         }
-        return new Lateral(visitAndCast(node.getQuery(), context));
+        return new Lateral(query);
     }
 
     @Override
     protected Node visitValues(Values node, T context)
     {
+        List<Expression> rows = visitNodes(node.getRows(), context);
+        if (rows == node.getRows()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Values(
                     node.getLocation().get(),
-                    visitNodes(node.getRows(), context));
+                    rows);
         }
-        return new Values(visitNodes(node.getRows(), context));
+        return new Values(rows);
     }
 
     @Override
     protected Node visitRow(Row node, T context)
     {
+        List<Expression> items = visitNodes(node.getItems(), context);
+        if (items == node.getItems()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Row(
                     node.getLocation().get(),
-                    visitNodes(node.getItems(), context));
+                    items);
         }
-        return new Row(visitNodes(node.getItems(), context));
+        return new Row(items);
     }
 
     @Override
     protected Node visitSampledRelation(SampledRelation node, T context)
     {
+        Relation relation = visitAndCast(node.getRelation(), context);
+        Expression samplePercentage = visitAndCast(node.getSamplePercentage(), context);
+        if (relation == node.getRelation() && samplePercentage == node.getSamplePercentage()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SampledRelation(
                     node.getLocation().get(),
-                    visitAndCast(node.getRelation(), context),
+                    relation,
                     node.getType(),
-                    visitAndCast(node.getSamplePercentage(), context));
+                    samplePercentage);
         }
         return new SampledRelation(
-                visitAndCast(node.getRelation(), context),
+                relation,
                 node.getType(),
-                visitAndCast(node.getSamplePercentage(), context));
+                samplePercentage);
     }
 
     @Override
     protected Node visitTryExpression(TryExpression node, T context)
     {
+        Expression innerExpression = visitAndCast(node.getInnerExpression(), context);
+        if (innerExpression == node.getInnerExpression()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new TryExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getInnerExpression(), context));
+                    innerExpression);
         }
-        return new TryExpression(visitAndCast(node.getInnerExpression(), context));
+        return new TryExpression(innerExpression);
     }
 
     @Override
     protected Node visitCast(Cast node, T context)
     {
+        Expression expression = visitAndCast(node.getExpression(), context);
+        DataType type = visitAndCast(node.getType(), context);
+        if (expression == node.getExpression() && type == node.getType()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Cast(
                     node.getLocation().get(),
-                    visitAndCast(node.getExpression(), context),
-                    visitAndCast(node.getType(), context),
+                    expression,
+                    type,
                     node.isSafe(),
                     node.isTypeOnly());
         }
         return new Cast(
-                visitAndCast(node.getExpression(), context),
-                visitAndCast(node.getType(), context),
+                expression,
+                type,
                 node.isSafe(),
                 node.isTypeOnly());
     }
@@ -894,30 +1020,40 @@ public class BaseRewriter<T>
     @Override
     protected Node visitWindowSpecification(WindowSpecification node, T context)
     {
+        List<Expression> partitionBy = visitNodes(node.getPartitionBy(), context);
+        Optional<WindowFrame> frame = visitOptional(node.getFrame(), context);
+        if (partitionBy == node.getPartitionBy() && frame == node.getFrame()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new WindowSpecification(
                     node.getLocation().get(),
                     node.getExistingWindowName(),
-                    visitNodes(node.getPartitionBy(), context),
+                    partitionBy,
                     node.getOrderBy(),
-                    node.getFrame().map(expression -> visitAndCast(expression, context)));
+                    frame);
         }
         return new WindowSpecification(
                 node.getExistingWindowName(),
-                visitNodes(node.getPartitionBy(), context),
+                partitionBy,
                 node.getOrderBy(),
-                node.getFrame().map(expression -> visitAndCast(expression, context)));
+                frame);
     }
 
     @Override
     protected Node visitWindowFrame(WindowFrame node, T context)
     {
+        FrameBound start = visitAndCast(node.getStart(), context);
+        Optional<FrameBound> end = visitOptional(node.getEnd(), context);
+        if (start == node.getStart() && end == node.getEnd()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new WindowFrame(
                     node.getLocation().get(),
                     node.getType(),
-                    visitAndCast(node.getStart(), context),
-                    node.getEnd().map(expression -> visitAndCast(expression, context)),
+                    start,
+                    end,
                     node.getMeasures(),
                     node.getAfterMatchSkipTo(),
                     node.getPatternSearchMode(),
@@ -927,8 +1063,8 @@ public class BaseRewriter<T>
         }
         return new WindowFrame(
                 node.getType(),
-                visitAndCast(node.getStart(), context),
-                node.getEnd().map(expression -> visitAndCast(expression, context)),
+                start,
+                end,
                 node.getMeasures(),
                 node.getAfterMatchSkipTo(),
                 node.getPatternSearchMode(),
@@ -940,24 +1076,32 @@ public class BaseRewriter<T>
     @Override
     protected Node visitFrameBound(FrameBound node, T context)
     {
+        Optional<Expression> value = visitOptional(node.getValue(), context);
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new FrameBound(
                     node.getLocation().get(),
                     node.getType(),
-                    node.getValue().map(expression -> visitAndCast(expression, context)).orElse(null));
+                    value.orElse(null));
         }
         return new FrameBound(
                 node.getType(),
-                node.getValue().map(expression -> visitAndCast(expression, context)).orElse(null));
+                value.orElse(null));
     }
 
     @Override
     protected Node visitCallArgument(CallArgument node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        if (value == node.getValue()) {
+            return node;
+        }
         return new CallArgument(
                 node.getLocation(),
                 node.getName(),
-                visitAndCast(node.getValue(), context));
+                value);
     }
 
     @Override
@@ -1053,18 +1197,22 @@ public class BaseRewriter<T>
     @Override
     protected Node visitCreateView(CreateView node, T context)
     {
+        Query query = visitAndCast(node.getQuery(), context);
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new CreateView(
                     node.getLocation().get(),
                     node.getName(),
-                    visitAndCast(node.getQuery(), context),
+                    query,
                     node.isReplace(),
                     node.getComment(),
                     node.getSecurity());
         }
         return new CreateView(
                 node.getName(),
-                visitAndCast(node.getQuery(), context),
+                query,
                 node.isReplace(),
                 node.getComment(),
                 node.getSecurity());
@@ -1085,27 +1233,36 @@ public class BaseRewriter<T>
     @Override
     protected Node visitCall(Call node, T context)
     {
+        List<CallArgument> arguments = visitNodes(node.getArguments(), context);
+        if (arguments == node.getArguments()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Call(
                     node.getLocation().get(),
                     node.getName(),
-                    visitNodes(node.getArguments(), context));
+                    arguments);
         }
-        return new Call(node.getName(), visitNodes(node.getArguments(), context));
+        return new Call(node.getName(), arguments);
     }
 
     @Override
     protected Node visitDelete(Delete node, T context)
     {
+        Table table = visitAndCast(node.getTable(), context);
+        Optional<Expression> where = visitOptional(node.getWhere(), context);
+        if (table == node.getTable() && where == node.getWhere()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Delete(
                     node.getLocation().get(),
-                    visitAndCast(node.getTable(), context),
-                    node.getWhere().map(expression -> visitAndCast(expression, context)));
+                    table,
+                    where);
         }
         return new Delete(
-                visitAndCast(node.getTable(), context),
-                node.getWhere().map(expression -> visitAndCast(expression, context)));
+                table,
+                where);
     }
 
     @Override
@@ -1243,19 +1400,24 @@ public class BaseRewriter<T>
     @Override
     protected Node visitQuantifiedComparisonExpression(QuantifiedComparisonExpression node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        Expression subquery = visitAndCast(node.getSubquery(), context);
+        if (value == node.getValue() && subquery == node.getSubquery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new QuantifiedComparisonExpression(
                     node.getLocation().get(),
                     node.getOperator(),
                     node.getQuantifier(),
-                    visitAndCast(node.getValue(), context),
-                    visitAndCast(node.getSubquery(), context));
+                    value,
+                    subquery);
         }
         return new QuantifiedComparisonExpression(
                 node.getOperator(),
                 node.getQuantifier(),
-                visitAndCast(node.getValue(), context),
-                visitAndCast(node.getSubquery(), context));
+                value,
+                subquery);
     }
 
     @Override
@@ -1267,13 +1429,18 @@ public class BaseRewriter<T>
     @Override
     protected Node visitBindExpression(BindExpression node, T context)
     {
+        List<Expression> values = visitNodes(node.getValues(), context);
+        Expression function = visitAndCast(node.getFunction(), context);
+        if (values == node.getValues() && function == node.getFunction()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new BindExpression(
                     node.getLocation().get(),
-                    visitNodes(node.getValues(), context),
-                    visitAndCast(node.getFunction(), context));
+                    values,
+                    function);
         }
-        return new BindExpression(visitNodes(node.getValues(), context), visitAndCast(node.getFunction(), context));
+        return new BindExpression(values, function);
     }
 
     @Override
@@ -1297,12 +1464,16 @@ public class BaseRewriter<T>
     @Override
     protected Node visitFormat(Format node, T context)
     {
+        List<Expression> arguments = visitNodes(node.getArguments(), context);
+        if (arguments == node.getArguments()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Format(
                     node.getLocation().get(),
-                    visitNodes(node.getArguments(), context));
+                    arguments);
         }
-        return new Format(visitNodes(node.getArguments(), context));
+        return new Format(arguments);
     }
 
     @Override
@@ -1362,129 +1533,180 @@ public class BaseRewriter<T>
     @Override
     protected Node visitInPredicate(InPredicate node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        Expression valueList = visitAndCast(node.getValueList(), context);
+        if (value == node.getValue() && valueList == node.getValueList()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new InPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue(), context),
-                    visitAndCast(node.getValueList(), context));
+                    value,
+                    valueList);
         }
         return new InPredicate(
-                visitAndCast(node.getValue(), context),
-                visitAndCast(node.getValueList(), context));
+                value,
+                valueList);
     }
 
     @Override
     protected Node visitComparisonExpression(ComparisonExpression node, T context)
     {
+        Expression left = visitAndCast(node.getLeft(), context);
+        Expression right = visitAndCast(node.getRight(), context);
+        if (left == node.getLeft() && right == node.getRight()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ComparisonExpression(
                     node.getLocation().get(),
                     node.getOperator(),
-                    visitAndCast(node.getLeft(), context),
-                    visitAndCast(node.getRight(), context));
+                    left,
+                    right);
         }
         return new ComparisonExpression(
                 node.getOperator(),
-                visitAndCast(node.getLeft(), context),
-                visitAndCast(node.getRight(), context));
+                left,
+                right);
     }
 
     @Override
     protected Node visitExists(ExistsPredicate node, T context)
     {
+        Expression subquery = visitAndCast(node.getSubquery(), context);
+        if (subquery == node.getSubquery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ExistsPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getSubquery(), context));
+                    subquery);
         }
-        return new ExistsPredicate(visitAndCast(node.getSubquery(), context));
+        return new ExistsPredicate(subquery);
     }
 
     @Override
     protected Node visitNotExpression(NotExpression node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        if (value == node.getValue()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new NotExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue(), context));
+                    value);
         }
-        return new NotExpression(visitAndCast(node.getValue(), context));
+        return new NotExpression(value);
     }
 
     @Override
     protected Node visitArithmeticBinary(ArithmeticBinaryExpression node, T context)
     {
+        Expression left = visitAndCast(node.getLeft(), context);
+        Expression right = visitAndCast(node.getRight(), context);
+        if (left == node.getLeft() && right == node.getRight()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new ArithmeticBinaryExpression(
                     node.getLocation().get(),
                     node.getOperator(),
-                    visitAndCast(node.getLeft(), context),
-                    visitAndCast(node.getRight(), context));
+                    left,
+                    right);
         }
         return new ArithmeticBinaryExpression(
                 node.getOperator(),
-                visitAndCast(node.getLeft(), context),
-                visitAndCast(node.getRight(), context));
+                left,
+                right);
     }
 
     @Override
     protected Node visitBetweenPredicate(BetweenPredicate node, T context)
     {
+        Expression value = visitAndCast(node.getValue(), context);
+        Expression min = visitAndCast(node.getMin(), context);
+        Expression max = visitAndCast(node.getMax(), context);
+        if (value == node.getValue() && min == node.getMin() && max == node.getMax()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new BetweenPredicate(
                     node.getLocation().get(),
-                    visitAndCast(node.getValue(), context),
-                    visitAndCast(node.getMin(), context),
-                    visitAndCast(node.getMax(), context));
+                    value,
+                    min,
+                    max);
         }
         return new BetweenPredicate(
-                visitAndCast(node.getValue(), context),
-                visitAndCast(node.getMin(), context),
-                visitAndCast(node.getMax(), context));
+                value,
+                min,
+                max);
     }
 
     @Override
     protected Node visitFunctionCall(FunctionCall node, T context)
     {
+        Optional<Window> window = rewriteOptional(node.getWindow(), value -> visitAndCast(value, context));
+        Optional<Expression> filter = visitOptional(node.getFilter(), context);
+        Optional<OrderBy> orderBy = visitOptional(node.getOrderBy(), context);
+        List<Expression> arguments = visitNodes(node.getArguments(), context);
+        if (window == node.getWindow() && filter == node.getFilter() && orderBy == node.getOrderBy() && arguments == node.getArguments()) {
+            return node;
+        }
         return new FunctionCall(
                 node.getLocation(),
                 node.getName(),
-                node.getWindow().map(expression -> visitAndCast(expression, context)),
-                node.getFilter().map(expression -> visitAndCast(expression, context)),
-                node.getOrderBy().map(expression -> visitAndCast(expression, context)),
+                window,
+                filter,
+                orderBy,
                 node.isDistinct(),
                 node.getNullTreatment(),
-                Optional.empty(),
-                visitNodes(node.getArguments(), context));
+                node.getProcessingMode(),
+                arguments);
     }
 
     @Override
     protected Node visitQuerySpecification(QuerySpecification node, T context)
     {
         // Relations should be visited first for alias.
-        Optional<Relation> from = node.getFrom().map(expression -> visitAndCast(expression, context));
+        Optional<Relation> from = visitOptional(node.getFrom(), context);
+        Select select = visitAndCast(node.getSelect(), context);
+        Optional<Expression> where = visitOptional(node.getWhere(), context);
+        Optional<GroupBy> groupBy = visitOptional(node.getGroupBy(), context);
+        Optional<Expression> having = visitOptional(node.getHaving(), context);
+        List<WindowDefinition> windows = visitNodes(node.getWindows(), context);
+        Optional<OrderBy> orderBy = visitOptional(node.getOrderBy(), context);
+        if (from == node.getFrom()
+                && select == node.getSelect()
+                && where == node.getWhere()
+                && groupBy == node.getGroupBy()
+                && having == node.getHaving()
+                && windows == node.getWindows()
+                && orderBy == node.getOrderBy()) {
+            return node;
+        }
 
         if (node.getLocation().isPresent()) {
             return new QuerySpecification(
                     node.getLocation().get(),
-                    visitAndCast(node.getSelect(), context),
+                    select,
                     from,
-                    node.getWhere().map(expression -> visitAndCast(expression, context)),
-                    node.getGroupBy().map(expression -> visitAndCast(expression, context)),
-                    node.getHaving().map(expression -> visitAndCast(expression, context)),
-                    visitNodes(node.getWindows(), context),
-                    node.getOrderBy().map(expression -> visitAndCast(expression, context)),
+                    where,
+                    groupBy,
+                    having,
+                    windows,
+                    orderBy,
                     node.getOffset(),
                     node.getLimit());
         }
         return new QuerySpecification(
-                visitAndCast(node.getSelect(), context),
+                select,
                 from,
-                node.getWhere().map(expression -> visitAndCast(expression, context)),
-                node.getGroupBy().map(expression -> visitAndCast(expression, context)),
-                node.getHaving().map(expression -> visitAndCast(expression, context)),
-                visitNodes(node.getWindows(), context),
-                node.getOrderBy().map(expression -> visitAndCast(expression, context)),
+                where,
+                groupBy,
+                having,
+                windows,
+                orderBy,
                 node.getOffset(),
                 node.getLimit());
     }
@@ -1506,43 +1728,55 @@ public class BaseRewriter<T>
     @Override
     protected Node visitJoin(Join node, T context)
     {
+        Relation left = visitAndCast(node.getLeft(), context);
+        Relation right = visitAndCast(node.getRight(), context);
+        Optional<JoinCriteria> criteria = rewriteOptional(node.getCriteria(), joinCriteria -> visitJoinCriteria(joinCriteria, context));
+        if (left == node.getLeft() && right == node.getRight() && criteria == node.getCriteria()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Join(
                     node.getLocation().get(),
                     node.getType(),
-                    visitAndCast(node.getLeft(), context),
-                    visitAndCast(node.getRight(), context),
-                    node.getCriteria().map(joinCriteria -> visitJoinCriteria(joinCriteria, context)));
+                    left,
+                    right,
+                    criteria);
         }
         return new Join(
                 node.getType(),
-                visitAndCast(node.getLeft(), context),
-                visitAndCast(node.getRight(), context),
-                node.getCriteria().map(joinCriteria -> visitJoinCriteria(joinCriteria, context)));
+                left,
+                right,
+                criteria);
     }
 
     protected JoinCriteria visitJoinCriteria(JoinCriteria joinCriteria, T context)
     {
         if (joinCriteria instanceof JoinOn) {
             JoinOn joinOn = (JoinOn) joinCriteria;
-            return new JoinOn(visitAndCast(joinOn.getExpression(), context));
+            Expression expression = visitAndCast(joinOn.getExpression(), context);
+            if (expression != joinOn.getExpression()) {
+                return new JoinOn(expression);
+            }
         }
-
         return joinCriteria;
     }
 
     @Override
     protected Node visitAliasedRelation(AliasedRelation node, T context)
     {
+        Relation relation = visitAndCast(node.getRelation(), context);
+        if (relation == node.getRelation()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new AliasedRelation(
                     node.getLocation().get(),
-                    visitAndCast(node.getRelation(), context),
+                    relation,
                     node.getAlias(),
                     node.getColumnNames());
         }
         return new AliasedRelation(
-                visitAndCast(node.getRelation(), context),
+                relation,
                 node.getAlias(),
                 node.getColumnNames());
     }
@@ -1550,167 +1784,216 @@ public class BaseRewriter<T>
     @Override
     protected Node visitSubqueryExpression(SubqueryExpression node, T context)
     {
+        Query query = visitAndCast(node.getQuery(), context);
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SubqueryExpression(
                     node.getLocation().get(),
-                    visitAndCast(node.getQuery(), context));
+                    query);
         }
-        return new SubqueryExpression(visitAndCast(node.getQuery(), context));
+        return new SubqueryExpression(query);
     }
 
     @Override
     protected Node visitTableSubquery(TableSubquery node, T context)
     {
+        Query query = visitAndCast(node.getQuery(), context);
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new TableSubquery(
                     node.getLocation().get(),
-                    visitAndCast(node.getQuery(), context));
+                    query);
         }
-        return new TableSubquery(visitAndCast(node.getQuery(), context));
+        return new TableSubquery(query);
     }
 
     @Override
     protected Node visitWith(With node, T context)
     {
+        List<WithQuery> queries = visitNodes(node.getQueries(), context);
+        if (queries == node.getQueries()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new With(
                     node.getLocation().get(),
                     node.isRecursive(),
-                    visitNodes(node.getQueries(), context));
+                    queries);
         }
         return new With(
                 node.isRecursive(),
-                visitNodes(node.getQueries(), context));
+                queries);
     }
 
     @Override
     protected Node visitWithQuery(WithQuery node, T context)
     {
+        Query query = visitAndCast(node.getQuery(), context);
+        if (query == node.getQuery()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new WithQuery(
                     node.getLocation().get(),
                     node.getName(),
-                    visitAndCast(node.getQuery(), context),
+                    query,
                     node.getColumnNames());
         }
         return new WithQuery(
                 node.getName(),
-                visitAndCast(node.getQuery(), context),
+                query,
                 node.getColumnNames());
     }
 
     @Override
     protected Node visitUnion(Union node, T context)
     {
+        List<Relation> relations = visitNodes(node.getRelations(), context);
+        if (relations == node.getRelations()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Union(
                     node.getLocation().get(),
-                    visitNodes(node.getRelations(), context),
+                    relations,
                     node.isDistinct());
         }
         return new Union(
-                visitNodes(node.getRelations(), context),
+                relations,
                 node.isDistinct());
     }
 
     @Override
     protected Node visitSelect(Select node, T context)
     {
+        List<SelectItem> selectItems = visitNodes(node.getSelectItems(), context);
+        if (selectItems == node.getSelectItems()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Select(
                     node.getLocation().get(),
                     node.isDistinct(),
-                    visitNodes(node.getSelectItems(), context));
+                    selectItems);
         }
         return new Select(
                 node.isDistinct(),
-                visitNodes(node.getSelectItems(), context));
+                selectItems);
     }
 
     @Override
     protected Node visitGroupBy(GroupBy node, T context)
     {
+        List<GroupingElement> groupingElements = visitNodes(node.getGroupingElements(), context);
+        if (groupingElements == node.getGroupingElements()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new GroupBy(
                     node.getLocation().get(),
                     node.isDistinct(),
-                    visitNodes(node.getGroupingElements(), context));
+                    groupingElements);
         }
-        return new GroupBy(node.isDistinct(), visitNodes(node.getGroupingElements(), context));
+        return new GroupBy(node.isDistinct(), groupingElements);
     }
 
     @Override
     protected Node visitCube(Cube node, T context)
     {
+        List<Expression> expressions = visitNodes(node.getExpressions(), context);
+        if (expressions == node.getExpressions()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Cube(
                     node.getLocation().get(),
-                    visitNodes(node.getExpressions(), context));
+                    expressions);
         }
-        return new Cube(visitNodes(node.getExpressions(), context));
+        return new Cube(expressions);
     }
 
     @Override
     protected Node visitGroupingSets(GroupingSets node, T context)
     {
+        List<List<Expression>> sets = node.getSets().stream()
+                .map(expressions -> visitNodes(expressions, context))
+                .collect(toList());
+        if (IntStream.range(0, sets.size()).allMatch(i -> sets.get(i) == node.getSets().get(i))) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new GroupingSets(
                     node.getLocation().get(),
-                    node.getSets().stream()
-                            .map(expressions -> visitNodes(expressions, context))
-                            .collect(toList()));
+                    sets);
         }
-        return new GroupingSets(
-                node.getSets().stream()
-                        .map(expressions -> visitNodes(expressions, context))
-                        .collect(toList()));
+        return new GroupingSets(sets);
     }
 
     @Override
     protected Node visitSimpleGroupBy(SimpleGroupBy node, T context)
     {
+        List<Expression> expressions = visitNodes(node.getExpressions(), context);
+        if (expressions == node.getExpressions()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SimpleGroupBy(
                     node.getLocation().get(),
-                    visitNodes(node.getExpressions(), context));
+                    expressions);
         }
-        return new SimpleGroupBy(visitNodes(node.getExpressions(), context));
+        return new SimpleGroupBy(expressions);
     }
 
     @Override
     protected Node visitRollup(Rollup node, T context)
     {
+        List<Expression> expressions = visitNodes(node.getExpressions(), context);
+        if (expressions == node.getExpressions()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new Rollup(
                     node.getLocation().get(),
-                    visitNodes(node.getExpressions(), context));
+                    expressions);
         }
-        return new Rollup(visitNodes(node.getExpressions(), context));
+        return new Rollup(expressions);
     }
 
     @Override
     protected Node visitOrderBy(OrderBy node, T context)
     {
+        List<SortItem> sortItems = visitNodes(node.getSortItems(), context);
+        if (sortItems == node.getSortItems()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new OrderBy(
                     node.getLocation().get(),
-                    visitNodes(node.getSortItems(), context));
+                    sortItems);
         }
-        return new OrderBy(visitNodes(node.getSortItems(), context));
+        return new OrderBy(sortItems);
     }
 
     @Override
     protected Node visitSortItem(SortItem node, T context)
     {
+        Expression sortKey = visitAndCast(node.getSortKey(), context);
+        if (sortKey == node.getSortKey()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SortItem(
                     node.getLocation().get(),
-                    visitAndCast(node.getSortKey(), context),
+                    sortKey,
                     node.getOrdering(),
                     node.getNullOrdering());
         }
         return new SortItem(
-                visitAndCast(node.getSortKey(), context),
+                sortKey,
                 node.getOrdering(),
                 node.getNullOrdering());
     }
@@ -1718,35 +2001,38 @@ public class BaseRewriter<T>
     @Override
     protected Node visitSingleColumn(SingleColumn node, T context)
     {
+        Expression expression = visitAndCast(node.getExpression(), context);
+        if (expression == node.getExpression()) {
+            return node;
+        }
         if (node.getLocation().isPresent()) {
             return new SingleColumn(
                     node.getLocation().get(),
-                    visitAndCast(node.getExpression(), context),
+                    expression,
                     node.getAlias());
         }
         return new SingleColumn(
-                visitAndCast(node.getExpression(), context),
+                expression,
                 node.getAlias());
     }
 
     @Override
     protected Node visitDereferenceExpression(DereferenceExpression node, T context)
     {
+        Expression base = visitAndCast(node.getBase(), context);
+        if (base == node.getBase()) {
+            return node;
+        }
         return new DereferenceExpression(
                 node.getLocation(),
-                visitAndCast(node.getBase(), context),
+                base,
                 node.getField());
     }
 
     @Override
     protected Node visitTable(Table node, T context)
     {
-        if (node.getLocation().isPresent()) {
-            return new Table(
-                    node.getLocation().get(),
-                    node.getName());
-        }
-        return new Table(node.getName());
+        return node;
     }
 
     protected <S extends Node> S visitAndCast(S node, T context)
@@ -1766,11 +2052,40 @@ public class BaseRewriter<T>
         return (S) process(node, context);
     }
 
+    /**
+     * @return {@code nodes} itself if none of them was rewritten
+     */
     @SuppressWarnings("unchecked")
     protected <S extends Node> List<S> visitNodes(List<S> nodes, T context)
     {
-        return nodes.stream()
-                .map(node -> (S) process(node, context))
-                .collect(toList());
+        List<S> rewritten = null;
+        for (int i = 0; i < nodes.size(); i++) {
+            S node = nodes.get(i);
+            S result = (S) process(node, context);
+            if (rewritten == null && result != node) {
+                rewritten = new ArrayList<>(nodes.subList(0, i));
+            }
+            if (rewritten != null) {
+                rewritten.add(result);
+            }
+        }
+        return rewritten == null ? nodes : rewritten;
+    }
+
+    /**
+     * @return {@code node} itself if it is empty or its value wasn't rewritten
+     */
+    protected <S extends Node> Optional<S> visitOptional(Optional<S> node, T context)
+    {
+        return rewriteOptional(node, value -> visitAndCast(value, context));
+    }
+
+    protected static <S> Optional<S> rewriteOptional(Optional<S> optional, UnaryOperator<S> rewriter)
+    {
+        if (optional.isEmpty()) {
+            return optional;
+        }
+        S rewritten = rewriter.apply(optional.get());
+        return rewritten == optional.get() ? optional : Optional.of(rewritten);
     }
 }
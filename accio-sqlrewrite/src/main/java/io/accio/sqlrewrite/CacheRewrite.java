@@ -169,7 +169,7 @@ public class CacheRewrite
 
             CatalogSchemaTableName catalogSchemaTableName = toCatalogSchemaTableName(sessionContext, node.getName());
             aggregationAnalysis.addTable(catalogSchemaTableName);
-            if (accioMDL.getCacheInfo(catalogSchemaTableName).isPresent()) {
+            if (accioMDL.getCacheInfo(catalogSchemaTableName).isPresent() || isDateSpine(catalogSchemaTableName)) {
                 Optional<String> cachedTableOpt = convertTable(catalogSchemaTableName);
                 if (cachedTableOpt.isPresent()) {
                     aggregationAnalysis.addCachedTables(catalogSchemaTableName);
@@ -190,6 +190,14 @@ public class CacheRewrite
             return node;
         }
 
+        // the date spine can be cached in duckdb too, though it isn't an object of the mdl
+        private boolean isDateSpine(CatalogSchemaTableName table)
+        {
+            return table.getCatalogName().equals(accioMDL.getCatalog())
+                    && table.getSchemaTableName().getSchemaName().equals(accioMDL.getSchema())
+                    && table.getSchemaTableName().getTableName().equals(DateSpineInfo.NAME);
+        }
+
         private Optional<String> convertTable(CatalogSchemaTableName cachedTable)
         {
             return converter.apply(cachedTable);
@@ -17,9 +17,13 @@ package io.accio.sqlrewrite;
 import io.accio.base.dto.DateSpine;
 import io.trino.sql.tree.Query;
 
+import java.util.Optional;
 import java.util.Set;
 
 import static io.accio.sqlrewrite.Utils.createDateSpineQuery;
+import static io.accio.sqlrewrite.Utils.parseQuery;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
 import static java.util.Objects.requireNonNull;
 
 public class DateSpineInfo
@@ -29,14 +33,28 @@ public class DateSpineInfo
 
     private final Query query;
 
-    public static DateSpineInfo get(DateSpine dateSpine)
+    public static DateSpineInfo get(DateSpine dateSpine, Optional<String> table)
     {
-        return new DateSpineInfo(dateSpine);
+        return new DateSpineInfo(dateSpine, table);
     }
 
-    private DateSpineInfo(DateSpine dateSpine)
+    /**
+     * The name of the table a date spine is materialized in, which changes with its definition so that a table
+     * created for another definition is never read.
+     */
+    public static String getTableName(DateSpine dateSpine)
     {
-        this.query = createDateSpineQuery(requireNonNull(dateSpine));
+        return format("%s_%s_%s_%s", NAME, dateSpine.getUnit().name(), dateSpine.getStart(), dateSpine.getEnd())
+                .toLowerCase(ENGLISH)
+                .replaceAll("[^a-z0-9_]", "");
+    }
+
+    private DateSpineInfo(DateSpine dateSpine, Optional<String> table)
+    {
+        requireNonNull(dateSpine, "dateSpine is null");
+        requireNonNull(table, "table is null");
+        this.query = table.map(name -> parseQuery(format("SELECT metric_time FROM %s", name)))
+                .orElseGet(() -> createDateSpineQuery(dateSpine));
     }
 
     @Override
@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.sqlrewrite;
+
+import io.accio.base.AccioMDL;
+import io.accio.base.SessionContext;
+import io.airlift.log.Logger;
+
+import java.util.Optional;
+
+import static com.google.common.hash.Hashing.sha256;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The fingerprint of an object of an mdl is the hash of the sql it's rewritten to. The sql inlines the columns,
+ * expressions, refSql and relationships of the object and of all the objects it's built on, so a fingerprint changes
+ * when any of them changes but not when only a description does.
+ */
+public final class ObjectFingerprints
+{
+    private static final Logger LOG = Logger.get(ObjectFingerprints.class);
+
+    private ObjectFingerprints() {}
+
+    /**
+     * @return the fingerprint of the object, or empty if the object can't be rewritten
+     */
+    public static Optional<String> of(AccioMDL mdl, String name)
+    {
+        SessionContext sessionContext = SessionContext.builder()
+                .setCatalog(mdl.getCatalog())
+                .setSchema(mdl.getSchema())
+                .build();
+        try {
+            String sql = AccioPlanner.rewrite(format("select * from %s", name), sessionContext, mdl);
+            return Optional.of(sha256().hashString(sql, UTF_8).toString());
+        }
+        catch (Exception e) {
+            LOG.warn(e, "Failed to get the fingerprint of %s", name);
+            return Optional.empty();
+        }
+    }
+}
@@ -52,7 +52,7 @@ public interface QueryDescriptor
             return ViewInfo.get(view.get(), mdl, sessionContext);
         }
         if (name.equals(DateSpineInfo.NAME)) {
-            return DateSpineInfo.get(mdl.getDateSpine());
+            return DateSpineInfo.get(mdl.getDateSpine(), mdl.getDateSpineTable());
         }
         throw new IllegalArgumentException(name + " not found in accio mdl");
     }
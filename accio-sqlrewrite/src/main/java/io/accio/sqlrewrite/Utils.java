@@ -24,6 +24,7 @@ import io.accio.base.dto.CumulativeMetric;
 import io.accio.base.dto.DateSpine;
 import io.accio.base.dto.Metric;
 import io.accio.base.dto.Model;
+import io.accio.base.dto.TimeUnit;
 import io.accio.sqlrewrite.analyzer.Field;
 import io.accio.sqlrewrite.analyzer.MetricRollupInfo;
 import io.accio.sqlrewrite.analyzer.RelationType;
@@ -118,6 +119,20 @@ public final class Utils
         String windowType = getWindowType(cumulativeMetric, accioMDL)
                 .orElseThrow(() -> new NoSuchElementException("window type not found in " + cumulativeMetric.getBaseObject()));
 
+        // a spine of days or finer has a point at the first instant of every bucket, so each row only needs to be joined
+        // with its own bucket and the next one; a coarser spine may not be aligned to the buckets, join it point by point
+        if (accioMDL.getDateSpine().getUnit().compareTo(TimeUnit.DAY) >= 0) {
+            return getBucketJoinCumulativeMetricSql(cumulativeMetric, windowType);
+        }
+        return getJoinCumulativeMetricSql(cumulativeMetric, windowType);
+    }
+
+    /**
+     * Join each point of the date spine with the rows in the window ending at it, and aggregate the joined rows per
+     * bucket of the time unit. This joins O(spine x window) rows, and is only used for a spine coarser than a day.
+     */
+    private static String getJoinCumulativeMetricSql(CumulativeMetric cumulativeMetric, String windowType)
+    {
         String pattern =
                 "select \n" +
                         "  metric_time as %s,\n" +
@@ -173,6 +188,78 @@ public final class Utils
                 windowType);
     }
 
+    /**
+     * The windows ending at the points of the date spine in a bucket of the time unit cover the rows of the previous
+     * bucket after its first instant, and the rows of the bucket up to its last point. So each row is joined with at
+     * most two buckets, its own and the next one, instead of with every point of the spine whose window has it. The
+     * spine has a point at the first instant of each bucket, which the join relies on.
+     * <p>
+     * This doesn't aggregate each bucket once and roll the results up with a window frame over the buckets: the
+     * metric aggregates distinct values, which can't be combined from the aggregates of the buckets, and a window
+     * ends at the last point of the spine in a bucket rather than at the end of the bucket.
+     */
+    private static String getBucketJoinCumulativeMetricSql(CumulativeMetric cumulativeMetric, String windowType)
+    {
+        String pattern =
+                "select \n" +
+                        "  d.metric_time as %1$s,\n" +
+                        "  %2$s(distinct sub2.measure_field) as %3$s\n" +
+                        "from \n" +
+                        "  (\n" +
+                        "    select \n" +
+                        "      date_trunc('%4$s', metric_time) as metric_time,\n" +
+                        "      max(metric_time) as last_point\n" +
+                        "    from (%5$s) spine\n" +
+                        "    where \n" +
+                        "      metric_time >= cast('%6$s' as %7$s) \n" +
+                        "      and metric_time <= cast('%8$s' as %7$s)\n" +
+                        "    group by 1\n" +
+                        "  ) d \n" +
+                        "  left join (\n" +
+                        "    select \n" +
+                        "      date_trunc('%4$s', metric_time) as metric_time,\n" +
+                        "      metric_time as row_time,\n" +
+                        "      measure_field\n" +
+                        "    from (%9$s) sub1\n" +
+                        "    where \n" +
+                        "      metric_time >= cast('%6$s' as %7$s) \n" +
+                        "      and metric_time <= cast('%8$s' as %7$s)\n" +
+                        "    union all\n" +
+                        "    select \n" +
+                        "      date_trunc('%4$s', metric_time) + %10$s as metric_time,\n" +
+                        "      metric_time as row_time,\n" +
+                        "      measure_field\n" +
+                        "    from (%9$s) sub1\n" +
+                        "    where \n" +
+                        "      metric_time > date_trunc('%4$s', metric_time) \n" +
+                        "      and metric_time >= cast('%6$s' as %7$s) \n" +
+                        "      and metric_time <= cast('%8$s' as %7$s)\n" +
+                        "  ) sub2 on (\n" +
+                        "    sub2.metric_time = d.metric_time \n" +
+                        "    and sub2.row_time <= d.last_point\n" +
+                        "  )\n" +
+                        "group by 1\n" +
+                        "order by 1\n";
+
+        String castingDateSpine = format("select cast(metric_time as %s) as metric_time from %s", windowType, DateSpineInfo.NAME);
+        String selectFromModel = format("select %s as measure_field, %s as metric_time from %s",
+                cumulativeMetric.getMeasure().getRefColumn(),
+                cumulativeMetric.getWindow().getRefColumn(),
+                cumulativeMetric.getBaseObject());
+
+        return format(pattern,
+                cumulativeMetric.getWindow().getName(),
+                cumulativeMetric.getMeasure().getOperator(),
+                cumulativeMetric.getMeasure().getName(),
+                cumulativeMetric.getWindow().getTimeUnit().name(),
+                castingDateSpine,
+                cumulativeMetric.getWindow().getStart(),
+                windowType,
+                cumulativeMetric.getWindow().getEnd(),
+                selectFromModel,
+                cumulativeMetric.getWindow().getTimeUnit().getIntervalExpression());
+    }
+
     private static Optional<String> getWindowType(CumulativeMetric cumulativeMetric, AccioMDL accioMDL)
     {
         Optional<Model> baseModel = accioMDL.getModel(cumulativeMetric.getBaseObject());
@@ -304,8 +391,8 @@ public final class Utils
 
     public static Query createDateSpineQuery(DateSpine dateSpine)
     {
-        // TODO: `GENERATE_TIMESTAMP_ARRAY` is a bigquery function. We may need to consider the SQL dialect when Accio planning.
-        String sql = format("SELECT * FROM UNNEST(GENERATE_TIMESTAMP_ARRAY(TIMESTAMP '%s', TIMESTAMP '%s', %s)) t(metric_time)", dateSpine.getStart(), dateSpine.getEnd(), dateSpine.getUnit().getIntervalExpression());
+        // `GENERATE_TIMESTAMP_ARRAY` is a bigquery function, SqlFormatter turns it into `generate_series` for postgres and duckdb
+        String sql = format("SELECT * FROM UNNEST(GENERATE_TIMESTAMP_ARRAY(CAST('%s' AS TIMESTAMP), CAST('%s' AS TIMESTAMP), %s)) t(metric_time)", dateSpine.getStart(), dateSpine.getEnd(), dateSpine.getUnit().getIntervalExpression());
         Statement statement = SQL_PARSER.createStatement(sql, new ParsingOptions(AS_DECIMAL));
         if (statement instanceof Query) {
             return (Query) statement;
@@ -176,6 +176,22 @@ public class TestCacheRewrite
                 "select * from table_Album");
     }
 
+    @Test
+    public void testDateSpine()
+    {
+        Function<CatalogSchemaTableName, Optional<String>> withDateSpine = table -> table.getSchemaTableName().getTableName().equals("date_spine")
+                ? Optional.of("table_date_spine")
+                : toCacheTable(table);
+        assertRewrite("select * from Album join date_spine on publish_date = metric_time",
+                "accio",
+                "test",
+                "select * from table_Album join table_date_spine on publish_date = metric_time",
+                withDateSpine);
+        // the date spine isn't cached
+        assertThat(rewriteCached("select * from Album join date_spine on publish_date = metric_time", "accio", "test", this::toCacheTable))
+                .isEmpty();
+    }
+
     @Test
     public void testSelectWithRecursive()
     {
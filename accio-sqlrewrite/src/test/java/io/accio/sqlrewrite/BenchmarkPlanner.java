@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.sqlrewrite;
+
+import io.accio.base.AccioMDL;
+import io.accio.base.CatalogSchemaTableName;
+import io.accio.base.SessionContext;
+import io.accio.testing.SyntheticManifest;
+import io.trino.sql.SqlFormatter;
+import io.trino.sql.parser.ParsingOptions;
+import io.trino.sql.parser.SqlParser;
+import io.trino.sql.tree.Node;
+import io.trino.sql.tree.Statement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static io.accio.sqlrewrite.AccioSqlRewrite.ACCIO_SQL_REWRITE;
+import static io.accio.sqlrewrite.EnumRewrite.ENUM_REWRITE;
+import static io.accio.sqlrewrite.MetricRollupRewrite.METRIC_ROLLUP_REWRITE;
+import static io.accio.testing.AbstractTestFramework.DEFAULT_SESSION_CONTEXT;
+import static io.trino.sql.parser.ParsingOptions.DecimalLiteralTreatment.AS_DECIMAL;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The planning pipeline of a query over a generated mdl: parsing, every rule of {@link AccioPlanner} on its own,
+ * the whole planner, the cache rewrite and formatting. The input of a rule is the output of the rules before it,
+ * as the planner runs them.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MICROSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+public class BenchmarkPlanner
+{
+    private static final SqlParser SQL_PARSER = new SqlParser();
+    private static final ParsingOptions PARSING_OPTIONS = new ParsingOptions(AS_DECIMAL);
+    private static final BaseRewriter<Void> NOOP_REWRITER = new BaseRewriter<>() {};
+
+    @Param({"10", "100", "1000"})
+    private int modelCount = 10;
+
+    @Param({"MODEL", "CALCULATED_FIELD", "METRIC", "METRIC_ROLLUP", "CUMULATIVE_METRIC"})
+    private SyntheticManifest.Query query = SyntheticManifest.Query.MODEL;
+
+    private final SessionContext sessionContext = DEFAULT_SESSION_CONTEXT;
+    private AccioMDL accioMDL;
+    private String sql;
+    private Statement statement;
+    private Statement rewrittenByMetricRollup;
+    private Statement rewrittenByAccioSql;
+    private Statement planned;
+
+    @Setup
+    public void setup()
+    {
+        accioMDL = AccioMDL.fromManifest(SyntheticManifest.create(modelCount));
+        sql = query.getSql(modelCount);
+        statement = SQL_PARSER.createStatement(sql, PARSING_OPTIONS);
+        rewrittenByMetricRollup = reparse(METRIC_ROLLUP_REWRITE.apply(statement, sessionContext, accioMDL));
+        rewrittenByAccioSql = reparse(ACCIO_SQL_REWRITE.apply(rewrittenByMetricRollup, sessionContext, accioMDL));
+        planned = reparse(ENUM_REWRITE.apply(rewrittenByAccioSql, sessionContext, accioMDL));
+    }
+
+    private static Statement reparse(Statement statement)
+    {
+        return SQL_PARSER.createStatement(SqlFormatter.formatSql(statement), PARSING_OPTIONS);
+    }
+
+    @Benchmark
+    public Statement parse()
+    {
+        return SQL_PARSER.createStatement(sql, PARSING_OPTIONS);
+    }
+
+    @Benchmark
+    public Statement metricRollupRewrite()
+    {
+        return METRIC_ROLLUP_REWRITE.apply(statement, sessionContext, accioMDL);
+    }
+
+    @Benchmark
+    public Statement accioSqlRewrite()
+    {
+        return ACCIO_SQL_REWRITE.apply(rewrittenByMetricRollup, sessionContext, accioMDL);
+    }
+
+    @Benchmark
+    public Statement enumRewrite()
+    {
+        return ENUM_REWRITE.apply(rewrittenByAccioSql, sessionContext, accioMDL);
+    }
+
+    @Benchmark
+    public String plan()
+    {
+        return AccioPlanner.rewrite(sql, sessionContext, accioMDL);
+    }
+
+    @Benchmark
+    public Optional<String> cacheRewrite()
+    {
+        return CacheRewrite.rewrite(sessionContext, sql, BenchmarkPlanner::toCachedTable, accioMDL);
+    }
+
+    /**
+     * A rewrite that changes nothing, which should allocate nothing since unchanged subtrees are shared.
+     * Run with the gc profiler to see the allocation rate.
+     */
+    @Benchmark
+    public Node noopRewrite()
+    {
+        return NOOP_REWRITER.process(planned);
+    }
+
+    @Benchmark
+    public String format()
+    {
+        return SqlFormatter.formatSql(planned);
+    }
+
+    private static Optional<String> toCachedTable(CatalogSchemaTableName name)
+    {
+        return Optional.of(name.getSchemaTableName().getTableName() + "_cached");
+    }
+
+    @Test
+    public void verify()
+    {
+        for (SyntheticManifest.Query query : SyntheticManifest.Query.values()) {
+            BenchmarkPlanner benchmark = new BenchmarkPlanner();
+            benchmark.modelCount = 10;
+            benchmark.query = query;
+            benchmark.setup();
+
+            assertThat(benchmark.parse()).isEqualTo(benchmark.statement);
+            assertThat(benchmark.metricRollupRewrite()).isNotNull();
+            assertThat(benchmark.accioSqlRewrite()).isNotNull();
+            assertThat(benchmark.enumRewrite()).isNotNull();
+            assertThat(benchmark.noopRewrite()).isSameAs(benchmark.planned);
+            assertThat(benchmark.plan()).isEqualTo(benchmark.format());
+            // only the metrics are cached
+            assertThat(benchmark.cacheRewrite().isPresent()).isEqualTo(query == SyntheticManifest.Query.METRIC);
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .include(".*" + BenchmarkPlanner.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
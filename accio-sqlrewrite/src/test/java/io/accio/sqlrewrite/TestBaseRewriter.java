@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.sqlrewrite;
+
+import io.accio.base.AccioMDL;
+import io.accio.testing.SyntheticManifest;
+import io.trino.sql.parser.ParsingOptions;
+import io.trino.sql.parser.SqlParser;
+import io.trino.sql.tree.LongLiteral;
+import io.trino.sql.tree.Node;
+import io.trino.sql.tree.Query;
+import io.trino.sql.tree.QuerySpecification;
+import io.trino.sql.tree.Statement;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static io.accio.testing.AbstractTestFramework.DEFAULT_SESSION_CONTEXT;
+import static io.trino.sql.parser.ParsingOptions.DecimalLiteralTreatment.AS_DECIMAL;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestBaseRewriter
+{
+    private static final SqlParser SQL_PARSER = new SqlParser();
+    private static final ParsingOptions PARSING_OPTIONS = new ParsingOptions(AS_DECIMAL);
+    private static final BaseRewriter<Void> NOOP = new BaseRewriter<>() {};
+
+    @DataProvider
+    public Object[][] queries()
+    {
+        return new Object[][] {
+                {"SELECT a, b + 1 AS c FROM t WHERE a > 0 AND b IS NOT NULL ORDER BY 1 LIMIT 10"},
+                {"SELECT a, count(DISTINCT b) FILTER (WHERE c > 0) FROM t GROUP BY a HAVING sum(c) > 10"},
+                {"SELECT a FROM t GROUP BY GROUPING SETS ((a, b), (a), ())"},
+                {"SELECT rank() OVER (PARTITION BY a ORDER BY b ROWS BETWEEN UNBOUNDED PRECEDING AND CURRENT ROW) FROM t"},
+                {"SELECT sum(a) OVER w FROM t WINDOW w AS (PARTITION BY b)"},
+                {"WITH x AS (SELECT * FROM t) SELECT * FROM x JOIN y ON x.a = y.a LEFT JOIN z USING (b)"},
+                {"SELECT CASE a WHEN 1 THEN 'one' ELSE 'other' END, CASE WHEN b > 0 THEN b END, if(c, 1, 2) FROM t"},
+                {"SELECT CAST(a AS varchar), extract(year FROM b), c[1], coalesce(d, 0), nullif(e, 1) FROM t"},
+                {"SELECT * FROM t WHERE a IN (1, 2) AND b IN (SELECT b FROM u) AND EXISTS (SELECT 1 FROM v) AND c BETWEEN 1 AND 2"},
+                {"SELECT * FROM (VALUES (1, 'a'), (2, 'b')) v(x, y) CROSS JOIN UNNEST(ARRAY[1, 2]) u(z)"},
+                {"SELECT a FROM t UNION ALL SELECT a FROM u EXCEPT SELECT a FROM v"},
+                {"SELECT transform(a, x -> x + 1), b LIKE 'x%', DATE '2020-01-01', TIMESTAMP '2020-01-01 00:00:00' FROM t"},
+        };
+    }
+
+    @Test(dataProvider = "queries")
+    public void testUnchangedTreeIsShared(String sql)
+    {
+        Statement statement = SQL_PARSER.createStatement(sql, PARSING_OPTIONS);
+        assertThat(NOOP.process(statement)).isSameAs(statement);
+    }
+
+    @Test
+    public void testPlannedQueriesAreShared()
+    {
+        AccioMDL accioMDL = AccioMDL.fromManifest(SyntheticManifest.create(10));
+        for (SyntheticManifest.Query query : SyntheticManifest.Query.values()) {
+            Statement statement = SQL_PARSER.createStatement(AccioPlanner.rewrite(query.getSql(10), DEFAULT_SESSION_CONTEXT, accioMDL), PARSING_OPTIONS);
+            assertThat(NOOP.process(statement)).isSameAs(statement);
+        }
+    }
+
+    @Test
+    public void testOnlyChangedPathIsCopied()
+    {
+        BaseRewriter<Void> rewriter = new BaseRewriter<>()
+        {
+            @Override
+            protected Node visitLongLiteral(LongLiteral node, Void context)
+            {
+                return node.getValue() == 1 ? new LongLiteral("2") : node;
+            }
+        };
+        Query query = (Query) SQL_PARSER.createStatement("SELECT a + 1, b FROM t WHERE c > 0", PARSING_OPTIONS);
+        Query rewritten = (Query) rewriter.process(query);
+
+        assertThat(rewritten).isNotSameAs(query);
+        assertThat(rewritten).isEqualTo(SQL_PARSER.createStatement("SELECT a + 2, b FROM t WHERE c > 0", PARSING_OPTIONS));
+        QuerySpecification specification = (QuerySpecification) query.getQueryBody();
+        QuerySpecification rewrittenSpecification = (QuerySpecification) rewritten.getQueryBody();
+        assertThat(rewrittenSpecification.getFrom()).isSameAs(specification.getFrom());
+        assertThat(rewrittenSpecification.getWhere()).isSameAs(specification.getWhere());
+        List<?> selectItems = specification.getSelect().getSelectItems();
+        assertThat(rewrittenSpecification.getSelect().getSelectItems().get(1)).isSameAs(selectItems.get(1));
+        assertThat(rewrittenSpecification.getSelect().getSelectItems().get(0)).isNotSameAs(selectItems.get(0));
+    }
+}
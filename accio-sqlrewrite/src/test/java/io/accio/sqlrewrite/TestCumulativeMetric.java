@@ -29,6 +29,7 @@ import java.util.List;
 
 import static io.accio.base.AccioTypes.DATE;
 import static io.accio.base.AccioTypes.INTEGER;
+import static io.accio.base.AccioTypes.TIMESTAMP;
 import static io.accio.base.AccioTypes.VARCHAR;
 import static io.accio.base.dto.Column.column;
 import static io.accio.base.dto.CumulativeMetric.cumulativeMetric;
@@ -38,6 +39,10 @@ import static io.accio.base.dto.Model.model;
 import static io.accio.base.dto.Model.onBaseObject;
 import static io.accio.base.dto.Window.window;
 import static io.accio.sqlrewrite.AccioSqlRewrite.ACCIO_SQL_REWRITE;
+import static io.accio.sqlrewrite.Utils.createDateSpineQuery;
+import static io.trino.sql.SqlFormatter.Dialect.DUCKDB;
+import static io.trino.sql.SqlFormatter.formatSql;
+import static java.lang.String.format;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -101,6 +106,107 @@ public class TestCumulativeMetric
         assertThat(query(rewrite("select * from YearlyRevenue")).size()).isEqualTo(5);
     }
 
+    @Test
+    public void testWindowOfDecomposableMeasure()
+    {
+        // orderkey is unique, so aggregating its distinct values in the join gives the same result as the window
+        for (String operator : List.of("sum", "count", "min", "max")) {
+            for (TimeUnit timeUnit : List.of(TimeUnit.DAY, TimeUnit.MONTH)) {
+                AccioMDL mdl = AccioMDL.fromManifest(
+                        copyOf(manifest)
+                                .setCumulativeMetrics(List.of(cumulativeMetric("Cumulative",
+                                        "Orders", measure("orderkey", INTEGER, operator, "orderkey"),
+                                        window("orderdate", "orderdate", timeUnit, "1994-01-01", "1994-12-31"))))
+                                .build());
+                String expected = format("SELECT date_trunc('%2$s', d.orderdate), %1$s(DISTINCT o.orderkey) FROM " +
+                                "(SELECT DISTINCT orderdate FROM orders WHERE orderdate BETWEEN DATE '1994-01-01' AND DATE '1994-12-31') d " +
+                                "LEFT JOIN orders o ON o.orderdate <= d.orderdate AND o.orderdate > d.orderdate - %3$s AND o.orderdate >= DATE '1994-01-01' " +
+                                "GROUP BY 1 ORDER BY 1",
+                        operator, timeUnit.name(), timeUnit.getIntervalExpression());
+                // the spine has days without orders, which only the result of the metric has
+                List<List<Object>> actual = query(rewrite("SELECT orderdate, orderkey FROM Cumulative WHERE orderdate IN (SELECT date_trunc('" + timeUnit.name() + "', orderdate) FROM orders)", mdl));
+                assertThat(actual).as("%s by %s", operator, timeUnit).isEqualTo(query(expected));
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsJoinOfSpine()
+    {
+        // custkey has duplicates, which are counted once in a window, and ordertime has rows after the last point of
+        // the spine in a bucket, which the windows ending in the bucket don't have
+        Model timedOrders = model("TimedOrders",
+                "select custkey, cast(orderdate as timestamp) + to_hours(cast(orderkey % 24 as integer)) as ordertime from main.orders",
+                List.of(
+                        column("custkey", INTEGER, null, true),
+                        column("ordertime", TIMESTAMP, null, true)));
+        String timedOrdersSql = "(SELECT custkey, CAST(orderdate AS TIMESTAMP) + to_hours(CAST(orderkey % 24 AS INTEGER)) AS ordertime FROM orders)";
+        for (String operator : List.of("sum", "count", "min", "max", "avg")) {
+            for (TimeUnit timeUnit : List.of(TimeUnit.DAY, TimeUnit.WEEK, TimeUnit.MONTH)) {
+                AccioMDL mdl = AccioMDL.fromManifest(
+                        copyOf(manifest)
+                                .setModels(ImmutableList.<Model>builder().addAll(manifest.getModels()).add(timedOrders).build())
+                                .setCumulativeMetrics(List.of(
+                                        cumulativeMetric("ByDate",
+                                                "Orders", measure("custkey", INTEGER, operator, "custkey"),
+                                                window("orderdate", "orderdate", timeUnit, "1994-01-15", "1994-12-15")),
+                                        cumulativeMetric("ByTime",
+                                                "TimedOrders", measure("custkey", INTEGER, operator, "custkey"),
+                                                window("ordertime", "ordertime", timeUnit, "1994-01-15", "1994-12-15"))))
+                                .build());
+                assertThat(query(rewrite("select * from ByDate", mdl)))
+                        .as("%s by %s of dates", operator, timeUnit)
+                        .isEqualTo(queryJoinOfSpine(operator, "orders", "orderdate", DATE, timeUnit, "1994-01-15", "1994-12-15"));
+                assertThat(query(rewrite("select * from ByTime", mdl)))
+                        .as("%s by %s of timestamps", operator, timeUnit)
+                        .isEqualTo(queryJoinOfSpine(operator, timedOrdersSql, "ordertime", TIMESTAMP, timeUnit, "1994-01-15", "1994-12-15"));
+            }
+        }
+    }
+
+    @Test
+    public void testMaterializedDateSpine()
+    {
+        String table = DateSpineInfo.getTableName(manifest.getDateSpine());
+        exec(format("CREATE TABLE %s AS %s", table, formatSql(createDateSpineQuery(manifest.getDateSpine()), DUCKDB)));
+        try {
+            AccioMDL mdl = accioMDL.withDateSpineTable(table);
+            String rewritten = rewrite("select * from MonthlyRevenue", mdl);
+            assertThat(rewritten).contains(table).doesNotContain("GENERATE_TIMESTAMP_ARRAY");
+            // totalprice is a double, whose sum depends on the order of the rows
+            String statement = "select orderdate, round(totalprice, 2) from MonthlyRevenue";
+            assertThat(query(rewrite(statement, mdl))).isEqualTo(query(rewrite(statement)));
+        }
+        finally {
+            exec("DROP TABLE " + table);
+        }
+    }
+
+    // aggregate the rows in the window ending at each point of the date spine, per bucket of the time unit
+    private List<List<Object>> queryJoinOfSpine(String operator, String source, String timeColumn, String windowType, TimeUnit timeUnit, String start, String end)
+    {
+        return query(format("SELECT date_trunc('%2$s', d.metric_time), %1$s(DISTINCT o.custkey) FROM " +
+                        "(SELECT CAST(metric_time AS %5$s) metric_time FROM (%6$s) spine) d " +
+                        "LEFT JOIN %3$s o ON o.%4$s <= d.metric_time AND o.%4$s > d.metric_time - %7$s " +
+                        "AND o.%4$s >= CAST('%8$s' AS %5$s) AND o.%4$s <= CAST('%9$s' AS %5$s) " +
+                        "WHERE d.metric_time >= CAST('%8$s' AS %5$s) AND d.metric_time <= CAST('%9$s' AS %5$s) " +
+                        "GROUP BY 1 ORDER BY 1",
+                operator, timeUnit.name(), source, timeColumn, windowType, formatSql(createDateSpineQuery(manifest.getDateSpine())),
+                timeUnit.getIntervalExpression(), start, end));
+    }
+
+    @Test
+    public void testJoinOfNonDecomposableMeasure()
+    {
+        AccioMDL mdl = AccioMDL.fromManifest(
+                copyOf(manifest)
+                        .setCumulativeMetrics(List.of(cumulativeMetric("AverageRevenue",
+                                "Orders", measure("totalprice", INTEGER, "avg", "totalprice"),
+                                window("orderdate", "orderdate", TimeUnit.MONTH, "1994-01-01", "1994-12-31"))))
+                        .build());
+        assertThat(query(rewrite("select * from AverageRevenue", mdl)).size()).isEqualTo(12);
+    }
+
     @Test
     public void testModelOnCumulativeMetric()
     {
@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.sqlrewrite;
+
+import io.accio.base.dto.DateSpine;
+import io.accio.base.dto.TimeUnit;
+import io.accio.testing.AbstractTestFramework;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static io.accio.sqlrewrite.Utils.createDateSpineQuery;
+import static io.trino.sql.SqlFormatter.Dialect.BIGQUERY;
+import static io.trino.sql.SqlFormatter.Dialect.DUCKDB;
+import static io.trino.sql.SqlFormatter.Dialect.POSTGRES;
+import static io.trino.sql.SqlFormatter.formatSql;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestDateSpine
+        extends AbstractTestFramework
+{
+    private static final DateSpine MONTHLY = new DateSpine(TimeUnit.MONTH, "2020-01-01", "2020-12-31");
+
+    @Test
+    public void testDialects()
+    {
+        assertThat(formatSql(createDateSpineQuery(MONTHLY), BIGQUERY))
+                .contains("UNNEST(GENERATE_TIMESTAMP_ARRAY(CAST('2020-01-01' AS timestamp), CAST('2020-12-31' AS timestamp), INTERVAL '1' MONTH)) t (metric_time)");
+        assertThat(formatSql(createDateSpineQuery(MONTHLY), POSTGRES))
+                .contains("generate_series(CAST('2020-01-01' AS timestamp), CAST('2020-12-31' AS timestamp), INTERVAL '1' MONTH) t (metric_time)");
+        assertThat(formatSql(createDateSpineQuery(MONTHLY), DUCKDB))
+                .contains("generate_series(CAST('2020-01-01' AS timestamp), CAST('2020-12-31' AS timestamp), INTERVAL '1' MONTH) t (metric_time)");
+    }
+
+    @Test
+    public void testUnit()
+    {
+        List<List<Object>> result = query(formatSql(createDateSpineQuery(MONTHLY)));
+        assertThat(result).hasSize(12);
+        assertThat(result.get(1).get(0).toString()).isEqualTo("2020-02-01 00:00:00.0");
+    }
+
+    @Test
+    public void testTableName()
+    {
+        assertThat(DateSpineInfo.getTableName(MONTHLY)).isEqualTo("date_spine_month_20200101_20201231");
+        assertThat(DateSpineInfo.getTableName(new DateSpine(TimeUnit.DAY, "2020-01-01", "2020-12-31")))
+                .isNotEqualTo(DateSpineInfo.getTableName(MONTHLY));
+    }
+}
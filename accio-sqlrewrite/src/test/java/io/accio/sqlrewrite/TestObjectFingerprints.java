@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.sqlrewrite;
+
+import io.accio.base.AccioMDL;
+import io.accio.base.dto.Model;
+import io.accio.base.dto.Relationship;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static io.accio.base.AccioTypes.INTEGER;
+import static io.accio.base.AccioTypes.VARCHAR;
+import static io.accio.base.dto.Column.caluclatedColumn;
+import static io.accio.base.dto.Column.column;
+import static io.accio.base.dto.JoinType.MANY_TO_ONE;
+import static io.accio.base.dto.Model.model;
+import static io.accio.base.dto.Relationship.relationship;
+import static io.accio.testing.AbstractTestFramework.withDefaultCatalogSchema;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestObjectFingerprints
+{
+    private static final Model CUSTOMER = model("Customer",
+            "select * from main.customer",
+            List.of(
+                    column("custkey", INTEGER, null, true),
+                    column("name", VARCHAR, null, true)),
+            "custkey");
+    private static final Model ORDERS = model("Orders",
+            "select * from main.orders",
+            List.of(
+                    column("orderkey", INTEGER, null, true),
+                    column("custkey", INTEGER, null, true),
+                    caluclatedColumn("customer_name", VARCHAR, "customer.name"),
+                    column("customer", "Customer", "OrdersCustomer", true)),
+            "orderkey");
+    private static final Relationship ORDERS_CUSTOMER = relationship("OrdersCustomer", List.of("Orders", "Customer"), MANY_TO_ONE, "Orders.custkey = Customer.custkey");
+
+    @Test
+    public void testDescriptionIsIgnored()
+    {
+        Model describedCustomer = model("Customer", CUSTOMER.getRefSql(),
+                List.of(
+                        column("custkey", INTEGER, null, true, null, "the key of the customer"),
+                        column("name", VARCHAR, null, true)),
+                "custkey",
+                "the customers");
+
+        assertThat(ObjectFingerprints.of(mdl(describedCustomer, ORDERS_CUSTOMER), "Customer"))
+                .isPresent()
+                .isEqualTo(ObjectFingerprints.of(mdl(CUSTOMER, ORDERS_CUSTOMER), "Customer"));
+        assertThat(ObjectFingerprints.of(mdl(describedCustomer, ORDERS_CUSTOMER), "Orders"))
+                .isEqualTo(ObjectFingerprints.of(mdl(CUSTOMER, ORDERS_CUSTOMER), "Orders"));
+    }
+
+    @Test
+    public void testDependencyChange()
+    {
+        Model changedCustomer = model("Customer", "select * from main.customer where custkey > 0", CUSTOMER.getColumns(), "custkey");
+
+        assertThat(ObjectFingerprints.of(mdl(changedCustomer, ORDERS_CUSTOMER), "Customer"))
+                .isNotEqualTo(ObjectFingerprints.of(mdl(CUSTOMER, ORDERS_CUSTOMER), "Customer"));
+        assertThat(ObjectFingerprints.of(mdl(changedCustomer, ORDERS_CUSTOMER), "Orders"))
+                .isNotEqualTo(ObjectFingerprints.of(mdl(CUSTOMER, ORDERS_CUSTOMER), "Orders"));
+    }
+
+    @Test
+    public void testRelationshipChange()
+    {
+        Relationship changed = relationship("OrdersCustomer", List.of("Orders", "Customer"), MANY_TO_ONE, "Orders.orderkey = Customer.custkey");
+
+        assertThat(ObjectFingerprints.of(mdl(CUSTOMER, changed), "Customer"))
+                .isEqualTo(ObjectFingerprints.of(mdl(CUSTOMER, ORDERS_CUSTOMER), "Customer"));
+        assertThat(ObjectFingerprints.of(mdl(CUSTOMER, changed), "Orders"))
+                .isNotEqualTo(ObjectFingerprints.of(mdl(CUSTOMER, ORDERS_CUSTOMER), "Orders"));
+    }
+
+    private static AccioMDL mdl(Model customer, Relationship ordersCustomer)
+    {
+        return AccioMDL.fromManifest(withDefaultCatalogSchema()
+                .setModels(List.of(customer, ORDERS))
+                .setRelationships(List.of(ordersCustomer))
+                .build());
+    }
+}
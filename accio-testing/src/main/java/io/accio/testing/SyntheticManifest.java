@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.testing;
+
+import com.google.common.collect.ImmutableList;
+import io.accio.base.dto.Column;
+import io.accio.base.dto.CumulativeMetric;
+import io.accio.base.dto.DateSpine;
+import io.accio.base.dto.JoinType;
+import io.accio.base.dto.Manifest;
+import io.accio.base.dto.Metric;
+import io.accio.base.dto.Model;
+import io.accio.base.dto.Relationship;
+
+import java.util.List;
+
+import static io.accio.base.AccioTypes.DATE;
+import static io.accio.base.AccioTypes.INTEGER;
+import static io.accio.base.AccioTypes.VARCHAR;
+import static io.accio.base.dto.Column.caluclatedColumn;
+import static io.accio.base.dto.Column.column;
+import static io.accio.base.dto.Column.relationshipColumn;
+import static io.accio.base.dto.CumulativeMetric.cumulativeMetric;
+import static io.accio.base.dto.EnumDefinition.enumDefinition;
+import static io.accio.base.dto.EnumValue.enumValue;
+import static io.accio.base.dto.Measure.measure;
+import static io.accio.base.dto.Metric.metric;
+import static io.accio.base.dto.Model.model;
+import static io.accio.base.dto.Relationship.relationship;
+import static io.accio.base.dto.TimeGrain.timeGrain;
+import static io.accio.base.dto.TimeUnit.DAY;
+import static io.accio.base.dto.TimeUnit.MONTH;
+import static io.accio.base.dto.TimeUnit.YEAR;
+import static io.accio.base.dto.Window.window;
+import static java.lang.String.format;
+
+/**
+ * A generated mdl of any size for benchmarks. The models are grouped into chains of {@link #CHAIN_LENGTH}, where
+ * {@code Model<i>} has a many-to-one relationship to {@code Model<i-1>} and calculated fields through it; every model
+ * has a cached metric {@code Metric<i>} and a cumulative metric {@code Cumulative<i>}. The models read
+ * {@code main.table_<i>}, which has columns id, parent_id, amount, status and created.
+ */
+public final class SyntheticManifest
+{
+    public static final int CHAIN_LENGTH = 5;
+
+    private SyntheticManifest() {}
+
+    public enum Query
+    {
+        MODEL("SELECT id, amount, status FROM %s WHERE status = Status.OPEN AND amount > 10"),
+        CALCULATED_FIELD("SELECT id, parentAmount, grandparentStatus FROM %s"),
+        METRIC("SELECT status, totalAmount FROM %s ORDER BY status"),
+        METRIC_ROLLUP("SELECT status, totalAmount FROM roll_up(%s, created, MONTH)"),
+        CUMULATIVE_METRIC("SELECT * FROM %s");
+
+        private final String pattern;
+
+        Query(String pattern)
+        {
+            this.pattern = pattern;
+        }
+
+        /**
+         * The query on the objects of the last model of the chain in the middle of the mdl.
+         */
+        public String getSql(int modelCount)
+        {
+            int index = Math.min(modelCount / 2 / CHAIN_LENGTH * CHAIN_LENGTH + CHAIN_LENGTH, modelCount) - 1;
+            switch (this) {
+                case METRIC:
+                case METRIC_ROLLUP:
+                    return format(pattern, metricName(index));
+                case CUMULATIVE_METRIC:
+                    return format(pattern, cumulativeMetricName(index));
+                default:
+                    return format(pattern, modelName(index));
+            }
+        }
+    }
+
+    public static Manifest create(int modelCount)
+    {
+        ImmutableList.Builder<Model> models = ImmutableList.builder();
+        ImmutableList.Builder<Relationship> relationships = ImmutableList.builder();
+        ImmutableList.Builder<Metric> metrics = ImmutableList.builder();
+        ImmutableList.Builder<CumulativeMetric> cumulativeMetrics = ImmutableList.builder();
+        for (int i = 0; i < modelCount; i++) {
+            String name = modelName(i);
+            ImmutableList.Builder<Column> columns = ImmutableList.<Column>builder()
+                    .add(column("id", INTEGER, null, true, "id"))
+                    .add(column("parentId", INTEGER, null, false, "parent_id"))
+                    .add(column("amount", INTEGER, null, false))
+                    .add(column("status", "Status", null, false))
+                    .add(column("created", DATE, null, false));
+            int depth = i % CHAIN_LENGTH;
+            if (depth > 0) {
+                String relationshipName = format("%sParent", name);
+                columns.add(relationshipColumn("parent", modelName(i - 1), relationshipName));
+                columns.add(caluclatedColumn("parentAmount", INTEGER, "parent.amount"));
+                relationships.add(relationship(relationshipName, List.of(name, modelName(i - 1)), JoinType.MANY_TO_ONE,
+                        format("%s.parentId = %s.id", name, modelName(i - 1))));
+            }
+            if (depth > 1) {
+                columns.add(caluclatedColumn("grandparentStatus", VARCHAR, "parent.parent.status"));
+            }
+            models.add(model(name, format("SELECT * FROM main.table_%s", i), columns.build(), "id"));
+            metrics.add(metric(metricName(i), name,
+                    List.of(column("status", VARCHAR, null, true)),
+                    List.of(column("totalAmount", INTEGER, null, true, "sum(amount)")),
+                    List.of(timeGrain("created", "created", List.of(DAY, MONTH, YEAR))),
+                    true));
+            cumulativeMetrics.add(cumulativeMetric(cumulativeMetricName(i), name,
+                    measure("totalAmount", INTEGER, "sum", "amount"),
+                    window("created", "created", MONTH, "2020-01-01", "2023-12-31")));
+        }
+        return AbstractTestFramework.withDefaultCatalogSchema()
+                .setModels(models.build())
+                .setRelationships(relationships.build())
+                .setMetrics(metrics.build())
+                .setCumulativeMetrics(cumulativeMetrics.build())
+                .setEnumDefinitions(List.of(enumDefinition("Status", List.of(enumValue("OPEN", "O"), enumValue("CLOSED", "C")))))
+                .setDateSpine(DateSpine.DEFAULT)
+                .build();
+    }
+
+    public static String modelName(int index)
+    {
+        return "Model" + index;
+    }
+
+    public static String metricName(int index)
+    {
+        return "Metric" + index;
+    }
+
+    public static String cumulativeMetricName(int index)
+    {
+        return "Cumulative" + index;
+    }
+}
@@ -26,6 +26,7 @@ import io.accio.main.AccioConfig;
 import io.accio.main.AccioModule;
 import io.accio.main.pgcatalog.PgCatalogManager;
 import io.accio.main.server.module.BigQueryConnectorModule;
+import io.accio.main.server.module.JmxModule;
 import io.accio.main.server.module.PostgresConnectorModule;
 import io.accio.main.server.module.PostgresWireProtocolModule;
 import io.accio.main.server.module.WebModule;
@@ -40,6 +41,8 @@ import io.airlift.jaxrs.JaxrsModule;
 import io.airlift.json.JsonModule;
 import io.airlift.node.NodeModule;
 
+import javax.management.MBeanServerFactory;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.ServerSocket;
@@ -81,6 +84,7 @@ public class TestingAccioServer
                 new JsonModule(),
                 new JaxrsModule(),
                 new EventModule(),
+                new JmxModule(MBeanServerFactory.newMBeanServer()),
                 new PostgresWireProtocolModule(new EmptyTlsDataProvider()),
                 conditionalModule(AccioConfig.class, config -> config.getDataSourceType().equals(BIGQUERY), new BigQueryConnectorModule()),
                 conditionalModule(AccioConfig.class, config -> config.getDataSourceType().equals(POSTGRES), new PostgresConnectorModule()),
@@ -15,11 +15,13 @@
 package io.accio.testing;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.primitives.Bytes;
 import io.accio.base.type.PGType;
 import io.accio.base.type.PGTypes;
 import io.accio.base.type.UuidType;
 import io.accio.base.type.VarcharType;
+import io.accio.main.wireprotocol.CancelRegistry;
 import io.accio.main.wireprotocol.FormatCodes;
 import io.accio.main.wireprotocol.PGError;
 import io.accio.main.wireprotocol.PGErrorStatus;
@@ -27,6 +29,7 @@ import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.intellij.lang.annotations.Language;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,8 +38,10 @@ import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.accio.base.type.BigIntType.BIGINT;
 import static io.accio.base.type.DateType.DATE;
@@ -64,6 +69,8 @@ public class TestingWireProtocolClient
     {
         this.socketClient = new Socket();
         socketClient.setSoTimeout(60000);
+        // don't let Nagle's algorithm delay the messages of the extended query protocol sent one by one
+        socketClient.setTcpNoDelay(true);
         socketClient.connect(isa);
 
         this.in = socketClient.getInputStream();
@@ -93,7 +100,16 @@ public class TestingWireProtocolClient
     public void sendStartUpMessage(int version, String password, String database, String user)
             throws IOException
     {
-        byte[] startup = getStartUpByteArray(password, database, user);
+        sendStartUpMessage(version, password, database, user, ImmutableMap.of());
+    }
+
+    /**
+     * Send a StartupMessage with additional run-time parameters, e.g. search_path.
+     */
+    public void sendStartUpMessage(int version, String password, String database, String user, Map<String, String> properties)
+            throws IOException
+    {
+        byte[] startup = getStartUpByteArray(password, database, user, properties);
         int len = 4 + startup.length + 4;
         ByteBuf buffer = Unpooled.buffer();
         buffer.writeInt(len);
@@ -103,9 +119,11 @@ public class TestingWireProtocolClient
         out.flush();
     }
 
-    private byte[] getStartUpByteArray(String password, String database, String user)
+    private byte[] getStartUpByteArray(String password, String database, String user, Map<String, String> properties)
     {
-        return String.format("password\0%s\0database\0%s\0user\0%s\0", password, database, user).getBytes(UTF_8);
+        StringBuilder startup = new StringBuilder(String.format("password\0%s\0database\0%s\0user\0%s\0", password, database, user));
+        properties.forEach((key, value) -> startup.append(key).append('\0').append(value).append('\0'));
+        return startup.toString().getBytes(UTF_8);
     }
 
     /**
@@ -356,6 +374,33 @@ public class TestingWireProtocolClient
         out.flush();
     }
 
+    /**
+     * CancelRequest (F)
+     * Int32(16)
+     * Length of message contents in bytes, including self.
+     * <p>
+     * Int32(80877102)
+     * The cancel request code, sent on a new connection instead of a StartupMessage.
+     * <p>
+     * Int32
+     * The process ID of the target backend.
+     * <p>
+     * Int32
+     * The secret key for the target backend.
+     */
+    public void sendCancelRequest(int processId, int secretKey)
+            throws IOException
+    {
+        ByteBuf buffer = Unpooled.buffer();
+        int len = 16;
+        buffer.writeInt(len);
+        buffer.writeInt(80877102);
+        buffer.writeInt(processId);
+        buffer.writeInt(secretKey);
+        out.write(buffer.array(), 0, len);
+        out.flush();
+    }
+
     /**
      * Sync (F)
      * Byte1('S')
@@ -548,6 +593,29 @@ public class TestingWireProtocolClient
         assertThat(tmp).isEqualTo(expectedMessageWithEnd);
     }
 
+    /**
+     * BackendKeyData (B)
+     * Byte1('K')
+     * Identifies the message as cancellation key data.
+     * <p>
+     * Int32(12)
+     * Length of message contents in bytes, including self.
+     * <p>
+     * Int32
+     * The process ID of this backend.
+     * <p>
+     * Int32
+     * The secret key of this backend.
+     */
+    public CancelRegistry.BackendKey assertBackendKeyData()
+            throws IOException
+    {
+        byte[] header = readBytes(5);
+        assertThat(header).isEqualTo(new byte[] {'K', 0, 0, 0, 12});
+        ByteBuffer body = ByteBuffer.wrap(readBytes(8));
+        return new CancelRegistry.BackendKey(body.getInt(), body.getInt());
+    }
+
     /**
      * EmptyQueryResponse (B)
      * Byte1('I')
@@ -1034,6 +1102,37 @@ public class TestingWireProtocolClient
         return bytes;
     }
 
+    /**
+     * Read the next backend message whatever its type is.
+     * <p>
+     * Byte1
+     * The message type.
+     * <p>
+     * Int32
+     * Length of message contents in bytes, including self.
+     * <p>
+     * Byten
+     * The message contents.
+     */
+    public Message readMessage()
+            throws IOException
+    {
+        int type = in.read();
+        if (type == -1) {
+            throw new EOFException("connection closed by the server");
+        }
+        byte[] length = in.readNBytes(4);
+        if (length.length < 4) {
+            throw new EOFException("connection closed by the server");
+        }
+        int bodyLength = ByteBuffer.wrap(length).getInt() - 4;
+        byte[] body = in.readNBytes(bodyLength);
+        if (body.length < bodyLength) {
+            throw new EOFException("connection closed by the server");
+        }
+        return new Message((char) type, body);
+    }
+
     public ErrorResponse readErrorResponse()
             throws IOException
     {
@@ -1079,6 +1178,48 @@ public class TestingWireProtocolClient
         return new String(bytes, UTF_8);
     }
 
+    public static class Message
+    {
+        private final char type;
+        private final byte[] body;
+
+        public Message(char type, byte[] body)
+        {
+            this.type = type;
+            this.body = requireNonNull(body, "body is null");
+        }
+
+        public char getType()
+        {
+            return type;
+        }
+
+        public byte[] getBody()
+        {
+            return body;
+        }
+
+        /**
+         * The error message of an ErrorResponse.
+         */
+        public String getErrorMessage()
+        {
+            checkState(type == 'E', "not an ErrorResponse: %s", type);
+            ByteBuffer buffer = ByteBuffer.wrap(body);
+            while (buffer.hasRemaining()) {
+                byte id = buffer.get();
+                if (id == '\0') {
+                    break;
+                }
+                String value = readCString(buffer);
+                if (id == 'M') {
+                    return value;
+                }
+            }
+            return "";
+        }
+    }
+
     public static final class DescribeType
     {
         public static final byte PORTAL = 'P';
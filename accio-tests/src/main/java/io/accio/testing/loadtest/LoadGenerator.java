@@ -0,0 +1,216 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.testing.loadtest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HostAndPort;
+import io.accio.base.type.PGType;
+import io.accio.testing.TestingWireProtocolClient;
+import io.airlift.units.Duration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.accio.testing.TestingWireProtocolClient.Parameter.textParameter;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Replays a {@link Workload} over the extended query protocol against an Accio server, like pgbench does against
+ * PostgreSQL. Every connection of a phase sends Parse, Bind, Execute and Sync for each query and waits for
+ * ReadyForQuery before sending the next one, so a phase of N connections keeps at most N queries in flight.
+ */
+public class LoadGenerator
+{
+    private static final int PROTOCOL_VERSION = 196608;
+
+    private final InetSocketAddress address;
+    private final String user;
+    private final String password;
+
+    public LoadGenerator(HostAndPort hostAndPort, String user, String password)
+    {
+        requireNonNull(hostAndPort, "hostAndPort is null");
+        this.address = new InetSocketAddress(hostAndPort.getHost(), hostAndPort.getPort());
+        this.user = requireNonNull(user, "user is null");
+        this.password = requireNonNull(password, "password is null");
+    }
+
+    public List<PhaseResult> run(Workload workload)
+    {
+        ImmutableList.Builder<PhaseResult> results = ImmutableList.builder();
+        for (Workload.Phase phase : workload.getPhases()) {
+            results.add(runPhase(workload, phase));
+        }
+        return results.build();
+    }
+
+    public PhaseResult runPhase(Workload workload, Workload.Phase phase)
+    {
+        PhaseResult.Collector collector = new PhaseResult.Collector(phase.getName(), phase.getConnections());
+        ExecutorService executor = newFixedThreadPool(phase.getConnections(), daemonThreadsNamed("load-generator-" + phase.getName() + "-%s"));
+        long start = System.nanoTime();
+        try {
+            ImmutableList.Builder<Future<?>> connections = ImmutableList.builder();
+            for (int i = 0; i < phase.getConnections(); i++) {
+                int connection = i;
+                connections.add(executor.submit(() -> {
+                    runConnection(workload, phase, connection, collector);
+                    return null;
+                }));
+            }
+            for (Future<?> connection : connections.build()) {
+                connection.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (ExecutionException e) {
+            throw new RuntimeException("phase " + phase.getName() + " failed", e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        return collector.build(Duration.nanosSince(start));
+    }
+
+    private void runConnection(Workload workload, Workload.Phase phase, int connection, PhaseResult.Collector collector)
+            throws IOException
+    {
+        List<Workload.Query> queries = phase.getQueries();
+        try (TestingWireProtocolClient client = new TestingWireProtocolClient(address)) {
+            Map<String, String> properties = workload.getSchema()
+                    .map(schema -> ImmutableMap.of("search_path", schema))
+                    .orElse(ImmutableMap.of());
+            client.sendStartUpMessage(PROTOCOL_VERSION, password, workload.getDatabase(), user, properties);
+            startUp(client);
+
+            // the duration starts once the connection is up, so a slow connect doesn't eat the time of the queries
+            long start = System.nanoTime();
+            Optional<Long> deadline = phase.getDuration().map(duration -> start + duration.roundTo(NANOSECONDS));
+            for (int i = 0; !isFinished(phase, i, deadline); i++) {
+                // start every connection at a different query, so the queries interleave from the beginning
+                int index = connection + i;
+                Workload.Query query = queries.get(index % queries.size());
+                List<String> parameters = query.getParameters().isEmpty()
+                        ? ImmutableList.of()
+                        : query.getParameters().get(index / queries.size() % query.getParameters().size());
+                execute(client, query, parameters, collector);
+            }
+        }
+    }
+
+    private static boolean isFinished(Workload.Phase phase, int iteration, Optional<Long> deadline)
+    {
+        return phase.getIterations().map(iterations -> iteration >= iterations).orElse(false) ||
+                deadline.map(time -> System.nanoTime() - time >= 0).orElse(false);
+    }
+
+    private static void startUp(TestingWireProtocolClient client)
+            throws IOException
+    {
+        // skip AuthenticationOk, ParameterStatus and BackendKeyData
+        TestingWireProtocolClient.Message message = client.readMessage();
+        while (message.getType() != 'Z') {
+            if (message.getType() == 'E') {
+                throw new IllegalStateException("failed to connect: " + message.getErrorMessage());
+            }
+            message = client.readMessage();
+        }
+    }
+
+    private static void execute(TestingWireProtocolClient client, Workload.Query query, List<String> parameters, PhaseResult.Collector collector)
+            throws IOException
+    {
+        List<PGType<?>> types = query.getParameterTypes();
+        ImmutableList.Builder<TestingWireProtocolClient.Parameter> values = ImmutableList.builder();
+        for (int i = 0; i < parameters.size(); i++) {
+            values.add(textParameter(parameters.get(i), types.get(i)));
+        }
+
+        long start = System.nanoTime();
+        client.sendParse("", query.getSql(), types.stream().map(PGType::oid).collect(toImmutableList()));
+        client.sendBind("", "", values.build());
+        client.sendExecute("", 0);
+        client.sendSync();
+
+        long firstRow = 0;
+        long rows = 0;
+        long bytes = 0;
+        Optional<String> error = Optional.empty();
+        while (true) {
+            TestingWireProtocolClient.Message message = client.readMessage();
+            bytes += 5 + message.getBody().length;
+            switch (message.getType()) {
+                case 'D':
+                    if (rows++ == 0) {
+                        firstRow = System.nanoTime();
+                    }
+                    break;
+                case 'C':
+                    if (rows == 0) {
+                        firstRow = System.nanoTime();
+                    }
+                    break;
+                case 'E':
+                    error = Optional.of(query.getName() + ": " + message.getErrorMessage());
+                    break;
+                case 'Z':
+                    long end = System.nanoTime();
+                    if (error.isPresent()) {
+                        collector.addFailedQuery(error.get(), bytes);
+                    }
+                    else {
+                        collector.addQuery(end - start, firstRow - start, rows, bytes);
+                    }
+                    return;
+                default:
+                    // ParseComplete, BindComplete and the like
+            }
+        }
+    }
+
+    /**
+     * Replay a workload file against a running server: {@code LoadGenerator <host:port> <workload.json> [user] [password]}.
+     */
+    public static void main(String[] args)
+            throws IOException
+    {
+        if (args.length < 2) {
+            System.err.println("usage: LoadGenerator <host:port> <workload.json> [user] [password]");
+            System.exit(1);
+        }
+        LoadGenerator loadGenerator = new LoadGenerator(
+                HostAndPort.fromString(args[0]),
+                args.length > 2 ? args[2] : "accio",
+                args.length > 3 ? args[3] : "ignored");
+        for (PhaseResult result : loadGenerator.run(Workload.fromFile(Path.of(args[1])))) {
+            System.out.print(result.toReport());
+        }
+    }
+}
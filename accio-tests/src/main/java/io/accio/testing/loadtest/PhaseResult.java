@@ -0,0 +1,266 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.testing.loadtest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.stats.Distribution;
+import io.airlift.units.Duration;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static io.airlift.units.DataSize.succinctBytes;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The throughput and the latency distributions of a phase of a {@link Workload}. The latency of a query is the time
+ * from sending its Parse message to receiving ReadyForQuery; the time to first row ends at its first DataRow, or at
+ * CommandComplete if it returns no rows.
+ */
+public class PhaseResult
+{
+    public static final List<Double> PERCENTILES = ImmutableList.of(0.5, 0.9, 0.95, 0.99, 0.999);
+
+    private final String name;
+    private final int connections;
+    private final Duration wallTime;
+    private final long queries;
+    private final long failedQueries;
+    private final long rows;
+    private final long bytes;
+    private final Latency latency;
+    private final Latency timeToFirstRow;
+    private final Map<String, Long> errors;
+
+    public PhaseResult(
+            String name,
+            int connections,
+            Duration wallTime,
+            long queries,
+            long failedQueries,
+            long rows,
+            long bytes,
+            Latency latency,
+            Latency timeToFirstRow,
+            Map<String, Long> errors)
+    {
+        this.name = requireNonNull(name, "name is null");
+        this.connections = connections;
+        this.wallTime = requireNonNull(wallTime, "wallTime is null");
+        this.queries = queries;
+        this.failedQueries = failedQueries;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.latency = requireNonNull(latency, "latency is null");
+        this.timeToFirstRow = requireNonNull(timeToFirstRow, "timeToFirstRow is null");
+        this.errors = ImmutableMap.copyOf(requireNonNull(errors, "errors is null"));
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public int getConnections()
+    {
+        return connections;
+    }
+
+    public Duration getWallTime()
+    {
+        return wallTime;
+    }
+
+    public long getQueries()
+    {
+        return queries;
+    }
+
+    public long getFailedQueries()
+    {
+        return failedQueries;
+    }
+
+    public long getRows()
+    {
+        return rows;
+    }
+
+    public long getBytes()
+    {
+        return bytes;
+    }
+
+    public double getQueriesPerSecond()
+    {
+        return queries / wallTime.getValue(SECONDS);
+    }
+
+    public Latency getLatency()
+    {
+        return latency;
+    }
+
+    public Latency getTimeToFirstRow()
+    {
+        return timeToFirstRow;
+    }
+
+    /**
+     * The number of failed queries by error message.
+     */
+    public Map<String, Long> getErrors()
+    {
+        return errors;
+    }
+
+    public String toReport()
+    {
+        StringBuilder report = new StringBuilder()
+                .append(format("phase %s: %s connections, %s%n", name, connections, wallTime.convertToMostSuccinctTimeUnit()))
+                .append(format("  %s queries (%s failed), %.1f queries/s, %s rows, %s received%n",
+                        queries, failedQueries, getQueriesPerSecond(), rows, succinctBytes(bytes)))
+                .append(format("  %-14s %s%n", "latency", latency.toReport()))
+                .append(format("  %-14s %s%n", "first row", timeToFirstRow.toReport()));
+        errors.forEach((message, count) -> report.append(format("  %s x %s%n", count, message)));
+        return report.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return toReport();
+    }
+
+    public static class Latency
+    {
+        private final List<Duration> percentiles;
+        private final Duration max;
+
+        public Latency(List<Duration> percentiles, Duration max)
+        {
+            this.percentiles = ImmutableList.copyOf(requireNonNull(percentiles, "percentiles is null"));
+            this.max = requireNonNull(max, "max is null");
+        }
+
+        /**
+         * The latencies at {@link #PERCENTILES}.
+         */
+        public List<Duration> getPercentiles()
+        {
+            return percentiles;
+        }
+
+        public Duration getP50()
+        {
+            return percentiles.get(0);
+        }
+
+        public Duration getP99()
+        {
+            return percentiles.get(3);
+        }
+
+        public Duration getMax()
+        {
+            return max;
+        }
+
+        public String toReport()
+        {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < PERCENTILES.size(); i++) {
+                String percentile = String.valueOf(PERCENTILES.get(i) * 100).replaceAll("\\.0$", "");
+                builder.append(format("%-6s %-10s", "p" + percentile, percentiles.get(i).convertToMostSuccinctTimeUnit()));
+            }
+            return builder.append("max ").append(max.convertToMostSuccinctTimeUnit()).toString();
+        }
+    }
+
+    /**
+     * Collects the result of the queries of a phase from all its connections.
+     */
+    static class Collector
+    {
+        private final String name;
+        private final int connections;
+        private final Distribution latency = new Distribution();
+        private final Distribution timeToFirstRow = new Distribution();
+        private final AtomicLong queries = new AtomicLong();
+        private final AtomicLong failedQueries = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+
+        Collector(String name, int connections)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.connections = connections;
+        }
+
+        void addQuery(long latencyNanos, long timeToFirstRowNanos, long rows, long bytes)
+        {
+            queries.incrementAndGet();
+            latency.add(latencyNanos);
+            timeToFirstRow.add(timeToFirstRowNanos);
+            this.rows.addAndGet(rows);
+            this.bytes.addAndGet(bytes);
+        }
+
+        void addFailedQuery(String message, long bytes)
+        {
+            queries.incrementAndGet();
+            failedQueries.incrementAndGet();
+            errors.computeIfAbsent(message, ignored -> new AtomicLong()).incrementAndGet();
+            this.bytes.addAndGet(bytes);
+        }
+
+        PhaseResult build(Duration wallTime)
+        {
+            return new PhaseResult(
+                    name,
+                    connections,
+                    wallTime,
+                    queries.get(),
+                    failedQueries.get(),
+                    rows.get(),
+                    bytes.get(),
+                    toLatency(latency),
+                    toLatency(timeToFirstRow),
+                    errors.entrySet().stream().collect(toImmutableMap(Map.Entry::getKey, entry -> entry.getValue().get())));
+        }
+
+        private static Latency toLatency(Distribution distribution)
+        {
+            if (distribution.getCount() == 0) {
+                Duration zero = new Duration(0, NANOSECONDS);
+                return new Latency(PERCENTILES.stream().map(ignored -> zero).collect(toImmutableList()), zero);
+            }
+            return new Latency(
+                    distribution.getPercentiles(PERCENTILES).stream()
+                            .map(nanos -> new Duration(nanos, NANOSECONDS))
+                            .collect(toImmutableList()),
+                    new Duration(distribution.getMax(), NANOSECONDS));
+        }
+    }
+}
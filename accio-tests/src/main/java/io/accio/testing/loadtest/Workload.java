@@ -0,0 +1,220 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.testing.loadtest;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import io.accio.base.type.PGType;
+import io.accio.base.type.PGTypes;
+import io.airlift.units.Duration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A workload replayed by {@link LoadGenerator}. The phases run one after another; every connection of a phase
+ * runs the queries of the phase round-robin, each one with the next of its parameter sets, until the phase
+ * reaches its duration or every connection ran its iterations. For example:
+ * <pre>
+ * {
+ *   "database": "accio",
+ *   "schema": "test",
+ *   "phases": [
+ *     {"name": "warmup", "connections": 4, "iterations": 100, "queries": [...]},
+ *     {"name": "steady", "connections": 32, "duration": "1m", "queries": [
+ *       {"name": "point", "sql": "SELECT * FROM Orders WHERE orderkey = $1", "parameterTypes": ["int4"], "parameters": [["1"], ["2"]]}
+ *     ]}
+ *   ]
+ * }
+ * </pre>
+ */
+public class Workload
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper().disable(FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private final String database;
+    private final Optional<String> schema;
+    private final List<Phase> phases;
+
+    public static Workload fromJson(String json)
+            throws IOException
+    {
+        return MAPPER.readValue(json, Workload.class);
+    }
+
+    public static Workload fromFile(Path path)
+            throws IOException
+    {
+        return MAPPER.readValue(path.toFile(), Workload.class);
+    }
+
+    @JsonCreator
+    public Workload(
+            @JsonProperty("database") String database,
+            @JsonProperty("schema") String schema,
+            @JsonProperty("phases") List<Phase> phases)
+    {
+        this.database = requireNonNull(database, "database is null");
+        this.schema = Optional.ofNullable(schema);
+        this.phases = ImmutableList.copyOf(requireNonNull(phases, "phases is null"));
+        checkArgument(!this.phases.isEmpty(), "phases is empty");
+    }
+
+    @JsonProperty
+    public String getDatabase()
+    {
+        return database;
+    }
+
+    public Optional<String> getSchema()
+    {
+        return schema;
+    }
+
+    @JsonProperty
+    public List<Phase> getPhases()
+    {
+        return phases;
+    }
+
+    public static class Phase
+    {
+        private final String name;
+        private final int connections;
+        private final Optional<Duration> duration;
+        private final Optional<Integer> iterations;
+        private final List<Query> queries;
+
+        @JsonCreator
+        public Phase(
+                @JsonProperty("name") String name,
+                @JsonProperty("connections") int connections,
+                @JsonProperty("duration") Duration duration,
+                @JsonProperty("iterations") Integer iterations,
+                @JsonProperty("queries") List<Query> queries)
+        {
+            this.name = requireNonNull(name, "name is null");
+            checkArgument(connections > 0, "connections of phase %s must be positive", name);
+            this.connections = connections;
+            checkArgument(duration != null || iterations != null, "phase %s requires a duration or iterations", name);
+            this.duration = Optional.ofNullable(duration);
+            this.iterations = Optional.ofNullable(iterations);
+            this.queries = ImmutableList.copyOf(requireNonNull(queries, "queries is null"));
+            checkArgument(!this.queries.isEmpty(), "queries of phase %s is empty", name);
+        }
+
+        @JsonProperty
+        public String getName()
+        {
+            return name;
+        }
+
+        @JsonProperty
+        public int getConnections()
+        {
+            return connections;
+        }
+
+        public Optional<Duration> getDuration()
+        {
+            return duration;
+        }
+
+        /**
+         * The number of queries every connection runs.
+         */
+        public Optional<Integer> getIterations()
+        {
+            return iterations;
+        }
+
+        @JsonProperty
+        public List<Query> getQueries()
+        {
+            return queries;
+        }
+    }
+
+    public static class Query
+    {
+        private final String name;
+        private final String sql;
+        private final List<PGType<?>> parameterTypes;
+        private final List<List<String>> parameters;
+
+        /**
+         * @param parameterTypes the pg type names of the parameters, e.g. int4 or varchar
+         * @param parameters the parameter sets in the text format
+         */
+        @JsonCreator
+        public Query(
+                @JsonProperty("name") String name,
+                @JsonProperty("sql") String sql,
+                @JsonProperty("parameterTypes") List<String> parameterTypes,
+                @JsonProperty("parameters") List<List<String>> parameters)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.sql = requireNonNull(sql, "sql is null");
+            this.parameterTypes = parameterTypes == null ? ImmutableList.of() : parameterTypes.stream().map(Query::toPgType).collect(toImmutableList());
+            this.parameters = parameters == null ? ImmutableList.of() : parameters.stream().map(ImmutableList::copyOf).collect(toImmutableList());
+            checkArgument(this.parameterTypes.isEmpty() || !this.parameters.isEmpty(), "query %s has parameter types but no parameters", name);
+            this.parameters.forEach(values -> checkArgument(values.size() == this.parameterTypes.size(),
+                    "query %s has %s parameter types but a parameter set of %s", name, this.parameterTypes.size(), values.size()));
+        }
+
+        private static PGType<?> toPgType(String typeName)
+        {
+            for (PGType<?> type : PGTypes.pgTypes()) {
+                if (type.typName().equalsIgnoreCase(typeName)) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException(format("unknown parameter type %s", typeName));
+        }
+
+        @JsonProperty
+        public String getName()
+        {
+            return name;
+        }
+
+        @JsonProperty
+        public String getSql()
+        {
+            return sql;
+        }
+
+        public List<PGType<?>> getParameterTypes()
+        {
+            return parameterTypes;
+        }
+
+        @JsonProperty
+        public List<List<String>> getParameters()
+        {
+            return parameters;
+        }
+    }
+}
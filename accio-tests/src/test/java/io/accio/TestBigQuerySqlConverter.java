@@ -357,5 +357,20 @@ public class TestBigQuerySqlConverter
         assertThat(bigQuerySqlConverter.convert(
                 "SELECT DATE '2023-07-04' + INTERVAL '1 YEAR'", SessionContext.builder().build()))
                 .isEqualTo("SELECT (CAST('2023-07-04' AS DATE) + INTERVAL '1' YEAR)\n\n");
+
+        assertThat(bigQuerySqlConverter.convert(
+                "SELECT TIMESTAMP '2023-07-04 09:41:43' + INTERVAL '1 YEAR' + INTERVAL '1 DAY'", SessionContext.builder().build()))
+                .isEqualTo("SELECT ((CAST(TIMESTAMP '2023-07-04 09:41:43' AS DATETIME) + INTERVAL '1' YEAR) + INTERVAL '1' DAY)\n\n");
+    }
+
+    @Test
+    public void testRemoveParameterInTypesInCast()
+    {
+        assertThat(bigQuerySqlConverter.convert(
+                "SELECT CAST(CAST(a AS VARCHAR(10)) AS VARCHAR(5)) x FROM t GROUP BY (CAST(CAST(a AS VARCHAR(10)) AS VARCHAR(5)), b)", SessionContext.builder().build()))
+                .isEqualTo("SELECT CAST(CAST(a AS STRING) AS STRING) x\n" +
+                        "FROM\n" +
+                        "  t\n" +
+                        "GROUP BY x, b\n");
     }
 }
@@ -77,7 +77,7 @@ public class TestBigQueryCacheService
         BigQueryClient bigQueryClient = provideBigQuery(bigQueryConfig, headerProvider, bigQueryCredentialsSupplier);
         gcsStorageClient = provideGcsStorageClient(bigQueryConfig, headerProvider, bigQueryCredentialsSupplier);
         BigQueryMetadata bigQueryMetadata = new BigQueryMetadata(bigQueryClient, bigQueryConfig);
-        this.bigQueryCacheService = new BigQueryCacheService(bigQueryMetadata, bigQueryConfig, gcsStorageClient);
+        this.bigQueryCacheService = new BigQueryCacheService(bigQueryMetadata, bigQueryConfig, gcsStorageClient, bigQueryClient);
     }
 
     @Test
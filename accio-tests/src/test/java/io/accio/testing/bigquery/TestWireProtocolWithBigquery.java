@@ -1049,5 +1049,6 @@ public class TestWireProtocolWithBigquery
         for (Map.Entry<String, String> config : PostgresWireProtocol.DEFAULT_PG_CONFIGS.entrySet()) {
             protocolClient.assertParameterStatus(config.getKey(), config.getValue());
         }
+        protocolClient.assertBackendKeyData();
     }
 }
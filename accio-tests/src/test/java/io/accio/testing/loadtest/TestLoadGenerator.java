@@ -0,0 +1,254 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.testing.loadtest;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HostAndPort;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the load generator against a fake backend that answers every query with the number of rows in its sql,
+ * so the scheduling of the queries and the accounting of the results are checked without a server.
+ */
+@Test(singleThreaded = true)
+public class TestLoadGenerator
+{
+    private final ConcurrentLinkedQueue<String> executed = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Map<String, String>> startups = new ConcurrentLinkedQueue<>();
+    private ExecutorService executor;
+    private ServerSocket serverSocket;
+
+    @BeforeClass
+    public void setup()
+            throws IOException
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("fake-backend-%s"));
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.submit(() -> {
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                executor.submit(() -> serve(socket));
+            }
+            return null;
+        });
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void close()
+            throws IOException
+    {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testIterations()
+            throws Exception
+    {
+        executed.clear();
+        startups.clear();
+        Workload workload = Workload.fromJson("{\"database\": \"accio\", \"schema\": \"tpch\", \"phases\": [" +
+                "{\"name\": \"mixed\", \"connections\": 2, \"iterations\": 3, \"queries\": [" +
+                "{\"name\": \"point\", \"sql\": \"SELECT 2 rows WHERE name = $1\", \"parameterTypes\": [\"varchar\"], \"parameters\": [[\"a\"], [\"b\"]]}," +
+                "{\"name\": \"broken\", \"sql\": \"SELECT fail\"}]}]}");
+        List<PhaseResult> results = new LoadGenerator(HostAndPort.fromParts("localhost", serverSocket.getLocalPort()), "accio", "ignored").run(workload);
+
+        assertThat(results).hasSize(1);
+        PhaseResult result = results.get(0);
+        assertThat(result.getName()).isEqualTo("mixed");
+        assertThat(result.getConnections()).isEqualTo(2);
+        assertThat(result.getQueries()).isEqualTo(6);
+        assertThat(result.getFailedQueries()).isEqualTo(3);
+        assertThat(result.getErrors()).isEqualTo(ImmutableMap.of("broken: relation fail does not exist", 3L));
+        assertThat(result.getRows()).isEqualTo(6);
+        assertThat(result.getBytes()).isPositive();
+        assertThat(result.getTimeToFirstRow().getMax()).isLessThanOrEqualTo(result.getLatency().getMax());
+
+        // every connection starts at a different query and the parameter sets of a query rotate
+        assertThat(executed).containsExactlyInAnyOrder(
+                "SELECT 2 rows WHERE name = $1 [a]",
+                "SELECT 2 rows WHERE name = $1 [b]",
+                "SELECT 2 rows WHERE name = $1 [b]",
+                "SELECT fail []",
+                "SELECT fail []",
+                "SELECT fail []");
+        assertThat(startups).hasSize(2).allSatisfy(startup -> assertThat(startup)
+                .containsEntry("database", "accio")
+                .containsEntry("user", "accio")
+                .containsEntry("search_path", "tpch"));
+    }
+
+    @Test
+    public void testDuration()
+            throws Exception
+    {
+        Workload workload = Workload.fromJson("{\"database\": \"accio\", \"phases\": [" +
+                "{\"name\": \"steady\", \"connections\": 1, \"duration\": \"200ms\", \"queries\": [{\"name\": \"one\", \"sql\": \"SELECT 1 rows\"}]}]}");
+        PhaseResult result = new LoadGenerator(HostAndPort.fromParts("localhost", serverSocket.getLocalPort()), "accio", "ignored")
+                .runPhase(workload, workload.getPhases().get(0));
+
+        assertThat(result.getQueries()).isPositive();
+        assertThat(result.getFailedQueries()).isZero();
+        assertThat(result.getRows()).isEqualTo(result.getQueries());
+        assertThat(result.getWallTime().toMillis()).isGreaterThanOrEqualTo(200);
+    }
+
+    private Void serve(Socket socket)
+            throws IOException
+    {
+        try (socket;
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            byte[] startup = new byte[in.readInt() - 4];
+            in.readFully(startup);
+            startups.add(parseStartup(startup));
+            // AuthenticationOk and ReadyForQuery
+            writeMessage(out, 'R', ByteBuffer.allocate(4).putInt(0).array());
+            writeMessage(out, 'Z', new byte[] {'I'});
+            out.flush();
+
+            String sql = null;
+            List<String> parameters = ImmutableList.of();
+            while (true) {
+                int type = in.read();
+                if (type == -1 || type == 'X') {
+                    return null;
+                }
+                byte[] body = new byte[in.readInt() - 4];
+                in.readFully(body);
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                switch (type) {
+                    case 'P':
+                        readCString(buffer);
+                        sql = readCString(buffer);
+                        break;
+                    case 'B':
+                        parameters = parseBind(buffer);
+                        break;
+                    case 'S':
+                        executed.add(sql + " " + parameters);
+                        respond(out, sql);
+                        break;
+                    default:
+                        // Execute
+                }
+            }
+        }
+    }
+
+    private static void respond(DataOutputStream out, String sql)
+            throws IOException
+    {
+        writeMessage(out, '1', new byte[0]);
+        writeMessage(out, '2', new byte[0]);
+        Matcher matcher = Pattern.compile("SELECT (\\d+) rows").matcher(sql);
+        if (matcher.find()) {
+            int rows = Integer.parseInt(matcher.group(1));
+            for (int i = 0; i < rows; i++) {
+                byte[] value = String.valueOf(i).getBytes(UTF_8);
+                writeMessage(out, 'D', ByteBuffer.allocate(6 + value.length).putShort((short) 1).putInt(value.length).put(value).array());
+            }
+            writeMessage(out, 'C', cString("SELECT " + rows));
+        }
+        else {
+            byte[] severity = cString("ERROR");
+            byte[] message = cString("relation fail does not exist");
+            writeMessage(out, 'E', ByteBuffer.allocate(2 + severity.length + message.length + 1)
+                    .put((byte) 'S').put(severity)
+                    .put((byte) 'M').put(message)
+                    .put((byte) 0)
+                    .array());
+        }
+        writeMessage(out, 'Z', new byte[] {'I'});
+        out.flush();
+    }
+
+    private static Map<String, String> parseStartup(byte[] startup)
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(startup);
+        // protocol version
+        buffer.getInt();
+        Map<String, String> properties = new HashMap<>();
+        while (buffer.remaining() > 1) {
+            properties.put(readCString(buffer), readCString(buffer));
+        }
+        return properties;
+    }
+
+    private static List<String> parseBind(ByteBuffer buffer)
+    {
+        // portal and statement
+        readCString(buffer);
+        readCString(buffer);
+        short formats = buffer.getShort();
+        buffer.position(buffer.position() + formats * 2);
+        short count = buffer.getShort();
+        List<String> parameters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] value = new byte[buffer.getInt()];
+            buffer.get(value);
+            parameters.add(new String(value, UTF_8));
+        }
+        return parameters;
+    }
+
+    private static void writeMessage(DataOutputStream out, char type, byte[] body)
+            throws IOException
+    {
+        out.writeByte(type);
+        out.writeInt(4 + body.length);
+        out.write(body);
+    }
+
+    private static String readCString(ByteBuffer buffer)
+    {
+        int start = buffer.position();
+        while (buffer.get() != 0) {
+            // find the terminator
+        }
+        return new String(buffer.array(), start, buffer.position() - start - 1, UTF_8);
+    }
+
+    private static byte[] cString(String value)
+    {
+        byte[] bytes = value.getBytes(UTF_8);
+        return ByteBuffer.allocate(bytes.length + 1).put(bytes).put((byte) 0).array();
+    }
+}
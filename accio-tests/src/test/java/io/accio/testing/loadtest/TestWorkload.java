@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.testing.loadtest;
+
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.Duration;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static io.accio.base.type.IntegerType.INTEGER;
+import static io.accio.base.type.VarcharType.VARCHAR;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestWorkload
+{
+    @Test
+    public void testFromFile()
+            throws Exception
+    {
+        Workload workload = Workload.fromFile(Path.of(requireNonNull(getClass().getClassLoader().getResource("loadtest/postgres_workload.json")).toURI()));
+        assertThat(workload.getDatabase()).isEqualTo("accio");
+        assertThat(workload.getSchema()).hasValue("test");
+        assertThat(workload.getPhases()).extracting(Workload.Phase::getName).containsExactly("warmup", "mixed");
+
+        Workload.Phase mixed = workload.getPhases().get(1);
+        assertThat(mixed.getConnections()).isEqualTo(8);
+        assertThat(mixed.getIterations()).hasValue(50);
+        assertThat(mixed.getDuration()).isEmpty();
+
+        Workload.Query range = mixed.getQueries().get(1);
+        assertThat(range.getParameterTypes()).containsExactly(VARCHAR, INTEGER);
+        assertThat(range.getParameters()).containsExactly(List.of("name_10", "100"), List.of("name_20", "1000"));
+        assertThat(mixed.getQueries().get(2).getParameters()).isEmpty();
+    }
+
+    @Test
+    public void testDuration()
+            throws Exception
+    {
+        Workload workload = Workload.fromJson("{\"database\": \"accio\", \"phases\": [" +
+                "{\"name\": \"steady\", \"connections\": 4, \"duration\": \"30s\", \"queries\": [{\"name\": \"one\", \"sql\": \"SELECT 1\"}]}]}");
+        assertThat(workload.getSchema()).isEmpty();
+        assertThat(workload.getPhases().get(0).getDuration()).hasValue(new Duration(30, SECONDS));
+        assertThat(workload.getPhases().get(0).getIterations()).isEmpty();
+    }
+
+    @Test
+    public void testInvalid()
+    {
+        assertThatThrownBy(() -> Workload.fromJson("{\"database\": \"accio\", \"phases\": [" +
+                "{\"name\": \"steady\", \"connections\": 4, \"queries\": [{\"name\": \"one\", \"sql\": \"SELECT 1\"}]}]}"))
+                .hasStackTraceContaining("phase steady requires a duration or iterations");
+        assertThatThrownBy(() -> Workload.fromJson("{\"database\": \"accio\", \"phases\": [" +
+                "{\"name\": \"steady\", \"connections\": 0, \"iterations\": 1, \"queries\": [{\"name\": \"one\", \"sql\": \"SELECT 1\"}]}]}"))
+                .hasStackTraceContaining("connections of phase steady must be positive");
+        assertThatThrownBy(() -> Workload.fromJson("{\"database\": \"accio\", \"phases\": [" +
+                "{\"name\": \"steady\", \"connections\": 1, \"iterations\": 1, \"queries\": [" +
+                "{\"name\": \"point\", \"sql\": \"SELECT $1\", \"parameterTypes\": [\"int4\"], \"parameters\": [[\"1\", \"2\"]]}]}]}"))
+                .hasStackTraceContaining("query point has 1 parameter types but a parameter set of 2");
+        assertThatThrownBy(() -> Workload.fromJson("{\"database\": \"accio\", \"phases\": [" +
+                "{\"name\": \"steady\", \"connections\": 1, \"iterations\": 1, \"queries\": [" +
+                "{\"name\": \"point\", \"sql\": \"SELECT $1\", \"parameterTypes\": [\"foo\"], \"parameters\": [[\"1\"]]}]}]}"))
+                .hasStackTraceContaining("unknown parameter type foo");
+    }
+
+    @Test
+    public void testReport()
+    {
+        PhaseResult.Collector collector = new PhaseResult.Collector("steady", 2);
+        for (int i = 1; i <= 100; i++) {
+            collector.addQuery(MILLISECONDS.toNanos(i), MILLISECONDS.toNanos(i) / 2, 10, 100);
+        }
+        collector.addFailedQuery("point: table not found", 20);
+        PhaseResult result = collector.build(new Duration(2, SECONDS));
+
+        assertThat(result.getQueries()).isEqualTo(101);
+        assertThat(result.getFailedQueries()).isEqualTo(1);
+        assertThat(result.getRows()).isEqualTo(1000);
+        assertThat(result.getBytes()).isEqualTo(10020);
+        assertThat(result.getQueriesPerSecond()).isEqualTo(50.5);
+        assertThat(result.getLatency().getP50().getValue(MILLISECONDS)).isBetween(49.0, 52.0);
+        assertThat(result.getLatency().getP99().getValue(MILLISECONDS)).isBetween(98.0, 100.0);
+        assertThat(result.getLatency().getMax()).isEqualByComparingTo(new Duration(100, MILLISECONDS));
+        assertThat(result.getTimeToFirstRow().getMax()).isEqualByComparingTo(new Duration(50, MILLISECONDS));
+        assertThat(result.getErrors()).isEqualTo(ImmutableMap.of("point: table not found", 1L));
+        assertThat(result.toReport())
+                .contains("phase steady: 2 connections")
+                .contains("101 queries (1 failed), 50.5 queries/s")
+                .contains("p99.9")
+                .contains("1 x point: table not found");
+    }
+
+    @Test
+    public void testEmptyReport()
+    {
+        PhaseResult result = new PhaseResult.Collector("idle", 1).build(new Duration(1, SECONDS));
+        assertThat(result.getQueries()).isZero();
+        assertThat(result.getLatency().getP99()).isEqualByComparingTo(new Duration(0, MILLISECONDS));
+        assertThat(result.toReport()).contains("0 queries (0 failed)");
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.testing.postgres;
+
+import io.accio.testing.loadtest.LoadGenerator;
+import io.accio.testing.loadtest.PhaseResult;
+import io.accio.testing.loadtest.Workload;
+import io.airlift.log.Logger;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestLoadGeneratorWithPostgres
+        extends AbstractWireProtocolTestWithPostgres
+{
+    private static final Logger LOG = Logger.get(TestLoadGeneratorWithPostgres.class);
+
+    @Override
+    protected Optional<String> getAccioMDLPath()
+    {
+        return Optional.of(requireNonNull(getClass().getClassLoader().getResource("cache/cache_postgres_mdl.json")).getPath());
+    }
+
+    @Override
+    protected String getDefaultCatalog()
+    {
+        return "accio";
+    }
+
+    @Override
+    protected String getDefaultSchema()
+    {
+        return "test";
+    }
+
+    @Test
+    public void testWorkload()
+            throws Exception
+    {
+        Workload workload = Workload.fromFile(Path.of(requireNonNull(getClass().getClassLoader().getResource("loadtest/postgres_workload.json")).toURI()));
+        List<PhaseResult> results = new LoadGenerator(server().getPgHostAndPort(), "accio", MOCK_PASSWORD).run(workload);
+        results.forEach(result -> LOG.info("%s", result.toReport()));
+
+        assertThat(results).extracting(PhaseResult::getName).containsExactly("warmup", "mixed");
+        for (int i = 0; i < results.size(); i++) {
+            Workload.Phase phase = workload.getPhases().get(i);
+            PhaseResult result = results.get(i);
+            assertThat(result.getErrors()).isEmpty();
+            assertThat(result.getQueries()).isEqualTo((long) phase.getConnections() * phase.getIterations().orElseThrow());
+            assertThat(result.getRows()).isPositive();
+            assertThat(result.getLatency().getP50()).isLessThanOrEqualTo(result.getLatency().getMax());
+            assertThat(result.getTimeToFirstRow().getMax()).isLessThanOrEqualTo(result.getLatency().getMax());
+        }
+    }
+
+    /**
+     * Replay a workload file against a local server backed by PostgreSQL:
+     * {@code TestLoadGeneratorWithPostgres [workload.json] [mdl.json]}.
+     */
+    public static void main(String[] args)
+            throws Exception
+    {
+        TestLoadGeneratorWithPostgres test = new TestLoadGeneratorWithPostgres()
+        {
+            @Override
+            protected Optional<String> getAccioMDLPath()
+            {
+                return args.length > 1 ? Optional.of(args[1]) : super.getAccioMDLPath();
+            }
+        };
+        test.init();
+        try {
+            Path workloadFile = args.length > 0
+                    ? Path.of(args[0])
+                    : Path.of(requireNonNull(TestLoadGeneratorWithPostgres.class.getClassLoader().getResource("loadtest/postgres_workload.json")).toURI());
+            new LoadGenerator(test.server().getPgHostAndPort(), "accio", MOCK_PASSWORD)
+                    .run(Workload.fromFile(workloadFile))
+                    .forEach(result -> LOG.info("%s", result.toReport()));
+        }
+        finally {
+            test.close();
+        }
+    }
+}
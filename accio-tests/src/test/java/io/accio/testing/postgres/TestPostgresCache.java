@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.testing.postgres;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Key;
+import io.accio.base.client.AutoCloseableIterator;
+import io.accio.base.client.duckdb.DuckdbClient;
+import io.accio.cache.CachedTableMapping;
+import org.testng.annotations.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Test(singleThreaded = true)
+public class TestPostgresCache
+        extends AbstractWireProtocolTestWithPostgres
+{
+    private final Supplier<CachedTableMapping> cachedTableMapping = () -> getInstance(Key.get(CachedTableMapping.class));
+    private final Supplier<DuckdbClient> duckdbClient = () -> getInstance(Key.get(DuckdbClient.class));
+
+    @Override
+    protected Optional<String> getAccioMDLPath()
+    {
+        return Optional.of(requireNonNull(getClass().getClassLoader().getResource("cache/cache_postgres_mdl.json")).getPath());
+    }
+
+    @Override
+    protected String getDefaultCatalog()
+    {
+        return "accio";
+    }
+
+    @Override
+    protected String getDefaultSchema()
+    {
+        return "test";
+    }
+
+    @Test
+    public void testCopyIntoDuckdb()
+    {
+        String tableName = cachedTableMapping.get().getCacheInfoPair("accio", "test", "Series").getRequiredTableName();
+
+        List<Object[]> count = queryDuckdb(format("select count(*), count(distinct id), min(id), max(id) from \"%s\"", tableName));
+        assertThat(count.get(0)).containsExactly(10000L, 10000L, 1, 10000);
+
+        List<Object[]> row = queryDuckdb(format("select id, name, amount, created from \"%s\" where id = 42", tableName));
+        assertThat(row).hasSize(1);
+        assertThat(row.get(0)[1]).isEqualTo("name_42");
+        assertThat(((BigDecimal) row.get(0)[2]).compareTo(new BigDecimal("63.0"))).isEqualTo(0);
+        assertThat(row.get(0)[3].toString()).isEqualTo("2023-02-12");
+    }
+
+    @Test
+    public void testMetricOnCachedModel()
+    {
+        // AmountByDate is refreshed after Series and computed from the cached Series table
+        String tableName = cachedTableMapping.get().getCacheInfoPair("accio", "test", "AmountByDate").getRequiredTableName();
+
+        List<Object[]> count = queryDuckdb(format("select count(*) from \"%s\"", tableName));
+        assertThat(count.get(0)[0]).isEqualTo(10000L);
+
+        List<Object[]> row = queryDuckdb(format("select total from \"%s\" where created = date '2023-02-12'", tableName));
+        assertThat(row).hasSize(1);
+        assertThat(new BigDecimal(row.get(0)[0].toString()).compareTo(new BigDecimal("63.0"))).isEqualTo(0);
+    }
+
+    @Test
+    public void testNumericScale()
+    {
+        String tableName = cachedTableMapping.get().getCacheInfoPair("accio", "test", "Precise").getRequiredTableName();
+
+        List<Object[]> types = queryDuckdb(format("select typeof(declared), typeof(unconstrained) from \"%s\" limit 1", tableName));
+        assertThat(types.get(0)).containsExactly("DECIMAL(20,12)", "DECIMAL(13,12)");
+
+        List<Object[]> row = queryDuckdb(format("select declared, unconstrained from \"%s\" where id = 2", tableName));
+        assertThat(row.get(0)[0]).isEqualTo(new BigDecimal("2.123456789012"));
+        assertThat(row.get(0)[1]).isEqualTo(new BigDecimal("0.000000000002"));
+    }
+
+    private List<Object[]> queryDuckdb(String statement)
+    {
+        try (AutoCloseableIterator<Object[]> iterator = duckdbClient.get().query(statement)) {
+            ImmutableList.Builder<Object[]> builder = ImmutableList.builder();
+            while (iterator.hasNext()) {
+                builder.add(iterator.next());
+            }
+            return builder.build();
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -17,15 +17,20 @@ package io.accio.testing.postgres;
 import com.google.common.collect.ImmutableList;
 import io.accio.base.type.PGType;
 import io.accio.base.type.PGTypes;
+import io.accio.main.wireprotocol.CancelRegistry;
 import io.accio.main.wireprotocol.PostgresWireProtocol;
 import io.accio.testing.TestingWireProtocolClient;
 import org.assertj.core.api.AssertionsForClassTypes;
 import org.intellij.lang.annotations.Language;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 import org.postgresql.util.PGInterval;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.ParameterMetaData;
@@ -216,6 +221,54 @@ public class TestWireProtocolWithPostgres
         }
     }
 
+    @Test
+    public void testCancelSuspendedPortal()
+            throws IOException
+    {
+        try (TestingWireProtocolClient protocolClient = wireProtocolClient()) {
+            protocolClient.sendStartUpMessage(196608, MOCK_PASSWORD, "test", "canner");
+            protocolClient.assertAuthOk();
+            for (Map.Entry<String, String> config : PostgresWireProtocol.DEFAULT_PG_CONFIGS.entrySet()) {
+                protocolClient.assertParameterStatus(config.getKey(), config.getValue());
+            }
+            CancelRegistry.BackendKey backendKey = protocolClient.assertBackendKeyData();
+            protocolClient.assertReadyForQuery('I');
+
+            protocolClient.sendParse("teststmt", "select * from (values ('rows1', 10), ('rows2', 10)) as t(col1, col2)", ImmutableList.of());
+            protocolClient.sendBind("exec1", "teststmt", ImmutableList.of());
+            protocolClient.sendExecute("exec1", 1);
+            protocolClient.sendSync();
+
+            protocolClient.assertParseComplete();
+            protocolClient.assertBindComplete();
+            protocolClient.assertDataRow("rows1,10");
+            protocolClient.assertPortalPortalSuspended();
+            protocolClient.assertReadyForQuery('I');
+
+            // nothing is executing, the CancelRequest cancels the suspended portal
+            try (TestingWireProtocolClient cancelClient = wireProtocolClient()) {
+                cancelClient.sendCancelRequest(backendKey.getProcessId(), backendKey.getSecretKey());
+                // the server closes the connection once the query is canceled
+                assertThatThrownBy(cancelClient::readMessage).isInstanceOf(EOFException.class);
+            }
+
+            protocolClient.sendExecute("exec1", 1);
+            protocolClient.sendSync();
+            protocolClient.assertErrorMessage(".*canceling statement due to user request.*");
+            protocolClient.assertReadyForQuery('I');
+
+            // the statement can be bound again
+            protocolClient.sendBind("exec2", "teststmt", ImmutableList.of());
+            protocolClient.sendExecute("exec2", 0);
+            protocolClient.sendSync();
+            protocolClient.assertBindComplete();
+            protocolClient.assertDataRow("rows1,10");
+            protocolClient.assertDataRow("rows2,10");
+            protocolClient.assertCommandComplete("SELECT 2");
+            protocolClient.assertReadyForQuery('I');
+        }
+    }
+
     @Test
     public void testCloseExtendedQuery()
             throws IOException
@@ -602,6 +655,41 @@ public class TestWireProtocolWithPostgres
         }
     }
 
+    @Test
+    public void testJdbcCancel()
+            throws Exception
+    {
+        try (Connection conn = createConnection();
+                Statement stmt = conn.createStatement()) {
+            // the driver cancels the statement with a CancelRequest when the timeout expires
+            stmt.setQueryTimeout(1);
+            assertThatThrownBy(() -> stmt.executeQuery("select pg_sleep(30)"))
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("canceling statement due to user request");
+
+            // the connection is still usable
+            ResultSet result = stmt.executeQuery("select 1");
+            assertThat(result.next()).isTrue();
+        }
+    }
+
+    @Test
+    public void testJdbcCopyOut()
+            throws Exception
+    {
+        try (Connection conn = createConnection()) {
+            CopyManager copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+            StringWriter writer = new StringWriter();
+            long rows = copyManager.copyOut("COPY (select * from (values ('a,b', 1), (null, 2)) as t(col1, col2)) TO STDOUT WITH (FORMAT csv, HEADER)", writer);
+            assertThat(rows).isEqualTo(2);
+            assertThat(writer.toString()).isEqualTo("col1,col2\n\"a,b\",1\n,2\n");
+
+            writer = new StringWriter();
+            copyManager.copyOut("COPY (select * from (values ('a\tb', 1)) as t(col1, col2)) TO STDOUT", writer);
+            assertThat(writer.toString()).isEqualTo("a\\tb\t1\n");
+        }
+    }
+
     @Test
     public void testJdbcPreparedStatement()
             throws SQLException
@@ -932,5 +1020,6 @@ public class TestWireProtocolWithPostgres
         for (Map.Entry<String, String> config : PostgresWireProtocol.DEFAULT_PG_CONFIGS.entrySet()) {
             protocolClient.assertParameterStatus(config.getKey(), config.getValue());
         }
+        protocolClient.assertBackendKeyData();
     }
 }
@@ -33,7 +33,7 @@ public class EnumValueValidation
         extends ValidationRule
 {
     public static final EnumValueValidation ENUM_VALUE_VALIDATION = new EnumValueValidation();
-    private static final String RULE_PREFIX = "enum_";
+    static final String RULE_PREFIX = "enum_";
 
     @Override
     public List<CompletableFuture<ValidationResult>> validate(Client client, AccioMDL accioMDL)
@@ -52,14 +52,14 @@ public class EnumValueValidation
     {
         return CompletableFuture.supplyAsync(() -> {
             long start = System.currentTimeMillis();
-            try (AutoCloseableIterator<Object[]> result = client.query(buildEnumCheck(refSql, columName, enumDefinition.getValues().stream().map(EnumValue::getValue).collect(toUnmodifiableList())))) {
+            try (AutoCloseableIterator<Object[]> result = client.query(buildEnumCheck(refSql, columName, enumDefinition))) {
                 long elapsed = System.currentTimeMillis() - start;
                 if (result.hasNext()) {
                     Object[] row = result.next();
                     if ((boolean) row[0]) {
                         return ValidationResult.pass(ValidationResult.formatRuleWithIdentifier(RULE_PREFIX + enumDefinition.getName(), modelName, columName), Duration.of(elapsed, ChronoUnit.MILLIS));
                     }
-                    return ValidationResult.fail(ValidationResult.formatRuleWithIdentifier(RULE_PREFIX + enumDefinition.getName(), modelName, columName), Duration.of(elapsed, ChronoUnit.MILLIS), "Got invalid enum value in " + columName);
+                    return ValidationResult.fail(ValidationResult.formatRuleWithIdentifier(RULE_PREFIX + enumDefinition.getName(), modelName, columName), Duration.of(elapsed, ChronoUnit.MILLIS), buildFailMessage(columName));
                 }
                 return ValidationResult.error(ValidationResult.formatRuleWithIdentifier(RULE_PREFIX + enumDefinition.getName(), modelName, columName), Duration.of(elapsed, ChronoUnit.MILLIS), "Query executed failed");
             }
@@ -69,10 +69,20 @@ public class EnumValueValidation
         });
     }
 
-    private String buildEnumCheck(String refSql, String columnName, List<String> enumValues)
+    static String buildFailMessage(String columnName)
     {
-        String enumValueString = enumValues.stream().map(EnumValueValidation::singleQuoted).collect(joining(","));
-        return format("WITH source AS (%s) SELECT count(*) = 0 FROM source WHERE %s NOT IN (%s) AND %s IS NOT NULL", refSql, columnName, enumValueString, columnName);
+        return "Got invalid enum value in " + columnName;
+    }
+
+    static String buildInvalidEnumPredicate(String columnName, EnumDefinition enumDefinition)
+    {
+        String enumValueString = enumDefinition.getValues().stream().map(EnumValue::getValue).map(EnumValueValidation::singleQuoted).collect(joining(","));
+        return format("%s NOT IN (%s) AND %s IS NOT NULL", columnName, enumValueString, columnName);
+    }
+
+    private String buildEnumCheck(String refSql, String columnName, EnumDefinition enumDefinition)
+    {
+        return format("WITH source AS (%s) SELECT count(*) = 0 FROM source WHERE %s", refSql, buildInvalidEnumPredicate(columnName, enumDefinition));
     }
 
     private static String singleQuoted(String value)
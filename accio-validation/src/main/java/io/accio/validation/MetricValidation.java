@@ -16,14 +16,22 @@ package io.accio.validation;
 
 import io.accio.base.AccioMDL;
 import io.accio.base.client.Client;
+import io.trino.sql.SqlFormatter.Dialect;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static io.accio.validation.EnumValueValidation.ENUM_VALUE_VALIDATION;
 import static io.accio.validation.NotNullValidation.NOT_NULL;
+import static java.lang.String.format;
+import static java.util.Locale.ENGLISH;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toUnmodifiableList;
 
@@ -35,11 +43,19 @@ public final class MetricValidation
      * Validate with all rules.
      */
     public static List<ValidationResult> validate(Client client, AccioMDL accioMDL)
+    {
+        return validate(client, accioMDL, ValidationOptions.DEFAULT);
+    }
+
+    /**
+     * Validate with all rules, e.g. on a sample of the models.
+     */
+    public static List<ValidationResult> validate(Client client, AccioMDL accioMDL, ValidationOptions options)
     {
         List<ValidationRule> allRule = List.of(
                 NOT_NULL,
                 ENUM_VALUE_VALIDATION);
-        return validate(client, accioMDL, allRule);
+        return validate(client, accioMDL, allRule, options);
     }
 
     /**
@@ -47,23 +63,65 @@ public final class MetricValidation
      */
     public static List<ValidationResult> validate(Client client, AccioMDL accioMDL, List<ValidationRule> rules)
     {
-        Validator validator = new Validator(client, accioMDL);
+        return validate(client, accioMDL, rules, ValidationOptions.DEFAULT);
+    }
+
+    /**
+     * Validate with specific rules. The column checks of the not null, enum value and relationship rules are
+     * fused into one query per model, see {@link ValidationPlanner}. The models are sampled in the dialect of the
+     * options, or in the one of the data source if the options have none.
+     */
+    public static List<ValidationResult> validate(Client client, AccioMDL accioMDL, List<ValidationRule> rules, ValidationOptions options)
+    {
+        ValidationOptions resolvedOptions = options;
+        if (options.getSamplePercentage().isPresent() && options.getDialect().isEmpty()) {
+            resolvedOptions = options.withDialect(getDialect(client));
+        }
+        Validator validator = new Validator(client, accioMDL, resolvedOptions);
         for (ValidationRule rule : rules) {
             validator.register(rule);
         }
         return validator.validate();
     }
 
+    /**
+     * Tell the dialect of the data source from the JDBC metadata of the client, so the models are sampled in its syntax.
+     */
+    static Dialect getDialect(Client client)
+    {
+        String productName;
+        try (Connection connection = client.createConnection()) {
+            productName = connection.getMetaData().getDatabaseProductName();
+        }
+        catch (SQLException | RuntimeException e) {
+            throw new IllegalArgumentException("Failed to get the dialect of the data source, set it in the options to sample the models", e);
+        }
+        switch (productName.toLowerCase(ENGLISH)) {
+            case "duckdb":
+                return Dialect.DUCKDB;
+            case "postgresql":
+                return Dialect.POSTGRES;
+            case "google bigquery":
+                return Dialect.BIGQUERY;
+            case "trino":
+                return Dialect.DEFAULT;
+            default:
+                throw new IllegalArgumentException(format("Unknown dialect of %s, set it in the options to sample the models", productName));
+        }
+    }
+
     static class Validator
     {
         private final Client dbClient;
         private final AccioMDL accioMDL;
+        private final ValidationOptions options;
         private final List<ValidationRule> tasks = new ArrayList<>();
 
-        public Validator(Client client, AccioMDL accioMDL)
+        public Validator(Client client, AccioMDL accioMDL, ValidationOptions options)
         {
             this.dbClient = requireNonNull(client);
             this.accioMDL = requireNonNull(accioMDL);
+            this.options = requireNonNull(options);
         }
 
         public Validator register(ValidationRule task)
@@ -75,18 +133,28 @@ public final class MetricValidation
         public List<ValidationResult> validate()
         {
             final int timeoutInMinutes = 5;
-            // TODO: parallel execute the validation rule
-            return tasks.stream().flatMap(task -> task.validate(dbClient, accioMDL).stream())
-                    .map(future -> {
-                        try {
-                            return future.get(timeoutInMinutes, TimeUnit.MINUTES);
-                        }
-                        catch (Exception e) {
-                            // TODO: remind user which rule is failed
-                            return ValidationResult.error("UnknownRule", Duration.ZERO, "Unexpected error: " + e.getMessage());
-                        }
-                    })
-                    .collect(toUnmodifiableList());
+            ExecutorService executor = Executors.newFixedThreadPool(options.getMaxConcurrency());
+            try {
+                List<ValidationRule> fusedTasks = tasks.stream().filter(ValidationPlanner::isFused).collect(toUnmodifiableList());
+                List<CompletableFuture<ValidationResult>> futures = new ArrayList<>(ValidationPlanner.validate(dbClient, accioMDL, fusedTasks, options, executor));
+                tasks.stream()
+                        .filter(task -> !ValidationPlanner.isFused(task))
+                        .forEach(task -> futures.addAll(task.validate(dbClient, accioMDL)));
+                return futures.stream()
+                        .map(future -> {
+                            try {
+                                return future.get(timeoutInMinutes, TimeUnit.MINUTES);
+                            }
+                            catch (Exception e) {
+                                // TODO: remind user which rule is failed
+                                return ValidationResult.error("UnknownRule", Duration.ZERO, "Unexpected error: " + e.getMessage());
+                            }
+                        })
+                        .collect(toUnmodifiableList());
+            }
+            finally {
+                executor.shutdownNow();
+            }
         }
     }
 }
@@ -35,7 +35,7 @@ public class NotNullValidation
         extends ValidationRule
 {
     public static final NotNullValidation NOT_NULL = new NotNullValidation();
-    private static final String RULE_NAME = "not_null";
+    static final String RULE_NAME = "not_null";
 
     @Override
     public List<CompletableFuture<ValidationResult>> validate(Client client, AccioMDL accioMDL)
@@ -59,7 +59,7 @@ public class NotNullValidation
                     if ((boolean) row[0]) {
                         return pass(formatRuleWithIdentifier(RULE_NAME, modelName, columName), Duration.of(elapsed, ChronoUnit.MILLIS));
                     }
-                    return fail(formatRuleWithIdentifier(RULE_NAME, modelName, columName), Duration.of(elapsed, ChronoUnit.MILLIS), "Got null value in " + columName);
+                    return fail(formatRuleWithIdentifier(RULE_NAME, modelName, columName), Duration.of(elapsed, ChronoUnit.MILLIS), buildFailMessage(columName));
                 }
                 return error(formatRuleWithIdentifier(RULE_NAME, modelName, columName), Duration.of(elapsed, ChronoUnit.MILLIS), "Query executed failed");
             }
@@ -69,6 +69,11 @@ public class NotNullValidation
         });
     }
 
+    static String buildFailMessage(String columnName)
+    {
+        return "Got null value in " + columnName;
+    }
+
     private String buildNotNullCheck(String refSql, String columnName)
     {
         return format("WITH source AS (%s) SELECT count(*) = 0 FROM source WHERE %s IS NULL", refSql, columnName);
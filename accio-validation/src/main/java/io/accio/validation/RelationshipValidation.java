@@ -93,12 +93,12 @@ public class RelationshipValidation
         });
     }
 
-    private String getJoinTypeRuleName(JoinType joinType)
+    static String getJoinTypeRuleName(JoinType joinType)
     {
         return RULE_NAME + "_" + joinType;
     }
 
-    private String buildFailMessage(List<String> invalidModels)
+    static String buildFailMessage(List<String> invalidModels)
     {
         return format("Got duplicate join key in %s", join(",", invalidModels));
     }
@@ -153,12 +153,18 @@ public class RelationshipValidation
     private String buildColumnUniqueValidationSql(DereferenceExpression expression, List<Model> models)
             throws NotFoundException
     {
-        Model model = models.stream().filter(m -> m.getName().equals(expression.getBase().toString()))
-                .findFirst().orElseThrow(() -> new NotFoundException(expression.getBase().toString() + " model is not found"));
+        Model model = findModel(expression, models);
         return format("SELECT count(*) = count(distinct %s) AS result FROM (%s)", expression.getField().orElseThrow(), model.getRefSql());
     }
 
-    private ComparisonExpression getConditionNode(String condition)
+    static Model findModel(DereferenceExpression expression, List<Model> models)
+            throws NotFoundException
+    {
+        return models.stream().filter(m -> m.getName().equals(expression.getBase().toString()))
+                .findFirst().orElseThrow(() -> new NotFoundException(expression.getBase().toString() + " model is not found"));
+    }
+
+    static ComparisonExpression getConditionNode(String condition)
     {
         SqlParser sqlParser = new SqlParser();
         Query statement = (Query) sqlParser.createStatement("SELECT " + condition, new ParsingOptions(AS_DOUBLE));
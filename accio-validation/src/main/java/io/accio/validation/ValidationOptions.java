@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.validation;
+
+import io.trino.sql.SqlFormatter.Dialect;
+
+import java.util.Optional;
+import java.util.OptionalDouble;
+
+import static java.util.Objects.requireNonNull;
+
+public final class ValidationOptions
+{
+    public static final ValidationOptions DEFAULT = builder().build();
+
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    private final int maxConcurrency;
+    private final OptionalDouble samplePercentage;
+    private final Optional<Dialect> dialect;
+
+    private ValidationOptions(int maxConcurrency, OptionalDouble samplePercentage, Optional<Dialect> dialect)
+    {
+        this.maxConcurrency = maxConcurrency;
+        this.samplePercentage = requireNonNull(samplePercentage, "samplePercentage is null");
+        this.dialect = requireNonNull(dialect, "dialect is null");
+    }
+
+    /**
+     * The max number of validation queries sent to the data source at the same time.
+     */
+    public int getMaxConcurrency()
+    {
+        return maxConcurrency;
+    }
+
+    /**
+     * The percentage of rows the models are validated on. A violation found in a sample is a violation of the model,
+     * but a sample without violations doesn't mean the model has none.
+     */
+    public OptionalDouble getSamplePercentage()
+    {
+        return samplePercentage;
+    }
+
+    /**
+     * The dialect of the data source, used to sample the models. If it's empty, the dialect is told from the JDBC
+     * metadata of the client.
+     */
+    public Optional<Dialect> getDialect()
+    {
+        return dialect;
+    }
+
+    public ValidationOptions withDialect(Dialect dialect)
+    {
+        return new ValidationOptions(maxConcurrency, samplePercentage, Optional.of(requireNonNull(dialect, "dialect is null")));
+    }
+
+    public static class Builder
+    {
+        private int maxConcurrency = 4;
+        private OptionalDouble samplePercentage = OptionalDouble.empty();
+        private Optional<Dialect> dialect = Optional.empty();
+
+        public Builder setMaxConcurrency(int maxConcurrency)
+        {
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("maxConcurrency must be positive");
+            }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        public Builder setSamplePercentage(double samplePercentage)
+        {
+            if (samplePercentage <= 0 || samplePercentage > 100) {
+                throw new IllegalArgumentException("samplePercentage must be in (0, 100]");
+            }
+            this.samplePercentage = OptionalDouble.of(samplePercentage);
+            return this;
+        }
+
+        public Builder setDialect(Dialect dialect)
+        {
+            this.dialect = Optional.of(requireNonNull(dialect, "dialect is null"));
+            return this;
+        }
+
+        public ValidationOptions build()
+        {
+            return new ValidationOptions(maxConcurrency, samplePercentage, dialect);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.accio.validation;
+
+import io.accio.base.AccioMDL;
+import io.accio.base.client.AutoCloseableIterator;
+import io.accio.base.client.Client;
+import io.accio.base.dto.Column;
+import io.accio.base.dto.EnumDefinition;
+import io.accio.base.dto.Model;
+import io.accio.base.dto.Relationship;
+import io.accio.validation.exception.NotFoundException;
+import io.trino.sql.tree.ComparisonExpression;
+import io.trino.sql.tree.DereferenceExpression;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static io.accio.validation.ValidationResult.error;
+import static io.accio.validation.ValidationResult.fail;
+import static io.accio.validation.ValidationResult.formatRuleWithIdentifier;
+import static io.accio.validation.ValidationResult.pass;
+import static java.lang.String.format;
+import static java.lang.String.join;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Plan the column checks of the not null, enum value and relationship rules into one aggregate query per model, so a
+ * model is scanned once however many of its columns are checked. The queries run on the given executor, which bounds
+ * how many of them the data source gets at the same time.
+ */
+final class ValidationPlanner
+{
+    private static final String QUERY_FAILED = "Query executed failed";
+
+    private final Client client;
+    private final AccioMDL accioMDL;
+    private final ValidationOptions options;
+    private final Map<String, ModelScan> scans = new LinkedHashMap<>();
+    private final List<PlannedResult> plannedResults = new ArrayList<>();
+
+    static boolean isFused(ValidationRule rule)
+    {
+        return rule instanceof NotNullValidation
+                || rule instanceof EnumValueValidation
+                || rule instanceof RelationshipValidation;
+    }
+
+    /**
+     * @return the results of the fused rules, in the order the rules would have returned them
+     */
+    static List<CompletableFuture<ValidationResult>> validate(Client client, AccioMDL accioMDL, List<ValidationRule> rules, ValidationOptions options, Executor executor)
+    {
+        ValidationPlanner planner = new ValidationPlanner(client, accioMDL, options);
+        for (ValidationRule rule : rules) {
+            if (rule instanceof NotNullValidation) {
+                planner.planNotNull();
+            }
+            else if (rule instanceof EnumValueValidation) {
+                planner.planEnumValue();
+            }
+            else if (rule instanceof RelationshipValidation) {
+                planner.planRelationship();
+            }
+            else {
+                throw new IllegalArgumentException("Rule can't be fused: " + rule.getClass().getSimpleName());
+            }
+        }
+        return planner.execute(executor);
+    }
+
+    private ValidationPlanner(Client client, AccioMDL accioMDL, ValidationOptions options)
+    {
+        this.client = requireNonNull(client, "client is null");
+        this.accioMDL = requireNonNull(accioMDL, "accioMDL is null");
+        this.options = requireNonNull(options, "options is null");
+    }
+
+    private void planNotNull()
+    {
+        for (Model model : accioMDL.listModels()) {
+            model.getColumns().stream()
+                    .filter(Column::isNotNull)
+                    .forEach(column -> planColumnCheck(
+                            model,
+                            format("count(CASE WHEN %s IS NULL THEN 1 END) = 0", column.getName()),
+                            formatRuleWithIdentifier(NotNullValidation.RULE_NAME, model.getName(), column.getName()),
+                            NotNullValidation.buildFailMessage(column.getName())));
+        }
+    }
+
+    private void planEnumValue()
+    {
+        for (Model model : accioMDL.listModels()) {
+            for (EnumDefinition enumDefinition : accioMDL.listEnums()) {
+                model.getColumns().stream()
+                        .filter(column -> column.getType().equals(enumDefinition.getName()))
+                        .forEach(column -> planColumnCheck(
+                                model,
+                                format("count(CASE WHEN %s THEN 1 END) = 0", EnumValueValidation.buildInvalidEnumPredicate(column.getName(), enumDefinition)),
+                                formatRuleWithIdentifier(EnumValueValidation.RULE_PREFIX + enumDefinition.getName(), model.getName(), column.getName()),
+                                EnumValueValidation.buildFailMessage(column.getName())));
+            }
+        }
+    }
+
+    private void planColumnCheck(Model model, String check, String name, String failMessage)
+    {
+        ModelScan scan = getScan(model).addCheck(check);
+        plannedResults.add(scanResults -> scanResults.get(scan).thenApply(results -> results.get(check).toValidationResult(name, failMessage)));
+    }
+
+    private void planRelationship()
+    {
+        List<Model> models = accioMDL.listModels();
+        for (Relationship relationship : accioMDL.listRelationships()) {
+            String name = formatRuleWithIdentifier(RelationshipValidation.getJoinTypeRuleName(relationship.getJoinType()), relationship.getName());
+            List<KeyCheck> keyChecks = new ArrayList<>();
+            try {
+                ComparisonExpression condition = RelationshipValidation.getConditionNode(relationship.getCondition());
+                switch (relationship.getJoinType()) {
+                    case ONE_TO_ONE:
+                        keyChecks.add(planKeyCheck(relationship.getModels().get(0), (DereferenceExpression) condition.getLeft(), models));
+                        keyChecks.add(planKeyCheck(relationship.getModels().get(1), (DereferenceExpression) condition.getRight(), models));
+                        break;
+                    case MANY_TO_ONE:
+                        keyChecks.add(planKeyCheck(relationship.getModels().get(1), (DereferenceExpression) condition.getRight(), models));
+                        break;
+                    case ONE_TO_MANY:
+                        keyChecks.add(planKeyCheck(relationship.getModels().get(0), (DereferenceExpression) condition.getLeft(), models));
+                        break;
+                    case MANY_TO_MANY:
+                        break;
+                }
+            }
+            catch (NotFoundException e) {
+                plannedResults.add(scanResults -> CompletableFuture.completedFuture(fail(name, Duration.ZERO, e.getMessage())));
+                continue;
+            }
+            catch (RuntimeException e) {
+                plannedResults.add(scanResults -> CompletableFuture.completedFuture(error(name, Duration.ZERO, "Unexpected error: " + e.getMessage())));
+                continue;
+            }
+            plannedResults.add(scanResults -> CompletableFuture.allOf(keyChecks.stream().map(keyCheck -> scanResults.get(keyCheck.scan)).toArray(CompletableFuture[]::new))
+                    .thenApply(ignored -> toRelationshipResult(name, keyChecks, scanResults)));
+        }
+    }
+
+    /**
+     * @param reportedModel the model named if the key isn't unique. Like {@link RelationshipValidation}, it's the left or
+     * the right model in {@link Relationship#getModels()}, not the model in the condition.
+     */
+    private KeyCheck planKeyCheck(String reportedModel, DereferenceExpression key, List<Model> models)
+            throws NotFoundException
+    {
+        Model model = RelationshipValidation.findModel(key, models);
+        String check = format("count(*) = count(DISTINCT %s)", key.getField().orElseThrow());
+        return new KeyCheck(reportedModel, getScan(model).addCheck(check), check);
+    }
+
+    private static ValidationResult toRelationshipResult(String name, List<KeyCheck> keyChecks, Map<ModelScan, CompletableFuture<Map<String, CheckResult>>> scanResults)
+    {
+        Duration duration = Duration.ZERO;
+        List<String> invalidModels = new ArrayList<>();
+        for (KeyCheck keyCheck : keyChecks) {
+            CheckResult result = scanResults.get(keyCheck.scan).join().get(keyCheck.check);
+            if (result.duration.compareTo(duration) > 0) {
+                duration = result.duration;
+            }
+            if (result.errorMessage != null) {
+                return error(name, result.duration, result.errorMessage);
+            }
+            if (!result.passed) {
+                invalidModels.add(keyCheck.modelName);
+            }
+        }
+        if (invalidModels.isEmpty()) {
+            return pass(name, duration);
+        }
+        return fail(name, duration, RelationshipValidation.buildFailMessage(invalidModels));
+    }
+
+    private ModelScan getScan(Model model)
+    {
+        return scans.computeIfAbsent(model.getName(), ignored -> new ModelScan(model.getRefSql()));
+    }
+
+    private List<CompletableFuture<ValidationResult>> execute(Executor executor)
+    {
+        Map<ModelScan, CompletableFuture<Map<String, CheckResult>>> scanResults = new HashMap<>();
+        for (ModelScan scan : scans.values()) {
+            scanResults.put(scan, CompletableFuture.supplyAsync(() -> scan.run(client, options), executor));
+        }
+        List<CompletableFuture<ValidationResult>> results = new ArrayList<>();
+        for (PlannedResult plannedResult : plannedResults) {
+            results.add(plannedResult.get(scanResults));
+        }
+        return results;
+    }
+
+    private interface PlannedResult
+    {
+        CompletableFuture<ValidationResult> get(Map<ModelScan, CompletableFuture<Map<String, CheckResult>>> scanResults);
+    }
+
+    private static class KeyCheck
+    {
+        private final String modelName;
+        private final ModelScan scan;
+        private final String check;
+
+        private KeyCheck(String modelName, ModelScan scan, String check)
+        {
+            this.modelName = modelName;
+            this.scan = scan;
+            this.check = check;
+        }
+    }
+
+    /**
+     * One query over a model evaluating all the checks planned on it. Each check is a boolean aggregation which is
+     * true if the check passes.
+     */
+    private static class ModelScan
+    {
+        private final String refSql;
+        private final Set<String> checks = new LinkedHashSet<>();
+
+        private ModelScan(String refSql)
+        {
+            this.refSql = refSql;
+        }
+
+        private ModelScan addCheck(String check)
+        {
+            checks.add(check);
+            return this;
+        }
+
+        private Map<String, CheckResult> run(Client client, ValidationOptions options)
+        {
+            Map<String, CheckResult> results = new HashMap<>();
+            long start = System.currentTimeMillis();
+            try {
+                Object[] row = query(client, buildSql(List.copyOf(checks), options));
+                Duration elapsed = Duration.ofMillis(System.currentTimeMillis() - start);
+                int index = 0;
+                for (String check : checks) {
+                    results.put(check, CheckResult.of((boolean) row[index++], elapsed));
+                }
+                return results;
+            }
+            catch (Exception e) {
+                if (checks.size() == 1) {
+                    results.put(checks.iterator().next(), CheckResult.failed(e, Duration.ofMillis(System.currentTimeMillis() - start)));
+                    return results;
+                }
+            }
+
+            // a broken check, e.g. of a column the model doesn't have, fails the whole query,
+            // so run the checks one by one to tell it from the others
+            for (String check : checks) {
+                long checkStart = System.currentTimeMillis();
+                try {
+                    Object[] row = query(client, buildSql(List.of(check), options));
+                    results.put(check, CheckResult.of((boolean) row[0], Duration.ofMillis(System.currentTimeMillis() - checkStart)));
+                }
+                catch (Exception e) {
+                    results.put(check, CheckResult.failed(e, Duration.ofMillis(System.currentTimeMillis() - checkStart)));
+                }
+            }
+            return results;
+        }
+
+        private String buildSql(List<String> checks, ValidationOptions options)
+        {
+            return format("WITH source AS (%s) SELECT %s FROM source%s", refSql, join(", ", checks), buildSample(options));
+        }
+
+        private static Object[] query(Client client, String sql)
+                throws Exception
+        {
+            try (AutoCloseableIterator<Object[]> result = client.query(sql)) {
+                if (!result.hasNext()) {
+                    throw new IllegalStateException(QUERY_FAILED);
+                }
+                return result.next();
+            }
+        }
+    }
+
+    private static String buildSample(ValidationOptions options)
+    {
+        if (options.getSamplePercentage().isEmpty()) {
+            return "";
+        }
+        BigDecimal percentage = BigDecimal.valueOf(options.getSamplePercentage().getAsDouble()).stripTrailingZeros();
+        switch (options.getDialect().orElseThrow(() -> new IllegalArgumentException("dialect is required to sample the models"))) {
+            case DEFAULT:
+                return format(" TABLESAMPLE BERNOULLI (%s)", percentage.toPlainString());
+            case DUCKDB:
+                return format(" TABLESAMPLE BERNOULLI (%s PERCENT)", percentage.toPlainString());
+            // BigQuery and Postgres only sample tables, so rows of the model are sampled by a predicate instead
+            case BIGQUERY:
+                return format(" WHERE RAND() < %s", percentage.movePointLeft(2).toPlainString());
+            case POSTGRES:
+                return format(" WHERE random() < %s", percentage.movePointLeft(2).toPlainString());
+        }
+        throw new IllegalArgumentException("Unsupported dialect: " + options.getDialect().get());
+    }
+
+    private static class CheckResult
+    {
+        private final boolean passed;
+        private final String errorMessage;
+        private final Duration duration;
+
+        private static CheckResult of(boolean passed, Duration duration)
+        {
+            return new CheckResult(passed, null, duration);
+        }
+
+        private static CheckResult failed(Exception e, Duration duration)
+        {
+            return new CheckResult(false, e.getMessage() == null ? QUERY_FAILED : e.getMessage(), duration);
+        }
+
+        private CheckResult(boolean passed, String errorMessage, Duration duration)
+        {
+            this.passed = passed;
+            this.errorMessage = errorMessage;
+            this.duration = duration;
+        }
+
+        private ValidationResult toValidationResult(String name, String failMessage)
+        {
+            if (errorMessage != null) {
+                return error(name, duration, errorMessage);
+            }
+            if (passed) {
+                return pass(name, duration);
+            }
+            return fail(name, duration, failMessage);
+        }
+    }
+}
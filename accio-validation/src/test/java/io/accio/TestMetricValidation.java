@@ -16,6 +16,8 @@ package io.accio;
 
 import io.accio.base.AccioMDL;
 import io.accio.base.AccioTypes;
+import io.accio.base.Parameter;
+import io.accio.base.client.AutoCloseableIterator;
 import io.accio.base.client.Client;
 import io.accio.base.client.duckdb.DuckdbClient;
 import io.accio.base.dto.Column;
@@ -23,6 +25,7 @@ import io.accio.base.dto.EnumDefinition;
 import io.accio.base.dto.JoinType;
 import io.accio.base.dto.Model;
 import io.accio.base.dto.Relationship;
+import io.accio.base.metadata.ColumnMetadata;
 import io.accio.validation.DuplicateModelNameValidation;
 import io.accio.validation.EnumValueValidation;
 import io.accio.validation.MetricValidation;
@@ -30,10 +33,15 @@ import io.accio.validation.ModelNameValidation;
 import io.accio.validation.ModelValidation;
 import io.accio.validation.NotNullValidation;
 import io.accio.validation.RelationshipValidation;
+import io.accio.validation.ValidationOptions;
 import io.accio.validation.ValidationResult;
+import io.trino.sql.SqlFormatter.Dialect;
 import org.testng.annotations.Test;
 
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.accio.base.dto.EnumValue.enumValue;
 import static io.accio.testing.AbstractTestFramework.withDefaultCatalogSchema;
@@ -41,6 +49,7 @@ import static java.lang.String.format;
 import static java.lang.String.join;
 import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class TestMetricValidation
 {
@@ -262,6 +271,129 @@ public class TestMetricValidation
         assertThat(validationResult.getMessage()).isEqualTo("notfound model is not found");
     }
 
+    @Test
+    public void testFusedScan()
+    {
+        String bookCsv = requireNonNull(getClass().getClassLoader().getResource("book.csv")).getPath();
+        String userCsv = requireNonNull(getClass().getClassLoader().getResource("user.csv")).getPath();
+        AccioMDL accioMDL = AccioMDL.fromManifest(withDefaultCatalogSchema()
+                .setModels(List.of(
+                        sample.getModel("Flight").orElseThrow(),
+                        Model.model("Book",
+                                format("SELECT * FROM '%s'", bookCsv),
+                                List.of(
+                                        Column.column("name", AccioTypes.VARCHAR, null, true),
+                                        Column.column("authorId", AccioTypes.INTEGER, null, true))),
+                        Model.model("User",
+                                format("SELECT * FROM '%s'", userCsv),
+                                List.of(
+                                        Column.column("id", AccioTypes.INTEGER, null, true),
+                                        Column.column("fakeId", AccioTypes.INTEGER, null, false)))))
+                .setEnumDefinitions(sample.listEnums())
+                .setRelationships(List.of(
+                        Relationship.relationship("BookUserOneToOne", List.of("Book", "User"), JoinType.ONE_TO_ONE, "Book.authorId = User.id"),
+                        Relationship.relationship("FakeUserManyToOne", List.of("Book", "User"), JoinType.MANY_TO_ONE, "Book.authorId = User.fakeId"),
+                        // the failed key is named by the order of the models in the relationship, like the unfused rule
+                        Relationship.relationship("ReversedFakeUserOneToOne", List.of("Book", "User"), JoinType.ONE_TO_ONE, "User.fakeId = Book.authorId")))
+                .build());
+
+        CountingClient countingClient = new CountingClient(client);
+        List<ValidationResult> validationResults = MetricValidation.validate(
+                countingClient,
+                accioMDL,
+                List.of(NotNullValidation.NOT_NULL, EnumValueValidation.ENUM_VALUE_VALIDATION, RelationshipValidation.RELATIONSHIP_VALIDATION),
+                ValidationOptions.builder().setMaxConcurrency(2).build());
+        // one scan per model
+        assertThat(countingClient.queries.get()).isEqualTo(3);
+        assertThat(validationResults.size()).isEqualTo(11);
+        assertThat(getResult("not_null:Flight:FlightDate", validationResults).getStatus()).isEqualTo(ValidationResult.Status.PASS);
+        assertThat(getResult("not_null:Flight:UniqueCarrier", validationResults).getMessage()).isEqualTo("Got null value in UniqueCarrier");
+        assertThat(getResult("enum_Carrier:Flight:UniqueCarrier", validationResults).getStatus()).isEqualTo(ValidationResult.Status.PASS);
+        assertThat(getResult("enum_Status:Flight:Status", validationResults).getMessage()).isEqualTo("Got invalid enum value in Status");
+        assertThat(getResult("not_null:Book:name", validationResults).getStatus()).isEqualTo(ValidationResult.Status.PASS);
+        assertThat(getResult("not_null:User:id", validationResults).getStatus()).isEqualTo(ValidationResult.Status.PASS);
+        assertRelationshipPassed("relationship_ONE_TO_ONE:BookUserOneToOne", validationResults);
+        assertRelationshipFailed("relationship_MANY_TO_ONE:FakeUserManyToOne", List.of("User"), validationResults);
+        assertRelationshipFailed("relationship_ONE_TO_ONE:ReversedFakeUserOneToOne", List.of("Book"), validationResults);
+    }
+
+    @Test
+    public void testBrokenCheckInFusedScan()
+    {
+        AccioMDL accioMDL = AccioMDL.fromManifest(withDefaultCatalogSchema()
+                .setModels(List.of(
+                        Model.model("Flight",
+                                format("SELECT * FROM '%s'", flightCsv),
+                                List.of(
+                                        Column.column("FlightDate", AccioTypes.TIMESTAMP, null, true),
+                                        Column.column("notfound", AccioTypes.VARCHAR, null, true),
+                                        Column.column("UniqueCarrier", AccioTypes.VARCHAR, null, true)))))
+                .build());
+
+        List<ValidationResult> validationResults = MetricValidation.validate(client, accioMDL, List.of(NotNullValidation.NOT_NULL));
+        assertThat(validationResults.size()).isEqualTo(3);
+        assertThat(getResult("not_null:Flight:FlightDate", validationResults).getStatus()).isEqualTo(ValidationResult.Status.PASS);
+        assertThat(getResult("not_null:Flight:notfound", validationResults).getStatus()).isEqualTo(ValidationResult.Status.ERROR);
+        assertThat(getResult("not_null:Flight:UniqueCarrier", validationResults).getStatus()).isEqualTo(ValidationResult.Status.FAIL);
+    }
+
+    @Test
+    public void testSample()
+    {
+        List<ValidationResult> validationResults = MetricValidation.validate(
+                client,
+                sample,
+                List.of(NotNullValidation.NOT_NULL, EnumValueValidation.ENUM_VALUE_VALIDATION),
+                ValidationOptions.builder().setSamplePercentage(100).setDialect(Dialect.DUCKDB).build());
+        assertThat(validationResults.size()).isEqualTo(5);
+        assertThat(getResult("not_null:Flight:FlightDate", validationResults).getStatus()).isEqualTo(ValidationResult.Status.PASS);
+        assertThat(getResult("not_null:Flight:UniqueCarrier", validationResults).getStatus()).isEqualTo(ValidationResult.Status.FAIL);
+        assertThat(getResult("enum_Status:Flight:Status", validationResults).getStatus()).isEqualTo(ValidationResult.Status.FAIL);
+
+        validationResults = MetricValidation.validate(
+                client,
+                sample,
+                ValidationOptions.builder().setSamplePercentage(0.5).setDialect(Dialect.DUCKDB).build());
+        assertThat(validationResults.size()).isEqualTo(5);
+        assertThat(validationResults).allMatch(result -> result.getStatus() != ValidationResult.Status.ERROR);
+    }
+
+    @Test
+    public void testSampleInDialectOfClient()
+    {
+        // the dialect is told from the data source
+        List<ValidationResult> validationResults = MetricValidation.validate(
+                client,
+                sample,
+                List.of(NotNullValidation.NOT_NULL),
+                ValidationOptions.builder().setSamplePercentage(100).build());
+        assertThat(validationResults.size()).isEqualTo(3);
+        assertThat(getResult("not_null:Flight:FlightDate", validationResults).getStatus()).isEqualTo(ValidationResult.Status.PASS);
+        assertThat(getResult("not_null:Flight:UniqueCarrier", validationResults).getStatus()).isEqualTo(ValidationResult.Status.FAIL);
+
+        // the models can't be sampled in a dialect that's unknown
+        Client noConnectionClient = new CountingClient(client)
+        {
+            @Override
+            public Connection createConnection()
+                    throws SQLException
+            {
+                throw new SQLException("no connection");
+            }
+        };
+        assertThatThrownBy(() -> MetricValidation.validate(noConnectionClient, sample, ValidationOptions.builder().setSamplePercentage(10).build()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Failed to get the dialect of the data source, set it in the options to sample the models");
+        // it's only needed to sample the models
+        assertThat(MetricValidation.validate(noConnectionClient, sample, List.of(NotNullValidation.NOT_NULL), ValidationOptions.DEFAULT)).hasSize(3);
+    }
+
+    private static ValidationResult getResult(String name, List<ValidationResult> results)
+    {
+        return results.stream().filter(result -> result.getName().equals(name)).findAny()
+                .orElseThrow(() -> new AssertionError(format("%s result is not found", name)));
+    }
+
     private void assertRelationshipPassed(String name, List<ValidationResult> results)
     {
         ValidationResult validationResult = results.stream().filter(result -> result.getName().equals(name)).findAny()
@@ -279,4 +411,55 @@ public class TestMetricValidation
         assertThat(validationResult.getDuration()).isNotNull();
         assertThat(validationResult.getMessage()).isEqualTo("Got duplicate join key in " + join(",", wrongTables));
     }
+
+    private static class CountingClient
+            implements Client
+    {
+        private final Client delegate;
+        private final AtomicInteger queries = new AtomicInteger();
+
+        private CountingClient(Client delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public AutoCloseableIterator<Object[]> query(String sql)
+        {
+            queries.incrementAndGet();
+            return delegate.query(sql);
+        }
+
+        @Override
+        public AutoCloseableIterator<Object[]> query(String sql, List<Parameter> parameters)
+        {
+            queries.incrementAndGet();
+            return delegate.query(sql, parameters);
+        }
+
+        @Override
+        public void executeDDL(String sql)
+        {
+            delegate.executeDDL(sql);
+        }
+
+        @Override
+        public List<ColumnMetadata> describe(String sql, List<Parameter> parameters)
+        {
+            return delegate.describe(sql, parameters);
+        }
+
+        @Override
+        public List<String> listTables()
+        {
+            return delegate.listTables();
+        }
+
+        @Override
+        public Connection createConnection()
+                throws SQLException
+        {
+            return delegate.createConnection();
+        }
+    }
 }
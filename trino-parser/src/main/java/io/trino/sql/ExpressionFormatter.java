@@ -369,15 +369,17 @@ public final class ExpressionFormatter
         {
             String sign = (node.getSign() == IntervalLiteral.Sign.NEGATIVE) ? "-" : "";
             StringBuilder builder = new StringBuilder();
-            if (dialect.equals(BIGQUERY) || dialect.equals(DUCKDB)) {
+            if (dialect.equals(BIGQUERY) || dialect.equals(DUCKDB) || dialect.equals(POSTGRES)) {
                 builder.append("INTERVAL ")
                         .append("'").append(sign).append(node.getValue()).append("' ")
                         .append(node.getStartField());
             }
             else {
-                builder.append("INTERVAL ")
-                        .append(sign)
-                        .append(" '").append(node.getValue()).append("' ")
+                builder.append("INTERVAL ");
+                if (!sign.isEmpty()) {
+                    builder.append(sign).append(" ");
+                }
+                builder.append("'").append(node.getValue()).append("' ")
                         .append(node.getStartField());
             }
 
@@ -449,9 +451,8 @@ public final class ExpressionFormatter
                 return processSliceInBigQuery(node);
             }
 
-            // TODO: `GENERATE_TIMESTAMP_ARRAY` is a bigquery function. We may need to consider the SQL dialect when Accio planning.
             if ("GENERATE_TIMESTAMP_ARRAY".equalsIgnoreCase(node.getName().toString()) && dialect.equals(DUCKDB)) {
-                return processGenerateTimestampArrayInDuckDB(node);
+                return processGenerateTimestampArrayInDuckDB(node, context);
             }
 
             if (dialect.equals(BIGQUERY) && "COUNT_IF".equalsIgnoreCase(node.getName().toString())) {
@@ -979,14 +980,14 @@ public final class ExpressionFormatter
                     start.getValue() - 1 + length.getValue());
         }
 
-        private String processGenerateTimestampArrayInDuckDB(FunctionCall node)
+        private String processGenerateTimestampArrayInDuckDB(FunctionCall node, Void context)
         {
+            checkArgument(node.getArguments().size() == 3, "GENERATE_TIMESTAMP_ARRAY function should have 3 arguments");
             List<Expression> arguments = node.getArguments();
-            Expression start = arguments.get(0);
-            Expression end = arguments.get(1);
-            return format("GENERATE_SERIES(%s, %s, INTERVAL 1 DAY)",
-                    start,
-                    end);
+            return format("GENERATE_SERIES(%s, %s, %s)",
+                    process(arguments.get(0), context),
+                    process(arguments.get(1), context),
+                    process(arguments.get(2), context));
         }
 
         private String processDateDiffInBigQuery(FunctionCall node, Void context)
@@ -155,6 +155,7 @@ import static io.trino.sql.ExpressionFormatter.formatStringLiteral;
 import static io.trino.sql.ExpressionFormatter.formatWindowSpecification;
 import static io.trino.sql.RowPatternFormatter.formatPattern;
 import static io.trino.sql.SqlFormatter.Dialect.DEFAULT;
+import static io.trino.sql.SqlFormatter.Dialect.DUCKDB;
 import static io.trino.sql.SqlFormatter.Dialect.POSTGRES;
 import static java.lang.String.format;
 import static java.util.stream.Collectors.joining;
@@ -243,10 +244,9 @@ public final class SqlFormatter
         {
             // Postgres doesn't have `generate_array` function and `generate_series` is a table function.
             // Use `generate_series` to instead `UNNEST(generate_array(...))` for Postgres.
-            if (dialect == POSTGRES &&
-                    node.getExpressions().size() == 1 &&
-                    node.getExpressions().get(0) instanceof FunctionCall &&
-                    ((FunctionCall) node.getExpressions().get(0)).getName().equals(QualifiedName.of("generate_array"))) {
+            // `UNNEST(GENERATE_TIMESTAMP_ARRAY(...))` is the same for Postgres and DuckDB, whose `generate_series` take the same arguments.
+            if ((dialect == POSTGRES && isUnnestOf(node, "generate_array"))
+                    || ((dialect == POSTGRES || dialect == DUCKDB) && isUnnestOf(node, "generate_timestamp_array"))) {
                 builder.append("generate_series(")
                         .append(((FunctionCall) node.getExpressions().get(0)).getArguments().stream()
                                 .map(expression -> formatExpression(expression, dialect))
@@ -266,6 +266,13 @@ public final class SqlFormatter
             return null;
         }
 
+        private static boolean isUnnestOf(Unnest node, String functionName)
+        {
+            return node.getExpressions().size() == 1 &&
+                    node.getExpressions().get(0) instanceof FunctionCall &&
+                    ((FunctionCall) node.getExpressions().get(0)).getName().getSuffix().equalsIgnoreCase(functionName);
+        }
+
         @Override
         protected Void visitLateral(Lateral node, Integer indent)
         {